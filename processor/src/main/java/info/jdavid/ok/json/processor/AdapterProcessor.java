@@ -0,0 +1,72 @@
+package info.jdavid.ok.json.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+
+/**
+ * Generates the json adapters of the classes annotated with {@code info.jdavid.ok.json.JsonClass}
+ * at compile time. The generated adapters read and write the fields directly, without reflection:
+ * the names are matched with a single {@code switch} on the index returned by
+ * {@code JsonInput.selectName}, that compares the bytes of the name in the input with all the field
+ * names at once.
+ * <p>
+ * The annotation is matched by name, so that the processor doesn't depend on the library.
+ */
+@SuppressWarnings("WeakerAccess")
+@SupportedAnnotationTypes(AdapterProcessor.JSON_CLASS)
+public final class AdapterProcessor extends AbstractProcessor {
+
+  static final String JSON_CLASS = "info.jdavid.ok.json.JsonClass";
+
+  @Override public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override public boolean process(final Set<? extends TypeElement> annotations,
+                                   final RoundEnvironment env) {
+    for (final TypeElement annotation: annotations) {
+      for (final Element element: env.getElementsAnnotatedWith(annotation)) {
+        if (element.getKind() != ElementKind.CLASS) {
+          processingEnv.getMessager().printMessage(
+            Diagnostic.Kind.ERROR, "@JsonClass only applies to classes.", element
+          );
+          continue;
+        }
+        final TypeElement type = (TypeElement)element;
+        final AdapterSource source = new AdapterSource(processingEnv, type);
+        final String code = source.generate();
+        if (code == null) continue;
+        try {
+          final JavaFileObject file =
+            processingEnv.getFiler().createSourceFile(source.qualifiedName(), type);
+          final Writer writer = file.openWriter();
+          try {
+            writer.write(code);
+          }
+          finally {
+            writer.close();
+          }
+        }
+        catch (final IOException e) {
+          processingEnv.getMessager().printMessage(
+            Diagnostic.Kind.ERROR, "Failed to write " + source.qualifiedName() + ": " + e, type
+          );
+        }
+      }
+    }
+    return true;
+  }
+
+}
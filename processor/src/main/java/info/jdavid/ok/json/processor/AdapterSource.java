@@ -0,0 +1,672 @@
+package info.jdavid.ok.json.processor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+
+/**
+ * The source of the adapter generated for a class annotated with {@code JsonClass}.
+ * <p>
+ * The supported field types are the same as with {@code Binder}: the primitive types and their boxed
+ * types, String and CharSequence, enums, the other annotated classes (through their generated
+ * adapters), arrays, collections and maps with String keys of any of those, are read and written
+ * by the generated code. The other classes (Object, Number, BigDecimal, ...) go through the
+ * {@code Binder} adapter of their class.
+ */
+final class AdapterSource {
+
+  private static final String INDENT = "  ";
+
+  private final ProcessingEnvironment env;
+  private final Elements elements;
+  private final Types types;
+  private final TypeElement type;
+  private final String packageName;
+  private final String simpleName;
+  private final TypeMirror object;
+  private final TypeMirror collection;
+  private final TypeMirror map;
+
+  private final StringBuilder code = new StringBuilder();
+  /** The names of the static arrays of enum constants, by enum. */
+  private final Map<String, String> constants = new LinkedHashMap<String, String>();
+  private int locals = 0;
+  private boolean failed = false;
+
+  AdapterSource(final ProcessingEnvironment env, final TypeElement type) {
+    this.env = env;
+    this.elements = env.getElementUtils();
+    this.types = env.getTypeUtils();
+    this.type = type;
+    this.packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    this.simpleName = adapterName(type);
+    this.object = elements.getTypeElement("java.lang.Object").asType();
+    this.collection = erasure("java.util.Collection");
+    this.map = erasure("java.util.Map");
+  }
+
+  /**
+   * Returns the qualified name of the adapter.
+   * @return the name.
+   */
+  String qualifiedName() {
+    return packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+  }
+
+  /**
+   * Returns the source of the adapter, or null if the class is not supported (the errors are
+   * reported to the compiler).
+   * @return the source, or null.
+   */
+  String generate() {
+    checkClass();
+    final List<VariableElement> fields = fields();
+    if (failed) return null;
+    final String className = type.getQualifiedName().toString();
+
+    line(2, "final " + className + " instance = new " + className + "();");
+    line(2, "in.beginObject();");
+    line(2, "while (in.hasNext()) {");
+    line(3, "switch (in.selectName(NAMES)) {");
+    for (int i=0; i<fields.size(); ++i) {
+      final VariableElement field = fields.get(i);
+      line(4, "case " + i + ":");
+      readNullable(fieldType(field), "instance." + field.getSimpleName() + " = %s;", 5);
+      line(5, "break;");
+    }
+    line(4, "default:");
+    line(5, "in.skipValue();");
+    line(3, "}");
+    line(2, "}");
+    line(2, "in.endObject();");
+    line(2, "return instance;");
+    final String read = flush();
+
+    line(2, "out.beginObject();");
+    for (int i=0; i<fields.size(); ++i) {
+      final VariableElement field = fields.get(i);
+      final TypeMirror fieldType = fieldType(field);
+      final String value = "value." + field.getSimpleName();
+      final String name = "out.name(NAMES, " + i + ")";
+      if (fieldType.getKind().isPrimitive()) {
+        line(2, simpleWrite(fieldType, name, value));
+        continue;
+      }
+      // Null fields are left out.
+      line(2, "if (" + value + " != null) {");
+      final String simple = simpleWrite(fieldType, name, value);
+      if (simple == null) {
+        line(3, name + ";");
+        writeValue(fieldType, value, 3);
+      }
+      else {
+        line(3, simple);
+      }
+      line(2, "}");
+    }
+    line(2, "out.endObject();");
+    final String write = flush();
+
+    line(0, "// Generated by the okjson annotation processor from " + className + ".");
+    if (packageName.length() > 0) line(0, "package " + packageName + ";");
+    line(0, "");
+    line(0, "import java.io.IOException;");
+    line(0, "");
+    line(0, "import info.jdavid.ok.json.JsonAdapter;");
+    line(0, "import info.jdavid.ok.json.JsonInput;");
+    line(0, "import info.jdavid.ok.json.JsonOutput;");
+    line(0, "");
+    line(0, "");
+    line(0, "/**");
+    line(0, " * The json adapter of {@link " + className + "}.");
+    line(0, " */");
+    line(0, "public final class " + simpleName + " extends JsonAdapter<" + className + "> {");
+    line(0, "");
+    line(1, "public static final " + simpleName + " INSTANCE = new " + simpleName + "();");
+    line(0, "");
+    line(1, "private static final JsonAdapter.Names NAMES = JsonAdapter.Names.of(");
+    for (int i=0; i<fields.size(); ++i) {
+      final String name = literal(fields.get(i).getSimpleName().toString());
+      line(2, i == fields.size() - 1 ? name : name + ",");
+    }
+    line(1, ");");
+    for (final Map.Entry<String, String> entry: constants.entrySet()) {
+      line(1, "private static final " + entry.getKey() + "[] " + entry.getValue() + " = " +
+              entry.getKey() + ".values();");
+    }
+    line(0, "");
+    line(1, "private " + simpleName + "() {}");
+    line(0, "");
+    line(1, "@Override public " + className + " fromJson(final JsonInput in) throws IOException {");
+    code.append(read);
+    line(1, "}");
+    line(0, "");
+    line(1, "@Override public void toJson(final JsonOutput out,");
+    line(1, "                             final " + className + " value) throws IOException {");
+    code.append(write);
+    line(1, "}");
+    line(0, "");
+    line(0, "}");
+    return flush();
+  }
+
+  private void checkClass() {
+    final Set<Modifier> modifiers = type.getModifiers();
+    if (modifiers.contains(Modifier.ABSTRACT)) error("@JsonClass classes can't be abstract.", type);
+    if (!type.getTypeParameters().isEmpty()) {
+      error("@JsonClass classes can't be generic.", type);
+    }
+    for (Element e = type; isType(e); e = e.getEnclosingElement()) {
+      final TypeElement t = (TypeElement)e;
+      if (t.getModifiers().contains(Modifier.PRIVATE)) {
+        error("@JsonClass classes and their enclosing classes can't be private.", type);
+      }
+      if (t.getNestingKind() == NestingKind.LOCAL || t.getNestingKind() == NestingKind.ANONYMOUS) {
+        error("@JsonClass classes can't be local classes.", type);
+      }
+      if (t.getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC) &&
+          isType(t.getEnclosingElement()) && t.getEnclosingElement().getKind() == ElementKind.CLASS) {
+        error("@JsonClass nested classes must be static.", type);
+      }
+    }
+    for (final ExecutableElement constructor:
+         ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()) {
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+          error("@JsonClass classes need a no-argument constructor that isn't private.", type);
+        }
+        return;
+      }
+    }
+    error("@JsonClass classes need a no-argument constructor.", type);
+  }
+
+  /**
+   * Returns the fields bound to the json members, super classes first. Static and transient fields
+   * are left out.
+   */
+  private List<VariableElement> fields() {
+    final List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+    for (TypeMirror t = type.asType(); t.getKind() == TypeKind.DECLARED;
+         t = ((TypeElement)types.asElement(t)).getSuperclass()) {
+      final TypeElement e = (TypeElement)types.asElement(t);
+      if (e.getQualifiedName().contentEquals("java.lang.Object")) break;
+      hierarchy.add(0, e);
+    }
+    final Map<String, VariableElement> fields = new LinkedHashMap<String, VariableElement>();
+    for (final TypeElement c: hierarchy) {
+      final boolean samePackage =
+        elements.getPackageOf(c).getQualifiedName().contentEquals(packageName);
+      for (final VariableElement field: ElementFilter.fieldsIn(c.getEnclosedElements())) {
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+        if (modifiers.contains(Modifier.PRIVATE)) {
+          error("@JsonClass fields can't be private (make them transient to skip them).", field);
+        }
+        else if (!samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+          error("@JsonClass fields inherited from another package must be public.", field);
+        }
+        if (modifiers.contains(Modifier.FINAL)) {
+          error("@JsonClass fields can't be final (make them transient to skip them).", field);
+        }
+        final String unsupported = check(fieldType(field));
+        if (unsupported != null) error(unsupported, field);
+        // A field hides the fields with the same name in the super classes.
+        final String name = field.getSimpleName().toString();
+        fields.remove(name);
+        fields.put(name, field);
+      }
+    }
+    return new ArrayList<VariableElement>(fields.values());
+  }
+
+  private TypeMirror fieldType(final VariableElement field) {
+    return types.asMemberOf((DeclaredType)type.asType(), field);
+  }
+
+  /**
+   * Checks that a type is supported.
+   * @return null if it is, or the error message.
+   */
+  private String check(final TypeMirror t) {
+    if (t.getKind().isPrimitive()) return null;
+    if (t.getKind() == TypeKind.ARRAY) {
+      final TypeMirror component = ((ArrayType)t).getComponentType();
+      if (component.getKind() == TypeKind.DECLARED &&
+          !((DeclaredType)component).getTypeArguments().isEmpty()) {
+        return "Arrays of generic types are not supported: " + t;
+      }
+      return check(component);
+    }
+    if (t.getKind() != TypeKind.DECLARED) return "Unsupported type: " + t;
+    final DeclaredType declared = (DeclaredType)t;
+    if (declared.getTypeArguments().isEmpty()) return null;
+    if (isCollection(declared)) {
+      if (collectionClass(declared) == null) return "Unsupported collection type: " + t;
+      return check(typeArgument(declared, 0));
+    }
+    if (isMap(declared)) {
+      if (mapClass(declared) == null) return "Unsupported map type: " + t;
+      final TypeMirror key = typeArgument(declared, 0);
+      if (!isClass(key, "java.lang.String")) return "Unsupported map key type: " + key;
+      return check(typeArgument(declared, 1));
+    }
+    return "Unsupported generic type: " + t;
+  }
+
+  /**
+   * Emits the statements that read the next value, that can be null, and pass it to the pattern.
+   */
+  private void readNullable(final TypeMirror t, final String pattern, final int depth) {
+    final String simple = simpleRead(t);
+    if (t.getKind().isPrimitive()) {
+      // Primitive fields keep their default value.
+      line(depth, "if (!in.nextNull()) " + fill(pattern, simple));
+    }
+    else if (simple != null) {
+      line(depth, fill(pattern, "in.nextNull() ? null : " + simple));
+    }
+    else {
+      line(depth, "if (in.nextNull()) {");
+      line(depth + 1, fill(pattern, "null"));
+      line(depth, "}");
+      line(depth, "else {");
+      readValue(t, pattern, depth + 1);
+      line(depth, "}");
+    }
+  }
+
+  /**
+   * Returns the expression that reads the next value (not null), or null if it takes more than an
+   * expression.
+   */
+  private String simpleRead(final TypeMirror t) {
+    switch (t.getKind()) {
+      case BOOLEAN:
+        return "in.nextBoolean()";
+      case INT:
+        return "in.nextInt()";
+      case LONG:
+        return "in.nextLong()";
+      case DOUBLE:
+        return "in.nextDouble()";
+      case FLOAT:
+        return "in.nextFloat()";
+      case SHORT:
+        return "in.nextShort()";
+      case BYTE:
+        return "in.nextByte()";
+      case CHAR:
+        return "in.nextChar()";
+      case DECLARED:
+        final PrimitiveType unboxed = unbox(t);
+        if (unboxed != null) return simpleRead(unboxed);
+        final TypeElement e = (TypeElement)types.asElement(t);
+        final String name = e.getQualifiedName().toString();
+        if (name.equals("java.lang.String") || name.equals("java.lang.CharSequence")) {
+          return "in.nextString()";
+        }
+        if (e.getKind() == ElementKind.ENUM) return "in.nextEnum(" + constants(name) + ")";
+        if (isJsonClass(e)) return adapter(e) + ".INSTANCE.fromJson(in)";
+        if (!((DeclaredType)t).getTypeArguments().isEmpty()) return null;
+        return "in.read(" + name + ".class)";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Emits the statements that read the next value (not null) and pass it to the pattern.
+   */
+  private void readValue(final TypeMirror t, final String pattern, final int depth) {
+    final String simple = simpleRead(t);
+    if (simple != null) {
+      line(depth, fill(pattern, simple));
+    }
+    else if (t.getKind() == TypeKind.ARRAY) {
+      final TypeMirror component = ((ArrayType)t).getComponentType();
+      final String list = local("list");
+      final String element = typeName(component);
+      line(depth, "final java.util.List<" + element + "> " + list +
+                  " = new java.util.ArrayList<" + element + ">();");
+      line(depth, "in.beginArray();");
+      line(depth, "while (in.hasNext()) {");
+      if (component.getKind().isPrimitive()) {
+        line(depth + 1, list + ".add(" + simpleRead(component) + ");");
+      }
+      else {
+        readNullable(component, list + ".add(%s);", depth + 1);
+      }
+      line(depth, "}");
+      line(depth, "in.endArray();");
+      if (component.getKind().isPrimitive()) {
+        final String array = local("array");
+        final String i = local("i");
+        line(depth, "final " + component + "[] " + array + " = new " + component + "[" +
+                    list + ".size()];");
+        line(depth, "for (int " + i + "=0; " + i + "<" + array + ".length; ++" + i + ") " +
+                    array + "[" + i + "] = " + list + ".get(" + i + ");");
+        line(depth, fill(pattern, array));
+      }
+      else {
+        line(depth, fill(pattern, list + ".toArray(" + newArray(element, list + ".size()") + ")"));
+      }
+    }
+    else if (isCollection((DeclaredType)t)) {
+      final String implementation = collectionClass((DeclaredType)t);
+      final TypeMirror element = typeArgument((DeclaredType)t, 0);
+      final String elementName = typeName(element);
+      final String list = local("list");
+      line(depth, "final " + implementation + "<" + elementName + "> " + list + " = new " +
+                  implementation + "<" + elementName + ">();");
+      line(depth, "in.beginArray();");
+      line(depth, "while (in.hasNext()) {");
+      readNullable(element, list + ".add(%s);", depth + 1);
+      line(depth, "}");
+      line(depth, "in.endArray();");
+      line(depth, fill(pattern, list));
+    }
+    else {
+      final String implementation = mapClass((DeclaredType)t);
+      final TypeMirror value = typeArgument((DeclaredType)t, 1);
+      final String valueName = typeName(value);
+      final String map = local("map");
+      final String key = local("key");
+      line(depth, "final " + implementation + "<java.lang.String, " + valueName + "> " + map +
+                  " = new " + implementation + "<java.lang.String, " + valueName + ">();");
+      line(depth, "in.beginObject();");
+      line(depth, "while (in.hasNext()) {");
+      line(depth + 1, "final java.lang.String " + key + " = in.nextName();");
+      readNullable(value, map + ".put(" + key + ", %s);", depth + 1);
+      line(depth, "}");
+      line(depth, "in.endObject();");
+      line(depth, fill(pattern, map));
+    }
+  }
+
+  /**
+   * Returns the statement that writes a value (not null) to the output, or null if it takes more
+   * than a statement.
+   */
+  private String simpleWrite(final TypeMirror t, final String out, final String value) {
+    switch (t.getKind()) {
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case DOUBLE:
+      case FLOAT:
+      case SHORT:
+      case BYTE:
+        return out + ".value(" + value + ");";
+      case CHAR:
+        return out + ".value(String.valueOf(" + value + "));";
+      case DECLARED:
+        final PrimitiveType unboxed = unbox(t);
+        if (unboxed != null) {
+          // The Character is converted to a String rather than widened to a long.
+          return unboxed.getKind() == TypeKind.CHAR ?
+                 out + ".value(" + value + ".toString());" :
+                 simpleWrite(unboxed, out, value);
+        }
+        final TypeElement e = (TypeElement)types.asElement(t);
+        final String name = e.getQualifiedName().toString();
+        if (name.equals("java.lang.String")) return out + ".value(" + value + ");";
+        if (name.equals("java.lang.CharSequence")) return out + ".value(" + value + ".toString());";
+        if (e.getKind() == ElementKind.ENUM) return out + ".value(" + value + ".name());";
+        if (isJsonClass(e)) return adapter(e) + ".INSTANCE.toJson(" + out + ", " + value + ");";
+        if (!((DeclaredType)t).getTypeArguments().isEmpty()) return null;
+        return out + ".write(" + value + ");";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Emits the statements that write a value (not null).
+   */
+  private void writeValue(final TypeMirror t, final String value, final int depth) {
+    final String simple = simpleWrite(t, "out", value);
+    if (simple != null) {
+      line(depth, simple);
+    }
+    else if (t.getKind() == TypeKind.ARRAY) {
+      final TypeMirror component = ((ArrayType)t).getComponentType();
+      final String element = local("element");
+      line(depth, "out.beginArray();");
+      line(depth, "for (final " + component + " " + element + ": " + value + ") {");
+      writeNullable(component, element, depth + 1);
+      line(depth, "}");
+      line(depth, "out.endArray();");
+    }
+    else if (isCollection((DeclaredType)t)) {
+      final TypeMirror component = typeArgument((DeclaredType)t, 0);
+      final String element = local("element");
+      line(depth, "out.beginArray();");
+      line(depth, "for (final " + typeName(component) + " " + element + ": " + value + ") {");
+      writeNullable(component, element, depth + 1);
+      line(depth, "}");
+      line(depth, "out.endArray();");
+    }
+    else {
+      final TypeMirror component = typeArgument((DeclaredType)t, 1);
+      final String componentName = typeName(component);
+      final String entry = local("entry");
+      final String element = local("element");
+      line(depth, "out.beginObject();");
+      line(depth, "for (final java.util.Map.Entry<java.lang.String, ? extends " + componentName +
+                  "> " + entry + ": " + value + ".entrySet()) {");
+      line(depth + 1, "out.name(" + entry + ".getKey());");
+      line(depth + 1, "final " + componentName + " " + element + " = " + entry + ".getValue();");
+      writeNullable(component, element, depth + 1);
+      line(depth, "}");
+      line(depth, "out.endObject();");
+    }
+  }
+
+  private void writeNullable(final TypeMirror t, final String value, final int depth) {
+    if (t.getKind().isPrimitive()) {
+      writeValue(t, value, depth);
+      return;
+    }
+    line(depth, "if (" + value + " == null) {");
+    line(depth + 1, "out.nullValue();");
+    line(depth, "}");
+    line(depth, "else {");
+    writeValue(t, value, depth + 1);
+    line(depth, "}");
+  }
+
+  private boolean isCollection(final DeclaredType t) {
+    return !t.getTypeArguments().isEmpty() && types.isAssignable(types.erasure(t), collection);
+  }
+
+  private boolean isMap(final DeclaredType t) {
+    return !t.getTypeArguments().isEmpty() && types.isAssignable(types.erasure(t), map);
+  }
+
+  /**
+   * Returns the class used for a collection type: the type itself if it's a class, or the default
+   * implementation of its interface.
+   */
+  private String collectionClass(final DeclaredType t) {
+    return implementation(
+      t, 1, "java.util.ArrayList", "java.util.LinkedHashSet", "java.util.TreeSet"
+    );
+  }
+
+  /**
+   * Returns the class used for a map type: the type itself if it's a class, or the default
+   * implementation of its interface.
+   */
+  private String mapClass(final DeclaredType t) {
+    return implementation(t, 2, "java.util.LinkedHashMap", "java.util.TreeMap");
+  }
+
+  private String implementation(final DeclaredType t, final int arguments,
+                                final String... defaults) {
+    if (t.getTypeArguments().size() != arguments) return null;
+    final TypeElement e = (TypeElement)t.asElement();
+    final TypeMirror erasure = types.erasure(t);
+    if (e.getKind() == ElementKind.CLASS && !e.getModifiers().contains(Modifier.ABSTRACT)) {
+      return e.getQualifiedName().toString();
+    }
+    for (final String implementation: defaults) {
+      if (types.isAssignable(erasure(implementation), erasure)) return implementation;
+    }
+    return null;
+  }
+
+  /**
+   * Returns a type argument, with wildcards replaced by their bound.
+   */
+  private TypeMirror typeArgument(final DeclaredType t, final int index) {
+    final TypeMirror argument = t.getTypeArguments().get(index);
+    if (argument.getKind() == TypeKind.WILDCARD) {
+      final WildcardType wildcard = (WildcardType)argument;
+      if (wildcard.getExtendsBound() != null) return wildcard.getExtendsBound();
+      if (wildcard.getSuperBound() != null) return wildcard.getSuperBound();
+      return object;
+    }
+    return argument;
+  }
+
+  /**
+   * Returns the name of a type, boxed if it's a primitive type, to use as a type argument.
+   */
+  private String typeName(final TypeMirror t) {
+    if (t.getKind().isPrimitive()) {
+      return types.boxedClass((PrimitiveType)t).getQualifiedName().toString();
+    }
+    return t.toString();
+  }
+
+  private PrimitiveType unbox(final TypeMirror t) {
+    try {
+      return types.unboxedType(t);
+    }
+    catch (final IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private String constants(final String enumName) {
+    final String existing = constants.get(enumName);
+    if (existing != null) return existing;
+    final String name = "CONSTANTS" + constants.size();
+    constants.put(enumName, name);
+    return name;
+  }
+
+  private boolean isClass(final TypeMirror t, final String name) {
+    return t.getKind() == TypeKind.DECLARED &&
+           ((TypeElement)types.asElement(t)).getQualifiedName().contentEquals(name);
+  }
+
+  private TypeMirror erasure(final String className) {
+    return types.erasure(elements.getTypeElement(className).asType());
+  }
+
+  private String local(final String prefix) {
+    return prefix + (locals++);
+  }
+
+  private void line(final int depth, final String line) {
+    for (int i=0; i<depth; ++i) code.append(INDENT);
+    code.append(line).append('\n');
+  }
+
+  private String flush() {
+    final String s = code.toString();
+    code.setLength(0);
+    return s;
+  }
+
+  private void error(final String message, final Element element) {
+    failed = true;
+    env.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  private static String fill(final String pattern, final String value) {
+    return pattern.replace("%s", value);
+  }
+
+  /**
+   * Returns the expression that creates an array of the given component type and size.
+   */
+  private static String newArray(final String component, final String size) {
+    final int dimensions = component.indexOf('[');
+    if (dimensions == -1) return "new " + component + "[" + size + "]";
+    return "new " + component.substring(0, dimensions) + "[" + size + "]" +
+           component.substring(dimensions);
+  }
+
+  private static String literal(final String s) {
+    final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+    for (int i=0; i<s.length(); ++i) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        sb.append(c);
+      }
+      else {
+        sb.append(String.format("\\u%04x", (int)c));
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  private static boolean isType(final Element e) {
+    return e.getKind().isClass() || e.getKind().isInterface();
+  }
+
+  private static boolean isJsonClass(final TypeElement e) {
+    for (final AnnotationMirror annotation: e.getAnnotationMirrors()) {
+      final Element element = annotation.getAnnotationType().asElement();
+      if (((TypeElement)element).getQualifiedName().contentEquals(AdapterProcessor.JSON_CLASS)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String adapter(final TypeElement e) {
+    final String p = elements.getPackageOf(e).getQualifiedName().toString();
+    return p.length() == 0 ? adapterName(e) : p + "." + adapterName(e);
+  }
+
+  /**
+   * Returns the simple name of the adapter of a class: the names of the class and of its enclosing
+   * classes separated by underscores, followed by "JsonAdapter".
+   */
+  static String adapterName(final TypeElement e) {
+    final StringBuilder sb = new StringBuilder(e.getSimpleName());
+    for (Element enclosing = e.getEnclosingElement(); isType(enclosing);
+         enclosing = enclosing.getEnclosingElement()) {
+      sb.insert(0, '_').insert(0, enclosing.getSimpleName());
+    }
+    return sb.append("JsonAdapter").toString();
+  }
+
+}
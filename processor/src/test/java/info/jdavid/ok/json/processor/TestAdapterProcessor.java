@@ -0,0 +1,192 @@
+package info.jdavid.ok.json.processor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import info.jdavid.ok.json.Binder;
+import info.jdavid.ok.json.JsonAdapter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestAdapterProcessor {
+
+  private static final String BASE =
+    "package sample;\n" +
+    "public class Base {\n" +
+    "  long version;\n" +
+    "  String hidden;\n" +
+    "}\n";
+
+  private static final String ORDER =
+    "package sample;\n" +
+    "import info.jdavid.ok.json.JsonClass;\n" +
+    "import java.math.BigDecimal;\n" +
+    "import java.util.*;\n" +
+    "@JsonClass\n" +
+    "public class Order extends Base {\n" +
+    "  public enum Status { NEW, SHIPPED }\n" +
+    "  @JsonClass static class Line {\n" +
+    "    String sku;\n" +
+    "    int quantity;\n" +
+    "    Character grade;\n" +
+    "  }\n" +
+    "  static String constant = \"c\";\n" +
+    "  transient String ignored = \"i\";\n" +
+    "  long id;\n" +
+    "  String customer;\n" +
+    "  boolean paid;\n" +
+    "  double total;\n" +
+    "  float ratio;\n" +
+    "  short s;\n" +
+    "  byte b;\n" +
+    "  char c;\n" +
+    "  Integer boxed;\n" +
+    "  Status status;\n" +
+    "  List<Line> lines;\n" +
+    "  Set<Status> statuses;\n" +
+    "  Map<String, List<Integer>> groups;\n" +
+    "  SortedMap<String, ? extends Number> prices;\n" +
+    "  int[] codes;\n" +
+    "  String[][] matrix;\n" +
+    "  Line[] extra;\n" +
+    "  BigDecimal amount;\n" +
+    "  Object any;\n" +
+    "  Integer hidden;\n" +
+    "}\n";
+
+  private static final String JSON =
+    "{\"version\":3,\"id\":12345678901,\"customer\":\"Ann \\\"A\\\"\",\"paid\":true," +
+    "\"total\":4.5,\"ratio\":0.1,\"s\":-3,\"b\":7,\"c\":\"x\",\"status\":\"SHIPPED\"," +
+    "\"lines\":[{\"sku\":\"a\",\"quantity\":2,\"grade\":\"B\"},null,{\"quantity\":0}]," +
+    "\"statuses\":[\"NEW\",\"SHIPPED\"],\"groups\":{\"g\":[1,null,3],\"h\":[]}," +
+    "\"prices\":{\"a\":1.5,\"b\":2}," +
+    "\"codes\":[1,2,3],\"matrix\":[[\"a\"],[],null],\"extra\":[{\"quantity\":1}]," +
+    "\"amount\":1.10,\"any\":{\"k\":[true]},\"hidden\":5}";
+
+  @Test
+  public void testGeneratedAdapter() throws Exception {
+    final File dir = compile(new String[] { "Base", BASE }, new String[] { "Order", ORDER });
+    final URLClassLoader loader =
+      new URLClassLoader(new URL[] { dir.toURI().toURL() }, getClass().getClassLoader());
+    final Class<?> order = loader.loadClass("sample.Order");
+    final Class<?> adapterClass = loader.loadClass("sample.OrderJsonAdapter");
+    assertNotNull(loader.loadClass("sample.Order_LineJsonAdapter"));
+    //noinspection unchecked
+    final JsonAdapter<Object> adapter =
+      (JsonAdapter<Object>)adapterClass.getField("INSTANCE").get(null);
+    final Object value = adapter.fromJson(JSON);
+    assertNotNull(value);
+    assertEquals(JSON, adapter.toJson(value));
+    final Field id = order.getDeclaredField("id");
+    id.setAccessible(true);
+    assertEquals(12345678901L, id.getLong(value));
+    // The Binder uses the generated adapter for the annotated classes.
+    assertEquals(JSON, Binder.build(Binder.parse(JSON, order)));
+    assertEquals("{\"version\":0,\"id\":0,\"paid\":false,\"total\":0.0,\"ratio\":0.0," +
+                 "\"s\":0,\"b\":0,\"c\":\"\\u0000\"}",
+                 adapter.toJson(adapter.fromJson("{\"unknown\":[1,{}],\"id\":null}")));
+    assertNull(adapter.fromJson("{\"status\":\"UNKNOWN\"}"));
+    assertNull(adapter.fromJson("{\"b\":128}"));
+    delete(dir);
+  }
+
+  @Test
+  public void testErrors() throws IOException {
+    final String source =
+      "package sample;\n" +
+      "@info.jdavid.ok.json.JsonClass\n" +
+      "public class Invalid {\n" +
+      "  private String name;\n" +
+      "  final int id = 1;\n" +
+      "  java.lang.ref.WeakReference<String> reference;\n" +
+      "  java.util.Map<Integer, String> map;\n" +
+      "  public Invalid(String name) {}\n" +
+      "}\n";
+    final StringWriter diagnostics = new StringWriter();
+    assertNull(compile(diagnostics, new String[] { "Invalid", source }));
+    final String errors = diagnostics.toString();
+    assertTrue(errors.contains("can't be private"));
+    assertTrue(errors.contains("can't be final"));
+    assertTrue(errors.contains("Unsupported generic type: java.lang.ref.WeakReference<"));
+    assertTrue(errors.contains("Unsupported map key type: java.lang.Integer"));
+    assertTrue(errors.contains("need a no-argument constructor"));
+  }
+
+  private static File compile(final String[]... sources) throws IOException {
+    final StringWriter diagnostics = new StringWriter();
+    final File dir = compile(diagnostics, sources);
+    if (dir == null) fail(diagnostics.toString());
+    return dir;
+  }
+
+  /**
+   * Compiles the given sources with the annotation processor.
+   * @param diagnostics the compiler output.
+   * @param sources the class names and sources, in the sample package.
+   * @return the output directory, or null if the compilation failed.
+   */
+  private static File compile(final Writer diagnostics,
+                              final String[]... sources) throws IOException {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertNotNull("A JDK is needed to run the annotation processor tests.", compiler);
+    final File dir = File.createTempFile("okjson", "processor");
+    assertTrue(dir.delete() && dir.mkdir());
+    final File sampleDir = new File(dir, "sample");
+    assertTrue(sampleDir.mkdir());
+    final List<File> files = new ArrayList<File>();
+    for (final String[] source: sources) {
+      final File file = new File(sampleDir, source[0] + ".java");
+      final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try {
+        writer.write(source[1]);
+      }
+      finally {
+        writer.close();
+      }
+      files.add(file);
+    }
+    final List<String> options = Arrays.asList(
+      "-classpath", System.getProperty("java.class.path"),
+      "-processor", AdapterProcessor.class.getName(),
+      "-d", dir.getPath(),
+      "-s", dir.getPath()
+    );
+    final StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    try {
+      final boolean success = compiler.getTask(
+        diagnostics, fileManager, null, options, null, fileManager.getJavaFileObjectsFromFiles(files)
+      ).call();
+      if (success) return dir;
+      delete(dir);
+      return null;
+    }
+    finally {
+      fileManager.close();
+    }
+  }
+
+  private static void delete(final File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (final File child: children) delete(child);
+    }
+    assertTrue(file.delete());
+  }
+
+}
@@ -0,0 +1,108 @@
+package info.jdavid.ok.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import okio.BufferedSource;
+
+
+/**
+ * Reads the elements of a json array one at a time, only reading from the source what is needed to
+ * parse the next element. The array is either the document itself or a value selected by a path.
+ * Everything after the array is ignored.
+ * <p>
+ * The first error ends the stream: it is thrown by {@link #hasNext()} or {@link #next()} rather than
+ * passed to the error handler of the options.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class ArrayElements implements Closeable, ErrorHandler {
+
+  private final JsonReader reader;
+  private final JsonPath path;
+  private final Parser.Options options;
+  private boolean started = false;
+  private boolean done = false;
+  private @Nullable Exception error = null;
+  /** The byte offsets of the first byte of the last element, and of the byte after it. */
+  long start = -1L;
+  long end = -1L;
+
+  /**
+   * @param source the json document.
+   * @param path the path of the array.
+   * @param options the parsing options. The error handler and the fail-fast setting are ignored.
+   */
+  ArrayElements(final BufferedSource source, final JsonPath path, final Parser.Options options) {
+    final Parser.Options copy = options.copy();
+    copy.errors = this;
+    copy.failFast = true;
+    final JsonReader reader = new JsonReader(source);
+    reader.trackPath(copy.trackPath);
+    reader.setStrict(copy.strict);
+    reader.trackLines(copy.trackLines);
+    this.reader = reader;
+    this.path = path;
+    this.options = copy;
+  }
+
+  @Override public void error(final Exception e) {
+    if (error == null) error = e;
+  }
+
+  /**
+   * Returns whether the array has another element. The reader is moved to the array on the first
+   * call.
+   * @return true if there is another element, false if the end of the array was reached.
+   * @throws IOException if the source can't be read, or if the json is not valid.
+   * @throws JsonDataException if there isn't an array at the path.
+   */
+  boolean hasNext() throws IOException {
+    if (done) return false;
+    if (!started) {
+      started = true;
+      if (!path.select(reader) || reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+        done = true;
+        throw new JsonDataException("Expected an array at " + path);
+      }
+      reader.beginArray();
+    }
+    if (reader.peek() == JsonReader.Token.END_ARRAY) {
+      done = true;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Parses the next element. {@link #hasNext()} should be called first.
+   * @return the element: a map, a list, a string, a number, a boolean, or null for json null.
+   * @throws IOException if the source can't be read, or if the json is not valid.
+   */
+  @Nullable Object next() throws IOException {
+    if (!hasNext()) throw new JsonDataException("No more elements in the array at " + path);
+    // hasNext() peeked the element.
+    start = reader.tokenOffset();
+    final Object element = Parser.nextElement(reader, options);
+    end = reader.offset();
+    final Exception e = error;
+    if (e != null) {
+      done = true;
+      if (e instanceof IOException) throw (IOException)e;
+      throw (RuntimeException)e;
+    }
+    return element;
+  }
+
+  /**
+   * Closes the reader and its source.
+   * @throws IOException if the source can't be closed.
+   */
+  @Override public void close() throws IOException {
+    done = true;
+    reader.close();
+  }
+
+}
@@ -0,0 +1,136 @@
+package info.jdavid.ok.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
+import okio.BufferedSource;
+
+
+/**
+ * Parses a batch of documents with a bounded number of workers (see
+ * {@link Parser#parseAll(java.util.Collection, Parser.Options, Executor, int)}). The workers take
+ * the documents in order from a shared counter, and write each result at the index of its document.
+ * <p>
+ * The error handler of the options doesn't have to be thread-safe: the workers record the errors
+ * of each document, and they are passed to the handler on the calling thread at the end.
+ */
+final class BatchParse implements Runnable {
+
+  private final BufferedSource[] sources;
+  private final Parser.Options options;
+  private final Object[] results;
+  /** The errors found in each document (a list of exceptions), or null if there were none. */
+  private final Object[] errors;
+  private final int workers;
+  private final AtomicInteger next = new AtomicInteger();
+  private final CountDownLatch done;
+  private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+  /**
+   * @param sources the documents.
+   * @param options the parsing options.
+   * @param workers the number of workers, including the calling thread.
+   */
+  BatchParse(final BufferedSource[] sources, final Parser.Options options, final int workers) {
+    this.sources = sources;
+    this.options = options;
+    this.results = new Object[sources.length];
+    this.errors = new Object[sources.length];
+    this.workers = workers;
+    this.done = new CountDownLatch(workers - 1);
+  }
+
+  /**
+   * Starts the other workers, parses documents on the calling thread until there are none left,
+   * and waits for the other workers to finish.
+   * @param executor the executor for the other workers (only used with more than one worker).
+   * @return the results, in the order of the documents.
+   */
+  List<Object> run(@Nullable final Executor executor) {
+    for (int i=1; i<workers; ++i) {
+      try {
+        //noinspection ConstantConditions
+        executor.execute(this);
+      }
+      catch (final RejectedExecutionException ignore) {
+        // The other workers (and at least the calling thread) take up the work.
+        done.countDown();
+      }
+    }
+    work();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      }
+      catch (final InterruptedException e) {
+        // The documents being parsed are finished before returning.
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+    final Throwable t = failure.get();
+    if (t instanceof RuntimeException) throw (RuntimeException)t;
+    if (t instanceof Error) throw (Error)t;
+    final ErrorHandler handler = options.errors;
+    for (final Object found: errors) {
+      if (found == null) continue;
+      //noinspection unchecked
+      for (final Exception e: (List<Exception>)found) handler.error(e);
+    }
+    return Arrays.asList(results);
+  }
+
+  @Override public void run() {
+    try {
+      work();
+    }
+    finally {
+      done.countDown();
+    }
+  }
+
+  private void work() {
+    final BufferedSource[] sources = this.sources;
+    final int n = sources.length;
+    final Parser.Context context = new Parser.Context();
+    final List<Exception> found = new ArrayList<Exception>();
+    final Parser.Options options = this.options.copy();
+    options.errors = new ErrorHandler() {
+      @Override public void error(final Exception e) {
+        found.add(e);
+      }
+    };
+    try {
+      int i;
+      while ((i = next.getAndIncrement()) < n) {
+        results[i] = context.parse(sources[i], options);
+        if (!found.isEmpty()) {
+          errors[i] = new ArrayList<Exception>(found);
+          found.clear();
+        }
+      }
+    }
+    catch (final RuntimeException e) {
+      stop(e);
+    }
+    catch (final Error e) {
+      stop(e);
+    }
+  }
+
+  private void stop(final Throwable t) {
+    failure.compareAndSet(null, t);
+    next.set(sources.length);
+  }
+
+}
@@ -0,0 +1,706 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+
+
+/**
+ * Converts json directly to java objects and back, without going through maps and lists.
+ * <p>
+ * Plain java classes are bound to json objects, with a member per field (static and transient
+ * fields excepted). Reading them needs a no-argument constructor, that can be private. The
+ * supported field types are the primitive types and their boxed types, String, BigInteger,
+ * BigDecimal, Number, enums (bound to the names of their constants), arrays, collections and lists,
+ * sets, maps with String keys, Object (bound to maps, lists, strings, numbers and booleans, like
+ * {@link Parser}) and other plain java classes.
+ * <p>
+ * The adapter of each type is built once, on first use, and cached: the fields, their adapters and
+ * the encoded names are all resolved then, and the conversions only have to go through them.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class Binder {
+
+  private static final ConcurrentHashMap<Type, TypeAdapter<?>> ADAPTERS =
+    new ConcurrentHashMap<Type, TypeAdapter<?>>();
+
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #parse(BufferedSource, Class)}.
+   * @param s the json string to parse.
+   * @param type the class of the value.
+   * @param <T> the type of the value.
+   * @return the value, or null if the string is not valid json or doesn't match the type.
+   * @throws IllegalArgumentException if the type is not supported.
+   */
+  public static @Nullable <T> T parse(@Nullable final String s, final Class<T> type) {
+    if (s == null) return null;
+    final Buffer buffer = new Buffer();
+    try {
+      return parse(buffer.writeUtf8(s), type);
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Converts a json string to a value of the given type.
+   * @param source the json string as an okio source.
+   * @param type the class of the value.
+   * @param <T> the type of the value.
+   * @return the value, or null if the source is not valid json or doesn't match the type.
+   * @throws IllegalArgumentException if the type is not supported.
+   */
+  public static @Nullable <T> T parse(@Nullable final BufferedSource source, final Class<T> type) {
+    if (source == null) return null;
+    //noinspection unchecked
+    return (T)parse(source, adapter(type));
+  }
+
+  /**
+   * Converts a json string to a value with the given adapter.
+   * @return the value, or null if the source is not valid json or doesn't match the type.
+   */
+  static @Nullable Object parse(final BufferedSource source, final TypeAdapter<?> adapter) {
+    final JsonReader reader = new JsonReader(source);
+    reader.trackPath(false);
+    try {
+      if (reader.peek() == JsonReader.Token.NULL) return null;
+      return adapter.read(reader);
+    }
+    catch (final IOException e) {
+      Logger.log(e);
+      return null;
+    }
+    catch (final JsonDataException e) {
+      Logger.log(e);
+      return null;
+    }
+    finally {
+      try {
+        reader.close();
+      }
+      catch (final IOException ignore) {}
+    }
+  }
+
+  /**
+   * Converts a value to its json string representation.
+   * @param value the value.
+   * @return the json string.
+   * @throws IllegalArgumentException if the type of the value is not supported, or if it has a
+   * double or float that is NaN or infinite (json can't represent them).
+   */
+  public static String build(@Nullable final Object value) {
+    final Buffer buffer = new Buffer();
+    build(buffer, value);
+    try {
+      return buffer.readUtf8();
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Writes the json string representation of a value to a {@link okio.BufferedSink}.
+   * @param sink the target buffer.
+   * @param value the value.
+   * @throws IllegalArgumentException if the type of the value is not supported, or if it has a
+   * double or float that is NaN or infinite (json can't represent them).
+   */
+  public static void build(final BufferedSink sink, @Nullable final Object value) {
+    //noinspection unchecked
+    build(sink, value == null ? Scalar.ANY : (TypeAdapter<Object>)adapter(value.getClass()), value);
+  }
+
+  /**
+   * Writes the json string representation of a value with the given adapter.
+   */
+  static <T> void build(final BufferedSink sink, final TypeAdapter<T> adapter,
+                        @Nullable final T value) {
+    final JsonWriter writer = new JsonWriter(sink);
+    writer.trackPath(false);
+    try {
+      if (value == null) {
+        writer.nullValue();
+      }
+      else {
+        adapter.write(writer, value);
+      }
+    }
+    catch (final IOException e) {
+      Logger.log(e);
+    }
+    finally {
+      try {
+        writer.close();
+      }
+      catch (final IOException ignore) {}
+    }
+  }
+
+  private Binder() {}
+
+  /**
+   * Returns the adapter for a type, building it if needed.
+   */
+  static TypeAdapter<?> adapter(final Type type) {
+    final TypeAdapter<?> cached = ADAPTERS.get(type);
+    if (cached != null) return cached;
+    synchronized (ADAPTERS) {
+      final Map<Type, TypeAdapter<?>> building = new HashMap<Type, TypeAdapter<?>>();
+      final TypeAdapter<?> adapter = adapter(type, building);
+      // Class adapters are only published once all the adapters they depend on are built.
+      ADAPTERS.putAll(building);
+      ADAPTERS.put(type, adapter);
+      return adapter;
+    }
+  }
+
+  static TypeAdapter<?> adapter(final Type type, final Map<Type, TypeAdapter<?>> building) {
+    final TypeAdapter<?> cached = ADAPTERS.get(type);
+    if (cached != null) return cached;
+    final TypeAdapter<?> pending = building.get(type);
+    if (pending != null) return pending;
+    if (type instanceof Class) {
+      final Class<?> c = (Class<?>)type;
+      final TypeAdapter<?> scalar = Scalar.of(c);
+      if (scalar != null) return scalar;
+      if (c.isEnum()) {
+        //noinspection unchecked
+        return new EnumAdapter(c);
+      }
+      if (c.isArray()) {
+        final Class<?> component = c.getComponentType();
+        return new ArrayAdapter(component, adapter(component, building));
+      }
+      if (Collection.class.isAssignableFrom(c)) return new CollectionAdapter(c, Scalar.ANY);
+      if (Map.class.isAssignableFrom(c)) return new MapAdapter(c, Scalar.ANY);
+      if (c.isInterface() || Modifier.isAbstract(c.getModifiers()) || c.isPrimitive()) {
+        throw new IllegalArgumentException("Unsupported type: " + c.getName());
+      }
+      if (c.isAnnotationPresent(JsonClass.class)) {
+        final TypeAdapter<?> generated = generated(c);
+        if (generated != null) return generated;
+      }
+      final ClassAdapter<?> adapter = new ClassAdapter(c);
+      building.put(c, adapter);
+      adapter.init(building);
+      return adapter;
+    }
+    if (type instanceof ParameterizedType) {
+      final ParameterizedType parameterized = (ParameterizedType)type;
+      final Class<?> raw = (Class<?>)parameterized.getRawType();
+      final Type[] arguments = parameterized.getActualTypeArguments();
+      if (Collection.class.isAssignableFrom(raw)) {
+        return new CollectionAdapter(raw, adapter(arguments[0], building));
+      }
+      if (Map.class.isAssignableFrom(raw)) {
+        final Class<?> key = rawType(arguments[0]);
+        if (key != String.class && key != CharSequence.class && key != Object.class) {
+          throw new IllegalArgumentException("Unsupported map key type: " + arguments[0]);
+        }
+        return new MapAdapter(raw, adapter(arguments[1], building));
+      }
+      return adapter(raw, building);
+    }
+    if (type instanceof GenericArrayType) {
+      final Type component = ((GenericArrayType)type).getGenericComponentType();
+      return new ArrayAdapter(rawType(component), adapter(component, building));
+    }
+    if (type instanceof WildcardType) {
+      return adapter(((WildcardType)type).getUpperBounds()[0], building);
+    }
+    // Type variables are not resolved.
+    return Scalar.ANY;
+  }
+
+  /**
+   * Returns the adapter generated by the annotation processor for a class annotated with
+   * {@link JsonClass}, or null if there isn't one.
+   */
+  private static @Nullable TypeAdapter<?> generated(final Class<?> c) {
+    final Package p = c.getPackage();
+    final String prefix = p == null ? "" : p.getName() + ".";
+    final String name = c.getName().substring(prefix.length()).replace('$', '_');
+    try {
+      final Class<?> adapter = Class.forName(prefix + name + "JsonAdapter", true, c.getClassLoader());
+      return (TypeAdapter<?>)adapter.getField("INSTANCE").get(null);
+    }
+    catch (final ClassNotFoundException e) {
+      return null;
+    }
+    catch (final NoSuchFieldException e) {
+      return null;
+    }
+    catch (final IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private static Class<?> rawType(final Type type) {
+    if (type instanceof Class) return (Class<?>)type;
+    if (type instanceof ParameterizedType) return (Class<?>)((ParameterizedType)type).getRawType();
+    if (type instanceof GenericArrayType) {
+      final Type component = ((GenericArrayType)type).getGenericComponentType();
+      return Array.newInstance(rawType(component), 0).getClass();
+    }
+    if (type instanceof WildcardType) return rawType(((WildcardType)type).getUpperBounds()[0]);
+    if (type instanceof TypeVariable) return Object.class;
+    throw new IllegalArgumentException("Unsupported type: " + type);
+  }
+
+  static long nextLong(final JsonReader reader) throws IOException {
+    if (reader.hasNextLong()) return reader.nextLong();
+    final String s = reader.nextString();
+    try {
+      return new BigDecimal(s).longValueExact();
+    }
+    catch (final NumberFormatException e) {
+      throw new JsonDataException("Expected a long but was " + s);
+    }
+    catch (final ArithmeticException e) {
+      throw new JsonDataException("Expected a long but was " + s);
+    }
+  }
+
+  static int nextInt(final JsonReader reader) throws IOException {
+    return (int)nextInt(reader, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  static long nextInt(final JsonReader reader, final long min, final long max) throws IOException {
+    final long value = nextLong(reader);
+    if (value < min || value > max) throw new JsonDataException("Value out of range: " + value);
+    return value;
+  }
+
+  static double nextDouble(final JsonReader reader) throws IOException {
+    if (reader.hasNextLong()) return reader.nextLong();
+    final String s = reader.nextString();
+    try {
+      return Double.parseDouble(s);
+    }
+    catch (final NumberFormatException e) {
+      throw new JsonDataException("Expected a double but was " + s);
+    }
+  }
+
+  static char nextChar(final JsonReader reader) throws IOException {
+    final String s = reader.nextString();
+    if (s.length() != 1) throw new JsonDataException("Expected a char but was " + s);
+    return s.charAt(0);
+  }
+
+  @Nullable
+  static Object read(final JsonReader reader, final TypeAdapter<?> adapter)
+    throws IOException {
+    if (reader.peek() == JsonReader.Token.NULL) return reader.nextNull();
+    return adapter.read(reader);
+  }
+
+  private static void write(final JsonWriter writer, final TypeAdapter<Object> adapter,
+                            @Nullable final Object value) throws IOException {
+    if (value == null) {
+      writer.nullValue();
+    }
+    else {
+      adapter.write(writer, value);
+    }
+  }
+
+  /**
+   * Returns the no-argument constructor of a class, made accessible, or null if it doesn't have one.
+   * Classes without one can still be written.
+   */
+  static @Nullable <T> Constructor<T> constructor(final Class<T> type) {
+    if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) return null;
+    try {
+      final Constructor<T> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return constructor;
+    }
+    catch (final NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Creates an instance with the no-argument constructor.
+   * @throws IllegalArgumentException if the class doesn't have one.
+   */
+  static <T> T newInstance(@Nullable final Constructor<T> constructor, final Class<?> type) {
+    if (constructor == null) {
+      throw new IllegalArgumentException(type.getName() + " doesn't have a no-argument constructor.");
+    }
+    try {
+      return constructor.newInstance();
+    }
+    catch (final InstantiationException e) {
+      throw new IllegalStateException(e);
+    }
+    catch (final IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    catch (final InvocationTargetException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * The adapters of the scalar types, and of Object.
+   */
+  private static final class Scalar extends TypeAdapter<Object> {
+
+    static final Scalar ANY = new Scalar(0);
+    static final Scalar STRING = new Scalar(1);
+    static final Scalar INT = new Scalar(2);
+    static final Scalar LONG = new Scalar(3);
+    static final Scalar DOUBLE = new Scalar(4);
+    static final Scalar FLOAT = new Scalar(5);
+    static final Scalar SHORT = new Scalar(6);
+    static final Scalar BYTE = new Scalar(7);
+    static final Scalar CHAR = new Scalar(8);
+    static final Scalar BOOLEAN = new Scalar(9);
+    static final Scalar NUMBER = new Scalar(10);
+    static final Scalar BIG_INTEGER = new Scalar(11);
+    static final Scalar BIG_DECIMAL = new Scalar(12);
+
+    private final int kind;
+
+    private Scalar(final int kind) {
+      this.kind = kind;
+    }
+
+    static @Nullable Scalar of(final Class<?> c) {
+      if (c == Object.class) return ANY;
+      if (c == String.class || c == CharSequence.class) return STRING;
+      if (c == int.class || c == Integer.class) return INT;
+      if (c == long.class || c == Long.class) return LONG;
+      if (c == double.class || c == Double.class) return DOUBLE;
+      if (c == float.class || c == Float.class) return FLOAT;
+      if (c == short.class || c == Short.class) return SHORT;
+      if (c == byte.class || c == Byte.class) return BYTE;
+      if (c == char.class || c == Character.class) return CHAR;
+      if (c == boolean.class || c == Boolean.class) return BOOLEAN;
+      if (c == Number.class) return NUMBER;
+      if (c == BigInteger.class) return BIG_INTEGER;
+      if (c == BigDecimal.class) return BIG_DECIMAL;
+      return null;
+    }
+
+    @Override Object read(final JsonReader reader) throws IOException {
+      switch (kind) {
+        case 1:
+          return reader.nextString();
+        case 2:
+          return nextInt(reader);
+        case 3:
+          return nextLong(reader);
+        case 4:
+          return nextDouble(reader);
+        case 5:
+          return (float)nextDouble(reader);
+        case 6:
+          return (short)nextInt(reader, Short.MIN_VALUE, Short.MAX_VALUE);
+        case 7:
+          return (byte)nextInt(reader, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        case 8:
+          return nextChar(reader);
+        case 9:
+          return reader.nextBoolean();
+        case 10:
+        case 11:
+        case 12:
+          return nextNumber(reader, kind);
+        default:
+          return readAny(reader);
+      }
+    }
+
+    private static Number nextNumber(final JsonReader reader, final int kind) throws IOException {
+      final String s = reader.nextString();
+      try {
+        if (kind == 11) return new BigInteger(s);
+        if (kind == 12) return new BigDecimal(s);
+        return Parser.stringToNumber(s);
+      }
+      catch (final NumberFormatException e) {
+        throw new JsonDataException("Expected a number but was " + s);
+      }
+    }
+
+    private static Object readAny(final JsonReader reader) throws IOException {
+      switch (reader.peek()) {
+        case BEGIN_OBJECT: {
+          final Map<String, Object> map = new HashMap<String, Object>();
+          reader.beginObject();
+          while (reader.peek() == JsonReader.Token.NAME) {
+            final String name = reader.nextName();
+            map.put(name, Binder.read(reader, ANY));
+          }
+          reader.endObject();
+          return map;
+        }
+        case BEGIN_ARRAY: {
+          final List<Object> list = new ArrayList<Object>();
+          reader.beginArray();
+          while (reader.peek() != JsonReader.Token.END_ARRAY) list.add(Binder.read(reader, ANY));
+          reader.endArray();
+          return list;
+        }
+        case NUMBER:
+          return Parser.stringToNumber(reader.nextString());
+        case BOOLEAN:
+          return reader.nextBoolean();
+        default:
+          return reader.nextString();
+      }
+    }
+
+    @Override void write(final JsonWriter writer, final Object value) throws IOException {
+      switch (kind) {
+        case 1:
+          writer.value(value.toString());
+          break;
+        case 2:
+        case 3:
+        case 6:
+        case 7:
+          writer.value(((Number)value).longValue());
+          break;
+        case 4:
+          writer.value(((Double)value).doubleValue());
+          break;
+        case 8:
+          writer.value(value.toString());
+          break;
+        case 9:
+          writer.value((Boolean)value);
+          break;
+        case 5:
+          writer.value(((Float)value).floatValue());
+          break;
+        case 10:
+        case 11:
+        case 12:
+          writer.value((Number)value);
+          break;
+        default:
+          final Class<?> c = value.getClass();
+          if (c == Object.class) {
+            writer.beginObject().endObject();
+          }
+          else {
+            //noinspection unchecked
+            ((TypeAdapter<Object>)adapter(c)).write(writer, value);
+          }
+      }
+    }
+
+  }
+
+  private static final class EnumAdapter<E extends Enum<E>> extends TypeAdapter<E> {
+
+    private final Map<String, E> constants = new HashMap<String, E>();
+    private final ByteString[] names;
+
+    EnumAdapter(final Class<E> type) {
+      final E[] values = type.getEnumConstants();
+      names = new ByteString[values.length];
+      final Buffer buffer = new Buffer();
+      for (final E value: values) {
+        constants.put(value.name(), value);
+        try {
+          JsonWriter.string(buffer, value.name());
+        }
+        catch (final IOException e) {
+          throw new RuntimeException(e);
+        }
+        names[value.ordinal()] = buffer.readByteString();
+      }
+    }
+
+    @Override E read(final JsonReader reader) throws IOException {
+      final String name = reader.nextString();
+      final E value = constants.get(name);
+      if (value == null) throw new JsonDataException("Unknown constant: " + name);
+      return value;
+    }
+
+    @Override void write(final JsonWriter writer, final E value) throws IOException {
+      writer.rawValue(names[value.ordinal()]);
+    }
+
+  }
+
+  private static final class ArrayAdapter extends TypeAdapter<Object> {
+
+    private final Class<?> component;
+    private final TypeAdapter<Object> adapter;
+
+    ArrayAdapter(final Class<?> component, final TypeAdapter<?> adapter) {
+      this.component = component;
+      //noinspection unchecked
+      this.adapter = (TypeAdapter<Object>)adapter;
+    }
+
+    @Override Object read(final JsonReader reader) throws IOException {
+      final List<Object> list = new ArrayList<Object>();
+      reader.beginArray();
+      while (reader.peek() != JsonReader.Token.END_ARRAY) list.add(Binder.read(reader, adapter));
+      reader.endArray();
+      final int size = list.size();
+      final Object array = Array.newInstance(component, size);
+      if (component.isPrimitive()) {
+        for (int i=0; i<size; ++i) {
+          final Object element = list.get(i);
+          if (element == null) throw new JsonDataException("Unexpected null in " + component + "[]");
+          Array.set(array, i, element);
+        }
+      }
+      else {
+        list.toArray((Object[])array);
+      }
+      return array;
+    }
+
+    @Override void write(final JsonWriter writer, final Object value) throws IOException {
+      writer.beginArray();
+      final int size = Array.getLength(value);
+      for (int i=0; i<size; ++i) Binder.write(writer, adapter, Array.get(value, i));
+      writer.endArray();
+    }
+
+  }
+
+  private static final class CollectionAdapter extends TypeAdapter<Collection<Object>> {
+
+    private final Class<?> type;
+    private final @Nullable Constructor<?> constructor;
+    private final int kind;
+    private final TypeAdapter<Object> adapter;
+
+    CollectionAdapter(final Class<?> type, final TypeAdapter<?> adapter) {
+      this.type = type;
+      constructor = constructor(type);
+      if (constructor != null) kind = -1;
+      else if (type.isAssignableFrom(ArrayList.class)) kind = 0;
+      else if (type.isAssignableFrom(LinkedHashSet.class)) kind = 1;
+      else if (type.isAssignableFrom(TreeSet.class)) kind = 2;
+      else kind = -1;
+      //noinspection unchecked
+      this.adapter = (TypeAdapter<Object>)adapter;
+    }
+
+    @Override Collection<Object> read(final JsonReader reader) throws IOException {
+      final Collection<Object> collection;
+      if (kind == -1) {
+        //noinspection unchecked
+        collection = (Collection<Object>)newInstance(constructor, type);
+      }
+      else if (kind == 0) {
+        collection = new ArrayList<Object>();
+      }
+      else if (kind == 1) {
+        collection = new LinkedHashSet<Object>();
+      }
+      else {
+        collection = new TreeSet<Object>();
+      }
+      reader.beginArray();
+      while (reader.peek() != JsonReader.Token.END_ARRAY) {
+        collection.add(Binder.read(reader, adapter));
+      }
+      reader.endArray();
+      return collection;
+    }
+
+    @Override void write(final JsonWriter writer,
+                         final Collection<Object> value) throws IOException {
+      writer.beginArray();
+      for (final Object element: value) Binder.write(writer, adapter, element);
+      writer.endArray();
+    }
+
+  }
+
+  private static final class MapAdapter extends TypeAdapter<Map<Object, Object>> {
+
+    private final Class<?> type;
+    private final @Nullable Constructor<?> constructor;
+    private final int kind;
+    private final TypeAdapter<Object> adapter;
+
+    MapAdapter(final Class<?> type, final TypeAdapter<?> adapter) {
+      this.type = type;
+      constructor = constructor(type);
+      if (constructor != null) kind = -1;
+      else if (type.isAssignableFrom(LinkedHashMap.class)) kind = 0;
+      else if (type.isAssignableFrom(TreeMap.class)) kind = 1;
+      else kind = -1;
+      //noinspection unchecked
+      this.adapter = (TypeAdapter<Object>)adapter;
+    }
+
+    @Override Map<Object, Object> read(final JsonReader reader) throws IOException {
+      final Map<Object, Object> map;
+      if (kind == -1) {
+        //noinspection unchecked
+        map = (Map<Object, Object>)newInstance(constructor, type);
+      }
+      else if (kind == 0) {
+        map = new LinkedHashMap<Object, Object>();
+      }
+      else {
+        map = new TreeMap<Object, Object>();
+      }
+      reader.beginObject();
+      while (reader.peek() == JsonReader.Token.NAME) {
+        final String name = reader.nextName();
+        map.put(name, Binder.read(reader, adapter));
+      }
+      reader.endObject();
+      return map;
+    }
+
+    @Override void write(final JsonWriter writer,
+                         final Map<Object, Object> value) throws IOException {
+      writer.beginObject();
+      for (final Map.Entry<Object, Object> entry: value.entrySet()) {
+        writer.name(String.valueOf(entry.getKey()));
+        Binder.write(writer, adapter, entry.getValue());
+      }
+      writer.endObject();
+    }
+
+  }
+
+}
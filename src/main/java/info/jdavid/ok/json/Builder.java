@@ -130,6 +130,7 @@ public class Builder {
     if (map == null) return;
     if (sink == null) return;
     final JsonWriter writer = new JsonWriter(sink);
+    writer.trackPath(false);
     if (indent != null) writer.setIndent(indent);
     try {
       writer.beginObject();
@@ -478,6 +479,7 @@ public class Builder {
     if (list == null) return;
     if (sink == null) return;
     final JsonWriter writer = new JsonWriter(sink);
+    writer.trackPath(false);
     if (indent != null) writer.setIndent(indent);
     try {
       writer.beginArray();
@@ -502,6 +504,7 @@ public class Builder {
     if (iterator == null) return;
     if (sink == null) return;
     final JsonWriter writer = new JsonWriter(sink);
+    writer.trackPath(false);
     if (indent != null) writer.setIndent(indent);
     try {
       writer.beginArray();
@@ -526,6 +529,7 @@ public class Builder {
     if (enumeration == null) return;
     if (sink == null) return;
     final JsonWriter writer = new JsonWriter(sink);
+    writer.trackPath(false);
     if (indent != null) writer.setIndent(indent);
     try {
       writer.beginArray();
@@ -546,7 +550,8 @@ public class Builder {
   private Builder() {}
 
   private static void walk(final JsonWriter writer, final Map<? extends CharSequence, ?> map) {
-    for (final Map.Entry<? extends CharSequence, ?> entry: map.entrySet()) {
+    final Map<? extends CharSequence, ?> entries = map instanceof LazyMap ? ((LazyMap)map).raw() : map;
+    for (final Map.Entry<? extends CharSequence, ?> entry: entries.entrySet()) {
       try {
         final Object value = entry.getValue();
         if (value == null) {
@@ -565,10 +570,18 @@ public class Builder {
           writer.name(entry.getKey().toString());
           writer.value((Boolean)value);
         }
+        else if (value instanceof Utf8String) {
+          writer.name(entry.getKey().toString());
+          writer.value((Utf8String)value);
+        }
         else if (value instanceof CharSequence) {
           writer.name(entry.getKey().toString());
           writer.value(value.toString());
         }
+        else if (value instanceof RawValue) {
+          writer.name(entry.getKey().toString());
+          raw(writer, (RawValue)value);
+        }
         else if (value instanceof Map) {
           writer.name(entry.getKey().toString());
           writer.beginObject();
@@ -602,7 +615,7 @@ public class Builder {
   }
 
   private static void walk(final JsonWriter writer, final Iterable<?> list) {
-    for (final Object value: list) {
+    for (final Object value: list instanceof LazyList ? ((LazyList)list).raw() : list) {
       value(writer, value);
     }
   }
@@ -635,9 +648,15 @@ public class Builder {
       else if (value instanceof Boolean) {
         writer.value((Boolean)value);
       }
+      else if (value instanceof Utf8String) {
+        writer.value((Utf8String)value);
+      }
       else if (value instanceof CharSequence) {
         writer.value(value.toString());
       }
+      else if (value instanceof RawValue) {
+        raw(writer, (RawValue)value);
+      }
       else if (value instanceof Map) {
         writer.beginObject();
         //noinspection unchecked
@@ -665,8 +684,22 @@ public class Builder {
     }
   }
 
+  /**
+   * Writes a value that hasn't been parsed yet: its bytes are copied as they are if they are strict
+   * json, and it is decoded and written again otherwise (or written as null if it is not valid).
+   */
+  private static void raw(final JsonWriter writer, final RawValue value) throws IOException {
+    if (value.isStrict()) {
+      writer.rawValue(value.bytes);
+    }
+    else {
+      value(writer, value.decode());
+    }
+  }
+
   private static boolean walk(final Map<? extends CharSequence, ?> map) {
-    for (final Map.Entry<? extends CharSequence, ?> entry: map.entrySet()) {
+    final Map<? extends CharSequence, ?> entries = map instanceof LazyMap ? ((LazyMap)map).raw() : map;
+    for (final Map.Entry<? extends CharSequence, ?> entry: entries.entrySet()) {
       //noinspection ConstantConditions
       if (!(entry.getKey() instanceof CharSequence)) return false;
       final Object value = entry.getValue();
@@ -674,7 +707,8 @@ public class Builder {
           value instanceof String ||
           value instanceof Number ||
           value instanceof Boolean ||
-          value instanceof CharSequence) {
+          value instanceof CharSequence ||
+          value instanceof RawValue && isValid((RawValue)value)) {
         continue;
       }
       //noinspection unchecked
@@ -695,8 +729,14 @@ public class Builder {
     return true;
   }
 
+  private static boolean isValid(final RawValue value) {
+    if (value.isStrict()) return true;
+    final Object parsed = value.decode();
+    return parsed != null && value(parsed);
+  }
+
   private static boolean walk(final Iterable<?> list) {
-    for (final Object value: list) {
+    for (final Object value: list instanceof LazyList ? ((LazyList)list).raw() : list) {
       if (!value(value)) return false;
     }
     return true;
@@ -723,7 +763,8 @@ public class Builder {
         value instanceof String ||
         value instanceof Number ||
         value instanceof Boolean ||
-        value instanceof CharSequence) {
+        value instanceof CharSequence ||
+        value instanceof RawValue && isValid((RawValue)value)) {
       return true;
     }
     //noinspection unchecked
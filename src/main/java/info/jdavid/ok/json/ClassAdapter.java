@@ -0,0 +1,231 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.ByteString;
+
+
+/**
+ * The adapter of a plain java class, bound to a json object with a member per field. Everything is
+ * resolved once, when the adapter is built: the no-argument constructor (only needed for reading),
+ * the fields (including the inherited ones, but not the static or transient ones) and their
+ * adapters, and the encoded names used when writing. Primitive fields are read and written without
+ * boxing.
+ * <p>
+ * Members that don't match a field are skipped when reading, and fields with a null value are not
+ * written.
+ * @param <T> the class.
+ */
+final class ClassAdapter<T> extends TypeAdapter<T> {
+
+  private final Class<T> type;
+  private final @Nullable Constructor<T> constructor;
+  // Set by init, before the adapter is published.
+  private Property[] properties = new Property[0];
+  private Map<String, Property> index = new HashMap<String, Property>();
+
+  /**
+   * @param type the class.
+   */
+  ClassAdapter(final Class<T> type) {
+    this.type = type;
+    constructor = Binder.constructor(type);
+  }
+
+  /**
+   * Resolves the fields and their adapters. This is separate from the constructor so that the
+   * adapter can be found by the fields that refer to its own class.
+   * @param building the adapters that are being built, by type.
+   */
+  void init(final Map<Type, TypeAdapter<?>> building) {
+    final List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+    for (Class<?> c = type; c != null && c != Object.class;
+         c = c.getSuperclass()) {
+      hierarchy.add(0, c);
+    }
+    final List<Property> properties = new ArrayList<Property>();
+    final Map<String, Property> index = new HashMap<String, Property>();
+    for (final Class<?> c: hierarchy) {
+      for (final Field field: c.getDeclaredFields()) {
+        final int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+          continue;
+        }
+        field.setAccessible(true);
+        final TypeAdapter<?> adapter = Binder.adapter(field.getGenericType(), building);
+        final Property property = new Property(field, adapter);
+        // A field hides the fields with the same name in the super classes.
+        final Property hidden = index.put(property.name, property);
+        if (hidden != null) properties.remove(hidden);
+        properties.add(property);
+      }
+    }
+    this.properties = properties.toArray(new Property[properties.size()]);
+    this.index = index;
+  }
+
+  @Override T read(final JsonReader reader) throws IOException {
+    final T instance = Binder.newInstance(constructor, type);
+    final Map<String, Property> index = this.index;
+    reader.beginObject();
+    try {
+      while (reader.peek() == JsonReader.Token.NAME) {
+        final Property property = index.get(reader.nextName());
+        if (property == null) {
+          reader.skipValue();
+        }
+        else {
+          property.read(reader, instance);
+        }
+      }
+    }
+    catch (final IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    reader.endObject();
+    return instance;
+  }
+
+  @Override void write(final JsonWriter writer, final T value) throws IOException {
+    writer.beginObject();
+    try {
+      for (final Property property: properties) property.write(writer, value);
+    }
+    catch (final IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    writer.endObject();
+  }
+
+  private static final int OBJECT = 0;
+  private static final int INT = 1;
+  private static final int LONG = 2;
+  private static final int DOUBLE = 3;
+  private static final int FLOAT = 4;
+  private static final int BOOLEAN = 5;
+  private static final int SHORT = 6;
+  private static final int BYTE = 7;
+  private static final int CHAR = 8;
+
+  private static final class Property {
+
+    final String name;
+    final ByteString encodedName;
+    final Field field;
+    final int kind;
+    final TypeAdapter<Object> adapter;
+
+    Property(final Field field, final TypeAdapter<?> adapter) {
+      this.name = field.getName();
+      final Buffer buffer = new Buffer();
+      try {
+        JsonWriter.string(buffer, name);
+      }
+      catch (final IOException e) {
+        throw new RuntimeException(e);
+      }
+      this.encodedName = buffer.readByteString();
+      this.field = field;
+      final Class<?> type = field.getType();
+      if (type == int.class) kind = INT;
+      else if (type == long.class) kind = LONG;
+      else if (type == double.class) kind = DOUBLE;
+      else if (type == float.class) kind = FLOAT;
+      else if (type == boolean.class) kind = BOOLEAN;
+      else if (type == short.class) kind = SHORT;
+      else if (type == byte.class) kind = BYTE;
+      else if (type == char.class) kind = CHAR;
+      else kind = OBJECT;
+      //noinspection unchecked
+      this.adapter = (TypeAdapter<Object>)adapter;
+    }
+
+    void read(final JsonReader reader, final Object instance)
+      throws IOException, IllegalAccessException {
+      if (reader.peek() == JsonReader.Token.NULL) {
+        reader.nextNull();
+        // Primitive fields keep their default value.
+        if (kind == OBJECT) field.set(instance, null);
+        return;
+      }
+      final Field field = this.field;
+      switch (kind) {
+        case INT:
+          field.setInt(instance, Binder.nextInt(reader));
+          break;
+        case LONG:
+          field.setLong(instance, Binder.nextLong(reader));
+          break;
+        case DOUBLE:
+          field.setDouble(instance, Binder.nextDouble(reader));
+          break;
+        case FLOAT:
+          field.setFloat(instance, (float)Binder.nextDouble(reader));
+          break;
+        case BOOLEAN:
+          field.setBoolean(instance, reader.nextBoolean());
+          break;
+        case SHORT:
+          field.setShort(instance, (short)Binder.nextInt(reader, Short.MIN_VALUE, Short.MAX_VALUE));
+          break;
+        case BYTE:
+          field.setByte(instance, (byte)Binder.nextInt(reader, Byte.MIN_VALUE, Byte.MAX_VALUE));
+          break;
+        case CHAR:
+          field.setChar(instance, Binder.nextChar(reader));
+          break;
+        default:
+          field.set(instance, adapter.read(reader));
+      }
+    }
+
+    void write(final JsonWriter writer, final Object instance)
+      throws IOException, IllegalAccessException {
+      final Field field = this.field;
+      switch (kind) {
+        case INT:
+          writer.name(encodedName).value((long)field.getInt(instance));
+          break;
+        case LONG:
+          writer.name(encodedName).value(field.getLong(instance));
+          break;
+        case DOUBLE:
+          writer.name(encodedName).value(field.getDouble(instance));
+          break;
+        case FLOAT:
+          writer.name(encodedName).value(field.getFloat(instance));
+          break;
+        case BOOLEAN:
+          writer.name(encodedName).value(field.getBoolean(instance));
+          break;
+        case SHORT:
+          writer.name(encodedName).value((long)field.getShort(instance));
+          break;
+        case BYTE:
+          writer.name(encodedName).value((long)field.getByte(instance));
+          break;
+        case CHAR:
+          writer.name(encodedName).value(String.valueOf(field.getChar(instance)));
+          break;
+        default:
+          final Object value = field.get(instance);
+          if (value == null) return;
+          writer.name(encodedName);
+          adapter.write(writer, value);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,587 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+
+/**
+ * A columnar representation of an array of records (json objects): one column per member name,
+ * with one value per record.
+ * <p>
+ * Integer columns are stored in a {@code long[]}, number columns in a {@code double[]}, boolean
+ * columns in a bitmap, and string columns as indices into a dictionary of their distinct values.
+ * Columns mixing different kinds of values, or holding objects and arrays, fall back to an
+ * {@code Object[]}. Every column has a bitmap of the records where the value is null or missing.
+ * <p>
+ * A table is read-only once parsed, and can be read concurrently by many threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ColumnTable {
+
+  private final int rows;
+  private final List<Column> columns;
+  private final Map<String, Column> index;
+
+  private ColumnTable(final int rows, final List<Column> columns) {
+    this.rows = rows;
+    this.columns = Collections.unmodifiableList(columns);
+    final Map<String, Column> index = new HashMap<String, Column>(columns.size() * 2);
+    for (final Column column: columns) index.put(column.name, column);
+    this.index = index;
+  }
+
+  /**
+   * Returns the number of records.
+   * @return the row count.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Returns the columns, in the order in which their names first appeared.
+   * @return the columns.
+   */
+  public List<Column> columns() {
+    return columns;
+  }
+
+  /**
+   * Returns the column with the given name.
+   * @param name the member name.
+   * @return the column, or null if no record has that member.
+   */
+  public @Nullable Column column(final String name) {
+    return index.get(name);
+  }
+
+  /**
+   * A column of values.
+   */
+  public static final class Column {
+
+    /** Only null values. */
+    public static final int NULL = 0;
+    /** Integers, in {@link #longs()}. */
+    public static final int LONG = 1;
+    /** Numbers, in {@link #doubles()}. */
+    public static final int DOUBLE = 2;
+    /** Booleans, in a bitmap. */
+    public static final int BOOLEAN = 3;
+    /** Strings, as indices in {@link #codes()} into the {@link #dictionary()}. */
+    public static final int STRING = 4;
+    /** Mixed values, as objects. */
+    public static final int OBJECT = 5;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int CACHE_SIZE = 256;
+
+    final String name;
+    private int kind = NULL;
+    private int size = 0;
+    private long[] nulls = new long[1];
+    private @Nullable long[] longs = null;
+    private @Nullable double[] doubles = null;
+    private @Nullable long[] booleans = null;
+    private @Nullable int[] codes = null;
+    private @Nullable List<String> dictionary = null;
+    private @Nullable Map<String, Integer> dictionaryIndex = null;
+    private @Nullable Object[] objects = null;
+    private @Nullable StringCache cache = null;
+
+    Column(final String name) {
+      this.name = name;
+    }
+
+    /**
+     * Returns the member name.
+     * @return the name.
+     */
+    public String name() {
+      return name;
+    }
+
+    /**
+     * Returns the kind of values in the column.
+     * @return {@link #NULL}, {@link #LONG}, {@link #DOUBLE}, {@link #BOOLEAN}, {@link #STRING} or
+     * {@link #OBJECT}.
+     */
+    public int kind() {
+      return kind;
+    }
+
+    /**
+     * Returns whether the value of a record is null or missing.
+     * @param row the record index.
+     * @return true if the value is null.
+     */
+    public boolean isNull(final int row) {
+      return (nulls[row >>> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * Returns the value of a record in a {@link #LONG} or {@link #DOUBLE} column, as a long.
+     * @param row the record index.
+     * @return the value (0 if it is null).
+     * @throws IllegalStateException if the column is not numeric.
+     */
+    public long getLong(final int row) {
+      if (kind == LONG) return longs[row];
+      if (kind == DOUBLE) return (long)doubles[row];
+      throw new IllegalStateException("Column " + name + " is not numeric.");
+    }
+
+    /**
+     * Returns the value of a record in a {@link #LONG} or {@link #DOUBLE} column, as a double.
+     * @param row the record index.
+     * @return the value (0 if it is null).
+     * @throws IllegalStateException if the column is not numeric.
+     */
+    public double getDouble(final int row) {
+      if (kind == DOUBLE) return doubles[row];
+      if (kind == LONG) return longs[row];
+      throw new IllegalStateException("Column " + name + " is not numeric.");
+    }
+
+    /**
+     * Returns the value of a record in a {@link #BOOLEAN} column.
+     * @param row the record index.
+     * @return the value (false if it is null).
+     * @throws IllegalStateException if the column is not a boolean column.
+     */
+    public boolean getBoolean(final int row) {
+      if (kind != BOOLEAN) throw new IllegalStateException("Column " + name + " is not a boolean column.");
+      return (booleans[row >>> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * Returns the value of a record in a {@link #STRING} column.
+     * @param row the record index.
+     * @return the value, or null.
+     * @throws IllegalStateException if the column is not a string column.
+     */
+    public @Nullable String getString(final int row) {
+      if (kind != STRING) throw new IllegalStateException("Column " + name + " is not a string column.");
+      return isNull(row) ? null : dictionary.get(codes[row]);
+    }
+
+    /**
+     * Returns the value of a record, as the object {@link Parser} would have returned.
+     * @param row the record index.
+     * @return the value, or null.
+     */
+    public @Nullable Object get(final int row) {
+      if (isNull(row)) return null;
+      switch (kind) {
+        case LONG:
+          return box(longs[row]);
+        case DOUBLE:
+          return doubles[row];
+        case BOOLEAN:
+          return getBoolean(row);
+        case STRING:
+          return dictionary.get(codes[row]);
+        case OBJECT:
+          return objects[row];
+        default:
+          return null;
+      }
+    }
+
+    /**
+     * Returns the values of a {@link #LONG} column. The array is not copied and can be longer than
+     * the number of records. Null values are 0.
+     * @return the values.
+     * @throws IllegalStateException if the column is not a long column.
+     */
+    public long[] longs() {
+      if (kind != LONG) throw new IllegalStateException("Column " + name + " is not a long column.");
+      return longs;
+    }
+
+    /**
+     * Returns the values of a {@link #DOUBLE} column. The array is not copied and can be longer than
+     * the number of records. Null values are 0.
+     * @return the values.
+     * @throws IllegalStateException if the column is not a double column.
+     */
+    public double[] doubles() {
+      if (kind != DOUBLE) throw new IllegalStateException("Column " + name + " is not a double column.");
+      return doubles;
+    }
+
+    /**
+     * Returns the dictionary indices of the values of a {@link #STRING} column. The array is not
+     * copied and can be longer than the number of records. Null values are 0.
+     * @return the indices.
+     * @throws IllegalStateException if the column is not a string column.
+     */
+    public int[] codes() {
+      if (kind != STRING) throw new IllegalStateException("Column " + name + " is not a string column.");
+      return codes;
+    }
+
+    /**
+     * Returns the distinct values of a {@link #STRING} column, in the order in which they appeared.
+     * @return the dictionary.
+     * @throws IllegalStateException if the column is not a string column.
+     */
+    public List<String> dictionary() {
+      if (kind != STRING) throw new IllegalStateException("Column " + name + " is not a string column.");
+      return Collections.unmodifiableList(dictionary);
+    }
+
+    @Override public String toString() {
+      return name;
+    }
+
+    private static Number box(final long value) {
+      if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int)value;
+      return value;
+    }
+
+    /** Marks the records from the current size up to the given one (excluded) as null. */
+    void fill(final int row) {
+      while (size < row) setNull(size++);
+    }
+
+    /** Moves to the given record, and returns whether it already had a value (duplicate name). */
+    private boolean next(final int row) {
+      if (size > row) return true;
+      fill(row);
+      ensure(row + 1);
+      size = row + 1;
+      return false;
+    }
+
+    private void setNull(final int row) {
+      if (nulls.length <= row >>> 6) nulls = grow(nulls, row);
+      nulls[row >>> 6] |= 1L << row;
+    }
+
+    private void clearNull(final int row) {
+      nulls[row >>> 6] &= ~(1L << row);
+    }
+
+    private static long[] grow(final long[] bits, final int row) {
+      final long[] grown = new long[Math.max(bits.length * 2, (row >>> 6) + 1)];
+      System.arraycopy(bits, 0, grown, 0, bits.length);
+      return grown;
+    }
+
+    private static int capacity(final int length, final int needed) {
+      int capacity = Math.max(length, INITIAL_CAPACITY);
+      while (capacity < needed) capacity <<= 1;
+      return capacity;
+    }
+
+    private void ensure(final int needed) {
+      if (nulls.length <= (needed - 1) >>> 6) nulls = grow(nulls, needed - 1);
+      switch (kind) {
+        case LONG:
+          if (longs.length < needed) {
+            final long[] grown = new long[capacity(longs.length, needed)];
+            System.arraycopy(longs, 0, grown, 0, longs.length);
+            longs = grown;
+          }
+          break;
+        case DOUBLE:
+          if (doubles.length < needed) {
+            final double[] grown = new double[capacity(doubles.length, needed)];
+            System.arraycopy(doubles, 0, grown, 0, doubles.length);
+            doubles = grown;
+          }
+          break;
+        case BOOLEAN:
+          if (booleans.length <= (needed - 1) >>> 6) booleans = grow(booleans, needed - 1);
+          break;
+        case STRING:
+          if (codes.length < needed) {
+            final int[] grown = new int[capacity(codes.length, needed)];
+            System.arraycopy(codes, 0, grown, 0, codes.length);
+            codes = grown;
+          }
+          break;
+        case OBJECT:
+          if (objects.length < needed) {
+            final Object[] grown = new Object[capacity(objects.length, needed)];
+            System.arraycopy(objects, 0, grown, 0, objects.length);
+            objects = grown;
+          }
+          break;
+      }
+    }
+
+    /** Changes the kind of the column, converting the values that were already added. */
+    private void convert(final int kind) {
+      final int capacity = capacity(0, size);
+      switch (kind) {
+        case LONG:
+          longs = new long[capacity];
+          break;
+        case DOUBLE:
+          doubles = new double[capacity];
+          if (this.kind == LONG) {
+            for (int i=0; i<size; ++i) doubles[i] = longs[i];
+            longs = null;
+          }
+          break;
+        case BOOLEAN:
+          booleans = new long[(capacity >>> 6) + 1];
+          break;
+        case STRING:
+          codes = new int[capacity];
+          dictionary = new ArrayList<String>();
+          dictionaryIndex = new HashMap<String, Integer>();
+          cache = new StringCache(CACHE_SIZE);
+          break;
+        case OBJECT: {
+          final Object[] objects = new Object[capacity];
+          if (this.kind != NULL) {
+            for (int i=0; i<size; ++i) objects[i] = get(i);
+          }
+          this.objects = objects;
+          longs = null;
+          doubles = null;
+          booleans = null;
+          codes = null;
+          dictionary = null;
+          dictionaryIndex = null;
+          cache = null;
+          break;
+        }
+      }
+      this.kind = kind;
+    }
+
+    void addNull(final int row) {
+      next(row);
+      setNull(row);
+      if (kind == OBJECT) objects[row] = null;
+    }
+
+    void addLong(final int row, final long value) {
+      if (kind == NULL) convert(LONG);
+      if (kind == LONG) {
+        next(row);
+        clearNull(row);
+        longs[row] = value;
+      }
+      else if (kind == DOUBLE) {
+        next(row);
+        clearNull(row);
+        doubles[row] = value;
+      }
+      else {
+        addObject(row, box(value));
+      }
+    }
+
+    void addNumber(final int row, final Number value) {
+      if (value instanceof Double) {
+        if (kind == NULL || kind == LONG) convert(DOUBLE);
+        if (kind == DOUBLE) {
+          next(row);
+          clearNull(row);
+          doubles[row] = value.doubleValue();
+        }
+        else {
+          addObject(row, value);
+        }
+      }
+      else if (value instanceof BigInteger) {
+        addObject(row, value);
+      }
+      else {
+        addLong(row, value.longValue());
+      }
+    }
+
+    void addBoolean(final int row, final boolean value) {
+      if (kind == NULL) convert(BOOLEAN);
+      if (kind == BOOLEAN) {
+        next(row);
+        clearNull(row);
+        if (value) {
+          booleans[row >>> 6] |= 1L << row;
+        }
+        else {
+          booleans[row >>> 6] &= ~(1L << row);
+        }
+      }
+      else {
+        addObject(row, value);
+      }
+    }
+
+    void addString(final int row, final JsonReader reader) throws IOException {
+      if (kind == NULL) convert(STRING);
+      if (kind != STRING) {
+        addObject(row, reader.nextString());
+        return;
+      }
+      final String value = reader.nextString(cache);
+      next(row);
+      clearNull(row);
+      Integer code = dictionaryIndex.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(value);
+        dictionaryIndex.put(value, code);
+      }
+      codes[row] = code;
+    }
+
+    void addObject(final int row, @Nullable final Object value) {
+      if (kind != OBJECT) convert(OBJECT);
+      next(row);
+      if (value == null) {
+        setNull(row);
+      }
+      else {
+        clearNull(row);
+      }
+      objects[row] = value;
+    }
+
+    void trim() {
+      dictionaryIndex = null;
+      cache = null;
+    }
+  }
+
+  /**
+   * Reads the records of the array the reader is in front of.
+   * @param reader the reader.
+   * @return the table.
+   * @throws JsonDataException if the value is not an array.
+   */
+  static ColumnTable read(final JsonReader reader) throws IOException {
+    final List<Column> columns = new ArrayList<Column>();
+    final Map<String, Column> index = new HashMap<String, Column>();
+    reader.beginArray();
+    int row = 0;
+    while (reader.peek() != JsonReader.Token.END_ARRAY) {
+      if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+        reader.beginObject();
+        int position = 0;
+        while (reader.peek() == JsonReader.Token.NAME) {
+          final String name = reader.nextName();
+          // Records usually have their members in the same order.
+          Column column = position < columns.size() ? columns.get(position) : null;
+          if (column == null || !name.equals(column.name)) {
+            column = index.get(name);
+            if (column == null) {
+              column = new Column(name);
+              columns.add(column);
+              index.put(name, column);
+            }
+          }
+          ++position;
+          read(reader, column, row);
+        }
+        reader.endObject();
+      }
+      else {
+        // Not a record: all its values are null.
+        reader.skipValue();
+      }
+      ++row;
+    }
+    reader.endArray();
+    for (final Column column: columns) {
+      column.fill(row);
+      column.trim();
+    }
+    return new ColumnTable(row, columns);
+  }
+
+  /**
+   * Converts a number that doesn't fit in a long. Parser.stringToNumber only picks the type from the
+   * number of digits: exponents without a decimal point, and some integers that overflow a long,
+   * are converted here instead.
+   */
+  private static Number number(final String s) {
+    try {
+      return Parser.stringToNumber(s);
+    }
+    catch (final NumberFormatException ignore) {}
+    try {
+      return s.indexOf('e') == -1 && s.indexOf('E') == -1 ? new BigInteger(s) : Double.valueOf(s);
+    }
+    catch (final NumberFormatException e) {
+      throw new JsonDataException("Expected a number but was " + s);
+    }
+  }
+
+  private static void read(final JsonReader reader, final Column column,
+                           final int row) throws IOException {
+    switch (reader.peek()) {
+      case NULL:
+        reader.nextNull();
+        column.addNull(row);
+        break;
+      case BOOLEAN:
+        column.addBoolean(row, reader.nextBoolean());
+        break;
+      case NUMBER:
+        if (reader.hasNextLong()) {
+          column.addLong(row, reader.nextLong());
+        }
+        else {
+          column.addNumber(row, number(reader.nextString()));
+        }
+        break;
+      case STRING:
+        column.addString(row, reader);
+        break;
+      case BEGIN_OBJECT:
+      case BEGIN_ARRAY:
+        column.addObject(row, Parser.parse(new Buffer().write(reader.nextRawValue())));
+        break;
+      default:
+        throw new JsonDataException("Unexpected " + reader.peek());
+    }
+  }
+
+  /**
+   * Reads the array of records at the given path into a table.
+   * @param source the json string as an okio source.
+   * @param path the path of the array.
+   * @return the table, or null if the source is not valid json, or doesn't have an array of records
+   * at that path.
+   */
+  static @Nullable ColumnTable parse(@Nullable final BufferedSource source, final JsonPath path) {
+    if (source == null) return null;
+    final JsonReader reader = new JsonReader(source);
+    try {
+      if (!path.select(reader) || reader.peek() != JsonReader.Token.BEGIN_ARRAY) return null;
+      return read(reader);
+    }
+    catch (final IOException e) {
+      Logger.log(e);
+      return null;
+    }
+    catch (final JsonDataException e) {
+      Logger.log(e);
+      return null;
+    }
+    finally {
+      try {
+        reader.close();
+      }
+      catch (final IOException ignore) {}
+    }
+  }
+
+}
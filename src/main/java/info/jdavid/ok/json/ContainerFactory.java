@@ -0,0 +1,37 @@
+package info.jdavid.ok.json;
+
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Supplies the maps and lists used by {@link Parser} for json objects and arrays, and takes them back
+ * when the application is done with a parsed tree (see {@link Parser#release(Object, ContainerFactory)}).
+ */
+public interface ContainerFactory {
+
+  /**
+   * Returns an empty map for a json object.
+   * @return the map.
+   */
+  Map<String, Object> newMap();
+
+  /**
+   * Returns an empty list for a json array.
+   * @return the list.
+   */
+  List<Object> newList();
+
+  /**
+   * Takes back a map that is no longer used. Its values have already been released.
+   * @param map the map.
+   */
+  void release(Map<String, Object> map);
+
+  /**
+   * Takes back a list that is no longer used. Its elements have already been released.
+   * @param list the list.
+   */
+  void release(List<Object> list);
+
+}
@@ -0,0 +1,88 @@
+package info.jdavid.ok.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A {@link ContainerFactory} that recycles the HashMaps and ArrayLists it is given back.
+ * <p>
+ * The pool is bounded, and doesn't keep containers that grew too big, so that a single large
+ * document doesn't pin a lot of memory. It is not thread-safe: use one pool per thread, for instance
+ * along with a {@link Parser.Context}.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ContainerPool implements ContainerFactory {
+
+  static final int DEFAULT_CAPACITY = 1024;
+  /** Containers with more values than this are not recycled. */
+  static final int MAX_SIZE = 256;
+
+  private final Object[] maps;
+  private final Object[] lists;
+  private int mapCount = 0;
+  private int listCount = 0;
+
+  /**
+   * Creates a pool of up to 1024 maps and 1024 lists.
+   */
+  public ContainerPool() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the maximum number of maps, and of lists, to keep.
+   */
+  public ContainerPool(final int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    maps = new Object[capacity];
+    lists = new Object[capacity];
+  }
+
+  @Override public Map<String, Object> newMap() {
+    if (mapCount == 0) return new HashMap<String, Object>();
+    final Object map = maps[--mapCount];
+    maps[mapCount] = null;
+    //noinspection unchecked
+    return (Map<String, Object>)map;
+  }
+
+  @Override public List<Object> newList() {
+    if (listCount == 0) return new ArrayList<Object>();
+    final Object list = lists[--listCount];
+    lists[listCount] = null;
+    //noinspection unchecked
+    return (List<Object>)list;
+  }
+
+  @Override public void release(final Map<String, Object> map) {
+    if (mapCount == maps.length || map.size() > MAX_SIZE || map.getClass() != HashMap.class) return;
+    map.clear();
+    maps[mapCount++] = map;
+  }
+
+  @Override public void release(final List<Object> list) {
+    if (listCount == lists.length || list.size() > MAX_SIZE || list.getClass() != ArrayList.class) return;
+    list.clear();
+    lists[listCount++] = list;
+  }
+
+  /**
+   * Returns the number of maps ready to be reused.
+   * @return the map count.
+   */
+  public int getMapCount() {
+    return mapCount;
+  }
+
+  /**
+   * Returns the number of lists ready to be reused.
+   * @return the list count.
+   */
+  public int getListCount() {
+    return listCount;
+  }
+
+}
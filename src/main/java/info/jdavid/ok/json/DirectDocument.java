@@ -0,0 +1,759 @@
+package info.jdavid.ok.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+
+/**
+ * A read-only json document stored outside of the java heap, in direct byte buffers or in a
+ * memory-mapped file, for very large documents that shouldn't weigh on the garbage collector.
+ * <p>
+ * Values are identified by their byte offset in the storage (a long), and missing values are
+ * reported as {@code -1}. The kinds of values are the same as for {@link TapeDocument}.
+ * Every object and array is followed by a table of its children, so that looking up an element by
+ * index or a member by name takes constant time.
+ * <p>
+ * Storage layout: a sequence of 8-byte entries holding the kind of the value in their upper 8 bits.
+ * <ul>
+ *   <li>Objects and arrays start with an entry holding the offset of their end entry, which holds
+ *   the number of children and is followed by the table: the offsets of the children in order
+ *   (the member names for objects), and for objects, an open-addressing hash table of the member
+ *   indices (keyed by the hash code of the name).</li>
+ *   <li>Strings, member names and large integers hold their byte length, and are followed by their
+ *   utf-8 bytes (padded to 8 bytes). A member name that was already stored is replaced by a
+ *   reference to the first one.</li>
+ *   <li>Integers that fit in 56 bits are stored inline. Larger longs and doubles are followed by an
+ *   entry with their 64 bits.</li>
+ *   <li>true, false and null only have the kind.</li>
+ * </ul>
+ * In a file, the storage is preceded by an 8-byte header holding its size: the file itself is
+ * never truncated to that size, because its chunks are still mapped when the document is done.
+ * A document can be read concurrently by many threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class DirectDocument {
+
+  static final int END_OBJECT = TapeDocument.END_OBJECT;
+  static final int END_ARRAY = TapeDocument.END_ARRAY;
+  static final int LONG = TapeDocument.LONG;
+  static final int NAME = TapeDocument.NAME;
+  /** Member names that were already stored. */
+  static final int NAME_REF = 14;
+
+  static final int KIND_SHIFT = TapeDocument.KIND_SHIFT;
+  static final long PAYLOAD_MASK = TapeDocument.PAYLOAD_MASK;
+
+  /** Default chunk size (64MB) for the storage. */
+  static final int DEFAULT_CHUNK_SHIFT = 26;
+
+  /** Size of the file header (the storage size). */
+  static final int HEADER = 8;
+
+  private final Chunks storage;
+
+  DirectDocument(final Chunks storage) {
+    this.storage = storage;
+  }
+
+  /**
+   * Returns the offset of the root object or array.
+   * @return the root offset.
+   */
+  public long root() {
+    return 0L;
+  }
+
+  /**
+   * Returns the kind of value at the given offset.
+   * @param node the offset.
+   * @return {@link TapeDocument#OBJECT}, {@link TapeDocument#ARRAY}, {@link TapeDocument#STRING},
+   * {@link TapeDocument#INTEGER}, {@link TapeDocument#DOUBLE}, {@link TapeDocument#BIG_INTEGER},
+   * {@link TapeDocument#TRUE}, {@link TapeDocument#FALSE} or {@link TapeDocument#NULL}.
+   */
+  public int kind(final long node) {
+    final int kind = (int)(storage.getLong(node) >>> KIND_SHIFT);
+    return kind == LONG ? TapeDocument.INTEGER : kind;
+  }
+
+  /**
+   * Returns the number of members of an object, or the number of elements of an array.
+   * @param node the offset of the object or array.
+   * @return the size, or -1 if the value is not an object or an array.
+   */
+  public int size(final long node) {
+    final long entry = storage.getLong(node);
+    final int kind = (int)(entry >>> KIND_SHIFT);
+    if (kind != TapeDocument.OBJECT && kind != TapeDocument.ARRAY) return -1;
+    return (int)(storage.getLong(entry & PAYLOAD_MASK) & PAYLOAD_MASK);
+  }
+
+  /**
+   * Returns an element of an array, or the value of a member of an object.
+   * @param node the offset of the array or object.
+   * @param index the index of the element or member.
+   * @return the offset of the value, or -1 if the index is out of bounds (or if the value is not an
+   * array or an object).
+   */
+  public long get(final long node, final int index) {
+    final long entry = storage.getLong(node);
+    final int kind = (int)(entry >>> KIND_SHIFT);
+    if (kind != TapeDocument.OBJECT && kind != TapeDocument.ARRAY) return -1L;
+    final long end = entry & PAYLOAD_MASK;
+    final int count = (int)(storage.getLong(end) & PAYLOAD_MASK);
+    if (index < 0 || index >= count) return -1L;
+    final long child = storage.getLong(end + 8 + index * 8L);
+    return kind == TapeDocument.OBJECT ? after(child) : child;
+  }
+
+  /**
+   * Returns the name of a member of an object.
+   * @param node the offset of the object.
+   * @param index the index of the member.
+   * @return the name of the member, or null if the index is out of bounds (or if the value is not an
+   * object).
+   */
+  public @Nullable String name(final long node, final int index) {
+    final long entry = storage.getLong(node);
+    if ((int)(entry >>> KIND_SHIFT) != TapeDocument.OBJECT) return null;
+    final long end = entry & PAYLOAD_MASK;
+    final int count = (int)(storage.getLong(end) & PAYLOAD_MASK);
+    if (index < 0 || index >= count) return null;
+    return string(name(storage.getLong(end + 8 + index * 8L)));
+  }
+
+  /**
+   * Returns the value of a member of an object.
+   * @param node the offset of the object.
+   * @param key the name of the member.
+   * @return the offset of the member value, or -1 if the object doesn't have that member (or if the
+   * value is not an object).
+   */
+  public long get(final long node, final String key) {
+    final long entry = storage.getLong(node);
+    if ((int)(entry >>> KIND_SHIFT) != TapeDocument.OBJECT) return -1L;
+    final long end = entry & PAYLOAD_MASK;
+    final int count = (int)(storage.getLong(end) & PAYLOAD_MASK);
+    if (count == 0) return -1L;
+    final long table = end + 8;
+    final long slots = table + count * 8L;
+    final int mask = capacity(count) - 1;
+    for (int i=hash(key.hashCode())&mask; ; i=(i+1)&mask) {
+      final int slot = storage.getInt(slots + i * 4L);
+      if (slot == 0) return -1L;
+      final long name = storage.getLong(table + (slot - 1) * 8L);
+      if (utf8Equals(name(name), key)) return after(name);
+    }
+  }
+
+  /**
+   * Returns whether the value at the given offset is null. Missing values (-1) are considered null.
+   * @param node the offset.
+   * @return true if the value is null.
+   */
+  public boolean isNull(final long node) {
+    return node == -1L || (int)(storage.getLong(node) >>> KIND_SHIFT) == TapeDocument.NULL;
+  }
+
+  /**
+   * Returns the value of a boolean.
+   * @param node the offset of the boolean.
+   * @return the boolean value.
+   * @throws IllegalStateException if the value is not a boolean.
+   */
+  public boolean getBoolean(final long node) {
+    final int kind = (int)(storage.getLong(node) >>> KIND_SHIFT);
+    if (kind == TapeDocument.TRUE) return true;
+    if (kind == TapeDocument.FALSE) return false;
+    throw new IllegalStateException("Expected a boolean but was " + kind);
+  }
+
+  /**
+   * Returns the value of a number as a long. Doubles are truncated.
+   * @param node the offset of the number.
+   * @return the long value.
+   * @throws IllegalStateException if the value is not a number.
+   */
+  public long getLong(final long node) {
+    final long entry = storage.getLong(node);
+    switch ((int)(entry >>> KIND_SHIFT)) {
+      case TapeDocument.INTEGER:
+        return (entry << (64 - KIND_SHIFT)) >> (64 - KIND_SHIFT);
+      case LONG:
+        return storage.getLong(node + 8);
+      case TapeDocument.DOUBLE:
+        return (long)Double.longBitsToDouble(storage.getLong(node + 8));
+      case TapeDocument.BIG_INTEGER:
+        return new BigInteger(string(node)).longValue();
+      default:
+        throw new IllegalStateException("Expected a number but was " + kind(node));
+    }
+  }
+
+  /**
+   * Returns the value of a number as a double.
+   * @param node the offset of the number.
+   * @return the double value.
+   * @throws IllegalStateException if the value is not a number.
+   */
+  public double getDouble(final long node) {
+    switch ((int)(storage.getLong(node) >>> KIND_SHIFT)) {
+      case TapeDocument.DOUBLE:
+        return Double.longBitsToDouble(storage.getLong(node + 8));
+      case TapeDocument.BIG_INTEGER:
+        return Double.parseDouble(string(node));
+      default:
+        return getLong(node);
+    }
+  }
+
+  /**
+   * Returns the value of a string.
+   * @param node the offset of the string.
+   * @return the string value.
+   * @throws IllegalStateException if the value is not a string.
+   */
+  public String getString(final long node) {
+    if ((int)(storage.getLong(node) >>> KIND_SHIFT) != TapeDocument.STRING) {
+      throw new IllegalStateException("Expected a string but was " + kind(node));
+    }
+    return string(node);
+  }
+
+  /**
+   * Compares a string value with the given string, without decoding it.
+   * @param node the offset of the string.
+   * @param value the string to compare with.
+   * @return true if the value is a string equal to the given one.
+   */
+  public boolean stringEquals(final long node, final String value) {
+    return (int)(storage.getLong(node) >>> KIND_SHIFT) == TapeDocument.STRING && utf8Equals(node, value);
+  }
+
+  /**
+   * Returns the number of bytes used by the document.
+   * @return the size in bytes.
+   */
+  public long byteSize() {
+    return storage.size;
+  }
+
+  /** Returns the offset after the value at the given offset (including its table). */
+  private long after(final long node) {
+    final long entry = storage.getLong(node);
+    final int kind = (int)(entry >>> KIND_SHIFT);
+    switch (kind) {
+      case TapeDocument.OBJECT:
+      case TapeDocument.ARRAY: {
+        final long end = entry & PAYLOAD_MASK;
+        return end + 8 + tableSize(kind, (int)(storage.getLong(end) & PAYLOAD_MASK));
+      }
+      case TapeDocument.STRING:
+      case TapeDocument.BIG_INTEGER:
+      case NAME:
+        return node + 8 + pad(entry & PAYLOAD_MASK);
+      case LONG:
+      case TapeDocument.DOUBLE:
+        return node + 16;
+      default:
+        return node + 8;
+    }
+  }
+
+  /** Follows name references. */
+  private long name(final long node) {
+    final long entry = storage.getLong(node);
+    return (int)(entry >>> KIND_SHIFT) == NAME_REF ? entry & PAYLOAD_MASK : node;
+  }
+
+  private String string(final long node) {
+    final int length = (int)(storage.getLong(node) & PAYLOAD_MASK);
+    final byte[] bytes = new byte[length];
+    storage.get(node + 8, bytes);
+    return new String(bytes, StringCache.UTF_8);
+  }
+
+  /**
+   * Compares the utf-8 bytes of a string entry with the characters of a string, without decoding or
+   * encoding anything (see {@link TapeDocument#utf8Equals(byte[], int, int, String)}).
+   */
+  private boolean utf8Equals(final long node, final String value) {
+    final long byteCount = storage.getLong(node) & PAYLOAD_MASK;
+    final int length = value.length();
+    if (byteCount < length || byteCount > length * 3L) return false;
+    long p = node + 8;
+    final long end = p + byteCount;
+    for (int i=0; i<length; ++i) {
+      int c = value.charAt(i);
+      final int n;
+      if (c < 0x80) {
+        n = 1;
+      }
+      else if (c < 0x800) {
+        n = 2;
+      }
+      else if (c < 0xd800 || c > 0xdfff) {
+        n = 3;
+      }
+      else {
+        final int low = i + 1 < length ? value.charAt(i + 1) : 0;
+        if (c > 0xdbff || low < 0xdc00 || low > 0xdfff) return false;
+        ++i;
+        c = 0x010000 + ((c & 0x03ff) << 10 | low & 0x03ff);
+        n = 4;
+      }
+      if (end - p < n) return false;
+      if (n == 1) {
+        if (storage.get(p++) != c) return false;
+      }
+      else {
+        // Leading byte: 110xxxxx, 1110xxxx or 11110xxx, then continuation bytes: 10xxxxxx.
+        if (storage.get(p++) != (byte)((0xf00 >> n) | c >> (6 * (n - 1)))) return false;
+        for (int k=n-2; k>=0; --k) {
+          if (storage.get(p++) != (byte)(0x80 | c >> (6 * k) & 0x3f)) return false;
+        }
+      }
+    }
+    return p == end;
+  }
+
+  static long pad(final long byteCount) {
+    return (byteCount + 7) & ~7L;
+  }
+
+  static int hash(final int h) {
+    return h ^ (h >>> 16);
+  }
+
+  /** Size of the hash table of an object (at most half full). */
+  static int capacity(final int count) {
+    int capacity = 2;
+    while (capacity < count * 2) capacity <<= 1;
+    return capacity;
+  }
+
+  static long tableSize(final int kind, final int count) {
+    return kind == TapeDocument.OBJECT ?
+           count * 8L + pad(capacity(count) * 4L) :
+           count * 8L;
+  }
+
+  /**
+   * Converts the given String to a {@link okio.BufferedSource} and passes it to
+   * {@link #parse(BufferedSource)}.
+   */
+  static @Nullable DirectDocument parse(@Nullable final String s) {
+    if (s == null) return null;
+    final Buffer buffer = new Buffer();
+    try {
+      return parse(buffer.writeUtf8(s));
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Reads a json object or array into a document stored in direct byte buffers.
+   * @param source the json string as an okio source.
+   * @return the document, or null if the source is not a valid json object or array.
+   */
+  static @Nullable DirectDocument parse(@Nullable final BufferedSource source) {
+    return parse(source, null, DEFAULT_CHUNK_SHIFT);
+  }
+
+  /**
+   * Reads a json object or array into a document stored in a memory-mapped file. The file is
+   * overwritten, and can be opened again later with {@link #open(File)}. The documents that were
+   * mapped from the file before shouldn't be used anymore.
+   * @param source the json string as an okio source.
+   * @param file the file.
+   * @return the document, or null if the source is not a valid json object or array, or if the file
+   * could not be written.
+   */
+  static @Nullable DirectDocument parse(@Nullable final BufferedSource source, final File file) {
+    return parse(source, file, DEFAULT_CHUNK_SHIFT);
+  }
+
+  static @Nullable DirectDocument parse(@Nullable final BufferedSource source,
+                                        @Nullable final File file, final int chunkShift) {
+    if (source == null) return null;
+    final JsonReader reader = new JsonReader(source);
+    try {
+      final JsonReader.Token token = reader.peek();
+      if (token != JsonReader.Token.BEGIN_OBJECT && token != JsonReader.Token.BEGIN_ARRAY) return null;
+      final Chunks storage = new Chunks(chunkShift, file);
+      try {
+        return new Writer(storage).write(reader);
+      }
+      finally {
+        storage.close();
+      }
+    }
+    catch (final IOException e) {
+      Logger.log(e);
+      return null;
+    }
+    catch (final JsonDataException e) {
+      Logger.log(e);
+      return null;
+    }
+    finally {
+      try {
+        reader.close();
+      }
+      catch (final IOException ignore) {}
+    }
+  }
+
+  /**
+   * Maps a document that was written to a file by {@link Parser#parseDirect(BufferedSource, File)}.
+   * @param file the file.
+   * @return the document, or null if the file could not be read.
+   */
+  public static @Nullable DirectDocument open(final File file) {
+    try {
+      return new DirectDocument(Chunks.map(file, DEFAULT_CHUNK_SHIFT));
+    }
+    catch (final IOException e) {
+      Logger.log(e);
+      return null;
+    }
+  }
+
+  /**
+   * Storage split in chunks of the same size, so that it can grow past the 2GB limit of a single
+   * byte buffer. Entries are aligned and never straddle two chunks, but string bytes can.
+   */
+  static final class Chunks {
+    private static final int INITIAL_CAPACITY = 4096;
+
+    final int shift;
+    final int chunkSize;
+    final int mask;
+    private @Nullable RandomAccessFile file;
+    private ByteBuffer[] buffers = new ByteBuffer[8];
+    private int count = 0;
+    long size = 0L;
+
+    Chunks(final int shift, @Nullable final File file) throws IOException {
+      this.shift = shift;
+      this.chunkSize = 1 << shift;
+      this.mask = chunkSize - 1;
+      // The file isn't truncated: the header holds the size, and the bytes past it are ignored.
+      this.file = file == null ? null : new RandomAccessFile(file, "rw");
+    }
+
+    static Chunks map(final File file, final int shift) throws IOException {
+      final Chunks chunks = new Chunks(shift, null);
+      final RandomAccessFile f = new RandomAccessFile(file, "r");
+      try {
+        final FileChannel channel = f.getChannel();
+        final long length = f.readLong();
+        if (length < 0L || length > channel.size() - HEADER) {
+          throw new IOException("Invalid document size: " + length);
+        }
+        for (long offset=0L; offset<length; offset+=chunks.chunkSize) {
+          chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, HEADER + offset,
+                                 Math.min(chunks.chunkSize, length - offset)));
+        }
+        chunks.size = length;
+      }
+      finally {
+        f.close();
+      }
+      return chunks;
+    }
+
+    /**
+     * Writes the size in the file header and releases the file, the mapped chunks stay valid.
+     * The file keeps the length of its chunks: truncating a file that is still mapped fails on
+     * some platforms, and makes the accesses past the new end crash on others.
+     */
+    void close() throws IOException {
+      final RandomAccessFile file = this.file;
+      if (file != null) {
+        this.file = null;
+        try {
+          final ByteBuffer header = ByteBuffer.allocate(HEADER);
+          header.putLong(0, size);
+          final FileChannel channel = file.getChannel();
+          while (header.hasRemaining()) channel.write(header, header.position());
+        }
+        finally {
+          file.close();
+        }
+      }
+    }
+
+    private void add(final ByteBuffer buffer) {
+      if (count == buffers.length) {
+        final ByteBuffer[] buffers = new ByteBuffer[count * 2];
+        System.arraycopy(this.buffers, 0, buffers, 0, count);
+        this.buffers = buffers;
+      }
+      buffers[count++] = buffer;
+    }
+
+    /** Makes sure that the storage can hold the given number of bytes. */
+    void ensure(final long end) throws IOException {
+      final int last = (int)((end - 1) >>> shift);
+      final int needed = (int)((end - 1) & mask) + 1;
+      while (count <= last) {
+        if (file != null) {
+          add(file.getChannel().map(FileChannel.MapMode.READ_WRITE,
+                                    HEADER + ((long)count << shift), chunkSize));
+        }
+        else {
+          if (count > 0 && buffers[count - 1].capacity() < chunkSize) grow(chunkSize);
+          add(ByteBuffer.allocateDirect(count == last ? capacity(needed) : chunkSize));
+        }
+      }
+      if (buffers[last].capacity() < needed) grow(capacity(needed));
+    }
+
+    private int capacity(final int needed) {
+      int capacity = Math.min(INITIAL_CAPACITY, chunkSize);
+      while (capacity < needed) capacity <<= 1;
+      return capacity;
+    }
+
+    /** Replaces the last (direct) chunk with a bigger one. */
+    private void grow(final int capacity) {
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+      final ByteBuffer previous = buffers[count - 1].duplicate();
+      previous.clear();
+      buffer.put(previous);
+      buffers[count - 1] = buffer;
+    }
+
+    long getLong(final long offset) {
+      return buffers[(int)(offset >>> shift)].getLong((int)offset & mask);
+    }
+
+    int getInt(final long offset) {
+      return buffers[(int)(offset >>> shift)].getInt((int)offset & mask);
+    }
+
+    byte get(final long offset) {
+      return buffers[(int)(offset >>> shift)].get((int)offset & mask);
+    }
+
+    void get(final long offset, final byte[] bytes) {
+      for (int i=0; i<bytes.length; ++i) bytes[i] = get(offset + i);
+    }
+
+    void putLong(final long offset, final long value) {
+      buffers[(int)(offset >>> shift)].putLong((int)offset & mask, value);
+    }
+
+    void putInt(final long offset, final int value) {
+      buffers[(int)(offset >>> shift)].putInt((int)offset & mask, value);
+    }
+
+    void put(final long offset, final byte value) {
+      buffers[(int)(offset >>> shift)].put((int)offset & mask, value);
+    }
+  }
+
+  /**
+   * Writes the entries from the reader tokens. The children offsets of the open objects and arrays
+   * are kept on the heap until the table is written.
+   */
+  private static final class Writer {
+    private final Chunks storage;
+    /** Offsets of the member names, so that repeated names are only stored once. */
+    private final Map<String, Long> names = new HashMap<String, Long>();
+    private Frame[] frames = new Frame[32];
+    private int depth = 0;
+
+    Writer(final Chunks storage) {
+      this.storage = storage;
+    }
+
+    DirectDocument write(final JsonReader reader) throws IOException {
+      do {
+        switch (reader.peek()) {
+          case BEGIN_OBJECT:
+            reader.beginObject();
+            open(TapeDocument.OBJECT);
+            break;
+          case BEGIN_ARRAY:
+            reader.beginArray();
+            open(TapeDocument.ARRAY);
+            break;
+          case END_OBJECT:
+            reader.endObject();
+            close(END_OBJECT);
+            break;
+          case END_ARRAY:
+            reader.endArray();
+            close(END_ARRAY);
+            break;
+          case NAME: {
+            final String name = reader.nextName();
+            final Frame frame = frames[depth - 1];
+            frame.add(storage.size, name.hashCode());
+            final Long offset = names.get(name);
+            if (offset == null) {
+              if (names.size() < 65536) names.put(name, storage.size);
+              string(NAME, ByteString.encodeUtf8(name));
+            }
+            else {
+              entry((long)NAME_REF << KIND_SHIFT | offset);
+            }
+            break;
+          }
+          case STRING: {
+            element();
+            final CharSequence value = reader.nextStringView();
+            string(TapeDocument.STRING, value instanceof Utf8String ?
+                                        ((Utf8String)value).utf8() :
+                                        ByteString.encodeUtf8(value.toString()));
+            break;
+          }
+          case NUMBER: {
+            element();
+            final Number number = Parser.stringToNumber(reader.nextString());
+            if (number instanceof Double) {
+              entry((long)TapeDocument.DOUBLE << KIND_SHIFT);
+              entry(Double.doubleToRawLongBits(number.doubleValue()));
+            }
+            else if (number instanceof BigInteger) {
+              string(TapeDocument.BIG_INTEGER, ByteString.encodeUtf8(number.toString()));
+            }
+            else {
+              final long value = number.longValue();
+              if (value >= TapeDocument.MIN_INLINE && value <= TapeDocument.MAX_INLINE) {
+                entry((long)TapeDocument.INTEGER << KIND_SHIFT | value & PAYLOAD_MASK);
+              }
+              else {
+                entry((long)LONG << KIND_SHIFT);
+                entry(value);
+              }
+            }
+            break;
+          }
+          case BOOLEAN:
+            element();
+            entry((long)(reader.nextBoolean() ? TapeDocument.TRUE : TapeDocument.FALSE) << KIND_SHIFT);
+            break;
+          case NULL:
+            element();
+            reader.nextNull();
+            entry((long)TapeDocument.NULL << KIND_SHIFT);
+            break;
+          default:
+            throw new JsonDataException("Unexpected " + reader.peek());
+        }
+      } while (depth > 0);
+      return new DirectDocument(storage);
+    }
+
+    /** Records the offset of an array element (object members are recorded with their name). */
+    private void element() {
+      final Frame frame = frames[depth - 1];
+      if (frame.kind == TapeDocument.ARRAY) frame.add(storage.size, 0);
+    }
+
+    private void open(final int kind) throws IOException {
+      if (depth > 0) element();
+      if (depth == frames.length) {
+        final Frame[] frames = new Frame[depth * 2];
+        System.arraycopy(this.frames, 0, frames, 0, depth);
+        this.frames = frames;
+      }
+      Frame frame = frames[depth];
+      if (frame == null) frames[depth] = frame = new Frame();
+      ++depth;
+      frame.kind = kind;
+      frame.start = storage.size;
+      frame.count = 0;
+      entry((long)kind << KIND_SHIFT);
+    }
+
+    private void close(final int kind) throws IOException {
+      final Frame frame = frames[--depth];
+      final int count = frame.count;
+      final long end = storage.size;
+      storage.putLong(frame.start, (long)frame.kind << KIND_SHIFT | end);
+      entry((long)kind << KIND_SHIFT | count);
+      final long table = storage.size;
+      final long size = tableSize(frame.kind, count);
+      storage.ensure(table + size);
+      for (int i=0; i<count; ++i) storage.putLong(table + i * 8L, frame.children[i]);
+      if (frame.kind == TapeDocument.OBJECT) {
+        final long slots = table + count * 8L;
+        final int capacity = capacity(count);
+        final int mask = capacity - 1;
+        for (int i=0; i<capacity; ++i) storage.putInt(slots + i * 4L, 0);
+        for (int i=0; i<count; ++i) {
+          int slot = hash(frame.hashes[i]) & mask;
+          while (storage.getInt(slots + slot * 4L) != 0) slot = (slot + 1) & mask;
+          storage.putInt(slots + slot * 4L, i + 1);
+        }
+      }
+      storage.size = table + size;
+      if (frame.children.length > 1024) frame.release();
+    }
+
+    private void entry(final long value) throws IOException {
+      final long offset = storage.size;
+      storage.ensure(offset + 8);
+      storage.putLong(offset, value);
+      storage.size = offset + 8;
+    }
+
+    private void string(final int kind, final ByteString bytes) throws IOException {
+      final int length = bytes.size();
+      final long offset = storage.size;
+      final long end = offset + 8 + pad(length);
+      storage.ensure(end);
+      storage.putLong(offset, (long)kind << KIND_SHIFT | length);
+      for (int i=0; i<length; ++i) storage.put(offset + 8 + i, bytes.getByte(i));
+      storage.size = end;
+    }
+  }
+
+  /**
+   * An open object or array, with the offsets of its children (and the hash codes of the member
+   * names for objects).
+   */
+  private static final class Frame {
+    int kind;
+    long start;
+    int count;
+    long[] children = new long[16];
+    int[] hashes = new int[16];
+
+    void add(final long child, final int hash) {
+      if (count == children.length) {
+        final long[] children = new long[count * 2];
+        System.arraycopy(this.children, 0, children, 0, count);
+        this.children = children;
+        final int[] hashes = new int[count * 2];
+        System.arraycopy(this.hashes, 0, hashes, 0, count);
+        this.hashes = hashes;
+      }
+      children[count] = child;
+      hashes[count++] = hash;
+    }
+
+    void release() {
+      children = new long[16];
+      hashes = new int[16];
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+package info.jdavid.ok.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * An iterator over the elements of a json array, that parses one element at a time as it is
+ * requested (see {@link Parser#iterate(okio.BufferedSource, String)}). Only the element being
+ * parsed is held in memory: the source is read as the iteration progresses and the elements that
+ * were returned are not referenced anymore.
+ * <p>
+ * The iteration ends at the end of the array, or at the first error (after passing it to the error
+ * handler of the parsing options). The source is closed when the iteration ends; {@link #close()}
+ * should be called if the iteration is stopped before that.
+ * <p>
+ * This class is not thread-safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ElementIterator implements Iterator<Object>, Closeable {
+
+  private final ArrayElements elements;
+  private final ErrorHandler errors;
+  private boolean closed = false;
+
+  ElementIterator(final ArrayElements elements, final ErrorHandler errors) {
+    this.elements = elements;
+    this.errors = errors;
+  }
+
+  @Override public boolean hasNext() {
+    if (closed) return false;
+    try {
+      if (elements.hasNext()) return true;
+    }
+    catch (final IOException e) {
+      errors.error(e);
+    }
+    catch (final JsonDataException e) {
+      errors.error(e);
+    }
+    close();
+    return false;
+  }
+
+  /**
+   * Parses the next element.
+   * @return the element: a map for a json object, a list for a json array, a string, a number,
+   * a boolean, or null for json null.
+   * @throws NoSuchElementException if there are no more elements, or if the element can't be parsed.
+   */
+  @Override public @Nullable Object next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    try {
+      return elements.next();
+    }
+    catch (final IOException e) {
+      errors.error(e);
+    }
+    catch (final JsonDataException e) {
+      errors.error(e);
+    }
+    close();
+    throw new NoSuchElementException();
+  }
+
+  /**
+   * Returns the byte offset, from the start of the document, of the first byte of the last element
+   * returned by {@link #next()}. With {@link #getEnd()}, it gives the raw bytes of the element in
+   * the original input. The offsets are always known when the source is a Buffer, but other sources
+   * only count their bytes when lines are tracked (see {@link Parser.Options#trackLines(boolean)}).
+   * @return the byte offset, or -1 if it is not known or if no element was returned yet.
+   */
+  public long getStart() {
+    return elements.start;
+  }
+
+  /**
+   * Returns the byte offset, from the start of the document, of the byte following the last element
+   * returned by {@link #next()} (see {@link #getStart()}).
+   * @return the byte offset, or -1 if it is not known or if no element was returned yet.
+   */
+  public long getEnd() {
+    return elements.end;
+  }
+
+  @Override public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Stops the iteration and closes the source.
+   */
+  @Override public void close() {
+    if (closed) return;
+    closed = true;
+    try {
+      elements.close();
+    }
+    catch (final IOException ignore) {}
+  }
+
+}
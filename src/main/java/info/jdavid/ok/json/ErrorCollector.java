@@ -0,0 +1,74 @@
+package info.jdavid.ok.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * An {@link ErrorHandler} that keeps the errors so that they can be inspected once the parsing is
+ * done. Only the first ones are kept (up to the limit), but all of them are counted.
+ * <p>
+ * It is not thread-safe: use one collector per parse, or per thread.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ErrorCollector implements ErrorHandler {
+
+  static final int DEFAULT_LIMIT = 16;
+
+  private final int limit;
+  private final List<Exception> errors = new ArrayList<Exception>();
+  private int count = 0;
+
+  /**
+   * Creates a collector that keeps the first 16 errors.
+   */
+  public ErrorCollector() {
+    this(DEFAULT_LIMIT);
+  }
+
+  /**
+   * @param limit the maximum number of errors to keep.
+   */
+  public ErrorCollector(final int limit) {
+    if (limit < 0) throw new IllegalArgumentException("Invalid limit: " + limit);
+    this.limit = limit;
+  }
+
+  @Override public void error(final Exception e) {
+    if (count++ < limit) errors.add(e);
+  }
+
+  /**
+   * Returns the errors that were kept, in the order they were found.
+   * @return the errors.
+   */
+  public List<Exception> getErrors() {
+    return Collections.unmodifiableList(errors);
+  }
+
+  /**
+   * Returns the number of errors, including the ones that were not kept.
+   * @return the error count.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns whether any error was found.
+   * @return true if there was at least one error.
+   */
+  public boolean hasErrors() {
+    return count > 0;
+  }
+
+  /**
+   * Forgets the errors, so that the collector can be used again.
+   */
+  public void clear() {
+    errors.clear();
+    count = 0;
+  }
+
+}
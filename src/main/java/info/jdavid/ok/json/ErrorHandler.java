@@ -0,0 +1,35 @@
+package info.jdavid.ok.json;
+
+
+/**
+ * Receives the errors found by {@link Parser} in invalid json (see
+ * {@link Parser.Options#errors(ErrorHandler)}). The parser recovers from most errors by skipping the
+ * offending value, unless {@link Parser.Options#failFast(boolean)} is enabled.
+ * <p>
+ * The exceptions don't have stack traces: their message gives the location of the error.
+ */
+public interface ErrorHandler {
+
+  /**
+   * Logs the errors, at most 10 per minute (the default).
+   */
+  ErrorHandler LOG = new ErrorHandler() {
+    @Override public void error(final Exception e) {
+      Logger.log(e);
+    }
+  };
+
+  /**
+   * Discards the errors.
+   */
+  ErrorHandler IGNORE = new ErrorHandler() {
+    @Override public void error(final Exception e) {}
+  };
+
+  /**
+   * Handles an error.
+   * @param e the error.
+   */
+  void error(final Exception e);
+
+}
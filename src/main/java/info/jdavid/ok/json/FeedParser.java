@@ -0,0 +1,654 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.ByteString;
+
+
+/**
+ * A non-blocking json parser that is fed the bytes as they arrive (from a socket channel for
+ * instance), rather than pulling them from a source. {@link #next()} never blocks: it returns
+ * {@link Event#NEED_INPUT} when the next token isn't complete yet, and the tokenizer state is kept
+ * until more bytes are {@link #feed(byte[], int, int) fed}. Only the bytes of the current token are
+ * buffered.
+ * <p>
+ * Events are emitted as soon as their token is complete. With {@link #setValueDepth(int)}, the
+ * values at a given depth are assembled and emitted as a whole (as maps, lists, strings, numbers,
+ * booleans and nulls, like {@link Parser#parse(String)}), for instance each element of a large top
+ * level array while the rest of the array is still arriving.
+ * <p>
+ * The parser accepts a sequence of standard (RFC 8259) json documents, separated by whitespace.
+ * It is not thread-safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FeedParser {
+
+  /**
+   * The events returned by {@link FeedParser#next()}.
+   */
+  public enum Event {
+    BEGIN_OBJECT,
+    END_OBJECT,
+    BEGIN_ARRAY,
+    END_ARRAY,
+    /** A member name, returned by {@link FeedParser#getString()}. */
+    NAME,
+    /** A string, returned by {@link FeedParser#getString()}. */
+    STRING,
+    /** A number, returned by {@link FeedParser#getNumber()}. */
+    NUMBER,
+    /** A boolean, returned by {@link FeedParser#getBoolean()}. */
+    BOOLEAN,
+    NULL,
+    /** A value assembled at the value depth, returned by {@link FeedParser#getValue()}. */
+    VALUE,
+    /** The next token is not complete: more bytes should be fed. */
+    NEED_INPUT,
+    /** The end of the input was signaled, and all the documents are complete. */
+    END_DOCUMENT
+  }
+
+  private static final ByteString QUOTE_OR_SLASH = ByteString.encodeUtf8("\"\\");
+
+  /** Expecting a top-level value, or the end of the input. */
+  private static final int DOCUMENT = 0;
+  /** After '[': expecting a value or ']'. */
+  private static final int ARRAY_FIRST = 1;
+  /** After ',' in an array: expecting a value. */
+  private static final int ARRAY_VALUE = 2;
+  /** After a value in an array: expecting ',' or ']'. */
+  private static final int ARRAY_NEXT = 3;
+  /** After '{': expecting a name or '}'. */
+  private static final int OBJECT_FIRST = 4;
+  /** After ',' in an object: expecting a name. */
+  private static final int OBJECT_NAME = 5;
+  /** After a name: expecting ':'. */
+  private static final int OBJECT_COLON = 6;
+  /** After ':': expecting a value. */
+  private static final int OBJECT_VALUE = 7;
+  /** After a value in an object: expecting ',' or '}'. */
+  private static final int OBJECT_NEXT = 8;
+  /** After a top-level value: expecting whitespace, or the end of the input. */
+  private static final int DOCUMENT_END = 9;
+
+  private final Buffer buffer = new Buffer();
+  private final Buffer.UnsafeCursor cursor = new Buffer.UnsafeCursor();
+  private long fed = 0L;
+  private boolean ended = false;
+  private @Nullable JsonEncodingException error = null;
+
+  private int[] stack = new int[32];
+  private int stackSize = 1;
+
+  /** Where to resume the search for the end of the string at the head of the buffer. */
+  private long stringScan = 1L;
+  private boolean stringEscaped = false;
+
+  private @Nullable String string = null;
+  private @Nullable Object scalar = null;
+  private @Nullable Object value = null;
+
+  private int valueDepth = -1;
+  private final List<Object> containers = new ArrayList<Object>();
+  private @Nullable String name = null;
+
+  public FeedParser() {
+    stack[0] = DOCUMENT;
+  }
+
+  /**
+   * Sets the depth of the values that are assembled and emitted as {@link Event#VALUE}s, instead of
+   * a sequence of events: 0 for the top-level values, 1 for the members or elements of the
+   * top-level values, and so on.
+   * @param depth the depth, or -1 to only emit events (the default).
+   * @return this parser.
+   */
+  public FeedParser setValueDepth(final int depth) {
+    if (depth < -1) throw new IllegalArgumentException("Invalid depth: " + depth);
+    this.valueDepth = depth;
+    return this;
+  }
+
+  /**
+   * Adds bytes to the input.
+   * @param bytes the byte array.
+   * @param offset the offset of the first byte to add.
+   * @param length the number of bytes to add.
+   * @return this parser.
+   */
+  public FeedParser feed(final byte[] bytes, final int offset, final int length) {
+    if (ended) throw new IllegalStateException("The end of the input was already signaled.");
+    buffer.write(bytes, offset, length);
+    fed += length;
+    return this;
+  }
+
+  /**
+   * Adds bytes to the input.
+   * @param bytes the bytes to add.
+   * @return this parser.
+   */
+  public FeedParser feed(final byte[] bytes) {
+    return feed(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Adds the remaining bytes of a byte buffer to the input, and consumes them.
+   * @param bytes the byte buffer.
+   * @return this parser.
+   */
+  public FeedParser feed(final ByteBuffer bytes) {
+    if (ended) throw new IllegalStateException("The end of the input was already signaled.");
+    final int length = bytes.remaining();
+    try {
+      buffer.write(bytes);
+    }
+    catch (final IOException e) {
+      throw new RuntimeException(e); // Buffers don't throw.
+    }
+    fed += length;
+    return this;
+  }
+
+  /**
+   * Signals the end of the input. The pending bytes can still be read with {@link #next()}.
+   * @return this parser.
+   */
+  public FeedParser end() {
+    ended = true;
+    return this;
+  }
+
+  /**
+   * Returns the number of bytes fed so far that haven't been consumed yet.
+   * @return the byte count.
+   */
+  public long getPendingBytes() {
+    return buffer.size();
+  }
+
+  /**
+   * Returns the number of bytes consumed since the start of the input.
+   * @return the byte offset.
+   */
+  public long getOffset() {
+    return fed - buffer.size();
+  }
+
+  /**
+   * Returns the current nesting depth (the number of open objects and arrays).
+   * @return the depth.
+   */
+  public int getDepth() {
+    return stackSize - 1;
+  }
+
+  /**
+   * Returns the name or string of the last {@link Event#NAME} or {@link Event#STRING} event.
+   * @return the string.
+   */
+  public @Nullable String getString() {
+    return string;
+  }
+
+  /**
+   * Returns the number of the last {@link Event#NUMBER} event, as an Integer, a Long, a BigInteger
+   * or a Double.
+   * @return the number.
+   */
+  public @Nullable Number getNumber() {
+    return scalar instanceof Number ? (Number)scalar : null;
+  }
+
+  /**
+   * Returns the value of the last {@link Event#BOOLEAN} event.
+   * @return the boolean.
+   */
+  public boolean getBoolean() {
+    return Boolean.TRUE.equals(scalar);
+  }
+
+  /**
+   * Returns the value of the last {@link Event#VALUE} event.
+   * @return the value (a map, a list, a string, a number, a boolean or null).
+   */
+  public @Nullable Object getValue() {
+    return value;
+  }
+
+  /**
+   * Returns the next event, without blocking.
+   * @return the event, {@link Event#NEED_INPUT} if the next token isn't complete, or
+   * {@link Event#END_DOCUMENT} once the input has ended and has been read completely.
+   * @throws JsonEncodingException if the input is not valid json. The parser can't be used after
+   * that.
+   */
+  public Event next() throws JsonEncodingException {
+    if (error != null) throw error;
+    try {
+      while (true) {
+        final Event event = advance();
+        if (event == null) continue;
+        if (event == Event.NEED_INPUT || event == Event.END_DOCUMENT) return event;
+        if (valueDepth == -1) return event;
+        if (containers.isEmpty()) {
+          final int depth = (event == Event.BEGIN_OBJECT || event == Event.BEGIN_ARRAY) ?
+                            stackSize - 2 : stackSize - 1;
+          if (depth != valueDepth || event == Event.NAME) return event;
+        }
+        if (collect(event)) return Event.VALUE;
+      }
+    }
+    catch (final JsonEncodingException e) {
+      error = e;
+      throw e;
+    }
+    catch (final IOException e) {
+      // The buffer sizes are checked before reading, so this shouldn't happen.
+      final JsonEncodingException encodingException = error(String.valueOf(e.getMessage()));
+      error = encodingException;
+      throw encodingException;
+    }
+  }
+
+  /**
+   * Adds an event to the value being assembled.
+   * @return true if the value is complete.
+   */
+  private boolean collect(final Event event) {
+    switch (event) {
+      case BEGIN_OBJECT:
+      case BEGIN_ARRAY: {
+        final Object container = event == Event.BEGIN_OBJECT ?
+                                 new HashMap<String, Object>() : new ArrayList<Object>();
+        if (!containers.isEmpty()) add(container);
+        containers.add(container);
+        return false;
+      }
+      case END_OBJECT:
+      case END_ARRAY: {
+        final Object container = containers.remove(containers.size() - 1);
+        if (containers.isEmpty()) {
+          value = container;
+          return true;
+        }
+        return false;
+      }
+      case NAME:
+        name = string;
+        return false;
+      default: {
+        if (containers.isEmpty()) {
+          value = scalar;
+          return true;
+        }
+        add(scalar);
+        return false;
+      }
+    }
+  }
+
+  private void add(@Nullable final Object element) {
+    final Object container = containers.get(containers.size() - 1);
+    if (container instanceof Map) {
+      //noinspection unchecked
+      ((Map<String, Object>)container).put(name, element);
+    }
+    else {
+      //noinspection unchecked
+      ((List<Object>)container).add(element);
+    }
+  }
+
+  /**
+   * Reads the next token.
+   * @return the event, or null if a separator was consumed.
+   */
+  private @Nullable Event advance() throws IOException {
+    if (skipWhitespace() && stack[stackSize - 1] == DOCUMENT_END) stack[stackSize - 1] = DOCUMENT;
+    if (buffer.size() == 0L) {
+      if (!ended) return Event.NEED_INPUT;
+      if (stackSize == 1) return Event.END_DOCUMENT;
+      throw error("End of input");
+    }
+    final byte c = buffer.getByte(0);
+    switch (stack[stackSize - 1]) {
+      case ARRAY_NEXT:
+        if (c == ',') {
+          buffer.skip(1L);
+          stack[stackSize - 1] = ARRAY_VALUE;
+          return null;
+        }
+        if (c == ']') {
+          buffer.skip(1L);
+          --stackSize;
+          return Event.END_ARRAY;
+        }
+        throw error("Expected ',' or ']'");
+      case OBJECT_NEXT:
+        if (c == ',') {
+          buffer.skip(1L);
+          stack[stackSize - 1] = OBJECT_NAME;
+          return null;
+        }
+        if (c == '}') {
+          buffer.skip(1L);
+          --stackSize;
+          return Event.END_OBJECT;
+        }
+        throw error("Expected ',' or '}'");
+      case OBJECT_COLON:
+        if (c != ':') throw error("Expected ':'");
+        buffer.skip(1L);
+        stack[stackSize - 1] = OBJECT_VALUE;
+        return null;
+      case OBJECT_FIRST:
+        if (c == '}') {
+          buffer.skip(1L);
+          --stackSize;
+          return Event.END_OBJECT;
+        }
+        return readName(c);
+      case OBJECT_NAME:
+        return readName(c);
+      case ARRAY_FIRST:
+        if (c == ']') {
+          buffer.skip(1L);
+          --stackSize;
+          return Event.END_ARRAY;
+        }
+        return readValue(c);
+      case DOCUMENT_END:
+        // Without a separator, "truefalse" or "[1][2]" would be read as two documents.
+        throw error("Expected whitespace after the document");
+      default:
+        return readValue(c);
+    }
+  }
+
+  private Event readName(final byte c) throws IOException {
+    if (c != '"') throw error("Expected name");
+    final String name = readString();
+    if (name == null) return Event.NEED_INPUT;
+    string = name;
+    stack[stackSize - 1] = OBJECT_COLON;
+    return Event.NAME;
+  }
+
+  private Event readValue(final byte c) throws IOException {
+    switch (c) {
+      case '{':
+        buffer.skip(1L);
+        afterValue();
+        push(OBJECT_FIRST);
+        return Event.BEGIN_OBJECT;
+      case '[':
+        buffer.skip(1L);
+        afterValue();
+        push(ARRAY_FIRST);
+        return Event.BEGIN_ARRAY;
+      case '"': {
+        final String s = readString();
+        if (s == null) return Event.NEED_INPUT;
+        afterValue();
+        string = s;
+        scalar = s;
+        return Event.STRING;
+      }
+      case 't':
+        return readKeyword("true", Boolean.TRUE, Event.BOOLEAN);
+      case 'f':
+        return readKeyword("false", Boolean.FALSE, Event.BOOLEAN);
+      case 'n':
+        return readKeyword("null", null, Event.NULL);
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) return readNumber();
+        throw error("Expected value");
+    }
+  }
+
+  private void afterValue() {
+    final int state = stack[stackSize - 1];
+    if (state == ARRAY_FIRST || state == ARRAY_VALUE) {
+      stack[stackSize - 1] = ARRAY_NEXT;
+    }
+    else if (state == OBJECT_VALUE) {
+      stack[stackSize - 1] = OBJECT_NEXT;
+    }
+    else if (state == DOCUMENT) {
+      stack[stackSize - 1] = DOCUMENT_END;
+    }
+  }
+
+  private void push(final int state) {
+    if (stackSize == stack.length) {
+      final int[] stack = new int[stackSize * 2];
+      System.arraycopy(this.stack, 0, stack, 0, stackSize);
+      this.stack = stack;
+    }
+    stack[stackSize++] = state;
+  }
+
+  /**
+   * Skips the whitespace at the head of the buffer.
+   * @return true if some whitespace was skipped.
+   */
+  private boolean skipWhitespace() throws IOException {
+    final long size = buffer.size();
+    long i = 0L;
+    while (i < size) {
+      final byte c = buffer.getByte(i);
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') break;
+      ++i;
+    }
+    if (i == 0L) return false;
+    buffer.skip(i);
+    return true;
+  }
+
+  private @Nullable Event readKeyword(final String keyword, @Nullable final Object value,
+                                      final Event event) throws IOException {
+    final int length = keyword.length();
+    final long size = buffer.size();
+    for (int i=1; i<length; ++i) {
+      if (i == size) {
+        if (ended) throw error("Expected value");
+        return Event.NEED_INPUT;
+      }
+      if (buffer.getByte(i) != keyword.charAt(i)) throw error("Expected value");
+    }
+    buffer.skip(length);
+    afterValue();
+    scalar = value;
+    return event;
+  }
+
+  private Event readNumber() throws IOException {
+    final long size = buffer.size();
+    long i = 0L;
+    boolean decimal = false;
+    while (i < size) {
+      final byte c = buffer.getByte(i);
+      if (c >= '0' && c <= '9' || c == '-') {
+        ++i;
+      }
+      else if (c == '.' || c == 'e' || c == 'E' || c == '+') {
+        decimal = true;
+        ++i;
+      }
+      else {
+        break;
+      }
+    }
+    if (i == size && !ended) return Event.NEED_INPUT;
+    final String text = buffer.readUtf8(i);
+    if (!isNumber(text)) throw error("Invalid number: " + text);
+    afterValue();
+    scalar = decimal ? Double.valueOf(text) : integer(text);
+    return Event.NUMBER;
+  }
+
+  /**
+   * Converts an integer whose syntax was checked: stringToNumber only picks the type from the
+   * number of digits, and overflows on some integers that don't fit in a long.
+   */
+  private static Number integer(final String text) {
+    try {
+      return Parser.stringToNumber(text);
+    }
+    catch (final NumberFormatException e) {
+      return new BigInteger(text);
+    }
+  }
+
+  /**
+   * Checks the number syntax: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+   */
+  private static boolean isNumber(final String s) {
+    final int n = s.length();
+    int i = 0;
+    if (i < n && s.charAt(i) == '-') ++i;
+    if (i == n) return false;
+    if (s.charAt(i) == '0') {
+      ++i;
+    }
+    else {
+      final int start = i;
+      while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9') ++i;
+      if (i == start) return false;
+    }
+    if (i < n && s.charAt(i) == '.') {
+      final int start = ++i;
+      while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9') ++i;
+      if (i == start) return false;
+    }
+    if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+      ++i;
+      if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-')) ++i;
+      final int start = i;
+      while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9') ++i;
+      if (i == start) return false;
+    }
+    return i == n;
+  }
+
+  /**
+   * Reads the string at the head of the buffer (starting with its opening quote), if it is complete.
+   * The search for its end resumes where it stopped the last time.
+   * @return the string, or null if it is not complete yet.
+   */
+  private @Nullable String readString() throws IOException {
+    final long size = buffer.size();
+    long i = stringScan;
+    long end = -1L;
+    while (i < size) {
+      final long index = buffer.indexOfElement(QUOTE_OR_SLASH, i);
+      if (index == -1L) {
+        i = size;
+        break;
+      }
+      if (buffer.getByte(index) == '"') {
+        end = index;
+        break;
+      }
+      stringEscaped = true;
+      if (index + 1 == size) {
+        i = index;
+        break;
+      }
+      i = index + (buffer.getByte(index + 1) == 'u' ? 6 : 2);
+    }
+    if (end == -1L) {
+      if (ended) throw error("Unterminated string");
+      stringScan = i;
+      return null;
+    }
+    checkControlCharacters(end);
+    final boolean escaped = stringEscaped;
+    stringScan = 1L;
+    stringEscaped = false;
+    buffer.skip(1L); // Opening quote.
+    final String s = escaped ? unescape(end - 1) : buffer.readUtf8(end - 1);
+    buffer.skip(1L); // Closing quote.
+    return s;
+  }
+
+  /**
+   * Rejects the unescaped control characters in the string at the head of the buffer, whose closing
+   * quote is at {@code end}. The bytes are scanned in place.
+   */
+  private void checkControlCharacters(final long end) throws IOException {
+    if (end > 1L && JsonReader.hasControlCharacter(buffer, 1L, end, cursor)) {
+      throw error("Unescaped control character");
+    }
+  }
+
+  private String unescape(final long byteCount) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    long remaining = byteCount;
+    while (remaining > 0L) {
+      final long index = buffer.indexOf((byte)'\\', 0L, remaining);
+      if (index == -1L) {
+        sb.append(buffer.readUtf8(remaining));
+        break;
+      }
+      sb.append(buffer.readUtf8(index));
+      buffer.skip(1L);
+      final byte c = buffer.readByte();
+      remaining -= index + 2;
+      switch (c) {
+        case '"': case '\\': case '/':
+          sb.append((char)c);
+          break;
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'u': {
+          if (remaining < 4L) throw error("Invalid escape sequence");
+          char result = 0;
+          for (int i=0; i<4; ++i) {
+            final byte h = buffer.readByte();
+            result <<= 4;
+            if (h >= '0' && h <= '9') result += (h - '0');
+            else if (h >= 'a' && h <= 'f') result += (h - 'a' + 10);
+            else if (h >= 'A' && h <= 'F') result += (h - 'A' + 10);
+            else throw error("Invalid escape sequence");
+          }
+          remaining -= 4L;
+          sb.append(result);
+          break;
+        }
+        default:
+          throw error("Invalid escape sequence");
+      }
+    }
+    return sb.toString();
+  }
+
+  private JsonEncodingException error(final String message) {
+    final long offset = getOffset();
+    return new JsonEncodingException(message + " at byte " + offset, offset, -1, -1);
+  }
+
+}
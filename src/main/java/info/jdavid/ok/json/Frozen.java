@@ -0,0 +1,22 @@
+package info.jdavid.ok.json;
+
+
+/**
+ * An immutable map or list, with its hash code computed once.
+ */
+interface Frozen {
+
+  /**
+   * Returns the number of values in the tree (the container itself and all its descendants).
+   * @return the node count.
+   */
+  int nodes();
+
+  /**
+   * Returns an estimate of the heap used by the container itself and its scalar values, not
+   * counting the nested containers.
+   * @return the size in bytes.
+   */
+  long bytes();
+
+}
@@ -0,0 +1,140 @@
+package info.jdavid.ok.json;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * An immutable list representation of a json array. Its elements are immutable too (frozen maps and
+ * lists, strings, numbers and booleans), so it can be shared between threads without copies.
+ * <p>
+ * Updates return a new list, which shares all the unchanged elements with this one.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FrozenList extends AbstractList<Object> implements RandomAccess, Frozen {
+
+  private final Object[] elements;
+  private final int hash;
+  private final int nodes;
+  private final long bytes;
+
+  /**
+   * @param list the elements, which are copied.
+   */
+  FrozenList(final List<?> list) {
+    this(list.toArray());
+  }
+
+  private FrozenList(final Object[] elements) {
+    this.elements = elements;
+    int hash = 1;
+    int nodes = 1;
+    long bytes = SubtreeCache.LIST_BYTES + SubtreeCache.REFERENCE_BYTES * elements.length;
+    for (final Object element: elements) {
+      hash = 31 * hash + (element == null ? 0 : element.hashCode());
+      if (element instanceof Frozen) {
+        nodes += ((Frozen)element).nodes();
+      }
+      else {
+        ++nodes;
+        bytes += SubtreeCache.estimate(element);
+      }
+    }
+    this.hash = hash;
+    this.nodes = nodes;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Returns a frozen copy of a list (or any iterable). Nested maps and lists are frozen too, except
+   * for the ones that are already frozen, which are shared.
+   * @param iterable the list.
+   * @return the frozen list.
+   */
+  public static FrozenList of(final Iterable<?> iterable) {
+    if (iterable instanceof FrozenList) return (FrozenList)iterable;
+    final List<Object> copy = iterable instanceof Collection ?
+                              new ArrayList<Object>(((Collection<?>)iterable).size()) :
+                              new ArrayList<Object>();
+    for (final Object element: iterable) copy.add(FrozenMap.freeze(element));
+    return new FrozenList(copy.toArray());
+  }
+
+  /**
+   * Returns a copy of this list, with the element at the given index replaced.
+   * @param index the index.
+   * @param element the new element (frozen if it's a map or a list).
+   * @return the new list.
+   * @throws IndexOutOfBoundsException if the index is out of bounds.
+   */
+  public FrozenList with(final int index, @Nullable final Object element) {
+    if (index < 0 || index >= elements.length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.length);
+    }
+    final Object frozen = FrozenMap.freeze(element);
+    if (elements[index] == frozen) return this;
+    final Object[] copy = elements.clone();
+    copy[index] = frozen;
+    return new FrozenList(copy);
+  }
+
+  /**
+   * Returns a copy of this list, with an element added at the end.
+   * @param element the new element (frozen if it's a map or a list).
+   * @return the new list.
+   */
+  public FrozenList plus(@Nullable final Object element) {
+    final Object[] copy = new Object[elements.length + 1];
+    System.arraycopy(elements, 0, copy, 0, elements.length);
+    copy[elements.length] = FrozenMap.freeze(element);
+    return new FrozenList(copy);
+  }
+
+  /**
+   * Returns a copy of this list, without the element at the given index.
+   * @param index the index.
+   * @return the new list.
+   * @throws IndexOutOfBoundsException if the index is out of bounds.
+   */
+  public FrozenList without(final int index) {
+    if (index < 0 || index >= elements.length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + elements.length);
+    }
+    final Object[] copy = new Object[elements.length - 1];
+    System.arraycopy(elements, 0, copy, 0, index);
+    System.arraycopy(elements, index + 1, copy, index, copy.length - index);
+    return new FrozenList(copy);
+  }
+
+  @Override public int nodes() {
+    return nodes;
+  }
+
+  @Override public long bytes() {
+    return bytes;
+  }
+
+  @Override public int size() {
+    return elements.length;
+  }
+
+  @Override public @Nullable Object get(final int index) {
+    return elements[index];
+  }
+
+  @Override public boolean equals(final Object o) {
+    if (o == this) return true;
+    if (o instanceof FrozenList && ((FrozenList)o).hash != hash) return false;
+    return super.equals(o);
+  }
+
+  @Override public int hashCode() {
+    return hash;
+  }
+
+}
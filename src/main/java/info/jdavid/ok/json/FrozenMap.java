@@ -0,0 +1,149 @@
+package info.jdavid.ok.json;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * An immutable map representation of a json object. Its values are immutable too (frozen maps and
+ * lists, strings, numbers and booleans), so it can be shared between threads without copies.
+ * <p>
+ * Updates return a new map, which shares all the unchanged values with this one.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class FrozenMap extends AbstractMap<String, Object> implements Frozen {
+
+  private final Map<String, Object> map;
+  private final Set<Map.Entry<String, Object>> entrySet;
+  private final int hash;
+  private final int nodes;
+  private final long bytes;
+
+  /**
+   * @param map the members, which are not copied: the map should not be modified afterwards.
+   */
+  FrozenMap(final Map<String, Object> map) {
+    this.map = map;
+    this.entrySet = Collections.unmodifiableMap(map).entrySet();
+    this.hash = map.hashCode();
+    int nodes = 1;
+    long bytes = SubtreeCache.MAP_BYTES;
+    for (final Map.Entry<String, Object> entry: map.entrySet()) {
+      final Object value = entry.getValue();
+      bytes += SubtreeCache.ENTRY_BYTES;
+      if (value instanceof Frozen) {
+        nodes += ((Frozen)value).nodes();
+      }
+      else {
+        ++nodes;
+        bytes += SubtreeCache.estimate(value);
+      }
+    }
+    this.nodes = nodes;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Returns a frozen copy of a map. Nested maps and lists are frozen too, except for the ones that
+   * are already frozen, which are shared.
+   * @param map the map.
+   * @return the frozen map.
+   */
+  public static FrozenMap of(final Map<? extends CharSequence, ?> map) {
+    if (map instanceof FrozenMap) return (FrozenMap)map;
+    final Map<String, Object> copy = new HashMap<String, Object>(capacity(map.size()));
+    for (final Map.Entry<? extends CharSequence, ?> entry: map.entrySet()) {
+      copy.put(entry.getKey().toString(), freeze(entry.getValue()));
+    }
+    return new FrozenMap(copy);
+  }
+
+  /**
+   * Returns a frozen version of a value: maps and lists are frozen (recursively), and other values
+   * are returned as they are.
+   */
+  static @Nullable Object freeze(@Nullable final Object value) {
+    if (value instanceof Frozen) return value;
+    if (value instanceof Map) {
+      //noinspection unchecked
+      return of((Map<? extends CharSequence, ?>)value);
+    }
+    if (value instanceof Iterable) return FrozenList.of((Iterable<?>)value);
+    return value;
+  }
+
+  private static int capacity(final int size) {
+    return Math.max(4, size * 4 / 3 + 1);
+  }
+
+  /**
+   * Returns a copy of this map, with the given member added or replaced.
+   * @param key the member name.
+   * @param value the member value (frozen if it's a map or a list).
+   * @return the new map.
+   */
+  public FrozenMap with(final String key, @Nullable final Object value) {
+    final Object frozen = freeze(value);
+    if (map.containsKey(key)) {
+      final Object previous = map.get(key);
+      if (previous == null ? frozen == null : previous == frozen) return this;
+    }
+    final Map<String, Object> copy = new HashMap<String, Object>(capacity(map.size() + 1));
+    copy.putAll(map);
+    copy.put(key, frozen);
+    return new FrozenMap(copy);
+  }
+
+  /**
+   * Returns a copy of this map, without the given member.
+   * @param key the member name.
+   * @return the new map, or this map if it doesn't have that member.
+   */
+  public FrozenMap without(final String key) {
+    if (!map.containsKey(key)) return this;
+    final Map<String, Object> copy = new HashMap<String, Object>(capacity(map.size()));
+    copy.putAll(map);
+    copy.remove(key);
+    return new FrozenMap(copy);
+  }
+
+  @Override public int nodes() {
+    return nodes;
+  }
+
+  @Override public long bytes() {
+    return bytes;
+  }
+
+  @Override public int size() {
+    return map.size();
+  }
+
+  @Override public boolean containsKey(final Object key) {
+    return map.containsKey(key);
+  }
+
+  @Override public @Nullable Object get(final Object key) {
+    return map.get(key);
+  }
+
+  @Override public Set<Map.Entry<String, Object>> entrySet() {
+    return entrySet;
+  }
+
+  @Override public boolean equals(final Object o) {
+    if (o == this) return true;
+    if (o instanceof FrozenMap && ((FrozenMap)o).hash != hash) return false;
+    return super.equals(o);
+  }
+
+  @Override public int hashCode() {
+    return hash;
+  }
+
+}
@@ -0,0 +1,188 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Options;
+
+
+/**
+ * Converts json directly to values of a given class and back, with code written for that class
+ * rather than going through reflection like {@link Binder}. These adapters are usually generated
+ * by the okjson annotation processor for the classes annotated with {@link JsonClass}, but they
+ * can also be written by hand:
+ * <pre>{@code
+ * final class PointJsonAdapter extends JsonAdapter<Point> {
+ *   static final JsonAdapter.Names NAMES = JsonAdapter.Names.of("x", "y");
+ *   @Override public Point fromJson(final JsonInput in) throws IOException {
+ *     final Point point = new Point();
+ *     in.beginObject();
+ *     while (in.hasNext()) {
+ *       switch (in.selectName(NAMES)) {
+ *         case 0: point.x = in.nextInt(); break;
+ *         case 1: point.y = in.nextInt(); break;
+ *         default: in.skipValue();
+ *       }
+ *     }
+ *     in.endObject();
+ *     return point;
+ *   }
+ *   @Override public void toJson(final JsonOutput out, final Point value) throws IOException {
+ *     out.beginObject().name(NAMES, 0).value(value.x).name(NAMES, 1).value(value.y).endObject();
+ *   }
+ * }
+ * }</pre>
+ * Null values are handled by the callers: {@link #fromJson(JsonInput)} is never called when the
+ * next token is null, and {@link #toJson(JsonOutput, Object)} is never called with null.
+ * @param <T> the type.
+ */
+@SuppressWarnings("WeakerAccess")
+public abstract class JsonAdapter<T> extends TypeAdapter<T> {
+
+  protected JsonAdapter() {}
+
+  /**
+   * Reads the next value.
+   * @param in the input.
+   * @return the value.
+   * @throws IOException if the json is not valid.
+   * @throws JsonDataException if the json value doesn't match the type.
+   */
+  public abstract T fromJson(final JsonInput in) throws IOException;
+
+  /**
+   * Writes a value.
+   * @param out the output.
+   * @param value the value (not null).
+   * @throws IOException if the value can't be written.
+   */
+  public abstract void toJson(final JsonOutput out, final T value) throws IOException;
+
+  @Override final T read(final JsonReader reader) throws IOException {
+    return fromJson(reader.input());
+  }
+
+  @Override final void write(final JsonWriter writer, final T value) throws IOException {
+    toJson(writer.output(), value);
+  }
+
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #fromJson(BufferedSource)}.
+   * @param s the json string to parse.
+   * @return the value, or null if the string is not valid json or doesn't match the type.
+   */
+  public final @Nullable T fromJson(@Nullable final String s) {
+    if (s == null) return null;
+    final Buffer buffer = new Buffer();
+    try {
+      return fromJson(buffer.writeUtf8(s));
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Converts a json string to a value.
+   * @param source the json string as an okio source.
+   * @return the value, or null if the source is not valid json or doesn't match the type.
+   */
+  public final @Nullable T fromJson(@Nullable final BufferedSource source) {
+    if (source == null) return null;
+    //noinspection unchecked
+    return (T)Binder.parse(source, this);
+  }
+
+  /**
+   * Converts a value to its json string representation.
+   * @param value the value.
+   * @return the json string.
+   * @throws IllegalArgumentException if the value has a double or float that is NaN or infinite.
+   */
+  public final String toJson(@Nullable final T value) {
+    final Buffer buffer = new Buffer();
+    toJson(buffer, value);
+    try {
+      return buffer.readUtf8();
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Writes the json string representation of a value to a {@link okio.BufferedSink}.
+   * @param sink the target buffer.
+   * @param value the value.
+   * @throws IllegalArgumentException if the value has a double or float that is NaN or infinite.
+   */
+  public final void toJson(final BufferedSink sink, @Nullable final T value) {
+    Binder.build(sink, this, value);
+  }
+
+  /**
+   * A list of property names, encoded once: {@link JsonInput#selectName(Names)} matches the bytes
+   * of the next name against all of them at once, and {@link JsonOutput#name(Names, int)} writes
+   * them as they are.
+   */
+  public static final class Names {
+
+    final String[] names;
+    final ByteString[] encoded;
+    final Options options;
+
+    private Names(final String[] names) {
+      this.names = names;
+      final int n = names.length;
+      encoded = new ByteString[n];
+      final ByteString[] unquoted = new ByteString[n];
+      final Buffer buffer = new Buffer();
+      for (int i=0; i<n; ++i) {
+        try {
+          JsonWriter.string(buffer, names[i]);
+        }
+        catch (final IOException e) {
+          throw new RuntimeException(e);
+        }
+        encoded[i] = buffer.readByteString();
+        // The reader has already consumed the opening quote when it peeks a name.
+        unquoted[i] = encoded[i].substring(1);
+      }
+      options = Options.of(unquoted);
+    }
+
+    /**
+     * Encodes a list of property names.
+     * @param names the names.
+     * @return the encoded names.
+     */
+    public static Names of(final String... names) {
+      return new Names(names.clone());
+    }
+
+    /**
+     * Returns the number of names.
+     * @return the number of names.
+     */
+    public int size() {
+      return names.length;
+    }
+
+    /**
+     * Returns the name at the given index.
+     * @param index the index.
+     * @return the name.
+     */
+    public String get(final int index) {
+      return names[index];
+    }
+
+  }
+
+}
@@ -0,0 +1,21 @@
+package info.jdavid.ok.json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks a class for the okjson annotation processor, that generates a {@link JsonAdapter} for it at
+ * compile time. The adapter of a class {@code Outer.Inner} in package {@code p} is
+ * {@code p.Outer_InnerJsonAdapter}, and its instance is in its static {@code INSTANCE} field.
+ * <p>
+ * {@link Binder} uses the generated adapter of an annotated class when it finds one, and falls back
+ * to its reflection based adapter otherwise (when the annotation processor didn't run).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JsonClass {}
@@ -7,8 +7,53 @@ import javax.annotation.Nullable;
 @SuppressWarnings("WeakerAccess")
 public final class JsonEncodingException extends IOException {
 
+  private final long offset;
+  private final int line;
+  private final int column;
+
   JsonEncodingException(final @Nullable String message) {
+    this(message, -1L, -1, -1);
+  }
+
+  JsonEncodingException(final @Nullable String message,
+                         final long offset, final int line, final int column) {
     super(message);
+    this.offset = offset;
+    this.line = line;
+    this.column = column;
+  }
+
+  /**
+   * Returns the number of bytes read from the start of the document when the error was found.
+   * @return the byte offset, or -1 if it is not known.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns the line (starting at 1) where the error was found, if lines were tracked (see
+   * {@link Parser.Options#trackLines(boolean)}).
+   * @return the line, or -1 if it is not known.
+   */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * Returns the column (in bytes, starting at 1) where the error was found, if lines were tracked.
+   * @return the column, or -1 if it is not known.
+   */
+  public int getColumn() {
+    return column;
+  }
+
+  /**
+   * The message gives the location of the error in the json, and these exceptions can be frequent
+   * with untrusted input: they don't capture a stack trace.
+   */
+  @Override public synchronized Throwable fillInStackTrace() {
+    return this;
   }
 
 }
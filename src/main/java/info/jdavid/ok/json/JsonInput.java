@@ -0,0 +1,210 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * The json tokens read by a {@link JsonAdapter}. The numbers are read like {@link Binder} reads
+ * them: a number given as a string is accepted, and a number that doesn't fit in the type is an
+ * error.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class JsonInput {
+
+  private final JsonReader reader;
+
+  JsonInput(final JsonReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Consumes the start of an object.
+   * @throws JsonDataException if the next token is not the start of an object.
+   */
+  public void beginObject() throws IOException {
+    reader.beginObject();
+  }
+
+  /**
+   * Consumes the end of an object.
+   * @throws JsonDataException if the next token is not the end of an object.
+   */
+  public void endObject() throws IOException {
+    reader.endObject();
+  }
+
+  /**
+   * Consumes the start of an array.
+   * @throws JsonDataException if the next token is not the start of an array.
+   */
+  public void beginArray() throws IOException {
+    reader.beginArray();
+  }
+
+  /**
+   * Consumes the end of an array.
+   * @throws JsonDataException if the next token is not the end of an array.
+   */
+  public void endArray() throws IOException {
+    reader.endArray();
+  }
+
+  /**
+   * Returns whether the current object or array has more elements.
+   * @return true if the next token is a name or a value, false if it is the end of the object or
+   * array.
+   */
+  public boolean hasNext() throws IOException {
+    final JsonReader.Token token = reader.peek();
+    return token != JsonReader.Token.END_OBJECT && token != JsonReader.Token.END_ARRAY &&
+           token != JsonReader.Token.END_DOCUMENT;
+  }
+
+  /**
+   * Consumes the next value if it is null.
+   * @return true if the next value was null, false if it is not (and was not consumed).
+   */
+  public boolean nextNull() throws IOException {
+    if (reader.peek() != JsonReader.Token.NULL) return false;
+    reader.nextNull();
+    return true;
+  }
+
+  /**
+   * Consumes the next property name and returns its index in the given names.
+   * @param names the names.
+   * @return the index, or -1 if the name is not one of them.
+   * @throws JsonDataException if the next token is not a name.
+   */
+  public int selectName(final JsonAdapter.Names names) throws IOException {
+    return reader.selectName(names.options, names.names);
+  }
+
+  /**
+   * Consumes the next property name.
+   * @return the name.
+   * @throws JsonDataException if the next token is not a name.
+   */
+  public String nextName() throws IOException {
+    return reader.nextName();
+  }
+
+  /**
+   * Skips the next value, including its content if it is an object or an array.
+   */
+  public void skipValue() throws IOException {
+    reader.skipValue();
+  }
+
+  /**
+   * Consumes the next string value (or the string form of the next number).
+   * @return the string.
+   * @throws JsonDataException if the next token is not a string or a number.
+   */
+  public String nextString() throws IOException {
+    return reader.nextString();
+  }
+
+  /**
+   * Consumes the next boolean value.
+   * @return the boolean.
+   * @throws JsonDataException if the next token is not a boolean.
+   */
+  public boolean nextBoolean() throws IOException {
+    return reader.nextBoolean();
+  }
+
+  /**
+   * Consumes the next number as a long.
+   * @return the long.
+   * @throws JsonDataException if the next token is not a number that fits in a long.
+   */
+  public long nextLong() throws IOException {
+    return Binder.nextLong(reader);
+  }
+
+  /**
+   * Consumes the next number as an int.
+   * @return the int.
+   * @throws JsonDataException if the next token is not a number that fits in an int.
+   */
+  public int nextInt() throws IOException {
+    return Binder.nextInt(reader);
+  }
+
+  /**
+   * Consumes the next number as a short.
+   * @return the short.
+   * @throws JsonDataException if the next token is not a number that fits in a short.
+   */
+  public short nextShort() throws IOException {
+    return (short)Binder.nextInt(reader, Short.MIN_VALUE, Short.MAX_VALUE);
+  }
+
+  /**
+   * Consumes the next number as a byte.
+   * @return the byte.
+   * @throws JsonDataException if the next token is not a number that fits in a byte.
+   */
+  public byte nextByte() throws IOException {
+    return (byte)Binder.nextInt(reader, Byte.MIN_VALUE, Byte.MAX_VALUE);
+  }
+
+  /**
+   * Consumes the next number as a double.
+   * @return the double.
+   * @throws JsonDataException if the next token is not a number.
+   */
+  public double nextDouble() throws IOException {
+    return Binder.nextDouble(reader);
+  }
+
+  /**
+   * Consumes the next number as a float.
+   * @return the float.
+   * @throws JsonDataException if the next token is not a number.
+   */
+  public float nextFloat() throws IOException {
+    return (float)Binder.nextDouble(reader);
+  }
+
+  /**
+   * Consumes the next string value, that should have a single character.
+   * @return the character.
+   * @throws JsonDataException if the next token is not a string with a single character.
+   */
+  public char nextChar() throws IOException {
+    return Binder.nextChar(reader);
+  }
+
+  /**
+   * Consumes the next string value as the name of an enum constant.
+   * @param constants the enum constants (from {@code values()}).
+   * @param <E> the enum type.
+   * @return the constant.
+   * @throws JsonDataException if the next token is not a string or not the name of a constant.
+   */
+  public <E extends Enum<E>> E nextEnum(final E[] constants) throws IOException {
+    final String name = reader.nextString();
+    for (final E constant: constants) {
+      if (constant.name().equals(name)) return constant;
+    }
+    throw new JsonDataException("Unknown constant: " + name);
+  }
+
+  /**
+   * Reads the next value with the {@link Binder} adapter of its type, for the types that don't
+   * have a generated adapter.
+   * @param type the class of the value.
+   * @param <V> the type of the value.
+   * @return the value, or null.
+   * @throws IllegalArgumentException if the type is not supported.
+   */
+  public @Nullable <V> V read(final Class<V> type) throws IOException {
+    //noinspection unchecked
+    return (V)Binder.read(reader, Binder.adapter(type));
+  }
+
+}
@@ -0,0 +1,155 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * The json tokens written by a {@link JsonAdapter}.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class JsonOutput {
+
+  private final JsonWriter writer;
+
+  JsonOutput(final JsonWriter writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Writes the start of an object.
+   * @return this output.
+   */
+  public JsonOutput beginObject() throws IOException {
+    writer.beginObject();
+    return this;
+  }
+
+  /**
+   * Writes the end of an object.
+   * @return this output.
+   */
+  public JsonOutput endObject() throws IOException {
+    writer.endObject();
+    return this;
+  }
+
+  /**
+   * Writes the start of an array.
+   * @return this output.
+   */
+  public JsonOutput beginArray() throws IOException {
+    writer.beginArray();
+    return this;
+  }
+
+  /**
+   * Writes the end of an array.
+   * @return this output.
+   */
+  public JsonOutput endArray() throws IOException {
+    writer.endArray();
+    return this;
+  }
+
+  /**
+   * Writes a property name that was already encoded.
+   * @param names the encoded names.
+   * @param index the index of the name.
+   * @return this output.
+   */
+  public JsonOutput name(final JsonAdapter.Names names, final int index) throws IOException {
+    writer.name(names.encoded[index]);
+    return this;
+  }
+
+  /**
+   * Writes a property name.
+   * @param name the name.
+   * @return this output.
+   */
+  public JsonOutput name(final String name) throws IOException {
+    writer.name(name);
+    return this;
+  }
+
+  /**
+   * Writes a string value.
+   * @param value the string.
+   * @return this output.
+   */
+  public JsonOutput value(final String value) throws IOException {
+    writer.value(value);
+    return this;
+  }
+
+  /**
+   * Writes a boolean value.
+   * @param value the boolean.
+   * @return this output.
+   */
+  public JsonOutput value(final boolean value) throws IOException {
+    writer.value(value);
+    return this;
+  }
+
+  /**
+   * Writes an integer value.
+   * @param value the integer.
+   * @return this output.
+   */
+  public JsonOutput value(final long value) throws IOException {
+    writer.value(value);
+    return this;
+  }
+
+  /**
+   * Writes a number value.
+   * @param value a finite value.
+   * @return this output.
+   */
+  public JsonOutput value(final double value) throws IOException {
+    writer.value(value);
+    return this;
+  }
+
+  /**
+   * Writes a number value, with the shortest representation of the float (rather than of the
+   * double it converts to).
+   * @param value a finite value.
+   * @return this output.
+   */
+  public JsonOutput value(final float value) throws IOException {
+    writer.value(value);
+    return this;
+  }
+
+  /**
+   * Writes a null value.
+   * @return this output.
+   */
+  public JsonOutput nullValue() throws IOException {
+    writer.nullValue();
+    return this;
+  }
+
+  /**
+   * Writes a value with the {@link Binder} adapter of its class, for the types that don't have a
+   * generated adapter.
+   * @param value the value.
+   * @return this output.
+   * @throws IllegalArgumentException if the type of the value is not supported.
+   */
+  public JsonOutput write(@Nullable final Object value) throws IOException {
+    if (value == null) {
+      writer.nullValue();
+    }
+    else {
+      //noinspection unchecked
+      ((TypeAdapter<Object>)Binder.adapter(value.getClass())).write(writer, value);
+    }
+    return this;
+  }
+
+}
@@ -0,0 +1,132 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A path to a value inside a json document, such as {@code $.data.items}, {@code $.rows[2]} or
+ * {@code $['a.b'][0]}, used to move a reader to that value without parsing what comes before it.
+ * <p>
+ * Only member names and array indices are supported (no wildcards or filters).
+ */
+final class JsonPath {
+
+  static final JsonPath ROOT = new JsonPath(new Object[0]);
+
+  /** Member names (Strings) and array indices (Integers). */
+  private final Object[] segments;
+
+  private JsonPath(final Object[] segments) {
+    this.segments = segments;
+  }
+
+  /**
+   * Parses a path.
+   * @param path the path, starting with {@code $}.
+   * @return the parsed path.
+   * @throws IllegalArgumentException if the path is not valid.
+   */
+  static JsonPath parse(final String path) {
+    final int length = path.length();
+    if (length == 0 || path.charAt(0) != '$') throw invalid(path);
+    final List<Object> segments = new ArrayList<Object>();
+    int i = 1;
+    while (i < length) {
+      final char c = path.charAt(i);
+      if (c == '.') {
+        int end = i + 1;
+        while (end < length && path.charAt(end) != '.' && path.charAt(end) != '[') ++end;
+        if (end == i + 1) throw invalid(path);
+        segments.add(path.substring(i + 1, end));
+        i = end;
+      }
+      else if (c == '[') {
+        final int end = path.indexOf(']', i);
+        if (end == -1) throw invalid(path);
+        final String segment = path.substring(i + 1, end);
+        if (segment.length() > 1 && segment.charAt(0) == '\'') {
+          final int close = path.indexOf("']", i + 2);
+          if (close == -1) throw invalid(path);
+          segments.add(path.substring(i + 2, close));
+          i = close + 2;
+        }
+        else {
+          try {
+            final int index = Integer.parseInt(segment);
+            if (index < 0) throw invalid(path);
+            segments.add(index);
+          }
+          catch (final NumberFormatException e) {
+            throw invalid(path);
+          }
+          i = end + 1;
+        }
+      }
+      else {
+        throw invalid(path);
+      }
+    }
+    return segments.isEmpty() ? ROOT : new JsonPath(segments.toArray());
+  }
+
+  private static IllegalArgumentException invalid(final String path) {
+    return new IllegalArgumentException("Invalid path: " + path);
+  }
+
+  /**
+   * Moves the reader to the value at this path, skipping everything before it.
+   * @param reader the reader, at the beginning of the document.
+   * @return true if the reader is now in front of the value, false if the document doesn't have a
+   * value at this path.
+   */
+  boolean select(final JsonReader reader) throws IOException {
+    for (final Object segment: segments) {
+      if (segment instanceof String) {
+        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) return false;
+        reader.beginObject();
+        boolean found = false;
+        while (reader.peek() == JsonReader.Token.NAME) {
+          if (segment.equals(reader.nextName())) {
+            found = true;
+            break;
+          }
+          reader.skipValue();
+        }
+        if (!found) return false;
+      }
+      else {
+        if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) return false;
+        reader.beginArray();
+        final int index = (Integer)segment;
+        for (int i=0; i<index; ++i) {
+          if (reader.peek() == JsonReader.Token.END_ARRAY) return false;
+          reader.skipValue();
+        }
+        if (reader.peek() == JsonReader.Token.END_ARRAY) return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public String toString() {
+    final StringBuilder sb = new StringBuilder("$");
+    for (final Object segment: segments) {
+      if (segment instanceof String) {
+        final String name = (String)segment;
+        if (name.indexOf('.') == -1 && name.indexOf('[') == -1) {
+          sb.append('.').append(name);
+        }
+        else {
+          sb.append("['").append(name).append("']");
+        }
+      }
+      else {
+        sb.append('[').append(segment).append(']');
+      }
+    }
+    return sb.toString();
+  }
+
+}
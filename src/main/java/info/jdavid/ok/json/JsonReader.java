@@ -4,12 +4,15 @@
 package info.jdavid.ok.json;
 
 import java.io.Closeable;
-import java.io.EOFException;
 import java.io.IOException;
 import javax.annotation.Nullable;
 import okio.Buffer;
 import okio.BufferedSource;
 import okio.ByteString;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Options;
+import okio.Source;
 
 
 class JsonReader implements Closeable {
@@ -19,6 +22,21 @@ class JsonReader implements Closeable {
   private int[] scopes = new int[32];
   private String[] pathNames = new String[32];
   private int[] pathIndices = new int[32];
+  /** Whether pathNames and pathIndices are maintained (see {@link #trackPath(boolean)}). */
+  private boolean trackPath = true;
+  /** Whether only standard json is accepted (see {@link #setStrict(boolean)}). */
+  private boolean strict = false;
+  /** Whether lines are counted (see {@link #trackLines(boolean)}). */
+  private boolean trackLines = false;
+  /** The size of the buffer at the start of the document, when the source is a Buffer. */
+  private long start;
+  /** The source counting the bytes read, when the source isn't a Buffer and lines are tracked. */
+  private @Nullable CountingSource counting;
+  /** The current line, and the offset of its first byte. */
+  private int line;
+  private long lineStart;
+  /** The offset of the first byte of the last peeked token. */
+  private long tokenStart;
 
   private static final long MIN_INCOMPLETE_INTEGER = Long.MIN_VALUE / 10;
 
@@ -27,6 +45,9 @@ class JsonReader implements Closeable {
   private static final ByteString UNQUOTED_STRING_TERMINALS
     = ByteString.encodeUtf8("{}[]:, \n\t\r\f/\\;#=");
   private static final ByteString LINEFEED_OR_CARRIAGE_RETURN = ByteString.encodeUtf8("\n\r");
+  private static final ByteString STRUCTURE = ByteString.encodeUtf8("{}[]\"'#/");
+  private static final ByteString END_OF_COMMENT = ByteString.encodeUtf8("*/");
+  private static final int SCRATCH_SIZE = 8192;
 
   private static final int PEEKED_NONE = 0;
   private static final int PEEKED_BEGIN_OBJECT = 1;
@@ -61,8 +82,17 @@ class JsonReader implements Closeable {
   private static final int NUMBER_CHAR_EXP_DIGIT = 7;
 
   /** The input JSON. */
-  private final BufferedSource source;
-  private final Buffer buffer;
+  private BufferedSource source;
+  private Buffer buffer;
+
+  /** The array used to scan strings in {@link #validate()}, allocated on first use. */
+  private @Nullable byte[] scratch = null;
+
+  /** The cursor used to scan strings in place in strict mode, allocated on first use. */
+  private @Nullable Buffer.UnsafeCursor cursor = null;
+
+  /** The cache used to share the object name strings, or null. */
+  private final @Nullable StringCache names;
 
   private int peeked = PEEKED_NONE;
 
@@ -85,12 +115,153 @@ class JsonReader implements Closeable {
    */
   private @Nullable String peekedString;
 
+  /** The view of this reader given to the generated adapters, created on first use. */
+  private @Nullable JsonInput input = null;
+
   JsonReader(final BufferedSource source) {
-    this.source = source;
-    this.buffer = source.buffer();
+    this(source, StringCache.NAMES);
+  }
+
+  JsonReader(final BufferedSource source, @Nullable final StringCache names) {
+    this.names = names;
+    setSource(source);
+    pushScope(JsonScope.EMPTY_DOCUMENT);
+  }
+
+  /**
+   * Sets the source. Buffers are read directly, and their size gives the offset. Other sources
+   * are also read directly, and their offset is unknown, unless lines are tracked: they are then
+   * read through a {@link CountingSource}, which adds a second buffer between the source and the
+   * reader (the segments are moved from one to the other rather than copied).
+   */
+  private void setSource(final BufferedSource source) {
+    if (source instanceof Buffer) {
+      this.counting = null;
+      this.source = source;
+      this.buffer = (Buffer)source;
+      this.start = buffer.size();
+    }
+    else if (trackLines) {
+      final CountingSource counting = new CountingSource(source);
+      this.counting = counting;
+      this.source = Okio.buffer(counting);
+      this.buffer = this.source.buffer();
+      this.start = 0L;
+    }
+    else {
+      this.counting = null;
+      this.source = source;
+      this.buffer = source.buffer();
+      this.start = -1L;
+    }
+    line = 1;
+    lineStart = 0L;
+    tokenStart = 0L;
+  }
+
+  /**
+   * Moves the reader to the beginning of a new document, keeping its stacks.
+   * The previous source is not closed.
+   */
+  void reset(final BufferedSource source) {
+    setSource(source);
+    peeked = PEEKED_NONE;
+    peekedString = null;
+    for (int i=0; i<stackSize; ++i) pathNames[i] = null;
+    stackSize = 0;
     pushScope(JsonScope.EMPTY_DOCUMENT);
   }
 
+  /**
+   * Enables or disables the tracking of the current path. It should be set before reading the
+   * document. Without it, names and array positions aren't recorded while reading, and error
+   * messages give the byte offset (when the source is a Buffer), the depth and the upcoming bytes
+   * rather than the path.
+   * @param trackPath true to track the path (the default), false for the lean mode.
+   */
+  void trackPath(final boolean trackPath) {
+    this.trackPath = trackPath;
+  }
+
+  /**
+   * Enables or disables the counting of lines, for error positions and {@link #line()} and
+   * {@link #column()}. It should be set before reading the document. Lines are counted as their
+   * terminators are skipped as whitespace (or at the end of comments): line breaks inside
+   * (lenient) unescaped strings and block comments are not counted. When the source is not a
+   * Buffer, this also counts the bytes that are read, for {@link #offset()}.
+   * @param trackLines true to count lines, false otherwise (the default).
+   */
+  void trackLines(final boolean trackLines) {
+    this.trackLines = trackLines;
+    if (trackLines && start == -1L) setSource(source);
+  }
+
+  /**
+   * Returns the number of bytes consumed since the start of the document. This is the position of
+   * the next token, once the whitespace before it has been skipped. It is only known when the
+   * source is a Buffer or when lines are tracked.
+   * @return the byte offset, or -1.
+   */
+  long offset() {
+    final CountingSource counting = this.counting;
+    if (counting != null) return counting.count - buffer.size();
+    return start == -1L ? -1L : start - buffer.size();
+  }
+
+  /**
+   * Returns the byte offset of the first byte of the last token that was peeked (or read), so that
+   * the raw bytes of a value can be sliced out of the original input.
+   * @return the byte offset, or -1 if it is not known (see {@link #offset()}).
+   */
+  long tokenOffset() {
+    return tokenStart;
+  }
+
+  /**
+   * Returns the current line (starting at 1), if lines are tracked.
+   * @return the line, or -1.
+   */
+  int line() {
+    return trackLines ? line : -1;
+  }
+
+  /**
+   * Returns the current column (in bytes, starting at 1), if lines are tracked.
+   * @return the column, or -1.
+   */
+  int column() {
+    return trackLines ? (int)(offset() - lineStart) + 1 : -1;
+  }
+
+  /**
+   * Records a line terminator.
+   * @param p the position, relative to the head of the buffer, of the byte following the terminator.
+   */
+  private void newLine(final long p) {
+    ++line;
+    lineStart = offset() + p;
+  }
+
+  /**
+   * Enables or disables the strict mode. By default, the reader is lenient: it skips comments and
+   * accepts single-quoted and unquoted strings, '=' and '=>' separators, ';' between values,
+   * implicit nulls in arrays, case-insensitive keywords and unknown escape sequences. In strict mode,
+   * all of these are rejected (as well as values after the top-level one), and tokens are read by a
+   * separate path that doesn't check for them.
+   * @param strict true to only accept RFC 8259 json, false to be lenient (the default).
+   */
+  void setStrict(final boolean strict) {
+    this.strict = strict;
+  }
+
+  /**
+   * Returns the view of this reader used by the generated adapters (see {@link JsonAdapter}).
+   */
+  JsonInput input() {
+    final JsonInput input = this.input;
+    return input == null ? (this.input = new JsonInput(this)) : input;
+  }
+
   /**
    * Consumes the next token from the JSON stream and asserts that it is the beginning of a new
    * array.
@@ -100,11 +271,11 @@ class JsonReader implements Closeable {
     if (p == PEEKED_NONE) p = doPeek();
     if (p == PEEKED_BEGIN_ARRAY) {
       pushScope(JsonScope.EMPTY_ARRAY);
-      pathIndices[stackSize - 1] = 0;
+      if (trackPath) pathIndices[stackSize - 1] = 0;
       peeked = PEEKED_NONE;
     }
     else {
-      throw new JsonDataException("Expected BEGIN_ARRAY but was " + peek() + " at path " + getPath());
+      throw dataError("Expected BEGIN_ARRAY but was " + peek());
     }
   }
 
@@ -117,11 +288,11 @@ class JsonReader implements Closeable {
     if (p == PEEKED_NONE) p = doPeek();
     if (p == PEEKED_END_ARRAY) {
       stackSize--;
-      ++pathIndices[stackSize - 1];
+      if (trackPath) ++pathIndices[stackSize - 1];
       peeked = PEEKED_NONE;
     }
     else {
-      throw new JsonDataException("Expected END_ARRAY but was " + peek() + " at path " + getPath());
+      throw dataError("Expected END_ARRAY but was " + peek());
     }
   }
 
@@ -137,7 +308,7 @@ class JsonReader implements Closeable {
       peeked = PEEKED_NONE;
     }
     else {
-      throw new JsonDataException("Expected BEGIN_OBJECT but was " + peek() + " at path " + getPath());
+      throw dataError("Expected BEGIN_OBJECT but was " + peek());
     }
   }
 
@@ -150,12 +321,14 @@ class JsonReader implements Closeable {
     if (p == PEEKED_NONE) p = doPeek();
     if (p == PEEKED_END_OBJECT) {
       --stackSize;
-      pathNames[stackSize] = null; // Free the last path name so that it can be garbage collected!
-      ++pathIndices[stackSize - 1];
+      if (trackPath) {
+        pathNames[stackSize] = null; // Free the last path name so that it can be garbage collected!
+        ++pathIndices[stackSize - 1];
+      }
       peeked = PEEKED_NONE;
     }
     else {
-      throw new JsonDataException("Expected END_OBJECT but was " + peek() + " at path " + getPath());
+      throw dataError("Expected END_OBJECT but was " + peek());
     }
   }
 
@@ -200,6 +373,7 @@ class JsonReader implements Closeable {
   }
 
   private int doPeek() throws IOException {
+    if (strict) return doPeekStrict();
     int peekStack = scopes[stackSize - 1];
     if (peekStack == JsonScope.EMPTY_ARRAY) {
       scopes[stackSize - 1] = JsonScope.NONEMPTY_ARRAY;
@@ -233,6 +407,7 @@ class JsonReader implements Closeable {
         }
       }
       final int c = nextNonWhitespace(true);
+      tokenStart = offset();
       switch (c) {
         case '"':
           buffer.readByte(); // consume the '\"'.
@@ -280,6 +455,7 @@ class JsonReader implements Closeable {
     }
 
     final int c = nextNonWhitespace(true);
+    tokenStart = offset();
     switch (c) {
       case ']':
         if (peekStack == JsonScope.EMPTY_ARRAY) {
@@ -318,6 +494,99 @@ class JsonReader implements Closeable {
     return peeked = PEEKED_UNQUOTED;
   }
 
+  /**
+   * The strict counterpart of {@link #doPeek()}: only standard separators, double-quoted names and
+   * strings, and lowercase keywords are recognized, and whitespace doesn't include comments.
+   */
+  private int doPeekStrict() throws IOException {
+    final int peekStack = scopes[stackSize - 1];
+    if (peekStack == JsonScope.EMPTY_ARRAY) {
+      scopes[stackSize - 1] = JsonScope.NONEMPTY_ARRAY;
+      if (nextNonWhitespaceStrict(true) == ']') {
+        buffer.readByte(); // Consume ']'.
+        return peeked = PEEKED_END_ARRAY;
+      }
+    }
+    else if (peekStack == JsonScope.NONEMPTY_ARRAY) {
+      final int c = nextNonWhitespaceStrict(true);
+      if (c != ']' && c != ',') throw syntaxError("Unterminated array");
+      buffer.readByte(); // Consume ']' or ','.
+      if (c == ']') return peeked = PEEKED_END_ARRAY;
+    }
+    else if (peekStack == JsonScope.EMPTY_OBJECT || peekStack == JsonScope.NONEMPTY_OBJECT) {
+      scopes[stackSize - 1] = JsonScope.DANGLING_NAME;
+      if (peekStack == JsonScope.NONEMPTY_OBJECT) {
+        final int c = nextNonWhitespaceStrict(true);
+        if (c != '}' && c != ',') throw syntaxError("Unterminated object");
+        buffer.readByte(); // Consume '}' or ','.
+        if (c == '}') return peeked = PEEKED_END_OBJECT;
+      }
+      final int c = nextNonWhitespaceStrict(true);
+      tokenStart = offset();
+      if (c == '"') {
+        buffer.readByte(); // Consume '\"'.
+        return peeked = PEEKED_DOUBLE_QUOTED_NAME;
+      }
+      if (c == '}' && peekStack == JsonScope.EMPTY_OBJECT) {
+        buffer.readByte(); // Consume '}'.
+        return peeked = PEEKED_END_OBJECT;
+      }
+      throw syntaxError("Expected name");
+    }
+    else if (peekStack == JsonScope.DANGLING_NAME) {
+      scopes[stackSize - 1] = JsonScope.NONEMPTY_OBJECT;
+      if (nextNonWhitespaceStrict(true) != ':') throw syntaxError("Expected ':'");
+      buffer.readByte(); // Consume ':'.
+    }
+    else if (peekStack == JsonScope.EMPTY_DOCUMENT) {
+      scopes[stackSize - 1] = JsonScope.NONEMPTY_DOCUMENT;
+    }
+    else if (peekStack == JsonScope.NONEMPTY_DOCUMENT) {
+      if (nextNonWhitespaceStrict(false) == -1) return peeked = PEEKED_EOF;
+      throw syntaxError("Expected end of document");
+    }
+    else if (peekStack == JsonScope.CLOSED) {
+      throw new IllegalStateException("JsonReader is closed");
+    }
+
+    final int c = nextNonWhitespaceStrict(true);
+    tokenStart = offset();
+    switch (c) {
+      case '"':
+        buffer.readByte(); // Consume '\"'.
+        return peeked = PEEKED_DOUBLE_QUOTED;
+      case '[':
+        buffer.readByte(); // Consume '['.
+        return peeked = PEEKED_BEGIN_ARRAY;
+      case '{':
+        buffer.readByte(); // Consume '{'.
+        return peeked = PEEKED_BEGIN_OBJECT;
+      case 't':
+        return peekKeywordStrict("true", PEEKED_TRUE);
+      case 'f':
+        return peekKeywordStrict("false", PEEKED_FALSE);
+      case 'n':
+        return peekKeywordStrict("null", PEEKED_NULL);
+      default:
+        final int result = peekNumber();
+        if (result != PEEKED_NONE) return result;
+        throw syntaxError("Expected value");
+    }
+  }
+
+  private int peekKeywordStrict(final String keyword, final int peeking) throws IOException {
+    final int length = keyword.length();
+    if (!source.request(length)) throw syntaxError("Expected value");
+    for (int i=1; i<length; ++i) {
+      if (buffer.getByte(i) != keyword.charAt(i)) throw syntaxError("Expected value");
+    }
+    if (source.request(length + 1) && isLiteral(buffer.getByte(length))) {
+      throw syntaxError("Expected value");
+    }
+    buffer.skip(length);
+    return peeked = peeking;
+  }
+
   private int peekKeyword() throws IOException {
     // Figure out which keyword we're matching against by its first character.
     byte c = buffer.getByte(0);
@@ -480,22 +749,51 @@ class JsonReader implements Closeable {
       result = nextUnquotedValue();
     }
     else if (p == PEEKED_DOUBLE_QUOTED_NAME) {
-      result = nextQuotedValue(DOUBLE_QUOTE_OR_SLASH);
+      result = nextQuotedValue(DOUBLE_QUOTE_OR_SLASH, names);
     }
     else if (p == PEEKED_SINGLE_QUOTED_NAME) {
-      result = nextQuotedValue(SINGLE_QUOTE_OR_SLASH);
+      result = nextQuotedValue(SINGLE_QUOTE_OR_SLASH, names);
     }
     else if (p == PEEKED_BUFFERED_NAME) {
       result = peekedString;
     }
     else {
-      throw new JsonDataException("Expected a name but was " + peek() + " at path " + getPath());
+      throw dataError("Expected a name but was " + peek());
     }
     peeked = PEEKED_NONE;
-    pathNames[stackSize - 1] = result;
+    if (trackPath) pathNames[stackSize - 1] = result;
     return result;
   }
 
+  /**
+   * Consumes the next token, a {@linkplain Token#NAME property name}, and returns its index in the
+   * given list of names. Double quoted names without escape sequences are matched directly against
+   * the bytes in the buffer, without decoding them to a string first.
+   *
+   * @param options the names, utf-8 encoded, without their opening quote but with their closing
+   * quote.
+   * @param candidates the names.
+   * @return the index of the name, or -1 if it is not one of the names.
+   * @throws JsonDataException if the next token in the stream is not a property name.
+   */
+  int selectName(final Options options, final String[] candidates) throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) p = doPeek();
+    if (p == PEEKED_DOUBLE_QUOTED_NAME) {
+      final int index = source.select(options);
+      if (index != -1) {
+        peeked = PEEKED_NONE;
+        if (trackPath) pathNames[stackSize - 1] = candidates[index];
+        return index;
+      }
+    }
+    final String name = nextName();
+    for (int i=0; i<candidates.length; ++i) {
+      if (candidates[i].equals(name)) return i;
+    }
+    return -1;
+  }
+
   /**
    * Returns the {@linkplain Token#STRING string} value of the next token, consuming it. If the next
    * token is a number, this method will return its string form.
@@ -503,6 +801,17 @@ class JsonReader implements Closeable {
    * @throws JsonDataException if the next token is not a string or if this reader is closed.
    */
   String nextString() throws IOException {
+    return nextString(null);
+  }
+
+  /**
+   * Returns the {@linkplain Token#STRING string} value of the next token, consuming it. If the next
+   * token is a number, this method will return its string form. Quoted strings without escape
+   * sequences are read through the given cache.
+   *
+   * @throws JsonDataException if the next token is not a string or if this reader is closed.
+   */
+  String nextString(@Nullable final StringCache cache) throws IOException {
     int p = peeked;
     if (p == PEEKED_NONE) p = doPeek();
     final String result;
@@ -510,10 +819,10 @@ class JsonReader implements Closeable {
       result = nextUnquotedValue();
     }
     else if (p == PEEKED_DOUBLE_QUOTED) {
-      result = nextQuotedValue(DOUBLE_QUOTE_OR_SLASH);
+      result = nextQuotedValue(DOUBLE_QUOTE_OR_SLASH, cache);
     }
     else if (p == PEEKED_SINGLE_QUOTED) {
-      result = nextQuotedValue(SINGLE_QUOTE_OR_SLASH);
+      result = nextQuotedValue(SINGLE_QUOTE_OR_SLASH, cache);
     }
     else if (p == PEEKED_BUFFERED) {
       result = peekedString;
@@ -526,13 +835,64 @@ class JsonReader implements Closeable {
       result = buffer.readUtf8(peekedNumberLength);
     }
     else {
-      throw new JsonDataException("Expected a string but was " + peek() + " at path " + getPath());
+      throw dataError("Expected a string but was " + peek());
     }
     peeked = PEEKED_NONE;
-    ++pathIndices[stackSize - 1];
+    if (trackPath) ++pathIndices[stackSize - 1];
     return result;
   }
 
+  /**
+   * Returns the {@linkplain Token#STRING string} value of the next token, consuming it, like
+   * {@link #nextString()}. Quoted strings without escape sequences are not decoded, but returned as
+   * a {@link Utf8String} view of their bytes.
+   *
+   * @throws JsonDataException if the next token is not a string or if this reader is closed.
+   */
+  CharSequence nextStringView() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) p = doPeek();
+    if (p == PEEKED_DOUBLE_QUOTED) {
+      final CharSequence result = nextQuotedView(DOUBLE_QUOTE_OR_SLASH);
+      peeked = PEEKED_NONE;
+      if (trackPath) ++pathIndices[stackSize - 1];
+      return result;
+    }
+    else if (p == PEEKED_SINGLE_QUOTED) {
+      final CharSequence result = nextQuotedView(SINGLE_QUOTE_OR_SLASH);
+      peeked = PEEKED_NONE;
+      if (trackPath) ++pathIndices[stackSize - 1];
+      return result;
+    }
+    return nextString();
+  }
+
+  /**
+   * Returns whether the next token is an integer number that fits in a long, and that
+   * {@link #nextLong()} can read without going through its string form.
+   */
+  boolean hasNextLong() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) p = doPeek();
+    return p == PEEKED_LONG;
+  }
+
+  /**
+   * Returns the value of the next token, an integer number that fits in a long, consuming it.
+   *
+   * @throws JsonDataException if the next token is not such a number (see {@link #hasNextLong()}).
+   */
+  long nextLong() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) p = doPeek();
+    if (p == PEEKED_LONG) {
+      peeked = PEEKED_NONE;
+      if (trackPath) ++pathIndices[stackSize - 1];
+      return peekedLong;
+    }
+    throw dataError("Expected a long but was " + peek());
+  }
+
   /**
    * Returns the {@linkplain Token#BOOLEAN boolean} value of the next token, consuming it.
    *
@@ -543,15 +903,15 @@ class JsonReader implements Closeable {
     if (p == PEEKED_NONE) p = doPeek();
     if (p == PEEKED_TRUE) {
       peeked = PEEKED_NONE;
-      ++pathIndices[stackSize - 1];
+      if (trackPath) ++pathIndices[stackSize - 1];
       return true;
     }
     else if (p == PEEKED_FALSE) {
       peeked = PEEKED_NONE;
-      ++pathIndices[stackSize - 1];
+      if (trackPath) ++pathIndices[stackSize - 1];
       return false;
     }
-    throw new JsonDataException("Expected a boolean but was " + peek() + " at path " + getPath());
+    throw dataError("Expected a boolean but was " + peek());
   }
 
   /**
@@ -565,11 +925,11 @@ class JsonReader implements Closeable {
     if (p == PEEKED_NONE) p = doPeek();
     if (p == PEEKED_NULL) {
       peeked = PEEKED_NONE;
-      ++pathIndices[stackSize - 1];
+      if (trackPath) ++pathIndices[stackSize - 1];
       return null;
     }
     else {
-      throw new JsonDataException("Expected null but was " + peek() + " at path " + getPath());
+      throw dataError("Expected null but was " + peek());
     }
   }
 
@@ -577,14 +937,17 @@ class JsonReader implements Closeable {
    * Returns the string up to but not including {@code quote}, unescaping any character escape
    * sequences encountered along the way. The opening quote should have already been read. This
    * consumes the closing quote, but does not include it in the returned string.
+   * Strings without escape sequences are looked up in the cache (if any) before being decoded.
    *
    * @throws IOException if any unicode escape sequences are malformed.
    */
-  private String nextQuotedValue(final ByteString runTerminator) throws IOException {
+  private String nextQuotedValue(final ByteString runTerminator,
+                                 @Nullable final StringCache cache) throws IOException {
     StringBuilder builder = null;
     while (true) {
       final long index = source.indexOfElement(runTerminator);
       if (index == -1L) throw syntaxError("Unterminated string");
+      if (strict) checkControlCharacters(index);
 
       // If we've got an escape character, we're going to need a string builder.
       if (buffer.getByte(index) == '\\') {
@@ -597,7 +960,7 @@ class JsonReader implements Closeable {
 
       // If it isn't the escape character, it's the quote. Return the string.
       if (builder == null) {
-        final String result = buffer.readUtf8(index);
+        final String result = cache == null ? buffer.readUtf8(index) : cache.read(buffer, index);
         buffer.readByte(); // Consume the quote character.
         return result;
       }
@@ -609,6 +972,62 @@ class JsonReader implements Closeable {
     }
   }
 
+  /**
+   * Returns the string up to but not including {@code quote} as a view of its utf-8 bytes. Strings
+   * with escape sequences are decoded with {@link #nextQuotedValue(ByteString, StringCache)} instead.
+   */
+  private CharSequence nextQuotedView(final ByteString runTerminator) throws IOException {
+    final long index = source.indexOfElement(runTerminator);
+    if (index == -1L) throw syntaxError("Unterminated string");
+    if (buffer.getByte(index) == '\\') return nextQuotedValue(runTerminator, null);
+    if (strict) checkControlCharacters(index);
+    final ByteString bytes = buffer.readByteString(index);
+    buffer.readByte(); // Consume the quote character.
+    return new Utf8String(bytes);
+  }
+
+  /**
+   * Rejects the unescaped control characters in the next {@code byteCount} bytes of the buffer,
+   * like {@link #validateString()} does, without consuming them.
+   */
+  private void checkControlCharacters(final long byteCount) throws IOException {
+    if (byteCount == 0L) return;
+    Buffer.UnsafeCursor cursor = this.cursor;
+    if (cursor == null) this.cursor = cursor = new Buffer.UnsafeCursor();
+    if (hasControlCharacter(buffer, 0L, byteCount, cursor)) {
+      throw syntaxError("Unescaped control character");
+    }
+  }
+
+  /**
+   * Returns whether there is a control character (below 0x20) in the given range of the buffer.
+   * The bytes are scanned in place, segment by segment, with the cursor.
+   * @param buffer the buffer.
+   * @param fromIndex the index of the first byte of the range.
+   * @param toIndex the index of the byte after the range (not more than the size of the buffer).
+   * @param cursor a cursor that isn't in use.
+   * @return true if the range has a control character.
+   */
+  static boolean hasControlCharacter(final Buffer buffer, final long fromIndex, final long toIndex,
+                                     final Buffer.UnsafeCursor cursor) {
+    buffer.readUnsafe(cursor);
+    try {
+      long remaining = toIndex - fromIndex;
+      for (int n = cursor.seek(fromIndex); remaining > 0L; n = cursor.next()) {
+        final byte[] data = cursor.data;
+        final int end = cursor.start + (int)Math.min(remaining, n);
+        for (int i=cursor.start; i<end; ++i) {
+          if (data[i] >= 0 && data[i] < 0x20) return true;
+        }
+        remaining -= n;
+      }
+      return false;
+    }
+    finally {
+      cursor.close();
+    }
+  }
+
   /** Returns an unquoted value as a string. */
   private String nextUnquotedValue() throws IOException {
     final long i = source.indexOfElement(UNQUOTED_STRING_TERMINALS);
@@ -626,12 +1045,251 @@ class JsonReader implements Closeable {
   /**
    * Skips the next value recursively. If it is an object or array, all nested elements are skipped.
    * This method is intended for use when the JSON token stream contains unrecognized or unhandled
-   * values.
+   * values. Strings are not decoded, and objects and arrays are only checked for matching brackets.
    *
-   * <p>This throws a {@link JsonDataException}.
+   * @throws JsonDataException if the next token is not a value.
    */
   void skipValue() throws IOException {
-    throw new JsonDataException("Cannot skip unexpected " + peek() + " at " + getPath());
+    int p = peeked;
+    if (p == PEEKED_NONE) p = doPeek();
+    switch (p) {
+      case PEEKED_BEGIN_OBJECT:
+      case PEEKED_BEGIN_ARRAY:
+        // The opening bracket is consumed: don't peek it again if the rest of the value is invalid.
+        peeked = PEEKED_NONE;
+        scanContainer(p == PEEKED_BEGIN_OBJECT, null);
+        break;
+      case PEEKED_DOUBLE_QUOTED:
+        skipQuotedValue(DOUBLE_QUOTE_OR_SLASH, null);
+        break;
+      case PEEKED_SINGLE_QUOTED:
+        skipQuotedValue(SINGLE_QUOTE_OR_SLASH, null);
+        break;
+      case PEEKED_UNQUOTED: {
+        final long i = source.indexOfElement(UNQUOTED_STRING_TERMINALS);
+        buffer.skip(i != -1 ? i : buffer.size());
+        break;
+      }
+      case PEEKED_NUMBER:
+        buffer.skip(peekedNumberLength);
+        break;
+      case PEEKED_BUFFERED:
+        peekedString = null;
+        break;
+      case PEEKED_TRUE:
+      case PEEKED_FALSE:
+      case PEEKED_NULL:
+      case PEEKED_LONG:
+        break;
+      default:
+        throw dataError("Cannot skip unexpected " + peek());
+    }
+    peeked = PEEKED_NONE;
+    if (trackPath) ++pathIndices[stackSize - 1];
+  }
+
+  /**
+   * Reads the rest of the document, only to check that it is well-formed: strings are not decoded,
+   * numbers are not converted and nothing is kept. The reader should be in strict mode.
+   *
+   * @throws IOException if the document is not valid json.
+   */
+  void validate() throws IOException {
+    while (true) {
+      int p = peeked;
+      if (p == PEEKED_NONE) p = doPeek();
+      peeked = PEEKED_NONE;
+      switch (p) {
+        case PEEKED_BEGIN_OBJECT:
+          pushScope(JsonScope.EMPTY_OBJECT);
+          break;
+        case PEEKED_BEGIN_ARRAY:
+          pushScope(JsonScope.EMPTY_ARRAY);
+          break;
+        case PEEKED_END_OBJECT:
+        case PEEKED_END_ARRAY:
+          --stackSize;
+          break;
+        case PEEKED_DOUBLE_QUOTED_NAME:
+        case PEEKED_DOUBLE_QUOTED:
+          validateString();
+          break;
+        case PEEKED_NUMBER:
+          buffer.skip(peekedNumberLength);
+          break;
+        case PEEKED_EOF:
+          return;
+        default:
+          // Keywords and longs have already been consumed.
+      }
+    }
+  }
+
+  /**
+   * Consumes the rest of a double-quoted string, checking its escape sequences and rejecting
+   * unescaped control characters. The bytes between escapes are scanned in bulk.
+   */
+  private void validateString() throws IOException {
+    byte[] scratch = this.scratch;
+    if (scratch == null) this.scratch = scratch = new byte[SCRATCH_SIZE];
+    while (true) {
+      final long index = source.indexOfElement(DOUBLE_QUOTE_OR_SLASH);
+      if (index == -1L) throw syntaxError("Unterminated string");
+      long remaining = index;
+      while (remaining > 0L) {
+        final int n = buffer.read(scratch, 0, (int)Math.min(remaining, SCRATCH_SIZE));
+        for (int i=0; i<n; ++i) {
+          if (scratch[i] >= 0 && scratch[i] < 0x20) throw syntaxError("Unescaped control character");
+        }
+        remaining -= n;
+      }
+      if (buffer.readByte() == '"') return;
+      if (!source.request(1)) throw syntaxError("Unterminated escape sequence");
+      switch (buffer.readByte()) {
+        case '"': case '\\': case '/': case 'b': case 'f': case 'n': case 'r': case 't':
+          break;
+        case 'u':
+          if (!source.request(4)) throw syntaxError("Unterminated escape sequence");
+          for (int i=0; i<4; ++i) {
+            final byte c = buffer.getByte(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+              throw syntaxError("Invalid escape sequence");
+            }
+          }
+          buffer.skip(4);
+          break;
+        default:
+          throw syntaxError("Invalid escape sequence");
+      }
+    }
+  }
+
+  /**
+   * Returns the next value, which must be an {@linkplain Token#BEGIN_OBJECT object} or an
+   * {@linkplain Token#BEGIN_ARRAY array}, as the raw bytes of the source, consuming it. The bytes are
+   * not decoded, and only checked for matching brackets.
+   *
+   * @throws JsonDataException if the next token is not the beginning of an object or an array.
+   */
+  ByteString nextRawValue() throws IOException {
+    int p = peeked;
+    if (p == PEEKED_NONE) p = doPeek();
+    final Buffer raw = new Buffer();
+    if (p == PEEKED_BEGIN_OBJECT) {
+      raw.writeByte('{');
+    }
+    else if (p == PEEKED_BEGIN_ARRAY) {
+      raw.writeByte('[');
+    }
+    else {
+      throw dataError("Expected BEGIN_OBJECT or BEGIN_ARRAY but was " + peek());
+    }
+    // The opening bracket is consumed: don't peek it again if the rest of the value is invalid.
+    peeked = PEEKED_NONE;
+    scanContainer(p == PEEKED_BEGIN_OBJECT, raw);
+    if (trackPath) ++pathIndices[stackSize - 1];
+    return raw.readByteString();
+  }
+
+  /**
+   * Consumes the content of an object or array whose opening bracket has already been read, up to
+   * and including its closing bracket. Brackets inside strings and comments are ignored.
+   * The bytes are moved to {@code raw}, or discarded if it is null.
+   */
+  private void scanContainer(final boolean object, @Nullable final Buffer raw) throws IOException {
+    // Bit stack of the open brackets (1 for '{' and 0 for '[').
+    long[] brackets = new long[1];
+    brackets[0] = object ? 1L : 0L;
+    int depth = 1;
+    while (true) {
+      final long index = source.indexOfElement(STRUCTURE);
+      if (index == -1L) throw syntaxError("Unterminated " + (depth == 1 ? "value" : "values"));
+      final byte c = buffer.getByte(index);
+      consume(raw, index + 1);
+      switch (c) {
+        case '{':
+        case '[': {
+          final int word = depth >>> 6;
+          if (word == brackets.length) {
+            final long[] copy = new long[word * 2];
+            System.arraycopy(brackets, 0, copy, 0, word);
+            brackets = copy;
+          }
+          if (c == '{') {
+            brackets[word] |= 1L << depth;
+          }
+          else {
+            brackets[word] &= ~(1L << depth);
+          }
+          ++depth;
+          break;
+        }
+        case '}':
+        case ']': {
+          --depth;
+          final boolean open = (brackets[depth >>> 6] & (1L << depth)) != 0L;
+          if (open != (c == '}')) throw syntaxError("Mismatched '" + (char)c + "'");
+          if (depth == 0) return;
+          break;
+        }
+        case '"':
+          skipQuotedValue(DOUBLE_QUOTE_OR_SLASH, raw);
+          break;
+        case '\'':
+          skipQuotedValue(SINGLE_QUOTE_OR_SLASH, raw);
+          break;
+        case '#':
+          consumeToEndOfLine(raw);
+          break;
+        case '/': {
+          if (!source.request(1)) break;
+          final byte next = buffer.getByte(0);
+          if (next == '/') {
+            consumeToEndOfLine(raw);
+          }
+          else if (next == '*') {
+            final long end = source.indexOf(END_OF_COMMENT, 1);
+            if (end == -1L) throw syntaxError("Unterminated comment");
+            consume(raw, end + 2);
+          }
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Consumes a string whose opening quote has already been read, up to and including its closing
+   * quote, without decoding it. The bytes are moved to {@code raw}, or discarded if it is null.
+   */
+  private void skipQuotedValue(final ByteString runTerminator,
+                               @Nullable final Buffer raw) throws IOException {
+    while (true) {
+      final long index = source.indexOfElement(runTerminator);
+      if (index == -1L) throw syntaxError("Unterminated string");
+      if (buffer.getByte(index) == '\\') {
+        if (!source.request(index + 2)) throw syntaxError("Unterminated escape sequence");
+        consume(raw, index + 2);
+      }
+      else {
+        consume(raw, index + 1);
+        return;
+      }
+    }
+  }
+
+  private void consumeToEndOfLine(@Nullable final Buffer raw) throws IOException {
+    final long index = source.indexOfElement(LINEFEED_OR_CARRIAGE_RETURN);
+    consume(raw, index != -1 ? index + 1 : buffer.size());
+  }
+
+  private void consume(@Nullable final Buffer raw, final long byteCount) throws IOException {
+    if (raw == null) {
+      buffer.skip(byteCount);
+    }
+    else {
+      raw.write(buffer, byteCount);
+    }
   }
 
   /**
@@ -652,7 +1310,11 @@ class JsonReader implements Closeable {
     int p = 0;
     while (source.request(p + 1)) {
       int c = buffer.getByte(p++);
-      if (c == '\n' || c == ' ' || c == '\r' || c == '\t') continue;
+      if (c == ' ' || c == '\r' || c == '\t') continue;
+      if (c == '\n') {
+        if (trackLines) newLine(p);
+        continue;
+      }
 
       buffer.skip(p - 1);
       if (c == '/') {
@@ -690,7 +1352,28 @@ class JsonReader implements Closeable {
         return c;
       }
     }
-    if (throwOnEof) throw new EOFException("End of input");
+    if (throwOnEof) throw syntaxError("End of input");
+    return -1;
+  }
+
+  /**
+   * The strict counterpart of {@link #nextNonWhitespace(boolean)}, which only skips the four json
+   * whitespace characters.
+   */
+  private int nextNonWhitespaceStrict(final boolean throwOnEof) throws IOException {
+    int p = 0;
+    while (source.request(p + 1)) {
+      final int c = buffer.getByte(p++);
+      if (c == ' ' || c == '\r' || c == '\t') continue;
+      if (c == '\n') {
+        if (trackLines) newLine(p);
+        continue;
+      }
+      buffer.skip(p - 1);
+      return c;
+    }
+    buffer.skip(p);
+    if (throwOnEof) throw syntaxError("End of input");
     return -1;
   }
 
@@ -701,6 +1384,7 @@ class JsonReader implements Closeable {
    */
   private void skipToEndOfLine() throws IOException {
     final long index = source.indexOfElement(LINEFEED_OR_CARRIAGE_RETURN);
+    if (trackLines && index != -1 && buffer.getByte(index) == '\n') newLine(index + 1);
     buffer.skip(index != -1 ? index + 1 : buffer.size());
   }
 
@@ -740,7 +1424,7 @@ class JsonReader implements Closeable {
     switch (escaped) {
       case 'u':
         if (!source.request(4)) {
-          throw new EOFException("Unterminated escape sequence at path " + getPath());
+          throw syntaxError("Unterminated escape sequence");
         }
         // Equivalent to Integer.parseInt(stringPool.get(buffer, pos, 4), 16);
         char result = 0;
@@ -774,11 +1458,14 @@ class JsonReader implements Closeable {
         return '\f';
       case '\n':
       case '\'':
+        if (strict) throw syntaxError("Invalid escape sequence: \\" + (char)escaped);
+        return (char)escaped;
       case '"':
       case '\\':
       case '/':
         return (char)escaped;
       default:
+        if (strict) throw syntaxError("Invalid escape sequence: \\" + (char)escaped);
         return (char)escaped;
     }
   }
@@ -804,7 +1491,26 @@ class JsonReader implements Closeable {
    * with this reader's content.
    */
   private JsonEncodingException syntaxError(final String message) throws JsonEncodingException {
-    throw new JsonEncodingException(message + " at path " + getPath());
+    throw new JsonEncodingException(message + " at " + location(), offset(), line(), column());
+  }
+
+  private JsonDataException dataError(final String message) {
+    return new JsonDataException(message + " at " + location(), offset(), line(), column());
+  }
+
+  /**
+   * Describes the current location for error messages: the path if it is tracked, or else an
+   * approximation built from the byte offset, the depth and the upcoming bytes.
+   */
+  private String location() {
+    if (trackPath) return "path " + getPath();
+    final StringBuilder sb = new StringBuilder();
+    final long size = buffer.size();
+    final long offset = offset();
+    if (offset != -1L) sb.append("byte ").append(offset).append(", ");
+    sb.append("depth ").append(Math.max(0, stackSize - 1));
+    if (size > 0L) sb.append(", near '").append(buffer.snapshot((int)Math.min(size, 16L)).utf8()).append('\'');
+    return sb.toString();
   }
 
   /**
@@ -815,6 +1521,25 @@ class JsonReader implements Closeable {
     return JsonScope.getPath(stackSize, scopes, pathNames, pathIndices);
   }
 
+  /**
+   * A source that counts the bytes read from the underlying source.
+   */
+  static final class CountingSource extends ForwardingSource {
+
+    long count = 0L;
+
+    CountingSource(final Source delegate) {
+      super(delegate);
+    }
+
+    @Override public long read(final Buffer sink, final long byteCount) throws IOException {
+      final long n = super.read(sink, byteCount);
+      if (n > 0L) count += n;
+      return n;
+    }
+
+  }
+
   /**
    * A structure, name, or value type in a JSON-encoded string.
    */
@@ -5,7 +5,9 @@ package info.jdavid.ok.json;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
+import javax.annotation.Nullable;
 import okio.BufferedSink;
+import okio.ByteString;
 import okio.Sink;
 
 import static info.jdavid.ok.json.JsonScope.DANGLING_NAME;
@@ -24,6 +26,8 @@ class JsonWriter implements Closeable, Flushable {
   private int[] scopes = new int[32];
   private String[] pathNames = new String[32];
   private int[] pathIndices = new int[32];
+  /** Whether pathNames and pathIndices are maintained (see {@link #trackPath(boolean)}). */
+  private boolean trackPath = true;
 
   /**
    * A string containing a full set of spaces for a single level of indentation, or null for no
@@ -64,11 +68,22 @@ class JsonWriter implements Closeable, Flushable {
 
   private String deferredName;
 
+  /** The view of this writer given to the generated adapters, created on first use. */
+  private @Nullable JsonOutput output = null;
+
   JsonWriter(final BufferedSink sink) {
     this.sink = sink;
     pushScope(EMPTY_DOCUMENT);
   }
 
+  /**
+   * Returns the view of this writer used by the generated adapters (see {@link JsonAdapter}).
+   */
+  JsonOutput output() {
+    final JsonOutput output = this.output;
+    return output == null ? (this.output = new JsonOutput(this)) : output;
+  }
+
   /**
    * Sets the indentation string to be repeated for each level of indentation
    * in the encoded document. If {@code indent.isEmpty()} the encoded document
@@ -82,6 +97,16 @@ class JsonWriter implements Closeable, Flushable {
     this.separator = !indent.isEmpty() ? ": " : ":";
   }
 
+  /**
+   * Enables or disables the tracking of the current path, which is only used in the message of the
+   * error thrown when the nesting is too deep. It should be set before writing.
+   *
+   * @param trackPath true to track the path (the default), false to only report the depth.
+   */
+  void trackPath(final boolean trackPath) {
+    this.trackPath = trackPath;
+  }
+
   /**
    * Begins encoding a new array. Each call to this method must be paired with
    * a call to {@link #endArray}.
@@ -129,7 +154,7 @@ class JsonWriter implements Closeable, Flushable {
   private JsonWriter open(final int empty, final String openBracket) throws IOException {
     beforeValue();
     pushScope(empty);
-    pathIndices[stackSize - 1] = 0;
+    if (trackPath) pathIndices[stackSize - 1] = 0;
     sink.writeUtf8(openBracket);
     return this;
   }
@@ -145,8 +170,10 @@ class JsonWriter implements Closeable, Flushable {
     if (deferredName != null) throw new IllegalStateException("Dangling name: " + deferredName);
 
     --stackSize;
-    pathNames[stackSize] = null; // Free the last path name so that it can be garbage collected!
-    ++pathIndices[stackSize - 1];
+    if (trackPath) {
+      pathNames[stackSize] = null; // Free the last path name so that it can be garbage collected!
+      ++pathIndices[stackSize - 1];
+    }
     if (context == nonempty) newline();
     sink.writeUtf8(closeBracket);
     return this;
@@ -162,7 +189,22 @@ class JsonWriter implements Closeable, Flushable {
     if (stackSize == 0) throw new IllegalStateException("JsonWriter is closed.");
     if (deferredName != null) throw new IllegalStateException("Nesting problem.");
     deferredName = name;
-    pathNames[stackSize - 1] = name;
+    if (trackPath) pathNames[stackSize - 1] = name;
+    return this;
+  }
+
+  /**
+   * Writes a property name that was already encoded with {@link #string(BufferedSink, String)}.
+   *
+   * @param name the encoded name, with its quotes.
+   * @return this writer.
+   */
+  JsonWriter name(final ByteString name) throws IOException {
+    if (stackSize == 0) throw new IllegalStateException("JsonWriter is closed.");
+    if (deferredName != null) throw new IllegalStateException("Nesting problem.");
+    beforeName();
+    sink.write(name);
+    if (trackPath) pathNames[stackSize - 1] = name.substring(1, name.size() - 1).utf8();
     return this;
   }
 
@@ -184,7 +226,44 @@ class JsonWriter implements Closeable, Flushable {
     writeDeferredName();
     beforeValue();
     string(sink, value);
-    ++pathIndices[stackSize - 1];
+    if (trackPath) ++pathIndices[stackSize - 1];
+    return this;
+  }
+
+  /**
+   * Encodes {@code value}. The utf-8 bytes are copied as they are, unless some characters need to be
+   * escaped.
+   *
+   * @param value the string view.
+   * @return this writer.
+   */
+  JsonWriter value(final Utf8String value) throws IOException {
+    writeDeferredName();
+    beforeValue();
+    final ByteString bytes = value.utf8();
+    if (needsEscaping(bytes)) {
+      string(sink, value.toString());
+    }
+    else {
+      sink.writeByte('"');
+      sink.write(bytes);
+      sink.writeByte('"');
+    }
+    if (trackPath) ++pathIndices[stackSize - 1];
+    return this;
+  }
+
+  /**
+   * Writes the raw bytes of an already encoded json value, as they are.
+   *
+   * @param value the encoded json value.
+   * @return this writer.
+   */
+  JsonWriter rawValue(final ByteString value) throws IOException {
+    writeDeferredName();
+    beforeValue();
+    sink.write(value);
+    if (trackPath) ++pathIndices[stackSize - 1];
     return this;
   }
 
@@ -199,7 +278,7 @@ class JsonWriter implements Closeable, Flushable {
     }
     beforeValue();
     sink.writeUtf8("null");
-    ++pathIndices[stackSize - 1];
+    if (trackPath) ++pathIndices[stackSize - 1];
     return this;
   }
 
@@ -208,11 +287,11 @@ class JsonWriter implements Closeable, Flushable {
    *
    * @return this writer.
    */
-  private JsonWriter value(final boolean value) throws IOException {
+  JsonWriter value(final boolean value) throws IOException {
     writeDeferredName();
     beforeValue();
     sink.writeUtf8(value ? "true" : "false");
-    ++pathIndices[stackSize - 1];
+    if (trackPath) ++pathIndices[stackSize - 1];
     return this;
   }
 
@@ -237,7 +316,57 @@ class JsonWriter implements Closeable, Flushable {
     writeDeferredName();
     beforeValue();
     sink.writeUtf8(string);
-    ++pathIndices[stackSize - 1];
+    if (trackPath) ++pathIndices[stackSize - 1];
+    return this;
+  }
+
+  /**
+   * Encodes {@code value}, without boxing it or converting it to a String.
+   *
+   * @return this writer.
+   */
+  JsonWriter value(final long value) throws IOException {
+    writeDeferredName();
+    beforeValue();
+    sink.writeDecimalLong(value);
+    if (trackPath) ++pathIndices[stackSize - 1];
+    return this;
+  }
+
+  /**
+   * Encodes {@code value}, with the shortest representation of the float (rather than of the
+   * double it converts to).
+   *
+   * @param value a finite value. May not be {@linkplain Float#isNaN() NaNs} or
+   *     {@linkplain Float#isInfinite() infinities}.
+   * @return this writer.
+   */
+  JsonWriter value(final float value) throws IOException {
+    if (Float.isNaN(value) || Float.isInfinite(value)) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    writeDeferredName();
+    beforeValue();
+    sink.writeUtf8(Float.toString(value));
+    if (trackPath) ++pathIndices[stackSize - 1];
+    return this;
+  }
+
+  /**
+   * Encodes {@code value}.
+   *
+   * @param value a finite value. May not be {@linkplain Double#isNaN() NaNs} or
+   *     {@linkplain Double#isInfinite() infinities}.
+   * @return this writer.
+   */
+  JsonWriter value(final double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    writeDeferredName();
+    beforeValue();
+    sink.writeUtf8(Double.toString(value));
+    if (trackPath) ++pathIndices[stackSize - 1];
     return this;
   }
 
@@ -303,6 +432,27 @@ class JsonWriter implements Closeable, Flushable {
     sink.writeByte('"');
   }
 
+  /**
+   * Returns whether the utf-8 bytes contain a character that {@link #string(BufferedSink, String)}
+   * would escape.
+   */
+  static boolean needsEscaping(final ByteString bytes) {
+    final String[] replacements = REPLACEMENT_CHARS;
+    final int size = bytes.size();
+    for (int i=0; i<size; ++i) {
+      final byte b = bytes.getByte(i);
+      if (b >= 0) {
+        if (replacements[b] != null) return true;
+      }
+      else if (b == (byte)0xe2 && i + 2 < size && bytes.getByte(i + 1) == (byte)0x80) {
+        // u2028 and u2029 are encoded as e2 80 a8 and e2 80 a9.
+        final byte last = bytes.getByte(i + 2);
+        if (last == (byte)0xa8 || last == (byte)0xa9) return true;
+      }
+    }
+    return false;
+  }
+
   private void newline() throws IOException {
     if (indent == null) return;
     sink.writeByte('\n');
@@ -366,7 +516,9 @@ class JsonWriter implements Closeable, Flushable {
   private void pushScope(final int newTop) {
     if (stackSize == scopes.length) {
       if (stackSize == 1024) {
-        throw new JsonDataException("Nesting too deep at " + getPath());
+        throw new JsonDataException(
+          "Nesting too deep at " + (trackPath ? getPath() : "depth " + (stackSize - 1))
+        );
       }
       final int n = scopes.length;
       final int[] scopes = new int[n * 2];
@@ -0,0 +1,63 @@
+package info.jdavid.ok.json;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * A list representation of a json array whose object and array elements are kept as raw bytes until
+ * they are accessed for the first time.
+ * <p>
+ * Like {@link ArrayList}, it is not thread-safe: accessing an element can modify the list.
+ */
+final class LazyList extends AbstractList<Object> implements RandomAccess {
+
+  private final List<Object> list = new ArrayList<Object>();
+
+  /**
+   * Returns the backing list, where the elements that haven't been accessed yet are
+   * {@link RawValue}s.
+   * @return the backing list.
+   */
+  List<Object> raw() {
+    return list;
+  }
+
+  @Override public int size() {
+    return list.size();
+  }
+
+  @Override public @Nullable Object get(final int index) {
+    final Object value = list.get(index);
+    if (value instanceof RawValue) {
+      final Object parsed = ((RawValue)value).parse();
+      list.set(index, parsed);
+      return parsed;
+    }
+    return value;
+  }
+
+  @Override public @Nullable Object set(final int index, @Nullable final Object element) {
+    return RawValue.resolve(list.set(index, element));
+  }
+
+  @Override public void add(final int index, @Nullable final Object element) {
+    ++modCount;
+    list.add(index, element);
+  }
+
+  @Override public @Nullable Object remove(final int index) {
+    ++modCount;
+    return RawValue.resolve(list.remove(index));
+  }
+
+  @Override public void clear() {
+    ++modCount;
+    list.clear();
+  }
+
+}
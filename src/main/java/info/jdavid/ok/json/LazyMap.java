@@ -0,0 +1,142 @@
+package info.jdavid.ok.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * A map representation of a json object whose object and array members are kept as raw bytes until
+ * they are accessed for the first time.
+ * <p>
+ * Like {@link HashMap}, it is not thread-safe: accessing a member can modify the map.
+ */
+final class LazyMap extends AbstractMap<String, Object> {
+
+  private final Map<String, Object> map = new HashMap<String, Object>();
+  private @Nullable Set<Map.Entry<String, Object>> entrySet = null;
+
+  /**
+   * Returns the backing map, where the members that haven't been accessed yet are {@link RawValue}s.
+   * @return the backing map.
+   */
+  Map<String, Object> raw() {
+    return map;
+  }
+
+  @Override public int size() {
+    return map.size();
+  }
+
+  @Override public boolean containsKey(final Object key) {
+    return map.containsKey(key);
+  }
+
+  @Override public @Nullable Object get(final Object key) {
+    final Object value = map.get(key);
+    if (value instanceof RawValue) {
+      final Object parsed = ((RawValue)value).parse();
+      //noinspection SuspiciousMethodCalls
+      map.put((String)key, parsed);
+      return parsed;
+    }
+    return value;
+  }
+
+  @Override public @Nullable Object put(final String key, @Nullable final Object value) {
+    return RawValue.resolve(map.put(key, value));
+  }
+
+  @Override public @Nullable Object remove(final Object key) {
+    return RawValue.resolve(map.remove(key));
+  }
+
+  @Override public void clear() {
+    map.clear();
+  }
+
+  @Override public Set<Map.Entry<String, Object>> entrySet() {
+    Set<Map.Entry<String, Object>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+      this.entrySet = entrySet;
+    }
+    return entrySet;
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+    @Override public int size() {
+      return map.size();
+    }
+
+    @Override public void clear() {
+      map.clear();
+    }
+
+    @Override public Iterator<Map.Entry<String, Object>> iterator() {
+      final Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+      return new Iterator<Map.Entry<String, Object>>() {
+        @Override public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override public Map.Entry<String, Object> next() {
+          return new Entry(iterator.next());
+        }
+
+        @Override public void remove() {
+          iterator.remove();
+        }
+      };
+    }
+  }
+
+  private static final class Entry implements Map.Entry<String, Object> {
+    private final Map.Entry<String, Object> entry;
+
+    Entry(final Map.Entry<String, Object> entry) {
+      this.entry = entry;
+    }
+
+    @Override public String getKey() {
+      return entry.getKey();
+    }
+
+    @Override public @Nullable Object getValue() {
+      final Object value = entry.getValue();
+      if (value instanceof RawValue) {
+        final Object parsed = ((RawValue)value).parse();
+        entry.setValue(parsed);
+        return parsed;
+      }
+      return value;
+    }
+
+    @Override public @Nullable Object setValue(@Nullable final Object value) {
+      return RawValue.resolve(entry.setValue(value));
+    }
+
+    @Override public boolean equals(final Object o) {
+      if (!(o instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      final Object value = getValue();
+      return getKey().equals(e.getKey()) &&
+             (value == null ? e.getValue() == null : value.equals(e.getValue()));
+    }
+
+    @Override public int hashCode() {
+      final Object value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+}
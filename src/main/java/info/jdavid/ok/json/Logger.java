@@ -1,13 +1,24 @@
 package info.jdavid.ok.json;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import android.util.Log;
 
 
 enum Logger {
   INSTANCE;
 
+  /** The maximum number of errors logged per window, the others are only counted. */
+  static final int MAX_PER_WINDOW = 10;
+  static final long WINDOW_MILLIS = 60000L;
+
   final LogHandler logger;
 
+  private final AtomicLong window = new AtomicLong(0L);
+  private final AtomicInteger count = new AtomicInteger(0);
+  private final AtomicInteger suppressed = new AtomicInteger(0);
+
   Logger() {
     boolean android;
     try {
@@ -22,20 +33,36 @@ enum Logger {
         @Override public void log(final Exception e) {
           Log.e("JSON Parser", e.getMessage(), e);
         }
+        @Override public void log(final String message) {
+          Log.w("JSON Parser", message);
+        }
       };
     }
     else {
       logger = new LogHandler() {
         @Override public void log(final Exception e) { e.printStackTrace(); }
+        @Override public void log(final String message) { System.err.println(message); }
       };
     }
   }
 
   private interface LogHandler {
     void log(final Exception e);
+    void log(final String message);
   }
 
   public void exception(final Exception e) {
+    final long now = System.currentTimeMillis();
+    final long start = window.get();
+    if (now - start >= WINDOW_MILLIS && window.compareAndSet(start, now)) {
+      count.set(0);
+      final int n = suppressed.getAndSet(0);
+      if (n > 0) logger.log(n + " more json errors were not logged.");
+    }
+    if (count.incrementAndGet() > MAX_PER_WINDOW) {
+      suppressed.incrementAndGet();
+      return;
+    }
     logger.log(e);
   }
 
@@ -1,11 +1,14 @@
 package info.jdavid.ok.json;
 
+import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 
@@ -25,10 +28,120 @@ public final class Parser {
    * or even null if the string is not valid json.
    */
   public static @Nullable <T> T parse(@Nullable final String s) {
+    return parse(s, DEFAULT_OPTIONS);
+  }
+
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #parse(BufferedSource, Options)}.
+   * @param s the json string to parse.
+   * @param options the parsing options.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return either a map representing a json object, or a list representing a json array,
+   * or even null if the string is not valid json.
+   */
+  public static @Nullable <T> T parse(@Nullable final String s, final Options options) {
+    if (s == null) return null;
+    final Context context = Context.local();
+    if (context.busy) return new Context().parse(s, options);
+    return context.parse(s, options);
+  }
+
+  /**
+   * Converts a json string to its object representation. The representation is using
+   * {@link java.util.Map}s for json objects and {@link java.util.List}s for json arrays.
+   * @param source the json string as an okio source.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return the object representation of the json string, or null if the source is not valid json.
+   */
+  public static @Nullable <T> T parse(@Nullable final BufferedSource source) {
+    return parse(source, DEFAULT_OPTIONS);
+  }
+
+  /**
+   * Converts a json string to its object representation. The representation is using
+   * {@link java.util.Map}s for json objects and {@link java.util.List}s for json arrays.
+   * @param source the json string as an okio source.
+   * @param options the parsing options.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return the object representation of the json string, or null if the source is not valid json.
+   */
+  public static @Nullable <T> T parse(@Nullable final BufferedSource source, final Options options) {
+    if (source == null) return null;
+    final Context context = Context.local();
+    if (context.busy) return new Context().parse(source, options);
+    return context.parse(source, options);
+  }
+
+  private static @Nullable <T> T parse(final JsonReader reader, final Options options) {
+    reader.trackPath(options.trackPath);
+    reader.setStrict(options.strict);
+    reader.trackLines(options.trackLines);
+    try {
+      return parseValue(reader, options);
+    }
+    catch (final Abort ignore) {
+      return null;
+    }
+    finally {
+      try {
+        reader.close();
+      }
+      catch (final IOException ignore) {}
+    }
+  }
+
+  private static @Nullable <T> T parseValue(final JsonReader reader, final Options options) {
+    final JsonReader.Token token = nextToken(reader, options);
+    if (token == null) return null;
+    switch (token) {
+      case BEGIN_OBJECT: {
+        try {
+          reader.beginObject();
+        }
+        catch (final IOException e) {
+          report(options, e);
+          break;
+        }
+        catch (final JsonDataException e) {
+          report(options, e);
+          break;
+        }
+        //noinspection unchecked
+        return (T)walk(reader, options, newObject(options));
+      }
+      case BEGIN_ARRAY: {
+        try {
+          reader.beginArray();
+        }
+        catch (final IOException e) {
+          report(options, e);
+          break;
+        }
+        catch (final JsonDataException e) {
+          report(options, e);
+          break;
+        }
+        //noinspection unchecked
+        return (T)walkArray(reader, options, newArray(options), ValueDeduplicator.ROOT);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #parseLazy(BufferedSource)}.
+   * @param s the json string to parse.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return either a map representing a json object, or a list representing a json array,
+   * or even null if the string is not valid json.
+   */
+  public static @Nullable <T> T parseLazy(@Nullable final String s) {
     if (s == null) return null;
     final Buffer buffer = new Buffer();
     try {
-      return parse(buffer.writeUtf8(s));
+      return parseLazy(buffer.writeUtf8(s));
     }
     finally {
       buffer.close();
@@ -36,13 +149,21 @@ public final class Parser {
   }
 
   /**
-   * Converts a json string to its object representation. The representation is using
-   * {@link java.util.Map}s for json objects and {@link java.util.List}s for json arrays.
+   * Converts a json string to a shallow object representation. Only the top-level object or array
+   * is parsed: its members or elements that are objects or arrays are skipped and kept as raw bytes.
+   * They are parsed (in the same shallow way) the first time they are accessed, with {@code get} or
+   * while iterating. {@link Builder} writes the ones that were never accessed back out verbatim if
+   * they are standard json, and decodes and writes them again otherwise (lenient syntax is not
+   * copied to the output).
+   * <p>
+   * Nested values are only checked for matching brackets until they are accessed, and if they turn
+   * out to be invalid, they are replaced by null at that point.
+   * The maps and lists are not thread-safe, since accessing a value modifies them.
    * @param source the json string as an okio source.
    * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
    * @return the object representation of the json string, or null if the source is not valid json.
    */
-  public static @Nullable <T> T parse(@Nullable final BufferedSource source) {
+  public static @Nullable <T> T parseLazy(@Nullable final BufferedSource source) {
     if (source == null) return null;
     final JsonReader reader = new JsonReader(source);
     try {
@@ -62,7 +183,7 @@ public final class Parser {
             break;
           }
           //noinspection unchecked
-          return (T)walk(reader, new HashMap());
+          return (T)walkLazy(reader, new LazyMap());
         }
         case BEGIN_ARRAY: {
           try {
@@ -77,7 +198,7 @@ public final class Parser {
             break;
           }
           //noinspection unchecked
-          return (T)walkArray(reader, new ArrayList());
+          return (T)walkLazy(reader, new LazyList());
         }
       }
       return null;
@@ -90,8 +211,711 @@ public final class Parser {
     }
   }
 
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #parseTape(BufferedSource)}.
+   * @param s the json string to parse.
+   * @return the document, or null if the string is not a valid json object or array.
+   */
+  public static @Nullable TapeDocument parseTape(@Nullable final String s) {
+    return TapeDocument.parse(s);
+  }
+
+  /**
+   * Converts a json string to a compact read-only document, where the values are stored in a flat
+   * array rather than in maps and lists. Unlike {@link #parse(BufferedSource)}, invalid values are not
+   * replaced by null: the whole document is rejected.
+   * @param source the json string as an okio source.
+   * @return the document, or null if the source is not a valid json object or array.
+   */
+  public static @Nullable TapeDocument parseTape(@Nullable final BufferedSource source) {
+    return TapeDocument.parse(source);
+  }
+
+  /**
+   * Converts a json string to a read-only document stored outside of the java heap, in direct byte
+   * buffers. The whole document is rejected if it is not valid.
+   * @param source the json string as an okio source.
+   * @return the document, or null if the source is not a valid json object or array.
+   */
+  public static @Nullable DirectDocument parseDirect(@Nullable final BufferedSource source) {
+    return DirectDocument.parse(source);
+  }
+
+  /**
+   * Converts a json string to a read-only document stored in a memory-mapped file. The file is
+   * overwritten, and can be mapped again later with {@link DirectDocument#open(File)}.
+   * The whole document is rejected if it is not valid.
+   * @param source the json string as an okio source.
+   * @param file the file.
+   * @return the document, or null if the source is not a valid json object or array, or if the file
+   * could not be written.
+   */
+  public static @Nullable DirectDocument parseDirect(@Nullable final BufferedSource source,
+                                                     final File file) {
+    return DirectDocument.parse(source, file);
+  }
+
+  /**
+   * Converts many json strings to their object representations, like
+   * {@link #parseAll(Collection, Options, Executor, int)}.
+   * @param sources the json strings as okio sources.
+   * @param executor the executor that runs the workers, or null to parse on the calling thread only.
+   * @param parallelism the maximum number of documents parsed at the same time.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return the object representations, in the order of the sources.
+   */
+  public static <T> List<T> parseAll(final Collection<? extends BufferedSource> sources,
+                                     @Nullable final Executor executor, final int parallelism) {
+    return parseAll(sources, DEFAULT_OPTIONS, executor, parallelism);
+  }
+
+  /**
+   * Converts many json strings to their object representations, parsing up to {@code parallelism}
+   * documents at the same time. Each worker takes the next document that hasn't been parsed yet,
+   * and keeps its own {@link Context} (reader, stacks and buffer) for all the documents it parses.
+   * The calling thread is one of the workers, and the others run on the executor.
+   * <p>
+   * The workers don't use thread locals and don't block while holding a lock, so the executor can
+   * use virtual threads (JDK 21+). The parallelism then still bounds the number of documents
+   * being parsed at the same time, and the number of contexts.
+   * <p>
+   * The errors are passed to the error handler on the calling thread once all the documents are
+   * parsed, in the order of the documents, so the handler (an {@link ErrorCollector} for instance)
+   * doesn't have to be thread-safe. The other handlers of the options are used by the workers
+   * concurrently: the {@link ValueDeduplicator}, the {@link SubtreeCache} and the shapes can be
+   * shared, but a {@link ContainerFactory} has to be thread-safe.
+   * @param sources the json strings as okio sources.
+   * @param options the parsing options.
+   * @param executor the executor that runs the workers, or null to parse on the calling thread only.
+   * @param parallelism the maximum number of documents parsed at the same time.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return the object representations, in the order of the sources (null for invalid documents).
+   */
+  public static <T> List<T> parseAll(final Collection<? extends BufferedSource> sources,
+                                     final Options options, @Nullable final Executor executor,
+                                     final int parallelism) {
+    if (parallelism < 1) throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+    final BufferedSource[] array = sources.toArray(new BufferedSource[sources.size()]);
+    final int workers = executor == null ? 1 : Math.max(1, Math.min(parallelism, array.length));
+    //noinspection unchecked
+    return (List<T>)new BatchParse(array, options, workers).run(executor);
+  }
+
+  /**
+   * Converts a json string to its object representation, like
+   * {@link #parsePipelined(BufferedSource, Options, Executor)}.
+   * @param source the json string as an okio source.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return the object representation of the json string, or null if the source is not valid json.
+   */
+  public static @Nullable <T> T parsePipelined(@Nullable final BufferedSource source) {
+    return parsePipelined(source, DEFAULT_OPTIONS, null);
+  }
+
+  /**
+   * Converts a json string to its object representation, like
+   * {@link #parsePipelined(BufferedSource, Options, Executor)}.
+   * @param source the json string as an okio source.
+   * @param options the parsing options.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return the object representation of the json string, or null if the source is not valid json.
+   */
+  public static @Nullable <T> T parsePipelined(@Nullable final BufferedSource source,
+                                               final Options options) {
+    return parsePipelined(source, options, null);
+  }
+
+  /**
+   * Converts a json string to its object representation, like {@link #parse(BufferedSource, Options)},
+   * but with the work split between two threads: one thread reads the source and decodes the tokens,
+   * while the calling thread builds the maps and lists. This reduces the latency of very large
+   * documents on machines with idle cores. For small documents, the cost of the hand-off between the
+   * threads is larger than the gain.
+   * <p>
+   * Unlike {@link #parse(BufferedSource, Options)}, the parsing always stops at the first error: the
+   * error is passed to the error handler and null is returned. This includes the
+   * {@link java.util.concurrent.RejectedExecutionException} of an executor that doesn't run the
+   * tokenizer. {@link Error}s thrown by the tokenizer are rethrown on the calling thread.
+   * @param source the json string as an okio source.
+   * @param options the parsing options.
+   * @param executor the executor that runs the tokenizer, or null to start a new daemon thread.
+   * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+   * @return the object representation of the json string, or null if the source is not valid json.
+   */
+  public static @Nullable <T> T parsePipelined(@Nullable final BufferedSource source,
+                                               final Options options,
+                                               @Nullable final Executor executor) {
+    if (source == null) return null;
+    final JsonReader reader = new JsonReader(source);
+    reader.trackPath(options.trackPath);
+    reader.setStrict(options.strict);
+    reader.trackLines(options.trackLines);
+    try {
+      //noinspection unchecked
+      return (T)new Pipeline(reader, options).parse(executor);
+    }
+    catch (final Abort ignore) {
+      return null;
+    }
+  }
+
+  /**
+   * Iterates over the elements of the json array that is the document, like
+   * {@link #iterate(BufferedSource, String, Options)}.
+   * @param source the json string as an okio source.
+   * @return the iterator.
+   */
+  public static ElementIterator iterate(final BufferedSource source) {
+    return iterate(source, "$", DEFAULT_OPTIONS);
+  }
+
+  /**
+   * Iterates over the elements of a json array inside a json document, like
+   * {@link #iterate(BufferedSource, String, Options)}.
+   * @param source the json string as an okio source.
+   * @param path the path of the array.
+   * @return the iterator.
+   * @throws IllegalArgumentException if the path is not valid.
+   */
+  public static ElementIterator iterate(final BufferedSource source, final String path) {
+    return iterate(source, path, DEFAULT_OPTIONS);
+  }
+
+  /**
+   * Iterates over the elements of a json array inside a json document, parsing one element at a time
+   * so that large arrays can be processed in constant memory. The array is selected with a path made
+   * of member names and array indices, such as {@code $.data.items}. Everything before the array is
+   * skipped without being parsed, and everything after it is ignored. If there isn't an array at
+   * that path, the error is passed to the error handler and the iterator is empty.
+   * @param source the json string as an okio source.
+   * @param path the path of the array.
+   * @param options the parsing options (the fail-fast setting is ignored: errors always end the
+   * iteration).
+   * @return the iterator.
+   * @throws IllegalArgumentException if the path is not valid.
+   */
+  public static ElementIterator iterate(final BufferedSource source, final String path,
+                                        final Options options) {
+    return new ElementIterator(
+      new ArrayElements(source, JsonPath.parse(path), options), options.errors
+    );
+  }
+
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #parseColumns(BufferedSource)}.
+   * @param s the json string to parse.
+   * @return the table, or null if the string is not a valid json array.
+   */
+  public static @Nullable ColumnTable parseColumns(@Nullable final String s) {
+    if (s == null) return null;
+    final Buffer buffer = new Buffer();
+    try {
+      return parseColumns(buffer.writeUtf8(s));
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Converts a json array of records (objects) to a columnar representation, with one column per
+   * member name. The records are read straight into the columns, without creating a map for each.
+   * The whole table is rejected if it is not valid.
+   * @param source the json string as an okio source.
+   * @return the table, or null if the source is not a valid json array.
+   */
+  public static @Nullable ColumnTable parseColumns(@Nullable final BufferedSource source) {
+    return ColumnTable.parse(source, JsonPath.ROOT);
+  }
+
+  /**
+   * Converts a json array of records (objects) inside a json document to a columnar representation,
+   * like {@link #parseColumns(BufferedSource)}. The array is selected with a path made of member
+   * names and array indices, such as {@code $.data.items} or {@code $.pages[0]['row.list']}.
+   * Everything after the array is ignored.
+   * @param source the json string as an okio source.
+   * @param path the path of the array.
+   * @return the table, or null if the source is not valid json, or if there isn't an array at that
+   * path.
+   * @throws IllegalArgumentException if the path is not valid.
+   */
+  public static @Nullable ColumnTable parseColumns(@Nullable final BufferedSource source,
+                                                   final String path) {
+    return ColumnTable.parse(source, JsonPath.parse(path));
+  }
+
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #validate(BufferedSource)}.
+   * @param s the json string to validate.
+   * @return the result of the validation.
+   */
+  public static Validation validate(final String s) {
+    final Buffer buffer = new Buffer();
+    try {
+      return validate(buffer.writeUtf8(s));
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Checks that a json string is well-formed (RFC 8259), without building its object representation:
+   * strings are not decoded, numbers are not converted and nothing is allocated per value. The
+   * source is read up to the end of the document, or up to the error. The bytes of the strings are
+   * not checked to be valid UTF-8.
+   * @param source the json string as an okio source.
+   * @return the result of the validation.
+   */
+  public static Validation validate(final BufferedSource source) {
+    final JsonReader reader = new JsonReader(source, null);
+    reader.setStrict(true);
+    reader.trackPath(false);
+    reader.trackLines(true);
+    try {
+      reader.validate();
+      return Validation.VALID;
+    }
+    catch (final IOException e) {
+      return new Validation(reader.offset(), reader.line(), reader.column(), e.getMessage());
+    }
+    catch (final JsonDataException e) {
+      return new Validation(reader.offset(), reader.line(), reader.column(), e.getMessage());
+    }
+  }
+
+
+  /**
+   * Gives the maps and lists of a parsed tree back to the factory they came from, once the
+   * application is done with it. Children are released before their parent. Frozen maps and lists
+   * are skipped (with their children), since they can be shared.
+   * @param tree the parsed tree (a map or a list).
+   * @param containers the factory.
+   */
+  public static void release(@Nullable final Object tree, final ContainerFactory containers) {
+    if (tree instanceof Frozen) return;
+    if (tree instanceof Map) {
+      //noinspection unchecked
+      final Map<String, Object> map = (Map<String, Object>)tree;
+      for (final Object value: map.values()) release(value, containers);
+      containers.release(map);
+    }
+    else if (tree instanceof List) {
+      //noinspection unchecked
+      final List<Object> list = (List<Object>)tree;
+      for (final Object element: list) release(element, containers);
+      containers.release(list);
+    }
+  }
+
+  /**
+   * The result of {@link Parser#validate(BufferedSource)}.
+   */
+  public static final class Validation {
+
+    static final Validation VALID = new Validation(-1L, -1, -1, null);
+
+    private final long offset;
+    private final int line;
+    private final int column;
+    private final @Nullable String message;
+
+    Validation(final long offset, final int line, final int column, @Nullable final String message) {
+      this.offset = offset;
+      this.line = line;
+      this.column = column;
+      this.message = message;
+    }
+
+    /**
+     * Returns whether the json is valid.
+     * @return true if the json is valid, false otherwise.
+     */
+    public boolean isValid() {
+      return offset == -1L;
+    }
+
+    /**
+     * Returns the offset (in bytes, from the start of the source) where the error was detected.
+     * @return the offset, or -1 if the json is valid.
+     */
+    public long getOffset() {
+      return offset;
+    }
+
+    /**
+     * Returns the line (starting at 1) where the error was detected.
+     * @return the line, or -1 if the json is valid.
+     */
+    public int getLine() {
+      return line;
+    }
+
+    /**
+     * Returns the column (in bytes, starting at 1) where the error was detected.
+     * @return the column, or -1 if the json is valid.
+     */
+    public int getColumn() {
+      return column;
+    }
+
+    /**
+     * Returns the description of the error.
+     * @return the message, or null if the json is valid.
+     */
+    public @Nullable String getMessage() {
+      return message;
+    }
+
+    @Override public String toString() {
+      return offset == -1L ? "valid" :
+             "invalid at byte " + offset + " (" + line + ":" + column + "): " + message;
+    }
+
+  }
+
+  /**
+   * Thrown (preallocated and without a stack trace) to unwind the parser in fail-fast mode.
+   */
+  private static final class Abort extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    static final Abort INSTANCE = new Abort();
+
+    @Override public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  /**
+   * Parsing options.
+   */
+  public static final class Options {
+
+    @Nullable ValueDeduplicator values = null;
+    boolean stringViews = false;
+    @Nullable Shape shapes = null;
+    @Nullable SubtreeCache subtrees = null;
+    boolean freeze = false;
+    @Nullable ContainerFactory containers = null;
+    boolean trackPath = true;
+    boolean trackLines = false;
+    boolean strict = false;
+    ErrorHandler errors = ErrorHandler.LOG;
+    boolean failFast = false;
+
+    /**
+     * Sets the deduplicator used to share the instances of repeated string values.
+     * @param values the deduplicator, or null to disable the deduplication (the default).
+     * @return these options.
+     */
+    public Options deduplicateValues(@Nullable final ValueDeduplicator values) {
+      this.values = values;
+      return this;
+    }
+
+    /**
+     * Sets whether string values should be returned as {@link Utf8String} views of their utf-8 bytes,
+     * decoded lazily, rather than as decoded Strings. Strings with escape sequences are still decoded.
+     * When enabled, the value deduplication is not used.
+     * @param stringViews true to return string views, false to return Strings (the default).
+     * @return these options.
+     */
+    public Options stringViews(final boolean stringViews) {
+      this.stringViews = stringViews;
+      return this;
+    }
+
+    /**
+     * Sets whether objects should share their member names with the other objects that have the
+     * same names in the same order (arrays of records for instance). Each object then only stores
+     * its values. The maps keep the order of the members, and the names are shared across all the
+     * parses that use these options.
+     * @param shareShapes true to share the member names, false to use a HashMap per object
+     * (the default).
+     * @return these options.
+     */
+    public Options shareShapes(final boolean shareShapes) {
+      this.shapes = shareShapes ? Shape.root() : null;
+      return this;
+    }
+
+    /**
+     * Sets whether objects and arrays should be returned as immutable {@link FrozenMap}s and
+     * {@link FrozenList}s, which can be shared between threads without copies.
+     * @param freeze true to return immutable maps and lists, false to return mutable ones (the default).
+     * @return these options.
+     */
+    public Options freeze(final boolean freeze) {
+      this.freeze = freeze;
+      return this;
+    }
+
+    /**
+     * Enables or disables the tracking of the current path while reading. The path is only used in
+     * the messages of the errors that are logged when the json is invalid. Without it, these messages
+     * give the byte offset and depth of the error instead.
+     * @param trackPath true to track the path (the default), false otherwise.
+     * @return these options.
+     */
+    public Options trackPath(final boolean trackPath) {
+      this.trackPath = trackPath;
+      return this;
+    }
+
+    /**
+     * Enables or disables the counting of lines, so that errors give the line and column where they
+     * were found, in addition to the byte offset (see {@link JsonEncodingException#getLine()}).
+     * Byte offsets (of the errors, and of the elements of an {@link ElementIterator}) are always
+     * known for Buffer sources, but other sources only count their bytes when lines are tracked:
+     * without it, their offsets are -1.
+     * @param trackLines true to count lines, false otherwise (the default).
+     * @return these options.
+     */
+    public Options trackLines(final boolean trackLines) {
+      this.trackLines = trackLines;
+      return this;
+    }
+
+    /**
+     * Enables or disables the strict mode. By default, the parser is lenient and accepts comments,
+     * single-quoted and unquoted strings and names, and other common deviations from the json
+     * specification. In strict mode, only RFC 8259 json is accepted, and it is tokenized by a
+     * separate path that doesn't check for these extensions.
+     * @param strict true to only accept standard json, false to be lenient (the default).
+     * @return these options.
+     */
+    public Options strict(final boolean strict) {
+      this.strict = strict;
+      return this;
+    }
+
+    /**
+     * Sets the handler that receives the errors found in invalid json.
+     * @param errors the handler ({@link ErrorHandler#LOG} by default).
+     * @return these options.
+     */
+    public Options errors(final ErrorHandler errors) {
+      this.errors = errors;
+      return this;
+    }
+
+    /**
+     * Enables or disables the fail-fast mode. By default, the parser skips the values it can't read
+     * and returns what it could parse. In fail-fast mode, it stops at the first error (after passing
+     * it to the error handler) and returns null.
+     * @param failFast true to stop at the first error, false to recover from errors (the default).
+     * @return these options.
+     */
+    public Options failFast(final boolean failFast) {
+      this.failFast = failFast;
+      return this;
+    }
+
+    /**
+     * Sets the factory that supplies the maps and lists for json objects and arrays, so that they can
+     * be recycled (see {@link ContainerPool} and {@link Parser#release(Object, ContainerFactory)}).
+     * It takes precedence over {@link #shareShapes(boolean)}.
+     * @param containers the factory, or null to create new HashMaps and ArrayLists (the default).
+     * @return these options.
+     */
+    public Options containers(@Nullable final ContainerFactory containers) {
+      this.containers = containers;
+      return this;
+    }
+
+    /**
+     * Sets the cache used to share the instances of identical objects and arrays. When enabled, the
+     * maps and lists are immutable (see {@link #freeze(boolean)}).
+     * @param subtrees the cache, or null to disable the sharing (the default).
+     * @return these options.
+     */
+    public Options shareSubtrees(@Nullable final SubtreeCache subtrees) {
+      this.subtrees = subtrees;
+      return this;
+    }
+
+    Options copy() {
+      final Options copy = new Options();
+      copy.values = values;
+      copy.stringViews = stringViews;
+      copy.shapes = shapes;
+      copy.subtrees = subtrees;
+      copy.freeze = freeze;
+      copy.containers = containers;
+      copy.trackPath = trackPath;
+      copy.trackLines = trackLines;
+      copy.strict = strict;
+      copy.errors = errors;
+      copy.failFast = failFast;
+      return copy;
+    }
+
+  }
+
+  private static final Options DEFAULT_OPTIONS = new Options();
+
+  /**
+   * A reusable parsing context, that keeps its reader (and its stacks) and its buffer from one parse
+   * to the next, rather than allocating new ones every time.
+   * <p>
+   * A context can only be used by one thread at a time. The static {@code parse} methods use a
+   * context per thread (see {@link #local()}).
+   */
+  public static final class Context {
+
+    private static final ThreadLocal<Context> LOCAL = new ThreadLocal<Context>() {
+      @Override protected Context initialValue() {
+        return new Context();
+      }
+    };
+
+    private final Buffer buffer = new Buffer();
+    private final JsonReader reader = new JsonReader(buffer);
+    boolean busy = false;
+
+    /**
+     * Returns the context of the calling thread.
+     * @return the context.
+     */
+    public static Context local() {
+      return LOCAL.get();
+    }
+
+    /**
+     * Converts the given String to its object representation, like {@link Parser#parse(String)}.
+     * @param s the json string to parse.
+     * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+     * @return either a map representing a json object, or a list representing a json array,
+     * or even null if the string is not valid json.
+     */
+    public @Nullable <T> T parse(@Nullable final String s) {
+      return parse(s, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Converts the given String to its object representation, like
+     * {@link Parser#parse(String, Options)}.
+     * @param s the json string to parse.
+     * @param options the parsing options.
+     * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+     * @return either a map representing a json object, or a list representing a json array,
+     * or even null if the string is not valid json.
+     */
+    public @Nullable <T> T parse(@Nullable final String s, final Options options) {
+      if (s == null) return null;
+      // The buffer may be the source of the parse in progress.
+      if (busy) throw new IllegalStateException("The context is already in use.");
+      buffer.writeUtf8(s);
+      return parse(buffer, options);
+    }
+
+    /**
+     * Converts a json string to its object representation, like {@link Parser#parse(BufferedSource)}.
+     * @param source the json string as an okio source.
+     * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+     * @return the object representation of the json string, or null if the source is not valid json.
+     */
+    public @Nullable <T> T parse(@Nullable final BufferedSource source) {
+      return parse(source, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Converts a json string to its object representation, like
+     * {@link Parser#parse(BufferedSource, Options)}.
+     * @param source the json string as an okio source.
+     * @param options the parsing options.
+     * @param <T> List&lt;?&gt; or Map&lt;String, ?&gt;.
+     * @return the object representation of the json string, or null if the source is not valid json.
+     */
+    public @Nullable <T> T parse(@Nullable final BufferedSource source, final Options options) {
+      if (source == null) return null;
+      if (busy) throw new IllegalStateException("The context is already in use.");
+      busy = true;
+      try {
+        reader.reset(source);
+        return Parser.parse(reader, options);
+      }
+      finally {
+        buffer.clear();
+        busy = false;
+      }
+    }
+
+  }
+
   private Parser() {}
 
+  /**
+   * Passes an error to the error handler, and aborts the parsing in fail-fast mode.
+   */
+  static void report(final Options options, final Exception e) {
+    options.errors.error(e);
+    if (options.failFast) throw Abort.INSTANCE;
+  }
+
+  /**
+   * Reads the next value, as one element of an array that is streamed (see {@link ArrayElements}).
+   * The options should be in fail-fast mode: the parsing then stops at the first error, after
+   * passing it to the error handler.
+   * @param reader the reader, in front of the value.
+   * @param options the parsing options.
+   * @return the value (null for json null, or if the parsing was aborted).
+   */
+  static @Nullable Object nextElement(final JsonReader reader, final Options options) {
+    try {
+      return element(reader, options);
+    }
+    catch (final Abort ignore) {
+      // Thrown by report(), possibly from the catch blocks below: the error was passed on already.
+      return null;
+    }
+  }
+
+  private static @Nullable Object element(final JsonReader reader, final Options options) {
+    final JsonReader.Token token = nextToken(reader, options);
+    if (token == null) return null;
+    try {
+      switch (token) {
+        case BEGIN_OBJECT:
+        case BEGIN_ARRAY:
+          return parseValue(reader, options);
+        case STRING:
+          return nextString(reader, options, ValueDeduplicator.ROOT);
+        case NUMBER:
+          return nextNumber(reader);
+        case BOOLEAN:
+          return reader.nextBoolean();
+        case NULL:
+          reader.nextNull();
+          return null;
+        default:
+          reader.skipValue();
+          return null;
+      }
+    }
+    catch (final IOException e) {
+      report(options, e);
+      return null;
+    }
+    catch (final JsonDataException e) {
+      report(options, e);
+      return null;
+    }
+  }
+
+  private static @Nullable JsonReader.Token nextToken(final JsonReader reader, final Options options) {
+    try {
+      return reader.peek();
+    }
+    catch (final IOException e) {
+      report(options, e);
+      return null;
+    }
+  }
+
   private static @Nullable JsonReader.Token nextToken(final JsonReader reader) {
     try {
       return reader.peek();
@@ -102,11 +926,46 @@ public final class Parser {
     }
   }
 
-  private static Number nextNumber(final JsonReader reader) throws IOException, JsonDataException {
+  static Map<String, ?> newObject(final Options options) {
+    final ContainerFactory containers = options.containers;
+    if (containers != null) return containers.newMap();
+    final Shape shapes = options.shapes;
+    return shapes == null ? new HashMap<String, Object>() : new ShapedMap(shapes);
+  }
+
+  static List<?> newArray(final Options options) {
+    final ContainerFactory containers = options.containers;
+    return containers == null ? new ArrayList<Object>() : containers.newList();
+  }
+
+  static Map<String, ?> complete(final Options options, final Map<String, ?> map) {
+    if (map instanceof ShapedMap) ((ShapedMap)map).trim();
+    final SubtreeCache subtrees = options.subtrees;
+    if (subtrees == null && !options.freeze) return map;
+    //noinspection unchecked
+    final FrozenMap frozen = new FrozenMap((Map<String, Object>)map);
+    return subtrees == null ? frozen : subtrees.intern(frozen);
+  }
+
+  static List<?> complete(final Options options, final List<?> list) {
+    final SubtreeCache subtrees = options.subtrees;
+    if (subtrees == null && !options.freeze) return list;
+    final FrozenList frozen = new FrozenList(list);
+    return subtrees == null ? frozen : subtrees.intern(frozen);
+  }
+
+  static Number nextNumber(final JsonReader reader) throws IOException, JsonDataException {
     return stringToNumber(reader.nextString());
 
   }
 
+  static CharSequence nextString(final JsonReader reader, final Options options,
+                                 final String path) throws IOException, JsonDataException {
+    if (options.stringViews) return reader.nextStringView();
+    final ValueDeduplicator values = options.values;
+    return reader.nextString(values == null ? null : values.path(path));
+  }
+
   private static final Long MAX_INT = (long)Integer.MAX_VALUE;
   private static final Long MIN_INT = (long)Integer.MIN_VALUE;
   private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
@@ -185,9 +1044,10 @@ public final class Parser {
     }
   }
 
-  private static Map<String, ?> walk(final JsonReader reader, final Map<String, ?> map) {
+  private static Map<String, ?> walk(final JsonReader reader, final Options options,
+                                    final Map<String, ?> map) {
     JsonReader.Token token;
-    while ((token = nextToken(reader)) != null) {
+    while ((token = nextToken(reader, options)) != null) {
       switch (token) {
         case NAME: {
           final String name;
@@ -195,14 +1055,14 @@ public final class Parser {
             name = reader.nextName();
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             break;
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             break;
           }
-          walk(reader, map, name);
+          walk(reader, options, map, name);
           break;
         }
         case END_OBJECT: {
@@ -210,35 +1070,37 @@ public final class Parser {
             reader.endObject();
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             break;
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             break;
           }
-          return map;
+          return complete(options, map);
         }
         default: {
+          // The reader can't move past a token it fails to skip: stop there.
           try {
             reader.skipValue();
           }
           catch (final IOException e) {
-            Logger.log(e);
-            break;
+            report(options, e);
+            return complete(options, map);
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
-            break;
+            report(options, e);
+            return complete(options, map);
           }
         }
       }
     }
-    return map;
+    return complete(options, map);
   }
 
-  private static void walk(final JsonReader reader, final Map<String, ?> map, final String name) {
-    final JsonReader.Token token = nextToken(reader);
+  private static void walk(final JsonReader reader, final Options options,
+                           final Map<String, ?> map, final String name) {
+    final JsonReader.Token token = nextToken(reader, options);
     if (token == null) return;
     switch (token) {
       case BEGIN_OBJECT: {
@@ -246,19 +1108,19 @@ public final class Parser {
           reader.beginObject();
         }
         catch (final IOException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
           break;
         }
         catch (final JsonDataException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
           break;
         }
         //noinspection unchecked
-        ((Map)map).put(name, walk(reader, new HashMap()));
+        ((Map)map).put(name, walk(reader, options, newObject(options)));
         break;
       }
       case BEGIN_ARRAY: {
@@ -266,19 +1128,19 @@ public final class Parser {
           reader.beginArray();
         }
         catch (final IOException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
           break;
         }
         catch (final JsonDataException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
           break;
         }
         //noinspection unchecked
-        ((Map)map).put(name, walkArray(reader, new ArrayList()));
+        ((Map)map).put(name, walkArray(reader, options, newArray(options), name));
         break;
       }
       case NULL: {
@@ -286,10 +1148,10 @@ public final class Parser {
           reader.nextNull();
         }
         catch (final IOException e) {
-          Logger.log(e);
+          report(options, e);
         }
         catch (final JsonDataException e) {
-          Logger.log(e);
+          report(options, e);
         }
         //noinspection unchecked
         ((Map)map).put(name, null);
@@ -301,12 +1163,12 @@ public final class Parser {
           ((Map)map).put(name, reader.nextBoolean());
         }
         catch (final IOException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
         }
         catch (final JsonDataException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
         }
@@ -318,12 +1180,12 @@ public final class Parser {
           ((Map)map).put(name, nextNumber(reader));
         }
         catch (final IOException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
         }
         catch (final JsonDataException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
         }
@@ -332,15 +1194,15 @@ public final class Parser {
       case STRING: {
         try {
           //noinspection unchecked
-          ((Map)map).put(name, reader.nextString());
+          ((Map)map).put(name, nextString(reader, options, name));
         }
         catch (final IOException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
         }
         catch (final JsonDataException e) {
-          Logger.log(e);
+          report(options, e);
           //noinspection unchecked
           ((Map)map).put(name, null);
         }
@@ -350,40 +1212,41 @@ public final class Parser {
   }
 
   @SuppressWarnings("ConstantConditions")
-  private static List<?> walkArray(final JsonReader reader, final List<?> list) {
+  private static List<?> walkArray(final JsonReader reader, final Options options,
+                                  final List<?> list, final String path) {
     JsonReader.Token token;
-    while ((token = nextToken(reader)) != null) {
+    while ((token = nextToken(reader, options)) != null) {
       switch (token) {
         case END_ARRAY: {
           try {
             reader.endArray();
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             break;
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             break;
           }
-          return list;
+          return complete(options, list);
         }
         case BEGIN_OBJECT: {
           try {
             reader.beginObject();
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
             break;
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
             break;
           }
           //noinspection unchecked
-          ((List)list).add(walk(reader, new HashMap()));
+          ((List)list).add(walk(reader, options, newObject(options)));
           break;
         }
         case BEGIN_ARRAY: {
@@ -391,17 +1254,17 @@ public final class Parser {
             reader.beginArray();
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
             break;
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
             break;
           }
           //noinspection unchecked
-          ((List)list).add(walkArray(reader, new ArrayList()));
+          ((List)list).add(walkArray(reader, options, newArray(options), path));
           break;
         }
         case NULL: {
@@ -409,10 +1272,10 @@ public final class Parser {
             reader.nextNull();
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
           }
           list.add(null);
           break;
@@ -423,11 +1286,11 @@ public final class Parser {
             ((List)list).add(reader.nextBoolean());
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
           }
           break;
@@ -438,11 +1301,11 @@ public final class Parser {
             ((List)list).add(nextNumber(reader));
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
           }
           break;
@@ -450,22 +1313,72 @@ public final class Parser {
         case STRING: {
           try {
             //noinspection unchecked
-            ((List)list).add(reader.nextString());
+            ((List)list).add(nextString(reader, options, path));
           }
           catch (final IOException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
           }
           catch (final JsonDataException e) {
-            Logger.log(e);
+            report(options, e);
             list.add(null);
           }
           break;
         }
         default: {
+          // The reader can't move past a token it fails to skip: stop there.
           try {
             reader.skipValue();
           }
+          catch (final IOException e) {
+            report(options, e);
+            return complete(options, list);
+          }
+          catch (final JsonDataException e) {
+            report(options, e);
+            return complete(options, list);
+          }
+        }
+      }
+    }
+    return complete(options, list);
+  }
+
+  private static Map<String, ?> walkLazy(final JsonReader reader, final LazyMap map) {
+    final Map<String, Object> raw = map.raw();
+    JsonReader.Token token;
+    while ((token = nextToken(reader)) != null) {
+      switch (token) {
+        case NAME: {
+          final String name;
+          try {
+            name = reader.nextName();
+          }
+          catch (final IOException e) {
+            Logger.log(e);
+            break;
+          }
+          catch (final JsonDataException e) {
+            Logger.log(e);
+            break;
+          }
+          try {
+            raw.put(name, lazyValue(reader));
+          }
+          catch (final IOException e) {
+            Logger.log(e);
+            raw.put(name, null);
+          }
+          catch (final JsonDataException e) {
+            Logger.log(e);
+            raw.put(name, null);
+          }
+          break;
+        }
+        case END_OBJECT: {
+          try {
+            reader.endObject();
+          }
           catch (final IOException e) {
             Logger.log(e);
             break;
@@ -474,11 +1387,77 @@ public final class Parser {
             Logger.log(e);
             break;
           }
+          return map;
+        }
+        default: {
+          // The reader can't move past a token it fails to skip: stop there.
+          try {
+            reader.skipValue();
+          }
+          catch (final IOException e) {
+            Logger.log(e);
+            return map;
+          }
+          catch (final JsonDataException e) {
+            Logger.log(e);
+            return map;
+          }
         }
       }
     }
+    return map;
+  }
+
+  private static List<?> walkLazy(final JsonReader reader, final LazyList list) {
+    final List<Object> raw = list.raw();
+    JsonReader.Token token;
+    while ((token = nextToken(reader)) != null) {
+      if (token == JsonReader.Token.END_ARRAY) {
+        try {
+          reader.endArray();
+        }
+        catch (final IOException e) {
+          Logger.log(e);
+          break;
+        }
+        catch (final JsonDataException e) {
+          Logger.log(e);
+          break;
+        }
+        return list;
+      }
+      try {
+        raw.add(lazyValue(reader));
+      }
+      catch (final IOException e) {
+        Logger.log(e);
+        raw.add(null);
+      }
+      catch (final JsonDataException e) {
+        Logger.log(e);
+        raw.add(null);
+      }
+    }
     return list;
   }
 
-}
+  private static @Nullable Object lazyValue(final JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+      case BEGIN_ARRAY:
+        return new RawValue(reader.nextRawValue());
+      case NULL:
+        return reader.nextNull();
+      case BOOLEAN:
+        return reader.nextBoolean();
+      case NUMBER:
+        return nextNumber(reader);
+      case STRING:
+        return reader.nextString();
+      default:
+        reader.skipValue();
+        return null;
+    }
+  }
 
+}
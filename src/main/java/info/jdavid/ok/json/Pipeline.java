@@ -0,0 +1,300 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * A parse split into two stages that run on two threads (see
+ * {@link Parser#parsePipelined(okio.BufferedSource, Parser.Options, Executor)}): the tokenizer
+ * reads the source, decodes the names, strings and numbers and publishes them as tokens into a ring
+ * buffer, and the calling thread takes the tokens from the ring buffer and builds the maps and lists.
+ * <p>
+ * The ring buffer has a single producer and a single consumer, and doesn't use locks: each side
+ * publishes its position with an ordered write, and only reads the position of the other side when
+ * it has caught up with the last one it saw. A side that has to wait spins, then yields, then parks
+ * for short periods.
+ */
+final class Pipeline implements Runnable {
+
+  /** The number of tokens in the ring buffer (a power of two). */
+  static final int CAPACITY = 1 << 14;
+  private static final int MASK = CAPACITY - 1;
+
+  private static final byte BEGIN_OBJECT = 0;
+  private static final byte END_OBJECT = 1;
+  private static final byte BEGIN_ARRAY = 2;
+  private static final byte END_ARRAY = 3;
+  private static final byte NAME = 4;
+  private static final byte VALUE = 5;
+  private static final byte END = 6;
+  private static final byte ERROR = 7;
+
+  private final JsonReader reader;
+  private final Parser.Options options;
+  private final byte[] kinds = new byte[CAPACITY];
+  private final Object[] values = new Object[CAPACITY];
+  /** The position of the next token to consume, written by the consumer. */
+  private final AtomicLong head = new AtomicLong();
+  /** The position of the next token to publish, written by the producer. */
+  private final AtomicLong tail = new AtomicLong();
+  private volatile boolean cancelled = false;
+
+  // Producer state.
+  private long next = 0;
+  private long headCache = 0;
+
+  // Consumer state.
+  private long position = 0;
+  private long tailCache = 0;
+
+  Pipeline(final JsonReader reader, final Parser.Options options) {
+    this.reader = reader;
+    this.options = options;
+  }
+
+  /**
+   * Starts the tokenizer and builds the tree.
+   * @param executor the executor that runs the tokenizer, or null to start a new daemon thread.
+   * @return the parsed object or array, or null if the document is a scalar.
+   */
+  @Nullable Object parse(@Nullable final Executor executor) {
+    if (executor == null) {
+      final Thread thread = new Thread(this, "okjson-tokenizer");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    else {
+      try {
+        executor.execute(this);
+      }
+      catch (final RejectedExecutionException e) {
+        // The tokenizer will never run: publish the error for the consumer.
+        stop(e);
+      }
+    }
+    try {
+      return build();
+    }
+    finally {
+      cancelled = true;
+    }
+  }
+
+  /**
+   * The tokenizer (producer) loop.
+   */
+  @Override public void run() {
+    try {
+      tokenize();
+    }
+    catch (final Throwable e) {
+      // Anything thrown here would otherwise leave the consumer waiting for the end of the tokens.
+      stop(e);
+      return;
+    }
+    stop(null);
+  }
+
+  /**
+   * Closes the reader and publishes the last token: the end of the tokens, or the error that
+   * stopped the tokenizer.
+   * @param error the error, or null.
+   */
+  private void stop(@Nullable final Throwable error) {
+    try {
+      reader.close();
+    }
+    catch (final IOException ignore) {}
+    if (error == null) {
+      publish(END, null);
+    }
+    else {
+      publish(ERROR, error);
+    }
+  }
+
+  private void tokenize() throws IOException {
+    final JsonReader reader = this.reader;
+    final Parser.Options options = this.options;
+    final JsonReader.Token first = reader.peek();
+    if (first != JsonReader.Token.BEGIN_OBJECT && first != JsonReader.Token.BEGIN_ARRAY) return;
+    // The value deduplication groups values by the name of the member they belong to.
+    String path = ValueDeduplicator.ROOT;
+    String[] paths = new String[32];
+    int depth = 0;
+    do {
+      final JsonReader.Token token = reader.peek();
+      final boolean published;
+      switch (token) {
+        case BEGIN_OBJECT:
+          reader.beginObject();
+          paths = push(paths, depth++, path);
+          published = publish(BEGIN_OBJECT, null);
+          break;
+        case BEGIN_ARRAY:
+          reader.beginArray();
+          paths = push(paths, depth++, path);
+          published = publish(BEGIN_ARRAY, null);
+          break;
+        case END_OBJECT:
+          reader.endObject();
+          path = paths[--depth];
+          published = publish(END_OBJECT, null);
+          break;
+        case END_ARRAY:
+          reader.endArray();
+          path = paths[--depth];
+          published = publish(END_ARRAY, null);
+          break;
+        case NAME:
+          path = reader.nextName();
+          published = publish(NAME, path);
+          break;
+        case STRING:
+          published = publish(VALUE, Parser.nextString(reader, options, path));
+          break;
+        case NUMBER:
+          published = publish(VALUE, Parser.nextNumber(reader));
+          break;
+        case BOOLEAN:
+          published = publish(VALUE, reader.nextBoolean());
+          break;
+        case NULL:
+          reader.nextNull();
+          published = publish(VALUE, null);
+          break;
+        default:
+          throw new JsonDataException("Unexpected " + token);
+      }
+      if (!published) return;
+    } while (depth > 0);
+  }
+
+  private static String[] push(final String[] paths, final int depth, final String path) {
+    final String[] stack;
+    if (depth == paths.length) {
+      stack = new String[depth * 2];
+      System.arraycopy(paths, 0, stack, 0, depth);
+    }
+    else {
+      stack = paths;
+    }
+    stack[depth] = path;
+    return stack;
+  }
+
+  /**
+   * Publishes a token, after waiting for room in the ring buffer if needed.
+   * @return false if the consumer has stopped.
+   */
+  private boolean publish(final byte kind, @Nullable final Object value) {
+    final long slot = next;
+    if (slot - headCache >= CAPACITY) {
+      int idle = 0;
+      while (slot - (headCache = head.get()) >= CAPACITY) {
+        if (cancelled) return false;
+        idle(++idle);
+      }
+    }
+    final int index = (int)slot & MASK;
+    kinds[index] = kind;
+    values[index] = value;
+    next = slot + 1;
+    tail.lazySet(slot + 1);
+    return true;
+  }
+
+  /**
+   * The tree building (consumer) loop.
+   */
+  private @Nullable Object build() {
+    final Parser.Options options = this.options;
+    Object[] containers = new Object[32];
+    String[] names = new String[32];
+    int depth = 0;
+    while (true) {
+      final long position = this.position;
+      if (position == tailCache) {
+        // Let the producer reuse the slots that were consumed before waiting for more tokens.
+        head.lazySet(position);
+        int idle = 0;
+        while (position == (tailCache = tail.get())) idle(++idle);
+      }
+      final int index = (int)position & MASK;
+      final byte kind = kinds[index];
+      final Object value = values[index];
+      this.position = position + 1;
+      if ((position & 255) == 255) head.lazySet(position + 1);
+      final Object completed;
+      switch (kind) {
+        case BEGIN_OBJECT:
+        case BEGIN_ARRAY:
+          if (depth == containers.length) {
+            final Object[] containersCopy = new Object[depth * 2];
+            System.arraycopy(containers, 0, containersCopy, 0, depth);
+            containers = containersCopy;
+            final String[] namesCopy = new String[depth * 2];
+            System.arraycopy(names, 0, namesCopy, 0, depth);
+            names = namesCopy;
+          }
+          containers[depth++] =
+            kind == BEGIN_OBJECT ? Parser.newObject(options) : Parser.newArray(options);
+          continue;
+        case NAME:
+          names[depth - 1] = (String)value;
+          continue;
+        case VALUE:
+          completed = value;
+          break;
+        case END_OBJECT:
+          //noinspection unchecked
+          completed = Parser.complete(options, (Map<String, ?>)containers[--depth]);
+          containers[depth] = null;
+          if (depth == 0) return completed;
+          break;
+        case END_ARRAY:
+          completed = Parser.complete(options, (List<?>)containers[--depth]);
+          containers[depth] = null;
+          if (depth == 0) return completed;
+          break;
+        case ERROR:
+          if (value instanceof Error) throw (Error)value;
+          final Throwable error = (Throwable)value;
+          Parser.report(
+            options, error instanceof Exception ? (Exception)error : new RuntimeException(error)
+          );
+          return null;
+        default:
+          return null;
+      }
+      final Object container = containers[depth - 1];
+      if (container instanceof Map) {
+        //noinspection unchecked
+        ((Map)container).put(names[depth - 1], completed);
+      }
+      else {
+        //noinspection unchecked
+        ((List)container).add(completed);
+      }
+    }
+  }
+
+  private static void idle(final int count) {
+    if (count < 64) return;
+    if (count < 128) {
+      Thread.yield();
+    }
+    else {
+      LockSupport.parkNanos(20000L);
+    }
+  }
+
+}
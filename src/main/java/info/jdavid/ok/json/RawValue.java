@@ -0,0 +1,61 @@
+package info.jdavid.ok.json;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.ByteString;
+
+
+/**
+ * The raw bytes of an object or array that hasn't been parsed yet. The bytes were only checked for
+ * matching brackets, and can use the lenient syntax (comments, single quotes, unquoted names...).
+ */
+final class RawValue {
+
+  final ByteString bytes;
+  /** Whether the bytes are standard json, or null if it hasn't been checked yet. */
+  private @Nullable Boolean strict = null;
+
+  RawValue(final ByteString bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Returns whether the bytes are standard (RFC 8259) json, that can be written out as they are.
+   * They are validated on first call.
+   * @return true if the bytes are valid strict json, false otherwise.
+   */
+  boolean isStrict() {
+    Boolean strict = this.strict;
+    if (strict == null) {
+      this.strict = strict = Parser.validate(new Buffer().write(bytes)).isValid();
+    }
+    return strict;
+  }
+
+  /**
+   * Parses the bytes lazily (the children are not parsed either).
+   * @return the map or list, or null if the bytes are not valid json.
+   */
+  @Nullable Object parse() {
+    return Parser.parseLazy(new Buffer().write(bytes));
+  }
+
+  /**
+   * Parses the bytes fully (with the children), stopping at the first error.
+   * @return the map or list, or null if the bytes are not valid json.
+   */
+  @Nullable Object decode() {
+    return Parser.parse(new Buffer().write(bytes), new Parser.Options().failFast(true));
+  }
+
+  /**
+   * Returns the value, parsing it if it is a raw value.
+   * @param value the value.
+   * @return the parsed value.
+   */
+  static @Nullable Object resolve(@Nullable final Object value) {
+    return value instanceof RawValue ? ((RawValue)value).parse() : value;
+  }
+
+}
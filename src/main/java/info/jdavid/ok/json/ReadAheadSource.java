@@ -0,0 +1,184 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.Source;
+import okio.Timeout;
+
+
+/**
+ * A source that reads ahead of its consumer: another thread keeps reading from the upstream source
+ * and queues the data, while the parser consumes what was already read. With a slow source (a network
+ * socket, or a compressed file), the reading and the parsing then overlap, and the time to parse the
+ * document gets close to the larger of the two rather than their sum:
+ * <pre>{@code
+ * Parser.parse(Okio.buffer(new ReadAheadSource(Okio.source(socket), 1024 * 1024)));
+ * }</pre>
+ * The queued data is made of okio segments, that are moved to the consumer without being copied.
+ * The amount of data read ahead is bounded: the reading thread waits for the consumer when the
+ * queue is full.
+ * <p>
+ * The upstream source is only used by the reading thread, and it is closed by that thread when it
+ * stops (at the end of the data, after an error, or after {@link #close()}).
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ReadAheadSource implements Source {
+
+  /** The maximum number of bytes read from the upstream source at once. */
+  private static final long MAX_CHUNK = 65536;
+
+  private final Source upstream;
+  private final long maxBufferedBytes;
+  private final long chunk;
+  /** The data read ahead, guarded by this. */
+  private final Buffer queue = new Buffer();
+  private boolean exhausted = false;
+  private boolean closed = false;
+  private @Nullable IOException error = null;
+
+  /**
+   * Creates a source that reads ahead on a new daemon thread.
+   * @param upstream the source to read from.
+   * @param maxBufferedBytes the maximum number of bytes read ahead.
+   */
+  public ReadAheadSource(final Source upstream, final long maxBufferedBytes) {
+    this(upstream, maxBufferedBytes, null);
+  }
+
+  /**
+   * Creates a source that reads ahead on a thread of the given executor. The task keeps its thread
+   * for as long as there is data to read, so a virtual thread executor is a good fit when available.
+   * @param upstream the source to read from.
+   * @param maxBufferedBytes the maximum number of bytes read ahead.
+   * @param executor the executor, or null to start a new daemon thread.
+   */
+  public ReadAheadSource(final Source upstream, final long maxBufferedBytes,
+                         @Nullable final Executor executor) {
+    if (maxBufferedBytes < 1) {
+      throw new IllegalArgumentException("Invalid buffer size: " + maxBufferedBytes);
+    }
+    this.upstream = upstream;
+    this.maxBufferedBytes = maxBufferedBytes;
+    // Reading half of the buffer at a time lets the consumer drain one half while the other is filled.
+    this.chunk = Math.max(1, Math.min(MAX_CHUNK, maxBufferedBytes / 2));
+    final Runnable task = new Runnable() {
+      @Override public void run() {
+        readAhead();
+      }
+    };
+    if (executor == null) {
+      final Thread thread = new Thread(task, "okjson-read-ahead");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    else {
+      executor.execute(task);
+    }
+  }
+
+  /**
+   * The loop of the reading thread.
+   */
+  private void readAhead() {
+    final Buffer buffer = new Buffer();
+    try {
+      while (true) {
+        synchronized (this) {
+          while (!closed && queue.size() > maxBufferedBytes - chunk) wait();
+          if (closed) return;
+        }
+        final long n = upstream.read(buffer, chunk);
+        synchronized (this) {
+          if (n == -1L) {
+            exhausted = true;
+            notifyAll();
+            return;
+          }
+          queue.write(buffer, buffer.size());
+          notifyAll();
+        }
+      }
+    }
+    catch (final IOException e) {
+      synchronized (this) {
+        error = e;
+        notifyAll();
+      }
+    }
+    catch (final InterruptedException e) {
+      synchronized (this) {
+        error = new InterruptedIOException();
+        notifyAll();
+      }
+    }
+    catch (final RuntimeException e) {
+      synchronized (this) {
+        error = new IOException(e);
+        notifyAll();
+      }
+    }
+    finally {
+      try {
+        upstream.close();
+      }
+      catch (final IOException ignore) {}
+    }
+  }
+
+  @Override public long read(final Buffer sink, final long byteCount) throws IOException {
+    if (byteCount < 0) throw new IllegalArgumentException("byteCount < 0: " + byteCount);
+    synchronized (this) {
+      while (true) {
+        if (closed) throw new IllegalStateException("closed");
+        final long size = queue.size();
+        if (size > 0) {
+          final long n = queue.read(sink, Math.min(byteCount, size));
+          notifyAll();
+          return n;
+        }
+        final IOException e = error;
+        if (e != null) throw e;
+        if (exhausted) return -1L;
+        try {
+          wait();
+        }
+        catch (final InterruptedException ignore) {
+          throw new InterruptedIOException();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes that were read ahead and are waiting to be consumed.
+   * @return the number of bytes.
+   */
+  public synchronized long buffered() {
+    return queue.size();
+  }
+
+  /**
+   * Returns the timeout of the upstream source, that applies to the reads made by the reading thread.
+   * @return the timeout.
+   */
+  @Override public Timeout timeout() {
+    return upstream.timeout();
+  }
+
+  /**
+   * Stops the reading thread and discards the data that was read ahead. The upstream source is closed
+   * by the reading thread, once its pending read (if any) returns.
+   */
+  @Override public synchronized void close() {
+    if (closed) return;
+    closed = true;
+    queue.clear();
+    notifyAll();
+  }
+
+}
@@ -0,0 +1,130 @@
+package info.jdavid.ok.json;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * An immutable sequence of object member names, shared by all the {@link ShapedMap}s with the same
+ * names in the same order. Shapes form a tree: adding a name to a shape leads to a child shape,
+ * which is created the first time and reused afterwards.
+ * <p>
+ * The tree is bounded, both in the number of names per shape and in the total number of shapes, so
+ * that objects used as dictionaries (with ids as names for instance) don't make it grow
+ * indefinitely. Objects that don't fit fall back to a plain map.
+ * <p>
+ * Shapes are thread-safe, and a tree can be shared by concurrent parsers.
+ */
+final class Shape {
+
+  static final int MAX_SIZE = 64;
+  static final int MAX_SHAPES = 4096;
+  /** Shapes with more names than this use a map rather than a linear scan to find a name. */
+  private static final int SCAN_SIZE = 8;
+
+  final String[] keys;
+  private final @Nullable Map<String, Integer> index;
+  private final AtomicInteger count;
+  private final Shape root;
+  private final ConcurrentMap<String, Shape> transitions = new ConcurrentHashMap<String, Shape>(4);
+  /** The size of the last completed map, used as the initial capacity (only for the root). */
+  volatile int hint = 0;
+
+  private Shape() {
+    this.keys = new String[0];
+    this.index = null;
+    this.count = new AtomicInteger(1);
+    this.root = this;
+  }
+
+  private Shape(final Shape parent, final String key) {
+    final int size = parent.keys.length;
+    final String[] keys = new String[size + 1];
+    System.arraycopy(parent.keys, 0, keys, 0, size);
+    keys[size] = key;
+    this.keys = keys;
+    if (keys.length > SCAN_SIZE) {
+      final Map<String, Integer> index = new HashMap<String, Integer>(keys.length * 2);
+      for (int i=0; i<keys.length; ++i) index.put(keys[i], i);
+      this.index = index;
+    }
+    else {
+      this.index = null;
+    }
+    this.count = parent.count;
+    this.root = parent.root;
+  }
+
+  /**
+   * Creates the root of a new shape tree (the empty shape).
+   * @return the root shape.
+   */
+  static Shape root() {
+    return new Shape();
+  }
+
+  Shape getRoot() {
+    return root;
+  }
+
+  int size() {
+    return keys.length;
+  }
+
+  /**
+   * Returns the index of a name.
+   * @param key the name.
+   * @return the index, or -1 if the shape doesn't have that name.
+   */
+  int indexOf(final Object key) {
+    final Map<String, Integer> index = this.index;
+    if (index != null) {
+      final Integer i = index.get(key);
+      return i == null ? -1 : i;
+    }
+    final String[] keys = this.keys;
+    // Names coming from the parser are usually the same instances (see StringCache).
+    for (int i=0; i<keys.length; ++i) {
+      if (keys[i] == key) return i;
+    }
+    for (int i=0; i<keys.length; ++i) {
+      if (keys[i].equals(key)) return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the shape with the given name added at the end. The name should not already be part of
+   * this shape.
+   * @param key the name.
+   * @return the child shape, or null if the tree limits have been reached.
+   */
+  @Nullable Shape with(final String key) {
+    final Shape existing = transitions.get(key);
+    if (existing != null) return existing;
+    if (keys.length >= MAX_SIZE) return null;
+    if (count.incrementAndGet() > MAX_SHAPES) {
+      count.decrementAndGet();
+      return null;
+    }
+    final Shape shape = new Shape(this, key);
+    final Shape previous = transitions.putIfAbsent(key, shape);
+    if (previous == null) return shape;
+    count.decrementAndGet();
+    return previous;
+  }
+
+  /**
+   * Returns the number of shapes in the tree.
+   * @return the shape count.
+   */
+  int count() {
+    return count.get();
+  }
+
+}
@@ -0,0 +1,213 @@
+package info.jdavid.ok.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * A map representation of a json object that only stores its values, in the order of its members,
+ * and shares its names with all the other objects with the same {@link Shape}.
+ * <p>
+ * Adding a member moves the map to the child shape. Removing a member, or adding one when the shape
+ * tree is full, turns it into a plain (ordered) map.
+ * <p>
+ * Like {@link java.util.HashMap}, it is not thread-safe.
+ */
+final class ShapedMap extends AbstractMap<String, Object> {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private Shape shape;
+  private Object[] values;
+  private @Nullable Map<String, Object> dictionary = null;
+  private @Nullable Set<Map.Entry<String, Object>> entrySet = null;
+
+  ShapedMap(final Shape shape) {
+    this.shape = shape;
+    final int hint = shape.getRoot().hint;
+    this.values = new Object[Math.max(hint == 0 ? INITIAL_CAPACITY : hint, shape.size())];
+  }
+
+  /**
+   * Returns the shape of the map.
+   * @return the shape, or null if the map was turned into a plain map.
+   */
+  @Nullable Shape shape() {
+    return dictionary == null ? shape : null;
+  }
+
+  /**
+   * Releases the unused capacity of the value array, once all the members have been added. The size
+   * is used as the initial capacity of the next maps of the same tree.
+   */
+  void trim() {
+    if (dictionary != null) return;
+    final int size = shape.size();
+    shape.getRoot().hint = size;
+    if (values.length > size) {
+      final Object[] values = new Object[size];
+      System.arraycopy(this.values, 0, values, 0, size);
+      this.values = values;
+    }
+  }
+
+  private Map<String, Object> dictionary() {
+    Map<String, Object> dictionary = this.dictionary;
+    if (dictionary == null) {
+      final String[] keys = shape.keys;
+      dictionary = new LinkedHashMap<String, Object>(keys.length * 2);
+      for (int i=0; i<keys.length; ++i) dictionary.put(keys[i], values[i]);
+      this.dictionary = dictionary;
+      values = new Object[0];
+    }
+    return dictionary;
+  }
+
+  @Override public int size() {
+    final Map<String, Object> dictionary = this.dictionary;
+    return dictionary == null ? shape.size() : dictionary.size();
+  }
+
+  @Override public boolean containsKey(final Object key) {
+    final Map<String, Object> dictionary = this.dictionary;
+    return dictionary == null ? shape.indexOf(key) != -1 : dictionary.containsKey(key);
+  }
+
+  @Override public @Nullable Object get(final Object key) {
+    final Map<String, Object> dictionary = this.dictionary;
+    if (dictionary != null) return dictionary.get(key);
+    final int index = shape.indexOf(key);
+    return index == -1 ? null : values[index];
+  }
+
+  @Override public @Nullable Object put(final String key, @Nullable final Object value) {
+    final Map<String, Object> dictionary = this.dictionary;
+    if (dictionary != null) return dictionary.put(key, value);
+    final int index = shape.indexOf(key);
+    if (index != -1) {
+      final Object previous = values[index];
+      values[index] = value;
+      return previous;
+    }
+    final Shape next = shape.with(key);
+    if (next == null) return dictionary().put(key, value);
+    final int size = shape.size();
+    if (size == values.length) {
+      // The array of a trimmed empty map has no room at all.
+      final Object[] values = new Object[Math.max(INITIAL_CAPACITY, size * 2)];
+      System.arraycopy(this.values, 0, values, 0, size);
+      this.values = values;
+    }
+    values[size] = value;
+    shape = next;
+    return null;
+  }
+
+  @Override public @Nullable Object remove(final Object key) {
+    if (dictionary == null && shape.indexOf(key) == -1) return null;
+    return dictionary().remove(key);
+  }
+
+  @Override public void clear() {
+    dictionary = null;
+    shape = shape.getRoot();
+    values = new Object[INITIAL_CAPACITY];
+  }
+
+  @Override public Set<Map.Entry<String, Object>> entrySet() {
+    Set<Map.Entry<String, Object>> entrySet = this.entrySet;
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+      this.entrySet = entrySet;
+    }
+    return entrySet;
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+    @Override public int size() {
+      return ShapedMap.this.size();
+    }
+
+    @Override public void clear() {
+      ShapedMap.this.clear();
+    }
+
+    @Override public Iterator<Map.Entry<String, Object>> iterator() {
+      final Map<String, Object> dictionary = ShapedMap.this.dictionary;
+      if (dictionary != null) return dictionary.entrySet().iterator();
+      final String[] keys = shape.keys;
+      return new Iterator<Map.Entry<String, Object>>() {
+        private int index = 0;
+        private int last = -1;
+
+        @Override public boolean hasNext() {
+          return index < keys.length;
+        }
+
+        @Override public Map.Entry<String, Object> next() {
+          if (index >= keys.length) throw new NoSuchElementException();
+          last = index;
+          return new Entry(keys[index], index++);
+        }
+
+        @Override public void remove() {
+          if (last == -1) throw new IllegalStateException();
+          ShapedMap.this.remove(keys[last]);
+          last = -1;
+        }
+      };
+    }
+  }
+
+  private final class Entry implements Map.Entry<String, Object> {
+    private final String key;
+    private final int index;
+
+    Entry(final String key, final int index) {
+      this.key = key;
+      this.index = index;
+    }
+
+    @Override public String getKey() {
+      return key;
+    }
+
+    @Override public @Nullable Object getValue() {
+      final Map<String, Object> dictionary = ShapedMap.this.dictionary;
+      return dictionary == null ? values[index] : dictionary.get(key);
+    }
+
+    @Override public @Nullable Object setValue(@Nullable final Object value) {
+      final Map<String, Object> dictionary = ShapedMap.this.dictionary;
+      if (dictionary != null) return dictionary.put(key, value);
+      final Object previous = values[index];
+      values[index] = value;
+      return previous;
+    }
+
+    @Override public boolean equals(final Object o) {
+      if (!(o instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      final Object value = getValue();
+      return key.equals(e.getKey()) &&
+             (value == null ? e.getValue() == null : value.equals(e.getValue()));
+    }
+
+    @Override public int hashCode() {
+      final Object value = getValue();
+      return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override public String toString() {
+      return key + "=" + getValue();
+    }
+  }
+
+}
@@ -0,0 +1,137 @@
+package info.jdavid.ok.json;
+
+import java.io.EOFException;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.ByteString;
+
+
+/**
+ * A bounded cache of canonical strings, keyed by their utf-8 bytes.
+ * <p>
+ * The lookup hashes the raw bytes still sitting in the source buffer and compares them with the
+ * bytes of the cached entry, so that a hit returns the canonical String without decoding anything.
+ * <p>
+ * The cache is a fixed size table of immutable entries. Colliding entries simply replace each other,
+ * which keeps the memory bounded, and makes the cache safe to share between threads without locking.
+ */
+class StringCache {
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Strings longer than this (in bytes) are never cached. */
+  static final int MAX_LENGTH = 64;
+
+  /** The cache shared by all readers for object names. */
+  static final StringCache NAMES = new StringCache(2048);
+
+  private final Entry[] entries;
+  private final int mask;
+
+  /**
+   * @param capacity the maximum number of entries (rounded up to a power of two).
+   */
+  StringCache(final int capacity) {
+    if (capacity < 2) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    final int size = Integer.highestOneBit(capacity - 1) << 1;
+    entries = new Entry[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Returns the canonical string for the next {@code byteCount} bytes of the buffer, or null if it
+   * isn't in the cache. The bytes are not consumed.
+   * @param buffer the buffer.
+   * @param byteCount the number of bytes of the string.
+   * @param hash the hash of those bytes (see {@link #hash(Buffer, long)}).
+   * @return the cached string or null.
+   */
+  @Nullable String get(final Buffer buffer, final long byteCount, final int hash) {
+    final Entry[] entries = this.entries;
+    final int index = hash & mask;
+    Entry entry = entries[index];
+    if (entry != null && entry.matches(buffer, byteCount, hash)) return entry.value;
+    entry = entries[index ^ 1];
+    if (entry != null && entry.matches(buffer, byteCount, hash)) return entry.value;
+    return null;
+  }
+
+  /**
+   * Reads the next {@code byteCount} bytes of the buffer and adds the resulting string to the cache.
+   * @param buffer the buffer.
+   * @param byteCount the number of bytes of the string.
+   * @param hash the hash of those bytes (see {@link #hash(Buffer, long)}).
+   * @return the decoded string.
+   */
+  String put(final Buffer buffer, final long byteCount, final int hash) throws EOFException {
+    final byte[] bytes = buffer.readByteArray(byteCount);
+    final String value = new String(bytes, UTF_8);
+    final Entry[] entries = this.entries;
+    final int index = hash & mask;
+    // Two-way set associative: use the free slot if there is one, otherwise evict the entry picked
+    // by the upper bits of the hash, so that two hot colliding strings don't keep evicting each other.
+    final int slot = entries[index] == null ? index :
+                     entries[index ^ 1] == null ? index ^ 1 :
+                     index ^ ((hash >>> 16) & 1);
+    entries[slot] = new Entry(hash, ByteString.of(bytes), value);
+    return value;
+  }
+
+  /**
+   * Reads the next {@code byteCount} bytes of the buffer as a string, returning the cached instance
+   * when there is one.
+   * @param buffer the buffer.
+   * @param byteCount the number of bytes of the string.
+   * @return the (canonical) string.
+   */
+  String read(final Buffer buffer, final long byteCount) throws EOFException {
+    if (byteCount > MAX_LENGTH) return buffer.readUtf8(byteCount);
+    final int hash = hash(buffer, byteCount);
+    final String cached = get(buffer, byteCount, hash);
+    if (cached == null) return put(buffer, byteCount, hash);
+    buffer.skip(byteCount);
+    return cached;
+  }
+
+  /** Removes all the entries. */
+  void clear() {
+    final Entry[] entries = this.entries;
+    for (int i=0; i<entries.length; ++i) {
+      entries[i] = null;
+    }
+  }
+
+  /**
+   * Computes the hash of the next {@code byteCount} bytes of the buffer, without consuming them.
+   * @param buffer the buffer.
+   * @param byteCount the number of bytes.
+   * @return the hash.
+   */
+  static int hash(final Buffer buffer, final long byteCount) {
+    int h = 0;
+    for (long i=0; i<byteCount; ++i) {
+      h = 31 * h + buffer.getByte(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Entry {
+    final int hash;
+    final ByteString bytes;
+    final String value;
+
+    Entry(final int hash, final ByteString bytes, final String value) {
+      this.hash = hash;
+      this.bytes = bytes;
+      this.value = value;
+    }
+
+    boolean matches(final Buffer buffer, final long byteCount, final int hash) {
+      return this.hash == hash && bytes.size() == byteCount && buffer.rangeEquals(0, bytes);
+    }
+  }
+
+}
@@ -0,0 +1,147 @@
+package info.jdavid.ok.json;
+
+import java.math.BigInteger;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * Shares the instances of identical objects and arrays (the same address block or the same list of
+ * tags repeated in a document, or across documents).
+ * <p>
+ * When a parser uses a subtree cache, every object and array is made immutable once it is complete,
+ * and is replaced by an identical one from the cache if there is one. Since the children were
+ * already replaced, comparing two candidates mostly compares references. Large subtrees are not
+ * cached.
+ * <p>
+ * The cache is a fixed size table, where colliding entries replace each other, so that the memory it
+ * retains is bounded. It can be shared by many parsers running concurrently. The statistics are not
+ * synchronized and are only approximate in that case.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SubtreeCache {
+
+  static final int DEFAULT_CAPACITY = 4096;
+  /** Subtrees with more values than this are not cached. */
+  static final int MAX_NODES = 256;
+
+  // Rough heap size estimates, for a 64-bit vm with compressed references.
+  static final long REFERENCE_BYTES = 4;
+  static final long MAP_BYTES = 16 + 48 + 16;
+  static final long ENTRY_BYTES = 32 + 2 * REFERENCE_BYTES;
+  static final long LIST_BYTES = 16 + 16;
+
+  private final Object[] entries;
+  private final int mask;
+
+  private long lookups = 0L;
+  private long hits = 0L;
+  private long bytes = 0L;
+
+  /**
+   * Creates a cache of up to 4096 subtrees.
+   */
+  public SubtreeCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the maximum number of subtrees to keep (rounded up to a power of two).
+   */
+  public SubtreeCache(final int capacity) {
+    if (capacity < 2) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    final int size = Integer.highestOneBit(capacity - 1) << 1;
+    entries = new Object[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Returns an identical subtree from the cache, or adds this one to the cache.
+   * @param value the frozen map or list.
+   * @param <T> FrozenMap or FrozenList.
+   * @return the cached instance, or the given one.
+   */
+  <T extends Frozen> T intern(final T value) {
+    if (value.nodes() > MAX_NODES) return value;
+    ++lookups;
+    final int h = value.hashCode();
+    final int index = (h ^ (h >>> 16)) & mask & ~1;
+    final Object[] entries = this.entries;
+    final Object first = entries[index];
+    if (first != null && first.hashCode() == h && first.equals(value)) {
+      ++hits;
+      bytes += value.bytes();
+      //noinspection unchecked
+      return (T)first;
+    }
+    final Object second = entries[index + 1];
+    if (second != null && second.hashCode() == h && second.equals(value)) {
+      ++hits;
+      bytes += value.bytes();
+      //noinspection unchecked
+      return (T)second;
+    }
+    // The most recent entry goes first, and pushes the other one out of the pair.
+    entries[index + 1] = first;
+    entries[index] = value;
+    return value;
+  }
+
+  /**
+   * Removes all the cached subtrees (the statistics are kept).
+   */
+  public void clear() {
+    final Object[] entries = this.entries;
+    for (int i=0; i<entries.length; ++i) entries[i] = null;
+  }
+
+  /**
+   * Returns the number of subtrees that were looked up.
+   * @return the lookup count.
+   */
+  public long getLookups() {
+    return lookups;
+  }
+
+  /**
+   * Returns the number of subtrees that were replaced by a cached instance.
+   * @return the hit count.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the ratio of lookups that were hits.
+   * @return the hit rate.
+   */
+  public double getHitRate() {
+    final long lookups = this.lookups;
+    return lookups == 0 ? 0.0 : (double)hits / lookups;
+  }
+
+  /**
+   * Returns an estimate of the heap saved by sharing the subtrees (the size of the instances that
+   * were dropped in favor of the cached ones).
+   * @return the size in bytes.
+   */
+  public long getDeduplicatedBytes() {
+    return bytes;
+  }
+
+  @Override public String toString() {
+    return "SubtreeCache{lookups=" + lookups + ", hits=" + hits + ", bytes=" + bytes + "}";
+  }
+
+  /**
+   * Returns an estimate of the heap used by a scalar value.
+   */
+  static long estimate(@Nullable final Object value) {
+    if (value == null || value instanceof Boolean) return 0L;
+    if (value instanceof CharSequence) return 40 + 2L * ((CharSequence)value).length();
+    if (value instanceof Integer) return 16L;
+    if (value instanceof BigInteger) return 40 + 4L * ((((BigInteger)value).bitLength() + 31) / 32);
+    return 24L;
+  }
+
+}
@@ -0,0 +1,604 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+
+/**
+ * A compact, read-only representation of a json document.
+ * <p>
+ * The structure is stored in a flat {@code long[]} "tape", and the strings in a single utf-8 byte
+ * pool. Every value is identified by its position on the tape (an int), and the navigation methods
+ * take and return those positions, so that looking up values doesn't allocate anything (apart from
+ * the Strings returned by {@link #getString(int)}). Missing values are reported as {@code -1}.
+ * <p>
+ * Tape layout: each entry holds the kind of the value in its upper 8 bits.
+ * <ul>
+ *   <li>Objects and arrays start with an entry holding the number of members or elements (bits 32 to
+ *   55) and the position after their end (bits 0 to 31), and stop with an end entry holding the
+ *   position of their start. Object members are a name entry (stored like strings) followed by the
+ *   value.
+ *   </li>
+ *   <li>Strings hold the offset of their bytes in the pool, where they are prefixed by their length.
+ *   </li>
+ *   <li>Integers that fit in 56 bits are stored inline. Larger longs and doubles use a second entry
+ *   for their 64 bits. Larger integers are stored as text in the pool.</li>
+ *   <li>true, false and null only have the kind.</li>
+ * </ul>
+ * A document can be read concurrently by many threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class TapeDocument {
+
+  public static final int OBJECT = 1;
+  public static final int ARRAY = 2;
+  public static final int STRING = 3;
+  public static final int INTEGER = 4;
+  public static final int DOUBLE = 5;
+  public static final int BIG_INTEGER = 6;
+  public static final int TRUE = 7;
+  public static final int FALSE = 8;
+  public static final int NULL = 9;
+  static final int END_OBJECT = 10;
+  static final int END_ARRAY = 11;
+  /** Integers that don't fit inline. */
+  static final int LONG = 12;
+  /** Object member names. */
+  static final int NAME = 13;
+
+  static final int KIND_SHIFT = 56;
+  static final long PAYLOAD_MASK = (1L << KIND_SHIFT) - 1;
+  static final int MAX_COUNT = 0xffffff;
+  static final long MIN_INLINE = -(1L << (KIND_SHIFT - 1));
+  static final long MAX_INLINE = (1L << (KIND_SHIFT - 1)) - 1;
+
+  private final long[] tape;
+  private final byte[] pool;
+
+  TapeDocument(final long[] tape, final byte[] pool) {
+    this.tape = tape;
+    this.pool = pool;
+  }
+
+  /**
+   * Returns the position of the root object or array.
+   * @return the root position.
+   */
+  public int root() {
+    return 0;
+  }
+
+  /**
+   * Returns the kind of value at the given position.
+   * @param node the position.
+   * @return {@link #OBJECT}, {@link #ARRAY}, {@link #STRING}, {@link #INTEGER}, {@link #DOUBLE},
+   * {@link #BIG_INTEGER}, {@link #TRUE}, {@link #FALSE} or {@link #NULL}.
+   */
+  public int kind(final int node) {
+    final int kind = (int)(tape[node] >>> KIND_SHIFT);
+    return kind == LONG ? INTEGER : kind;
+  }
+
+  /**
+   * Returns the number of members of an object, or the number of elements of an array.
+   * @param node the position of the object or array.
+   * @return the size, or -1 if the value is not an object or an array.
+   */
+  public int size(final int node) {
+    final long entry = tape[node];
+    final int kind = (int)(entry >>> KIND_SHIFT);
+    if (kind != OBJECT && kind != ARRAY) return -1;
+    final int count = (int)((entry >>> 32) & MAX_COUNT);
+    if (count < MAX_COUNT) return count;
+    int n = 0;
+    for (int child=first(node); child != -1; child=next(child)) ++n;
+    return n;
+  }
+
+  /**
+   * Returns the position of the first element of an array, or of the value of the first member of an
+   * object.
+   * @param node the position of the object or array.
+   * @return the position of the first child, or -1 if there isn't any.
+   */
+  public int first(final int node) {
+    final int kind = (int)(tape[node] >>> KIND_SHIFT);
+    if (kind == OBJECT) {
+      return (int)(tape[node + 1] >>> KIND_SHIFT) == END_OBJECT ? -1 : node + 2;
+    }
+    else if (kind == ARRAY) {
+      return (int)(tape[node + 1] >>> KIND_SHIFT) == END_ARRAY ? -1 : node + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the position of the next sibling of an array element or of an object member value.
+   * @param node the position of the element or member value.
+   * @return the position of the next sibling, or -1 if there isn't any.
+   */
+  public int next(final int node) {
+    final int after = after(node);
+    final int kind = (int)(tape[after] >>> KIND_SHIFT);
+    if (kind == END_ARRAY || kind == END_OBJECT) return -1;
+    // In an object, the next entry is the name of the next member.
+    return kind == NAME ? after + 1 : after;
+  }
+
+  /**
+   * Returns the name of an object member.
+   * @param node the position of the member value.
+   * @return the member name.
+   */
+  public String name(final int node) {
+    return string(tape[node - 1]);
+  }
+
+  /**
+   * Returns the value of an object member.
+   * @param node the position of the object.
+   * @param key the name of the member.
+   * @return the position of the member value, or -1 if the object doesn't have that member (or if
+   * the value is not an object).
+   */
+  public int get(final int node, final String key) {
+    final long entry = tape[node];
+    if ((int)(entry >>> KIND_SHIFT) != OBJECT) return -1;
+    final int end = (int)(entry & 0xffffffffL) - 1;
+    int i = node + 1;
+    while (i < end) {
+      if (utf8Equals(tape[i], key)) return i + 1;
+      i = after(i + 1);
+    }
+    return -1;
+  }
+
+  /**
+   * Returns an element of an array. Elements are skipped one by one until the index is reached.
+   * @param node the position of the array.
+   * @param index the index of the element.
+   * @return the position of the element, or -1 if the index is out of bounds (or if the value is not
+   * an array).
+   */
+  public int get(final int node, final int index) {
+    final long entry = tape[node];
+    if ((int)(entry >>> KIND_SHIFT) != ARRAY || index < 0) return -1;
+    final int end = (int)(entry & 0xffffffffL) - 1;
+    int i = node + 1;
+    for (int n=0; i<end; ++n) {
+      if (n == index) return i;
+      i = after(i);
+    }
+    return -1;
+  }
+
+  /**
+   * Returns whether the value at the given position is null. Missing values (-1) are considered null.
+   * @param node the position.
+   * @return true if the value is null.
+   */
+  public boolean isNull(final int node) {
+    return node == -1 || (int)(tape[node] >>> KIND_SHIFT) == NULL;
+  }
+
+  /**
+   * Returns the value of a boolean.
+   * @param node the position of the boolean.
+   * @return the boolean value.
+   * @throws IllegalStateException if the value is not a boolean.
+   */
+  public boolean getBoolean(final int node) {
+    final int kind = (int)(tape[node] >>> KIND_SHIFT);
+    if (kind == TRUE) return true;
+    if (kind == FALSE) return false;
+    throw new IllegalStateException("Expected a boolean but was " + kind);
+  }
+
+  /**
+   * Returns the value of a number as a long. Doubles are truncated.
+   * @param node the position of the number.
+   * @return the long value.
+   * @throws IllegalStateException if the value is not a number.
+   */
+  public long getLong(final int node) {
+    final long entry = tape[node];
+    switch ((int)(entry >>> KIND_SHIFT)) {
+      case INTEGER:
+        return (entry << (64 - KIND_SHIFT)) >> (64 - KIND_SHIFT);
+      case LONG:
+        return tape[node + 1];
+      case DOUBLE:
+        return (long)Double.longBitsToDouble(tape[node + 1]);
+      case BIG_INTEGER:
+        return new BigInteger(string(entry)).longValue();
+      default:
+        throw new IllegalStateException("Expected a number but was " + kind(node));
+    }
+  }
+
+  /**
+   * Returns the value of a number as a double.
+   * @param node the position of the number.
+   * @return the double value.
+   * @throws IllegalStateException if the value is not a number.
+   */
+  public double getDouble(final int node) {
+    final long entry = tape[node];
+    switch ((int)(entry >>> KIND_SHIFT)) {
+      case DOUBLE:
+        return Double.longBitsToDouble(tape[node + 1]);
+      case BIG_INTEGER:
+        return Double.parseDouble(string(entry));
+      default:
+        return getLong(node);
+    }
+  }
+
+  /**
+   * Returns the value of a number, as an Integer, a Long, a BigInteger or a Double (the same way as
+   * {@link Parser}).
+   * @param node the position of the number.
+   * @return the number.
+   * @throws IllegalStateException if the value is not a number.
+   */
+  public Number getNumber(final int node) {
+    final long entry = tape[node];
+    switch ((int)(entry >>> KIND_SHIFT)) {
+      case INTEGER:
+      case LONG: {
+        final long value = getLong(node);
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int)value;
+        return value;
+      }
+      case DOUBLE:
+        return Double.longBitsToDouble(tape[node + 1]);
+      case BIG_INTEGER:
+        return new BigInteger(string(entry));
+      default:
+        throw new IllegalStateException("Expected a number but was " + kind(node));
+    }
+  }
+
+  /**
+   * Returns the value of a string.
+   * @param node the position of the string.
+   * @return the string value.
+   * @throws IllegalStateException if the value is not a string.
+   */
+  public String getString(final int node) {
+    final long entry = tape[node];
+    if ((int)(entry >>> KIND_SHIFT) != STRING) {
+      throw new IllegalStateException("Expected a string but was " + kind(node));
+    }
+    return string(entry);
+  }
+
+  /**
+   * Compares a string value with the given string, without decoding it.
+   * @param node the position of the string.
+   * @param value the string to compare with.
+   * @return true if the value is a string equal to the given one.
+   */
+  public boolean stringEquals(final int node, final String value) {
+    final long entry = tape[node];
+    return (int)(entry >>> KIND_SHIFT) == STRING && utf8Equals(entry, value);
+  }
+
+  /**
+   * Converts the value at the given position to its {@link Parser} representation: maps for objects,
+   * lists for arrays, and Strings, Numbers and Booleans for the other values.
+   * @param node the position.
+   * @return the value.
+   */
+  public @Nullable Object toValue(final int node) {
+    switch (kind(node)) {
+      case OBJECT: {
+        final Map<String, Object> map = new HashMap<String, Object>();
+        for (int child=first(node); child != -1; child=next(child)) {
+          map.put(name(child), toValue(child));
+        }
+        return map;
+      }
+      case ARRAY: {
+        final List<Object> list = new ArrayList<Object>(size(node));
+        for (int child=first(node); child != -1; child=next(child)) {
+          list.add(toValue(child));
+        }
+        return list;
+      }
+      case STRING:
+        return getString(node);
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case NULL:
+        return null;
+      default:
+        return getNumber(node);
+    }
+  }
+
+  /**
+   * Returns the number of bytes used by the tape and the string pool.
+   * @return the size in bytes.
+   */
+  public long byteSize() {
+    return tape.length * 8L + pool.length;
+  }
+
+  /** Returns the position after the value at the given position. */
+  private int after(final int node) {
+    final long entry = tape[node];
+    switch ((int)(entry >>> KIND_SHIFT)) {
+      case OBJECT:
+      case ARRAY:
+        return (int)(entry & 0xffffffffL);
+      case LONG:
+      case DOUBLE:
+        return node + 2;
+      default:
+        return node + 1;
+    }
+  }
+
+  private int length(final int offset) {
+    final byte[] pool = this.pool;
+    return (pool[offset] & 0xff) << 24 | (pool[offset + 1] & 0xff) << 16 |
+           (pool[offset + 2] & 0xff) << 8 | (pool[offset + 3] & 0xff);
+  }
+
+  private String string(final long entry) {
+    final int offset = (int)(entry & PAYLOAD_MASK);
+    return new String(pool, offset + 4, length(offset), StringCache.UTF_8);
+  }
+
+  private boolean utf8Equals(final long entry, final String value) {
+    final int offset = (int)(entry & PAYLOAD_MASK);
+    return utf8Equals(pool, offset + 4, length(offset), value);
+  }
+
+  /**
+   * Compares utf-8 bytes with the characters of a string, without decoding or encoding anything.
+   */
+  static boolean utf8Equals(final byte[] bytes, final int offset, final int byteCount,
+                            final String value) {
+    final int length = value.length();
+    if (byteCount < length || byteCount > length * 3) return false;
+    int p = offset;
+    final int end = offset + byteCount;
+    for (int i=0; i<length; ++i) {
+      final int c = value.charAt(i);
+      if (c < 0x80) {
+        if (p == end || bytes[p++] != c) return false;
+      }
+      else if (c < 0x800) {
+        if (end - p < 2 ||
+            bytes[p++] != (byte)(0xc0 | c >> 6) ||
+            bytes[p++] != (byte)(0x80 | c & 0x3f)) return false;
+      }
+      else if (c < 0xd800 || c > 0xdfff) {
+        if (end - p < 3 ||
+            bytes[p++] != (byte)(0xe0 | c >> 12) ||
+            bytes[p++] != (byte)(0x80 | c >> 6 & 0x3f) ||
+            bytes[p++] != (byte)(0x80 | c & 0x3f)) return false;
+      }
+      else {
+        final int low = i + 1 < length ? value.charAt(i + 1) : 0;
+        if (c > 0xdbff || low < 0xdc00 || low > 0xdfff) return false;
+        ++i;
+        final int codePoint = 0x010000 + ((c & 0x03ff) << 10 | low & 0x03ff);
+        if (end - p < 4 ||
+            bytes[p++] != (byte)(0xf0 | codePoint >> 18) ||
+            bytes[p++] != (byte)(0x80 | codePoint >> 12 & 0x3f) ||
+            bytes[p++] != (byte)(0x80 | codePoint >> 6 & 0x3f) ||
+            bytes[p++] != (byte)(0x80 | codePoint & 0x3f)) return false;
+      }
+    }
+    return p == end;
+  }
+
+  /**
+   * Converts the given String to a
+   * {@link okio.BufferedSource} and passes it to {@link #parse(BufferedSource)}.
+   * @param s the json string to parse.
+   * @return the document, or null if the string is not a valid json object or array.
+   */
+  static @Nullable TapeDocument parse(@Nullable final String s) {
+    if (s == null) return null;
+    final Buffer buffer = new Buffer();
+    try {
+      return parse(buffer.writeUtf8(s));
+    }
+    finally {
+      buffer.close();
+    }
+  }
+
+  /**
+   * Reads a json object or array into a tape document.
+   * @param source the json string as an okio source.
+   * @return the document, or null if the source is not a valid json object or array.
+   */
+  static @Nullable TapeDocument parse(@Nullable final BufferedSource source) {
+    if (source == null) return null;
+    final JsonReader reader = new JsonReader(source);
+    try {
+      final JsonReader.Token token = reader.peek();
+      if (token != JsonReader.Token.BEGIN_OBJECT && token != JsonReader.Token.BEGIN_ARRAY) return null;
+      return new Writer().write(reader);
+    }
+    catch (final IOException e) {
+      Logger.log(e);
+      return null;
+    }
+    catch (final JsonDataException e) {
+      Logger.log(e);
+      return null;
+    }
+    finally {
+      try {
+        reader.close();
+      }
+      catch (final IOException ignore) {}
+    }
+  }
+
+  /**
+   * Builds the tape and the string pool from the reader tokens.
+   */
+  private static final class Writer {
+    /** Pool offsets of the member names, so that repeated names are only stored once. */
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+    private long[] tape = new long[256];
+    private int tapeSize = 0;
+    private byte[] pool = new byte[1024];
+    private int poolSize = 0;
+    /** The positions of the open objects and arrays, and their number of children. */
+    private int[] starts = new int[32];
+    private int[] counts = new int[32];
+    private int depth = 0;
+
+    TapeDocument write(final JsonReader reader) throws IOException {
+      do {
+        switch (reader.peek()) {
+          case BEGIN_OBJECT:
+            reader.beginObject();
+            open(OBJECT);
+            break;
+          case BEGIN_ARRAY:
+            reader.beginArray();
+            open(ARRAY);
+            break;
+          case END_OBJECT:
+            reader.endObject();
+            close(END_OBJECT);
+            break;
+          case END_ARRAY:
+            reader.endArray();
+            close(END_ARRAY);
+            break;
+          case NAME: {
+            final String name = reader.nextName();
+            final Integer offset = names.get(name);
+            if (offset == null) {
+              final int added = string(ByteString.encodeUtf8(name));
+              if (names.size() < 65536) names.put(name, added);
+              append((long)NAME << KIND_SHIFT | added);
+            }
+            else {
+              append((long)NAME << KIND_SHIFT | offset);
+            }
+            break;
+          }
+          case STRING: {
+            final CharSequence value = reader.nextStringView();
+            final ByteString bytes = value instanceof Utf8String ?
+                                     ((Utf8String)value).utf8() :
+                                     ByteString.encodeUtf8(value.toString());
+            ++counts[depth - 1];
+            append((long)STRING << KIND_SHIFT | string(bytes));
+            break;
+          }
+          case NUMBER: {
+            ++counts[depth - 1];
+            final Number number = Parser.stringToNumber(reader.nextString());
+            if (number instanceof Double) {
+              append((long)DOUBLE << KIND_SHIFT);
+              append(Double.doubleToRawLongBits(number.doubleValue()));
+            }
+            else if (number instanceof BigInteger) {
+              append((long)BIG_INTEGER << KIND_SHIFT | string(ByteString.encodeUtf8(number.toString())));
+            }
+            else {
+              final long value = number.longValue();
+              if (value >= MIN_INLINE && value <= MAX_INLINE) {
+                append((long)INTEGER << KIND_SHIFT | value & PAYLOAD_MASK);
+              }
+              else {
+                append((long)LONG << KIND_SHIFT);
+                append(value);
+              }
+            }
+            break;
+          }
+          case BOOLEAN:
+            ++counts[depth - 1];
+            append((long)(reader.nextBoolean() ? TRUE : FALSE) << KIND_SHIFT);
+            break;
+          case NULL:
+            ++counts[depth - 1];
+            reader.nextNull();
+            append((long)NULL << KIND_SHIFT);
+            break;
+          default:
+            throw new JsonDataException("Unexpected " + reader.peek());
+        }
+      } while (depth > 0);
+      final long[] tape = new long[tapeSize];
+      System.arraycopy(this.tape, 0, tape, 0, tapeSize);
+      final byte[] pool = new byte[poolSize];
+      System.arraycopy(this.pool, 0, pool, 0, poolSize);
+      return new TapeDocument(tape, pool);
+    }
+
+    private void open(final int kind) {
+      if (depth > 0) ++counts[depth - 1];
+      if (depth == starts.length) {
+        final int[] starts = new int[depth * 2];
+        final int[] counts = new int[depth * 2];
+        System.arraycopy(this.starts, 0, starts, 0, depth);
+        System.arraycopy(this.counts, 0, counts, 0, depth);
+        this.starts = starts;
+        this.counts = counts;
+      }
+      starts[depth] = tapeSize;
+      counts[depth++] = 0;
+      append((long)kind << KIND_SHIFT);
+    }
+
+    private void close(final int kind) {
+      final int start = starts[--depth];
+      append((long)kind << KIND_SHIFT | start);
+      final long count = Math.min(counts[depth], MAX_COUNT);
+      tape[start] |= count << 32 | tapeSize;
+    }
+
+    private void append(final long entry) {
+      if (tapeSize == tape.length) {
+        final long[] tape = new long[tapeSize * 2];
+        System.arraycopy(this.tape, 0, tape, 0, tapeSize);
+        this.tape = tape;
+      }
+      tape[tapeSize++] = entry;
+    }
+
+    private int string(final ByteString bytes) {
+      final int size = bytes.size();
+      if (poolSize + size + 4 > pool.length) {
+        final byte[] pool = new byte[Math.max(this.pool.length * 2, poolSize + size + 4)];
+        System.arraycopy(this.pool, 0, pool, 0, poolSize);
+        this.pool = pool;
+      }
+      final int offset = poolSize;
+      pool[offset] = (byte)(size >>> 24);
+      pool[offset + 1] = (byte)(size >>> 16);
+      pool[offset + 2] = (byte)(size >>> 8);
+      pool[offset + 3] = (byte)size;
+      for (int i=0; i<size; ++i) pool[offset + 4 + i] = bytes.getByte(i);
+      poolSize += size + 4;
+      return offset;
+    }
+  }
+
+}
@@ -0,0 +1,34 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+
+
+/**
+ * Reads values of a given type from a {@link JsonReader} and writes them to a {@link JsonWriter}
+ * (see {@link Binder}). Adapters are built once per type and shared, so they must be immutable once
+ * built.
+ * <p>
+ * Null values are handled by the callers: {@link #read(JsonReader)} is never called when the next
+ * token is null, and {@link #write(JsonWriter, Object)} is never called with null.
+ * @param <T> the type.
+ */
+abstract class TypeAdapter<T> {
+
+  /**
+   * Reads the next value.
+   * @param reader the reader.
+   * @return the value.
+   * @throws IOException if the json is not valid.
+   * @throws JsonDataException if the json value doesn't match the type.
+   */
+  abstract T read(final JsonReader reader) throws IOException;
+
+  /**
+   * Writes a value.
+   * @param writer the writer.
+   * @param value the value (not null).
+   * @throws IOException if the value can't be written.
+   */
+  abstract void write(final JsonWriter writer, final T value) throws IOException;
+
+}
@@ -0,0 +1,99 @@
+package info.jdavid.ok.json;
+
+import javax.annotation.Nullable;
+
+import okio.ByteString;
+
+
+/**
+ * A string value kept as the utf-8 bytes it was read from, and only decoded when its characters are
+ * actually needed.
+ * <p>
+ * {@link Builder} writes those bytes back out as they are, without decoding or re-encoding them.
+ * <p>
+ * Note that a Utf8String is never equal to a String with the same characters (just like a
+ * StringBuilder isn't). Use {@link #toString()} or {@link String#contentEquals(CharSequence)} to
+ * compare it with a String.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class Utf8String implements CharSequence, Comparable<Utf8String> {
+
+  private static final int UNKNOWN = 0;
+  private static final int ASCII = 1;
+  private static final int NON_ASCII = 2;
+
+  private final ByteString bytes;
+  private int encoding = UNKNOWN;
+  private @Nullable String string = null;
+
+  Utf8String(final ByteString bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Creates a string view from its utf-8 bytes.
+   * @param bytes the utf-8 bytes.
+   * @return the string view.
+   */
+  public static Utf8String of(final ByteString bytes) {
+    return new Utf8String(bytes);
+  }
+
+  /**
+   * Returns the utf-8 bytes of the string.
+   * @return the bytes.
+   */
+  public ByteString utf8() {
+    return bytes;
+  }
+
+  private boolean isAscii() {
+    int encoding = this.encoding;
+    if (encoding == UNKNOWN) {
+      encoding = ASCII;
+      final int size = bytes.size();
+      for (int i=0; i<size; ++i) {
+        if (bytes.getByte(i) < 0) {
+          encoding = NON_ASCII;
+          break;
+        }
+      }
+      this.encoding = encoding;
+    }
+    return encoding == ASCII;
+  }
+
+  @Override public int length() {
+    return isAscii() ? bytes.size() : toString().length();
+  }
+
+  @Override public char charAt(final int index) {
+    return isAscii() ? (char)bytes.getByte(index) : toString().charAt(index);
+  }
+
+  @Override public CharSequence subSequence(final int start, final int end) {
+    return toString().subSequence(start, end);
+  }
+
+  @Override public String toString() {
+    String string = this.string;
+    if (string == null) {
+      string = bytes.utf8();
+      this.string = string;
+    }
+    return string;
+  }
+
+  @Override public boolean equals(final Object o) {
+    return o == this || o instanceof Utf8String && bytes.equals(((Utf8String)o).bytes);
+  }
+
+  @Override public int hashCode() {
+    return bytes.hashCode();
+  }
+
+  @Override public int compareTo(final Utf8String o) {
+    return bytes.compareTo(o.bytes);
+  }
+
+}
@@ -0,0 +1,217 @@
+package info.jdavid.ok.json;
+
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+
+
+/**
+ * Shares the instances of short string values that are repeated many times, such as enum-like
+ * values, country codes or currency codes.
+ * <p>
+ * Values are grouped by path, the path being the name of the object member they belong to (array
+ * elements belong to the member holding the array, and the elements of a top-level array to
+ * {@link #ROOT}). Each path has its own small cache, and keeps track of its hit rate: paths with a
+ * high cardinality (ids, free text, ...) are disabled after a short trial period, so that they
+ * don't pay for lookups that will almost never hit. Disabled paths are given another trial from time
+ * to time, in case the data has changed.
+ * <p>
+ * A deduplicator can be shared by many parsers running concurrently. The statistics are not
+ * synchronized and are only approximate in that case.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ValueDeduplicator {
+
+  /** The path of the elements of a top-level array. */
+  public static final String ROOT = "$";
+
+  static final int DEFAULT_MAX_LENGTH = 32;
+  static final int DEFAULT_CAPACITY = 64;
+  static final int MAX_PATHS = 1024;
+
+  /** Number of lookups after which a path is evaluated. */
+  static final int TRIAL = 256;
+  /** Number of values that are not looked up before a disabled path is given another trial. */
+  static final int PROBATION = 65536;
+
+  private final int maxLength;
+  private final int capacity;
+  private final ConcurrentHashMap<String, Path> paths = new ConcurrentHashMap<String, Path>();
+
+  /**
+   * Creates a deduplicator for values up to 32 bytes long, with up to 64 distinct values per path.
+   */
+  public ValueDeduplicator() {
+    this(DEFAULT_MAX_LENGTH, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param maxLength the maximum length (in utf-8 bytes) of the values to deduplicate.
+   * @param capacity the maximum number of distinct values to keep per path.
+   */
+  public ValueDeduplicator(final int maxLength, final int capacity) {
+    if (maxLength < 1 || maxLength > StringCache.MAX_LENGTH) {
+      throw new IllegalArgumentException("Invalid max length: " + maxLength);
+    }
+    if (capacity < 2) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    this.maxLength = maxLength;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns the cache for the given path, or null if too many paths are tracked already.
+   * @param name the path.
+   * @return the cache for that path.
+   */
+  @Nullable StringCache path(final String name) {
+    final Path path = paths.get(name);
+    if (path != null) return path;
+    if (paths.size() >= MAX_PATHS) return null;
+    final Path created = new Path(name, maxLength, capacity);
+    final Path previous = paths.putIfAbsent(name, created);
+    return previous == null ? created : previous;
+  }
+
+  /**
+   * Returns the total number of values that were looked up.
+   * @return the number of lookups.
+   */
+  public long getLookups() {
+    long lookups = 0L;
+    for (final Path path: paths.values()) {
+      lookups += path.lookups;
+    }
+    return lookups;
+  }
+
+  /**
+   * Returns the total number of values that were found in the cache, and therefore shared.
+   * @return the number of hits.
+   */
+  public long getHits() {
+    long hits = 0L;
+    for (final Path path: paths.values()) {
+      hits += path.hits;
+    }
+    return hits;
+  }
+
+  /**
+   * Returns the ratio of hits over lookups for all the paths.
+   * @return the hit rate (between 0 and 1).
+   */
+  public double getHitRate() {
+    long lookups = 0L;
+    long hits = 0L;
+    for (final Path path: paths.values()) {
+      lookups += path.lookups;
+      hits += path.hits;
+    }
+    return lookups == 0L ? 0.0 : (double)hits / lookups;
+  }
+
+  /**
+   * Returns a snapshot of the statistics of each path.
+   * @return the path statistics.
+   */
+  public List<PathStatistics> getStatistics() {
+    final List<PathStatistics> list = new ArrayList<PathStatistics>(paths.size());
+    for (final Path path: paths.values()) {
+      list.add(new PathStatistics(path.name, path.lookups, path.hits, path.enabled));
+    }
+    return list;
+  }
+
+  /**
+   * The statistics of a single path.
+   */
+  public static final class PathStatistics {
+    /** The path (member name). */
+    public final String path;
+    /** The number of values that were looked up. */
+    public final long lookups;
+    /** The number of values that were found in the cache. */
+    public final long hits;
+    /** Whether the deduplication is currently enabled for this path. */
+    public final boolean enabled;
+
+    PathStatistics(final String path, final long lookups, final long hits, final boolean enabled) {
+      this.path = path;
+      this.lookups = lookups;
+      this.hits = hits;
+      this.enabled = enabled;
+    }
+
+    /**
+     * Returns the ratio of hits over lookups.
+     * @return the hit rate (between 0 and 1).
+     */
+    public double getHitRate() {
+      return lookups == 0L ? 0.0 : (double)hits / lookups;
+    }
+
+    @Override public String toString() {
+      return path + ": " + hits + "/" + lookups + (enabled ? "" : " (disabled)");
+    }
+  }
+
+  private static final class Path extends StringCache {
+    final String name;
+    final int maxLength;
+    boolean enabled = true;
+    long lookups = 0L;
+    long hits = 0L;
+    int trialLookups = 0;
+    int trialHits = 0;
+    int skipped = 0;
+
+    Path(final String name, final int maxLength, final int capacity) {
+      super(capacity);
+      this.name = name;
+      this.maxLength = maxLength;
+    }
+
+    @Override String read(final Buffer buffer, final long byteCount) throws EOFException {
+      if (byteCount > maxLength) return buffer.readUtf8(byteCount);
+      if (!enabled) {
+        if (++skipped < PROBATION) return buffer.readUtf8(byteCount);
+        // Give the path another trial.
+        clear();
+        skipped = 0;
+        trialLookups = 0;
+        trialHits = 0;
+        enabled = true;
+      }
+      ++lookups;
+      final int hash = hash(buffer, byteCount);
+      final String cached = get(buffer, byteCount, hash);
+      final String value;
+      if (cached == null) {
+        value = put(buffer, byteCount, hash);
+      }
+      else {
+        ++hits;
+        ++trialHits;
+        buffer.skip(byteCount);
+        value = cached;
+      }
+      if (++trialLookups == TRIAL) {
+        // Disable the path if less than a quarter of the lookups were hits: the hashing and the extra
+        // entries then cost more than what is saved.
+        if (trialHits < TRIAL / 4) {
+          enabled = false;
+          clear();
+        }
+        trialLookups = 0;
+        trialHits = 0;
+      }
+      return value;
+    }
+  }
+
+}
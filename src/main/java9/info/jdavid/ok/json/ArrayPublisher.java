@@ -0,0 +1,211 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import okio.BufferedSource;
+
+
+/**
+ * A {@link Flow.Publisher} of the elements of a json array, parsed one at a time as they are
+ * requested by the subscriber (maps for json objects, lists for json arrays, strings, numbers and
+ * booleans). The source is only read as far as needed to parse the requested elements, so the whole
+ * array is never held in memory. The array is either the document itself or a value selected by a
+ * path such as {@code $.data.items}. Everything after the array is ignored.
+ * <p>
+ * Json null elements are skipped, as a publisher can't emit null. Invalid json, or a document without
+ * an array at the path, ends the stream with {@link Flow.Subscriber#onError(Throwable)}. The source is
+ * closed when the stream completes, fails or is cancelled.
+ * <p>
+ * The source can only be read once: the publisher accepts a single subscriber. Without an executor,
+ * the elements are parsed and emitted on the thread that calls {@link Flow.Subscription#request(long)}.
+ * <p>
+ * This class is only available on Java 9 and above.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ArrayPublisher implements Flow.Publisher<Object> {
+
+  private final BufferedSource source;
+  private final JsonPath path;
+  private final Parser.Options options;
+  private final @Nullable Executor executor;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  /**
+   * Creates a publisher of the elements of the array that is the json document.
+   * @param source the json document.
+   */
+  public ArrayPublisher(final BufferedSource source) {
+    this(source, "$", new Parser.Options(), null);
+  }
+
+  /**
+   * Creates a publisher of the elements of the array at the given path.
+   * @param source the json document.
+   * @param path the path of the array, such as {@code $.data.items} or {@code $.pages[0]}.
+   * @throws IllegalArgumentException if the path is not valid.
+   */
+  public ArrayPublisher(final BufferedSource source, final String path) {
+    this(source, path, new Parser.Options(), null);
+  }
+
+  /**
+   * Creates a publisher of the elements of the array at the given path.
+   * @param source the json document.
+   * @param path the path of the array, such as {@code $.data.items} or {@code $.pages[0]}.
+   * @param options the parsing options. The error handler and the fail-fast setting are ignored.
+   * @param executor the executor that parses and emits the elements, or null to use the thread that
+   * requests them.
+   * @throws IllegalArgumentException if the path is not valid.
+   */
+  public ArrayPublisher(final BufferedSource source, final String path,
+                        final Parser.Options options, @Nullable final Executor executor) {
+    this.source = source;
+    this.path = JsonPath.parse(path);
+    this.options = options.copy();
+    this.executor = executor;
+  }
+
+  @Override public void subscribe(final Flow.Subscriber<? super Object> subscriber) {
+    if (subscriber == null) throw new NullPointerException();
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override public void request(final long n) {}
+        @Override public void cancel() {}
+      });
+      subscriber.onError(new IllegalStateException("The publisher only accepts one subscriber."));
+      return;
+    }
+    final ElementSubscription subscription =
+      new ElementSubscription(subscriber, new ArrayElements(source, path, options), executor);
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * Emits the elements as they are requested. The parsing and the signals are serialized by a
+   * work-in-progress counter, so that they never overlap and a request made from onNext doesn't
+   * recurse.
+   */
+  private static final class ElementSubscription implements Flow.Subscription, Runnable {
+
+    private final Flow.Subscriber<? super Object> subscriber;
+    private final ArrayElements elements;
+    private final @Nullable Executor executor;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled = false;
+    private volatile @Nullable Throwable invalidRequest = null;
+    private boolean done = false;
+
+    ElementSubscription(final Flow.Subscriber<? super Object> subscriber,
+                        final ArrayElements elements, @Nullable final Executor executor) {
+      this.subscriber = subscriber;
+      this.elements = elements;
+      this.executor = executor;
+    }
+
+    @Override public void request(final long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("The request must be positive: " + n);
+      }
+      else {
+        long current;
+        long next;
+        do {
+          current = demand.get();
+          next = current + n;
+          // An overflow makes the demand unbounded.
+          if (next < 0) next = Long.MAX_VALUE;
+        } while (!demand.compareAndSet(current, next));
+      }
+      schedule();
+    }
+
+    @Override public void cancel() {
+      cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (wip.getAndIncrement() != 0) return;
+      if (executor == null) {
+        run();
+      }
+      else {
+        executor.execute(this);
+      }
+    }
+
+    @Override public void run() {
+      int missed = 1;
+      do {
+        drain();
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void drain() {
+      if (done) return;
+      if (cancelled) {
+        finish();
+        return;
+      }
+      final Throwable invalid = invalidRequest;
+      if (invalid != null) {
+        finish();
+        subscriber.onError(invalid);
+        return;
+      }
+      long requested;
+      while ((requested = demand.get()) > 0) {
+        long emitted = 0;
+        while (emitted < requested) {
+          if (cancelled) {
+            finish();
+            return;
+          }
+          final Object element;
+          try {
+            if (!elements.hasNext()) {
+              finish();
+              subscriber.onComplete();
+              return;
+            }
+            element = elements.next();
+          }
+          catch (final IOException e) {
+            finish();
+            subscriber.onError(e);
+            return;
+          }
+          catch (final JsonDataException e) {
+            finish();
+            subscriber.onError(e);
+            return;
+          }
+          if (element == null) continue;
+          subscriber.onNext(element);
+          ++emitted;
+        }
+        if (requested == Long.MAX_VALUE) continue;
+        demand.addAndGet(-emitted);
+      }
+    }
+
+    private void finish() {
+      done = true;
+      try {
+        elements.close();
+      }
+      catch (final IOException ignore) {}
+    }
+
+  }
+
+}
@@ -0,0 +1,118 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestArrayElements {
+
+  private static ArrayElements elements(final String json, final String path) {
+    return new ArrayElements(new Buffer().writeUtf8(json), JsonPath.parse(path), new Parser.Options());
+  }
+
+  @Test
+  public void testElements() throws IOException {
+    final ArrayElements elements =
+      elements("[{\"a\":1},[true,null],\"s\",2.5,false,null,3]", "$");
+    assertTrue(elements.hasNext());
+    final Map<?, ?> map = (Map<?, ?>)elements.next();
+    assertNotNull(map);
+    assertEquals(1, map.get("a"));
+    assertEquals(Arrays.asList(true, null), elements.next());
+    assertEquals("s", elements.next());
+    assertEquals(2.5, elements.next());
+    assertEquals(false, elements.next());
+    assertTrue(elements.hasNext());
+    assertNull(elements.next());
+    assertEquals(3, elements.next());
+    assertFalse(elements.hasNext());
+    assertFalse(elements.hasNext());
+    elements.close();
+  }
+
+  @Test
+  public void testPath() throws IOException {
+    final ArrayElements elements =
+      elements("{\"meta\":{\"n\":2},\"data\":{\"items\":[1,2]},\"invalid\":[}", "$.data.items");
+    assertEquals(1, elements.next());
+    assertEquals(2, elements.next());
+    assertFalse(elements.hasNext());
+    elements.close();
+  }
+
+  @Test
+  public void testIncremental() throws IOException {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<10000; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"id\":").append(i).append(",\"name\":\"name").append(i).append("\"}");
+    }
+    final Buffer buffer = new Buffer().writeUtf8(sb.append(']').toString());
+    final long size = buffer.size();
+    final ArrayElements elements =
+      new ArrayElements(buffer, JsonPath.ROOT, new Parser.Options());
+    final Map<?, ?> first = (Map<?, ?>)elements.next();
+    assertNotNull(first);
+    assertEquals(0, first.get("id"));
+    assertTrue(buffer.size() > size / 2);
+    int count = 1;
+    while (elements.hasNext()) {
+      assertEquals(count++, ((Map<?, ?>)elements.next()).get("id"));
+    }
+    assertEquals(10000, count);
+  }
+
+  @Test
+  public void testNotAnArray() throws IOException {
+    final ArrayElements elements = elements("{\"a\":1}", "$");
+    try {
+      elements.hasNext();
+      fail();
+    }
+    catch (final JsonDataException ignore) {}
+    assertFalse(elements.hasNext());
+    final ArrayElements missing = elements("{\"a\":[]}", "$.b");
+    try {
+      missing.hasNext();
+      fail();
+    }
+    catch (final JsonDataException ignore) {}
+  }
+
+  @Test
+  public void testInvalid() throws IOException {
+    final ErrorCollector errors = new ErrorCollector();
+    final ArrayElements elements = new ArrayElements(
+      new Buffer().writeUtf8("[1,{\"a\":},3]"), JsonPath.ROOT, new Parser.Options().errors(errors)
+    );
+    assertEquals(1, elements.next());
+    try {
+      elements.next();
+      fail();
+    }
+    catch (final JsonEncodingException ignore) {}
+    assertFalse(elements.hasNext());
+    assertFalse(errors.hasErrors());
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    for (final String json: new String[] { "[1,\"abc", "[1,{\"a\":[\"b" }) {
+      final ArrayElements elements = elements(json, "$");
+      assertEquals(1, elements.next());
+      try {
+        elements.next();
+        fail(json);
+      }
+      catch (final JsonEncodingException ignore) {}
+      assertFalse(elements.hasNext());
+    }
+  }
+
+}
@@ -0,0 +1,198 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestBinder {
+
+  enum Status { ACTIVE, DISABLED }
+
+  static class Base {
+    long id;
+    transient String ignored = "x";
+    static String constant = "c";
+  }
+
+  @SuppressWarnings("unused")
+  static class User extends Base {
+    String name;
+    int age;
+    double score;
+    float ratio;
+    boolean admin;
+    short s;
+    byte b;
+    char initial;
+    Integer boxed;
+    Status status;
+    List<String> tags;
+    Set<Status> statuses;
+    Map<String, Integer> counts;
+    SortedMap<String, List<Long>> series;
+    int[] codes;
+    Address[] addresses;
+    BigDecimal balance;
+    Object extra;
+    User friend;
+    private User() {}
+  }
+
+  static class Address {
+    String city;
+    final String country = null;
+  }
+
+  private static final String JSON =
+    "{\"id\":12345678901,\"name\":\"Ann \\\"A\\\"\",\"age\":32,\"score\":4.5,\"ratio\":0.25," +
+    "\"admin\":true,\"s\":-3,\"b\":7,\"initial\":\"A\",\"boxed\":null,\"status\":\"ACTIVE\"," +
+    "\"tags\":[\"a\",\"b\"],\"statuses\":[\"DISABLED\",\"ACTIVE\",\"DISABLED\"]," +
+    "\"counts\":{\"x\":1,\"y\":2},\"series\":{\"b\":[1,2],\"a\":[]},\"codes\":[1,2,3]," +
+    "\"addresses\":[{\"city\":\"Paris\",\"country\":\"FR\"},null],\"balance\":1234.50," +
+    "\"extra\":{\"k\":[1,\"v\",false,null]},\"unknown\":{\"a\":[1,{}]}," +
+    "\"friend\":{\"id\":2,\"name\":\"Bob\",\"friend\":null}}";
+
+  @Test
+  public void testParse() {
+    final User user = Binder.parse(JSON, User.class);
+    assertNotNull(user);
+    assertEquals(12345678901L, user.id);
+    assertEquals("x", user.ignored);
+    assertEquals("Ann \"A\"", user.name);
+    assertEquals(32, user.age);
+    assertEquals(4.5, user.score, 0.0);
+    assertEquals(0.25f, user.ratio, 0.0f);
+    assertTrue(user.admin);
+    assertEquals(-3, user.s);
+    assertEquals(7, user.b);
+    assertEquals('A', user.initial);
+    assertNull(user.boxed);
+    assertEquals(Status.ACTIVE, user.status);
+    assertEquals(Arrays.asList("a", "b"), user.tags);
+    assertEquals(
+      Arrays.asList(Status.DISABLED, Status.ACTIVE), Arrays.asList(user.statuses.toArray())
+    );
+    assertEquals(Integer.valueOf(2), user.counts.get("y"));
+    assertEquals("a", user.series.firstKey());
+    assertEquals(Arrays.asList(1L, 2L), user.series.get("b"));
+    assertArrayEquals(new int[] { 1, 2, 3 }, user.codes);
+    assertEquals(2, user.addresses.length);
+    assertEquals("Paris", user.addresses[0].city);
+    assertEquals("FR", user.addresses[0].country);
+    assertNull(user.addresses[1]);
+    assertEquals(new BigDecimal("1234.50"), user.balance);
+    assertEquals(
+      Collections.singletonMap("k", Arrays.asList(1, "v", false, null)), user.extra
+    );
+    assertNotNull(user.friend);
+    assertEquals("Bob", user.friend.name);
+    assertNull(user.friend.friend);
+  }
+
+  @Test
+  public void testRoundTrip() {
+    final User user = Binder.parse(JSON, User.class);
+    final String json = Binder.build(user);
+    assertFalse(json.contains("ignored"));
+    assertFalse(json.contains("constant"));
+    assertFalse(json.contains("boxed"));
+    assertTrue(json.contains("\"name\":\"Ann \\\"A\\\"\""));
+    assertTrue(json.contains("\"status\":\"ACTIVE\""));
+    assertTrue(json.contains("\"addresses\":[{\"city\":\"Paris\",\"country\":\"FR\"},null]"));
+    final Map<String, ?> expected = Parser.parse(JSON);
+    final Map<String, ?> actual = Parser.parse(json);
+    assertNotNull(expected);
+    assertNotNull(actual);
+    assertEquals(expected.get("series"), actual.get("series"));
+    assertEquals(expected.get("extra"), actual.get("extra"));
+    assertEquals(expected.get("codes"), actual.get("codes"));
+    final User copy = Binder.parse(json, User.class);
+    assertNotNull(copy);
+    assertEquals(json, Binder.build(copy));
+  }
+
+  @Test
+  public void testScalars() {
+    assertEquals(Arrays.asList("a", 1, true), Binder.parse("[\"a\",1,true]", List.class));
+    assertEquals("[1,2]", Binder.build(new long[] { 1, 2 }));
+    assertEquals("\"DISABLED\"", Binder.build(Status.DISABLED));
+    assertEquals("null", Binder.build(null));
+    assertEquals("{\"a\":[1.5,null]}",
+                 Binder.build(Collections.singletonMap("a", Arrays.asList(1.5, null))));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertNull(Binder.parse("{\"age\":\"old\"}", User.class));
+    assertNull(Binder.parse("{\"age\":12345678901}", User.class));
+    assertNull(Binder.parse("{\"status\":\"UNKNOWN\"}", User.class));
+    assertNull(Binder.parse("{\"name\":", User.class));
+    assertNull(Binder.parse("null", User.class));
+    final User user = Binder.parse("{\"age\":1e2}", User.class);
+    assertNotNull(user);
+    assertEquals(100, user.age);
+  }
+
+  static class NoDefaultConstructor {
+    final int value;
+    NoDefaultConstructor(final int value) {
+      this.value = value;
+    }
+  }
+
+  @Test
+  public void testUnsupported() {
+    try {
+      Binder.parse("{}", NoDefaultConstructor.class);
+      fail();
+    }
+    catch (final IllegalArgumentException ignore) {}
+    try {
+      Binder.parse("{}", Runnable.class);
+      fail();
+    }
+    catch (final IllegalArgumentException ignore) {}
+  }
+
+  @Test
+  public void testInvalidNumbers() {
+    assertNull(Binder.parse("{\"balance\":\"1.2.3\"}", User.class));
+    assertNull(Binder.parse("1.5", BigInteger.class));
+    assertNull(Binder.parse("\"x\"", Number.class));
+    assertEquals(new BigInteger("12345678901234567890"),
+                 Binder.parse("12345678901234567890", BigInteger.class));
+    try {
+      Binder.build(Double.NaN);
+      fail();
+    }
+    catch (final IllegalArgumentException ignore) {}
+    try {
+      Binder.build(new float[] { Float.POSITIVE_INFINITY });
+      fail();
+    }
+    catch (final IllegalArgumentException ignore) {}
+  }
+
+  @Test
+  public void testSource() throws IOException {
+    final User user = Binder.parse(new Buffer().writeUtf8("{\"name\":\"a\"}"), User.class);
+    assertNotNull(user);
+    assertEquals("a", user.name);
+    final Buffer buffer = new Buffer();
+    Binder.build(buffer, user);
+    assertEquals("{\"id\":0,\"name\":\"a\",\"age\":0,", buffer.readUtf8(27));
+  }
+
+}
@@ -0,0 +1,147 @@
+package info.jdavid.ok.json;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestColumnTable {
+
+  @Test
+  public void testColumns() {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<200; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"id\":").append(i).append(",\"status\":\"").append(i % 3 == 0 ? "KO" : "OK").append('"');
+      sb.append(",\"ok\":").append(i % 2 == 0);
+      if (i % 5 != 0) sb.append(",\"score\":").append(i % 7 == 0 ? String.valueOf(i) : (i + 0.5));
+      sb.append('}');
+    }
+    final String json = sb.append(']').toString();
+    final ColumnTable table = Parser.parseColumns(json);
+    assertNotNull(table);
+    assertEquals(200, table.rows());
+    assertEquals(4, table.columns().size());
+    assertEquals("score", table.columns().get(3).name());
+
+    final ColumnTable.Column id = table.column("id");
+    assertNotNull(id);
+    assertEquals(ColumnTable.Column.LONG, id.kind());
+    long sum = 0;
+    final long[] ids = id.longs();
+    for (int i=0; i<table.rows(); ++i) sum += ids[i];
+    assertEquals(199 * 200 / 2, sum);
+
+    final ColumnTable.Column status = table.column("status");
+    assertNotNull(status);
+    assertEquals(ColumnTable.Column.STRING, status.kind());
+    assertEquals(Arrays.asList("KO", "OK"), status.dictionary());
+    assertEquals(0, status.codes()[3]);
+    assertEquals(1, status.codes()[4]);
+    assertEquals("OK", status.getString(199));
+
+    final ColumnTable.Column ok = table.column("ok");
+    assertNotNull(ok);
+    assertTrue(ok.getBoolean(10));
+    assertFalse(ok.getBoolean(11));
+
+    final ColumnTable.Column score = table.column("score");
+    assertNotNull(score);
+    assertEquals(ColumnTable.Column.DOUBLE, score.kind());
+    assertTrue(score.isNull(0));
+    assertTrue(score.isNull(195));
+    assertFalse(score.isNull(199));
+    assertEquals(7.0, score.getDouble(7), 0.0);
+    assertEquals(199.5, score.getDouble(199), 0.0);
+
+    final List<?> list = Parser.parse(json);
+    assertNotNull(list);
+    for (int i=0; i<table.rows(); ++i) {
+      final Map<?, ?> record = (Map<?, ?>)list.get(i);
+      for (final ColumnTable.Column column: table.columns()) {
+        final Object expected = record.get(column.name());
+        if (expected instanceof Integer && column.kind() == ColumnTable.Column.DOUBLE) {
+          assertEquals(((Integer)expected).doubleValue(), column.get(i));
+        }
+        else {
+          assertEquals(expected, column.get(i));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMixed() {
+    final ColumnTable table = Parser.parseColumns(
+      "[{\"a\":1,\"b\":null},{\"a\":\"x\",\"b\":{\"c\":[1]}},1,{\"b\":true,\"a\":12345678901234567890123}]"
+    );
+    assertNotNull(table);
+    assertEquals(4, table.rows());
+    final ColumnTable.Column a = table.column("a");
+    assertNotNull(a);
+    assertEquals(ColumnTable.Column.OBJECT, a.kind());
+    assertEquals(1, a.get(0));
+    assertEquals("x", a.get(1));
+    assertTrue(a.isNull(2));
+    assertEquals(new BigInteger("12345678901234567890123"), a.get(3));
+    final ColumnTable.Column b = table.column("b");
+    assertNotNull(b);
+    assertEquals(ColumnTable.Column.OBJECT, b.kind());
+    assertNull(b.get(0));
+    assertEquals(Parser.parse("{\"c\":[1]}"), b.get(1));
+    assertEquals(Boolean.TRUE, b.get(3));
+    final ColumnTable empty = Parser.parseColumns("[{\"n\":null}]");
+    assertNotNull(empty);
+    assertEquals(ColumnTable.Column.NULL, empty.columns().get(0).kind());
+    assertTrue(empty.columns().get(0).isNull(0));
+  }
+
+  @Test
+  public void testNumbers() {
+    final ColumnTable table = Parser.parseColumns(
+      "[{\"a\":12345678901234567890,\"b\":1e2},{\"a\":9999999999999999999,\"b\":-2E-1}]"
+    );
+    assertNotNull(table);
+    final ColumnTable.Column a = table.column("a");
+    assertNotNull(a);
+    assertEquals(new BigInteger("12345678901234567890"), a.get(0));
+    assertEquals(new BigInteger("9999999999999999999"), a.get(1));
+    final ColumnTable.Column b = table.column("b");
+    assertNotNull(b);
+    assertEquals(ColumnTable.Column.DOUBLE, b.kind());
+    assertEquals(100.0, b.getDouble(0), 0.0);
+    assertEquals(-0.2, b.getDouble(1), 0.0);
+  }
+
+  @Test
+  public void testPath() {
+    final String json =
+      "{\"meta\":{\"items\":[1]},\"data\":{\"pages\":[{\"x\":[]},{\"row.list\":[{\"v\":1},{\"v\":2}]}]}}";
+    final ColumnTable table = Parser.parseColumns(new Buffer().writeUtf8(json), "$.data.pages[1]['row.list']");
+    assertNotNull(table);
+    assertEquals(2, table.rows());
+    assertEquals(2L, table.column("v").getLong(1));
+    assertNull(Parser.parseColumns(new Buffer().writeUtf8(json), "$.data.pages[2]"));
+    assertNull(Parser.parseColumns(new Buffer().writeUtf8(json), "$.missing"));
+    assertNull(Parser.parseColumns(new Buffer().writeUtf8(json), "$.data"));
+    assertNull(Parser.parseColumns("[{\"a\":1},{\"a\":[}]"));
+    assertEquals("$.data.pages[1]['row.list']", JsonPath.parse("$.data.pages[1]['row.list']").toString());
+    try {
+      JsonPath.parse("data");
+      fail();
+    }
+    catch (final IllegalArgumentException ignore) {}
+    try {
+      JsonPath.parse("$[x]");
+      fail();
+    }
+    catch (final IllegalArgumentException ignore) {}
+  }
+
+}
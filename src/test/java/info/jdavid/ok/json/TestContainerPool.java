@@ -0,0 +1,58 @@
+package info.jdavid.ok.json;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestContainerPool {
+
+  private static final String JSON = "{\"a\":[1,2,{\"b\":[]}],\"c\":{\"d\":null}}";
+
+  @Test
+  public void testRecycle() {
+    final ContainerPool pool = new ContainerPool();
+    final Parser.Options options = new Parser.Options().containers(pool);
+    final Map<String, ?> first = Parser.parse(JSON, options);
+    assertNotNull(first);
+    assertEquals(Parser.parse(JSON), first);
+    final List<?> a = (List<?>)first.get("a");
+    final Map<?, ?> c = (Map<?, ?>)first.get("c");
+    assertEquals(0, pool.getMapCount());
+    Parser.release(first, pool);
+    assertEquals(3, pool.getMapCount());
+    assertEquals(2, pool.getListCount());
+    assertTrue(first.isEmpty());
+
+    final Map<String, ?> second = Parser.parse(JSON, options);
+    assertNotNull(second);
+    assertEquals(Parser.parse(JSON), second);
+    assertEquals(0, pool.getMapCount());
+    assertEquals(0, pool.getListCount());
+    assertTrue(second == first || second == c || second.get("a") == a);
+  }
+
+  @Test
+  public void testBounds() {
+    final ContainerPool pool = new ContainerPool(2);
+    final List<?> list = Parser.parse("[[],[],[],{}]", new Parser.Options().containers(pool));
+    Parser.release(list, pool);
+    assertEquals(2, pool.getListCount());
+    assertEquals(1, pool.getMapCount());
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<=ContainerPool.MAX_SIZE; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append(i);
+    }
+    final ContainerPool other = new ContainerPool();
+    Parser.release(Parser.parse(sb.append(']').toString(), new Parser.Options().containers(other)), other);
+    assertEquals(0, other.getListCount());
+    Parser.release(Parser.parse("[{}]", new Parser.Options().freeze(true)), other);
+    assertEquals(0, other.getListCount());
+    assertEquals(0, other.getMapCount());
+  }
+
+}
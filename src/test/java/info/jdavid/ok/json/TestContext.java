@@ -0,0 +1,121 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+
+public class TestContext {
+
+  private static final String JSON = "{\"a\":[1,2,{\"b\":\"c\"}],\"d\":true}";
+
+  @Test
+  public void testReuse() {
+    final Parser.Context context = new Parser.Context();
+    for (int i=0; i<3; ++i) {
+      final Map<String, ?> map = context.parse(JSON);
+      assertNotNull(map);
+      assertEquals(2, map.size());
+      assertEquals(3, ((List<?>)map.get("a")).size());
+    }
+    // A failed parse doesn't leave anything behind.
+    assertNotNull(context.parse("{\"a\":[1,"));
+    assertNull(context.parse("1"));
+    final Map<String, ?> expected = Parser.parse(JSON);
+    final Map<String, ?> fromSource = context.parse(new Buffer().writeUtf8(JSON));
+    final Map<String, ?> frozen = context.parse(JSON, new Parser.Options().freeze(true));
+    assertEquals(expected, fromSource);
+    assertEquals(expected, frozen);
+    assertSame(Parser.Context.local(), Parser.Context.local());
+  }
+
+  @Test
+  public void testReentrant() {
+    // The source parses another document while it is being read with the thread context.
+    final Buffer buffer = new Buffer().writeUtf8(JSON);
+    final Map<String, ?> map = Parser.parse(Okio.buffer(new ForwardingSource(buffer) {
+      @Override public long read(final Buffer sink, final long byteCount) throws IOException {
+        assertEquals(2, Parser.<Map<String, ?>>parse(JSON).size());
+        return super.read(sink, byteCount);
+      }
+    }));
+    assertNotNull(map);
+    assertEquals(2, map.size());
+  }
+
+  @Test
+  public void testBusy() {
+    final Parser.Context context = new Parser.Context();
+    final boolean[] rejected = new boolean[1];
+    // The container factory parses again with the same context while it is in use.
+    final Parser.Options options = new Parser.Options().containers(new ContainerFactory() {
+      @Override public Map<String, Object> newMap() {
+        try {
+          context.parse("{\"x\":0}");
+        }
+        catch (final IllegalStateException e) {
+          rejected[0] = true;
+        }
+        return new HashMap<String, Object>();
+      }
+      @Override public List<Object> newList() {
+        return new ArrayList<Object>();
+      }
+      @Override public void release(final Map<String, Object> map) {}
+      @Override public void release(final List<Object> list) {}
+    });
+    // A truncated document would be continued by the one written by the nested call.
+    final String truncated = "{\"a\":[1,";
+    final Map<String, ?> expected = Parser.parse(truncated);
+    final Map<String, ?> map = context.parse(truncated, options);
+    assertTrue(rejected[0]);
+    assertEquals(expected, map);
+  }
+
+  @Ignore("Benchmark: the allocations depend on the JVM, run it manually.")
+  @Test
+  public void testAllocations() throws Exception {
+    final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    final Method allocated;
+    try {
+      allocated = Class.forName("com.sun.management.ThreadMXBean").
+        getMethod("getThreadAllocatedBytes", long.class);
+      assumeTrue((Long)allocated.invoke(bean, Thread.currentThread().getId()) >= 0);
+    }
+    catch (final Exception e) {
+      assumeTrue(false);
+      return;
+    }
+    final int n = 20000;
+    final long id = Thread.currentThread().getId();
+    final Parser.Context context = new Parser.Context();
+    for (int i=0; i<n; ++i) {
+      new Parser.Context().parse(JSON);
+      context.parse(JSON);
+    }
+    final long start = (Long)allocated.invoke(bean, id);
+    for (int i=0; i<n; ++i) new Parser.Context().parse(JSON);
+    final long middle = (Long)allocated.invoke(bean, id);
+    for (int i=0; i<n; ++i) context.parse(JSON);
+    final long end = (Long)allocated.invoke(bean, id);
+    final long before = (middle - start) / n;
+    final long after = (end - middle) / n;
+    assertTrue("Allocated bytes per parse: " + before + " (new context), " + after + " (reused)",
+               after < before);
+  }
+
+}
@@ -0,0 +1,101 @@
+package info.jdavid.ok.json;
+
+import java.io.File;
+import java.io.IOException;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestDirectDocument {
+
+  private static String records(final int count) {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<count; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"id\":").append(i).append(",\"name\":\"n\\u00e9").append(i);
+      sb.append("\",\"score\":").append(i / 2.0).append(",\"ok\":").append(i % 2 == 0);
+      sb.append(",\"tags\":[],\"extra\":null,\"big\":").append(Long.MAX_VALUE).append('}');
+    }
+    return sb.append(']').toString();
+  }
+
+  private static void check(final DirectDocument doc, final int count) {
+    final long root = doc.root();
+    assertEquals(TapeDocument.ARRAY, doc.kind(root));
+    assertEquals(count, doc.size(root));
+    assertEquals(-1L, doc.get(root, count));
+    for (int i=0; i<count; ++i) {
+      final long record = doc.get(root, i);
+      assertEquals(TapeDocument.OBJECT, doc.kind(record));
+      assertEquals(7, doc.size(record));
+      assertEquals(i, doc.getLong(doc.get(record, "id")));
+      assertEquals("n\u00e9" + i, doc.getString(doc.get(record, "name")));
+      assertTrue(doc.stringEquals(doc.get(record, "name"), "n\u00e9" + i));
+      assertEquals(i / 2.0, doc.getDouble(doc.get(record, "score")), 0.0);
+      assertEquals(i % 2 == 0, doc.getBoolean(doc.get(record, "ok")));
+      assertEquals(0, doc.size(doc.get(record, "tags")));
+      assertTrue(doc.isNull(doc.get(record, "extra")));
+      assertEquals(Long.MAX_VALUE, doc.getLong(doc.get(record, "big")));
+      assertEquals(-1L, doc.get(record, "missing"));
+      assertEquals("name", doc.name(record, 1));
+      assertEquals(doc.get(record, "score"), doc.get(record, 2));
+    }
+  }
+
+  @Test
+  public void testDirect() {
+    final DirectDocument doc = Parser.parseDirect(new Buffer().writeUtf8(records(500)));
+    assertNotNull(doc);
+    check(doc, 500);
+  }
+
+  @Test
+  public void testSmallChunks() {
+    final DirectDocument doc = DirectDocument.parse(new Buffer().writeUtf8(records(500)), null, 6);
+    assertNotNull(doc);
+    check(doc, 500);
+  }
+
+  @Test
+  public void testFile() throws IOException {
+    final File file = File.createTempFile("okjson", ".doc");
+    try {
+      final DirectDocument doc = DirectDocument.parse(new Buffer().writeUtf8(records(200)), file, 12);
+      assertNotNull(doc);
+      check(doc, 200);
+      // The file keeps the length of its mapped chunks, the header holds the document size.
+      assertEquals(0L, (file.length() - DirectDocument.HEADER) % (1 << 12));
+      assertTrue(file.length() >= DirectDocument.HEADER + doc.byteSize());
+      final DirectDocument mapped = DirectDocument.open(file);
+      assertNotNull(mapped);
+      assertEquals(doc.byteSize(), mapped.byteSize());
+      check(mapped, 200);
+      // Writing the file again while the previous document is still mapped.
+      final DirectDocument again = DirectDocument.parse(new Buffer().writeUtf8(records(20)), file, 12);
+      assertNotNull(again);
+      check(again, 20);
+      final DirectDocument remapped = DirectDocument.open(file);
+      assertNotNull(remapped);
+      check(remapped, 20);
+    }
+    finally {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    assertNull(Parser.parseDirect(null));
+    assertNull(DirectDocument.parse("1"));
+    assertNull(DirectDocument.parse("{\"a\":[1,2}"));
+    final DirectDocument doc = DirectDocument.parse("{}");
+    assertNotNull(doc);
+    assertEquals(-1L, doc.get(doc.root(), "a"));
+    assertNull(doc.name(doc.root(), 0));
+  }
+
+}
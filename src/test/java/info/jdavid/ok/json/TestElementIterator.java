@@ -0,0 +1,158 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestElementIterator {
+
+  @Test
+  public void testIterate() {
+    final ElementIterator iterator = Parser.iterate(new Buffer().writeUtf8("[1,null,\"a\",[]]"));
+    assertTrue(iterator.hasNext());
+    assertEquals(1, iterator.next());
+    assertNull(iterator.next());
+    assertEquals("a", iterator.next());
+    assertTrue(iterator.hasNext());
+    assertTrue(iterator.next() instanceof java.util.List);
+    assertFalse(iterator.hasNext());
+    try {
+      iterator.next();
+      fail();
+    }
+    catch (final NoSuchElementException ignore) {}
+    try {
+      iterator.remove();
+      fail();
+    }
+    catch (final UnsupportedOperationException ignore) {}
+  }
+
+  @Test
+  public void testEnvelope() {
+    final int n = 100000;
+    final StringBuilder sb = new StringBuilder("{\"meta\":{\"count\":").append(n).append("},");
+    sb.append("\"data\":{\"items\":[");
+    for (int i=0; i<n; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"id\":").append(i).append(",\"tags\":[\"x\",\"y\"]}");
+    }
+    sb.append("],\"next\":null},\"trailer\":\"");
+    final Buffer buffer = new Buffer().writeUtf8(sb.toString());
+    final boolean[] closed = new boolean[1];
+    final BufferedSource source = Okio.buffer(new ForwardingSource(buffer) {
+      @Override public void close() throws IOException {
+        closed[0] = true;
+        super.close();
+      }
+    });
+    final ErrorCollector errors = new ErrorCollector();
+    final ElementIterator iterator =
+      Parser.iterate(source, "$.data.items", new Parser.Options().errors(errors));
+    int count = 0;
+    while (iterator.hasNext()) {
+      final Map<?, ?> item = (Map<?, ?>)iterator.next();
+      assertNotNull(item);
+      assertEquals(count++, item.get("id"));
+      if (count == 10) assertTrue(buffer.size() > 0);
+    }
+    assertEquals(n, count);
+    assertFalse(errors.hasErrors());
+    assertTrue(closed[0]);
+  }
+
+  @Test
+  public void testMissing() {
+    final ErrorCollector errors = new ErrorCollector();
+    final ElementIterator iterator = Parser.iterate(
+      new Buffer().writeUtf8("{\"data\":{}}"), "$.data.items", new Parser.Options().errors(errors)
+    );
+    assertFalse(iterator.hasNext());
+    assertEquals(1, errors.getCount());
+  }
+
+  @Test
+  public void testInvalid() {
+    final ErrorCollector errors = new ErrorCollector();
+    final ElementIterator iterator = Parser.iterate(
+      new Buffer().writeUtf8("[{\"a\":1},{\"a\":,\"b\":2},{\"a\":3}]"), "$",
+      new Parser.Options().errors(errors)
+    );
+    assertTrue(iterator.hasNext());
+    assertNotNull(iterator.next());
+    assertTrue(iterator.hasNext());
+    try {
+      iterator.next();
+      fail();
+    }
+    catch (final NoSuchElementException ignore) {}
+    assertFalse(iterator.hasNext());
+    assertEquals(1, errors.getCount());
+  }
+
+  @Test
+  public void testTruncated() {
+    final ErrorCollector errors = new ErrorCollector();
+    final ElementIterator iterator =
+      Parser.iterate(new Buffer().writeUtf8("[1,\"abc"), "$", new Parser.Options().errors(errors));
+    assertEquals(1, iterator.next());
+    assertTrue(iterator.hasNext());
+    try {
+      iterator.next();
+      fail();
+    }
+    catch (final NoSuchElementException ignore) {}
+    assertFalse(iterator.hasNext());
+    assertEquals(1, errors.getCount());
+    assertTrue(errors.getErrors().get(0) instanceof JsonEncodingException);
+  }
+
+  @Test
+  public void testOffsets() {
+    final String json = "{\"items\": [1, {\"a\": [\"]\"]} ,\"x\"\n]}";
+    final ElementIterator iterator = Parser.iterate(new Buffer().writeUtf8(json), "$.items");
+    assertEquals(-1L, iterator.getStart());
+    final List<String> slices = new ArrayList<String>();
+    while (iterator.hasNext()) {
+      iterator.next();
+      slices.add(json.substring((int)iterator.getStart(), (int)iterator.getEnd()));
+    }
+    assertEquals(Arrays.asList("1", "{\"a\": [\"]\"]}", "\"x\""), slices);
+    final ElementIterator streamed = Parser.iterate(
+      Okio.buffer(Okio.source(new Buffer().writeUtf8(json).inputStream())), "$.items",
+      new Parser.Options().trackLines(true)
+    );
+    streamed.next();
+    assertEquals(json.indexOf('1'), streamed.getStart());
+    assertEquals(json.indexOf('1') + 1, streamed.getEnd());
+    final ElementIterator unknown =
+      Parser.iterate(Okio.buffer(Okio.source(new Buffer().writeUtf8(json).inputStream())), "$.items");
+    unknown.next();
+    assertEquals(-1L, unknown.getStart());
+    unknown.close();
+    streamed.close();
+  }
+
+  @Test
+  public void testClose() {
+    final Buffer buffer = new Buffer().writeUtf8("[1,2,3]");
+    final ElementIterator iterator = Parser.iterate(buffer);
+    assertEquals(1, iterator.next());
+    iterator.close();
+    assertFalse(iterator.hasNext());
+    iterator.close();
+  }
+
+}
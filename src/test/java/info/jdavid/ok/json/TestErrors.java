@@ -0,0 +1,73 @@
+package info.jdavid.ok.json;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestErrors {
+
+  @Test
+  public void testCollect() {
+    final ErrorCollector errors = new ErrorCollector();
+    final Parser.Options options = new Parser.Options().errors(errors);
+    final Map<String, ?> map = Parser.parse("{\"a\":1,\"b\":[1,2", options);
+    assertNotNull(map);
+    assertEquals(1, ((Number)map.get("a")).intValue());
+    assertEquals(Arrays.asList(1, 2), map.get("b"));
+    assertTrue(errors.hasErrors());
+    final int count = errors.getCount();
+    assertEquals(count, errors.getErrors().size());
+    for (final Exception e: errors.getErrors()) {
+      assertNotNull(e.getMessage());
+      assertEquals(0, e.getStackTrace().length);
+    }
+    errors.clear();
+    assertFalse(errors.hasErrors());
+    assertNotNull(Parser.parse("{\"a\":[1,2,3]}", options));
+    assertFalse(errors.hasErrors());
+  }
+
+  @Test
+  public void testLimit() {
+    final ErrorCollector errors = new ErrorCollector(1);
+    final List<?> list = Parser.parse("[{\"a\":{\"b\":[1", new Parser.Options().errors(errors));
+    assertNotNull(list);
+    assertTrue(errors.getCount() > 1);
+    assertEquals(1, errors.getErrors().size());
+  }
+
+  @Test
+  public void testFailFast() {
+    final ErrorCollector errors = new ErrorCollector();
+    final Parser.Options options = new Parser.Options().errors(errors).failFast(true);
+    assertNull(Parser.parse("{\"a\":1,\"b\":[1,2", options));
+    assertEquals(1, errors.getCount());
+    errors.clear();
+    assertNull(Parser.parse("{\"a\":{\"b\":[1,{\"c\":x y}]}}", options));
+    assertEquals(1, errors.getCount());
+    errors.clear();
+    final Map<String, ?> map = Parser.parse("{\"a\":[1,2,3]}", options);
+    assertNotNull(map);
+    assertFalse(errors.hasErrors());
+    assertNotNull(Parser.parse("{\"a\":[1,2,3]}", options));
+  }
+
+  @Test
+  public void testIgnore() {
+    final Map<String, ?> map =
+      Parser.parse("{\"a\":1,\"b\":[1,2", new Parser.Options().errors(ErrorHandler.IGNORE));
+    assertNotNull(map);
+    assertEquals(2, map.size());
+    // The reader can't skip the ']' left after the error: the parser must not loop on it.
+    final Map<String, ?> partial =
+      Parser.parse("{\"a\":[3 4],\"b\":1}", new Parser.Options().errors(ErrorHandler.IGNORE));
+    assertNotNull(partial);
+    assertEquals(Arrays.asList(3), partial.get("a"));
+  }
+
+}
@@ -0,0 +1,192 @@
+package info.jdavid.ok.json;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestFeedParser {
+
+  private static final String JSON =
+    "{\"a\": [1, -2.5, 3e2, true, false, null], \"b\\n\\u00e9\\ud83d\\ude00\": \"c\\\"d\", " +
+    "\"e\": {\"f\": []}, \"g\": \"\u00e9t\u00e9\"}";
+
+  private static byte[] utf8(final String s) {
+    try {
+      return s.getBytes("UTF-8");
+    }
+    catch (final UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String describe(final FeedParser parser, final FeedParser.Event event) {
+    switch (event) {
+      case NAME:
+      case STRING:
+        return event + ":" + parser.getString();
+      case NUMBER:
+        return event + ":" + parser.getNumber();
+      case BOOLEAN:
+        return event + ":" + parser.getBoolean();
+      case VALUE:
+        return event + ":" + parser.getValue();
+      default:
+        return event.toString();
+    }
+  }
+
+  private static List<String> events(final byte[] bytes, final int chunk) throws JsonEncodingException {
+    final FeedParser parser = new FeedParser();
+    final List<String> events = new ArrayList<String>();
+    int offset = 0;
+    while (true) {
+      final FeedParser.Event event = parser.next();
+      if (event == FeedParser.Event.END_DOCUMENT) break;
+      if (event == FeedParser.Event.NEED_INPUT) {
+        if (offset == bytes.length) {
+          parser.end();
+        }
+        else {
+          final int n = Math.min(chunk, bytes.length - offset);
+          parser.feed(bytes, offset, n);
+          offset += n;
+        }
+        continue;
+      }
+      events.add(describe(parser, event));
+    }
+    assertEquals(bytes.length, parser.getOffset());
+    assertEquals(0L, parser.getPendingBytes());
+    return events;
+  }
+
+  @Test
+  public void testEvents() throws JsonEncodingException {
+    final byte[] bytes = utf8(JSON);
+    final List<String> expected = events(bytes, bytes.length);
+    assertEquals(Arrays.asList(
+      "BEGIN_OBJECT", "NAME:a", "BEGIN_ARRAY", "NUMBER:1", "NUMBER:-2.5", "NUMBER:300.0",
+      "BOOLEAN:true", "BOOLEAN:false", "NULL", "END_ARRAY",
+      "NAME:b\n\u00e9\ud83d\ude00", "STRING:c\"d", "NAME:e", "BEGIN_OBJECT", "NAME:f", "BEGIN_ARRAY",
+      "END_ARRAY", "END_OBJECT", "NAME:g", "STRING:\u00e9t\u00e9", "END_OBJECT"
+    ), expected);
+    for (int chunk=1; chunk<8; ++chunk) {
+      assertEquals(expected, events(bytes, chunk));
+    }
+  }
+
+  @Test
+  public void testValues() throws JsonEncodingException {
+    final FeedParser parser = new FeedParser().setValueDepth(1);
+    assertEquals(FeedParser.Event.NEED_INPUT, parser.next());
+    parser.feed(utf8("[{\"id\":1,\"tags\":[\"a\",\"b\"]},{\"id\""));
+    assertEquals(FeedParser.Event.BEGIN_ARRAY, parser.next());
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    final Map<?, ?> first = (Map<?, ?>)parser.getValue();
+    assertNotNull(first);
+    assertEquals(1, first.get("id"));
+    assertEquals(Arrays.asList("a", "b"), first.get("tags"));
+    assertEquals(FeedParser.Event.NEED_INPUT, parser.next());
+    parser.feed(ByteBuffer.wrap(utf8(":2}, 3 ,")));
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    assertEquals(2, ((Map<?, ?>)parser.getValue()).get("id"));
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    assertEquals(3, parser.getValue());
+    assertEquals(FeedParser.Event.NEED_INPUT, parser.next());
+    parser.feed(utf8("null]")).end();
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    assertNull(parser.getValue());
+    assertEquals(FeedParser.Event.END_ARRAY, parser.next());
+    assertEquals(FeedParser.Event.END_DOCUMENT, parser.next());
+  }
+
+  @Test
+  public void testDocuments() throws JsonEncodingException {
+    final FeedParser parser = new FeedParser().setValueDepth(0);
+    parser.feed(utf8("{\"a\":1}\n{\"a\":2}\n12"));
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    assertEquals(Parser.parse("{\"a\":1}"), parser.getValue());
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    assertEquals(Parser.parse("{\"a\":2}"), parser.getValue());
+    // The number might not be complete yet.
+    assertEquals(FeedParser.Event.NEED_INPUT, parser.next());
+    parser.feed(utf8("3")).end();
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    assertEquals(123, parser.getValue());
+    assertEquals(FeedParser.Event.END_DOCUMENT, parser.next());
+    final FeedParser split = new FeedParser().setValueDepth(0);
+    split.feed(utf8("true"));
+    assertEquals(FeedParser.Event.VALUE, split.next());
+    assertEquals(FeedParser.Event.NEED_INPUT, split.next());
+    split.feed(utf8("\r\nnull")).end();
+    assertEquals(FeedParser.Event.VALUE, split.next());
+    assertNull(split.getValue());
+    assertEquals(FeedParser.Event.END_DOCUMENT, split.next());
+  }
+
+  @Test
+  public void testBigIntegers() throws JsonEncodingException {
+    final FeedParser parser = new FeedParser().setValueDepth(0);
+    parser.feed(utf8("[12345678901234567890,9999999999999999999,-99999999999999999999,1]")).end();
+    assertEquals(FeedParser.Event.VALUE, parser.next());
+    assertEquals(
+      Arrays.asList(
+        new BigInteger("12345678901234567890"), new BigInteger("9999999999999999999"),
+        new BigInteger("-99999999999999999999"), 1
+      ),
+      parser.getValue()
+    );
+    assertEquals(FeedParser.Event.END_DOCUMENT, parser.next());
+  }
+
+  private static void assertInvalid(final String json, final long offset) {
+    final FeedParser parser = new FeedParser().setValueDepth(0);
+    parser.feed(utf8(json)).end();
+    try {
+      while (parser.next() != FeedParser.Event.END_DOCUMENT) {}
+      fail(json);
+    }
+    catch (final JsonEncodingException e) {
+      assertEquals(json, offset, e.getOffset());
+      try {
+        parser.next();
+        fail();
+      }
+      catch (final JsonEncodingException again) {
+        assertSame(e, again);
+      }
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    assertInvalid("[1,]", 3);
+    assertInvalid("{\"a\" 1}", 5);
+    assertInvalid("{'a':1}", 1);
+    assertInvalid("[tru]", 1);
+    assertInvalid("[01]", 3);
+    assertInvalid("[\"a\\x\"]", 5);
+    assertInvalid("[\"abc", 1);
+    assertInvalid("[[", 2);
+    assertInvalid("[\"a\tb\"]", 1);
+    assertInvalid("{\"a\nb\":1}", 1);
+    final StringBuilder sb = new StringBuilder("[\"");
+    for (int i=0; i<10000; ++i) sb.append("ab");
+    assertInvalid(sb.append("\u0001\"]").toString(), 1);
+    assertInvalid("truefalse", 4);
+    assertInvalid("nulltrue", 4);
+    assertInvalid("1\"a\"", 1);
+    assertInvalid("[1][2]", 3);
+    assertInvalid("{}\"a\"", 2);
+  }
+
+}
@@ -0,0 +1,105 @@
+package info.jdavid.ok.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestFrozen {
+
+  private static final Parser.Options FROZEN = new Parser.Options().freeze(true);
+
+  @Test
+  public void testParse() {
+    final Map<String, ?> map = Parser.parse("{\"a\":{\"b\":[1,2,{\"c\":\"d\"}]},\"e\":null}", FROZEN);
+    assertTrue(map instanceof FrozenMap);
+    final Map<?, ?> a = (Map<?, ?>)map.get("a");
+    assertTrue(a instanceof FrozenMap);
+    final List<?> b = (List<?>)a.get("b");
+    assertTrue(b instanceof FrozenList);
+    assertTrue(b.get(2) instanceof FrozenMap);
+    assertTrue(map.containsKey("e"));
+    assertEquals(Parser.parse(Builder.build(map)), map);
+    final List<?> list = Parser.parse("[[],{}]", FROZEN);
+    assertTrue(list instanceof FrozenList);
+    assertTrue(list.get(0) instanceof FrozenList);
+  }
+
+  @Test
+  public void testWith() {
+    final FrozenMap config = (FrozenMap)Parser.<Map<String, ?>>parse(
+      "{\"db\":{\"host\":\"localhost\",\"port\":5432},\"features\":[\"a\",\"b\"]}", FROZEN
+    );
+    assertNotNull(config);
+    final FrozenMap db = (FrozenMap)config.get("db");
+    final FrozenMap updated = config.with("db", db.with("port", 5433));
+    assertEquals(5432, ((Map<?, ?>)config.get("db")).get("port"));
+    assertEquals(5433, ((Map<?, ?>)updated.get("db")).get("port"));
+    assertSame(config.get("features"), updated.get("features"));
+    assertSame(config, config.with("features", config.get("features")));
+    assertSame(config, config.without("missing"));
+    assertFalse(config.without("db").containsKey("db"));
+
+    final Map<String, Object> plain = new HashMap<String, Object>();
+    plain.put("x", new ArrayList<Object>(Arrays.asList(1, new HashMap<String, Object>())));
+    final FrozenMap withPlain = config.with("extra", plain);
+    final Map<?, ?> extra = (Map<?, ?>)withPlain.get("extra");
+    assertTrue(extra instanceof FrozenMap);
+    assertTrue(((List<?>)extra.get("x")).get(1) instanceof FrozenMap);
+    plain.clear();
+    assertEquals(1, extra.size());
+
+    final FrozenList features = (FrozenList)config.get("features");
+    assertEquals(Arrays.asList("a", "c"), features.with(1, "c"));
+    assertEquals(Arrays.asList("a", "b", "c"), features.plus("c"));
+    assertEquals(Arrays.asList("b"), features.without(0));
+    assertEquals(Arrays.asList("a", "b"), features);
+    try {
+      features.with(2, "x");
+      fail();
+    }
+    catch (final IndexOutOfBoundsException ignore) {}
+    assertEquals(FrozenList.of(Arrays.asList("a", "b")).hashCode(), features.hashCode());
+  }
+
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    final StringBuilder sb = new StringBuilder("{");
+    for (int i=0; i<100; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("\"k").append(i).append("\":[").append(i).append(",{\"v\":").append(i).append("}]");
+    }
+    final Map<String, ?> map = Parser.parse(sb.append('}').toString(), FROZEN);
+    assertNotNull(map);
+    final AtomicInteger errors = new AtomicInteger();
+    final CountDownLatch latch = new CountDownLatch(4);
+    for (int t=0; t<4; ++t) {
+      new Thread() {
+        @Override public void run() {
+          try {
+            for (int n=0; n<100; ++n) {
+              for (int i=0; i<100; ++i) {
+                final List<?> list = (List<?>)map.get("k" + i);
+                if (!Integer.valueOf(i).equals(((Map<?, ?>)list.get(1)).get("v"))) errors.incrementAndGet();
+              }
+            }
+          }
+          finally {
+            latch.countDown();
+          }
+        }
+      }.start();
+    }
+    latch.await();
+    assertEquals(0, errors.get());
+  }
+
+}
@@ -0,0 +1,145 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.List;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestJsonAdapter {
+
+  static class Shape {
+    List<Pixel> points;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    final Pixel point = PixelJsonAdapter.INSTANCE.fromJson(
+      "{\"px\":1,\"py\":-2,\"label\":\"a \\\"b\\\"\"}"
+    );
+    assertNotNull(point);
+    assertEquals(1, point.x);
+    assertEquals(-2, point.y);
+    assertEquals("a \"b\"", point.label);
+    assertEquals("{\"px\":1,\"py\":-2,\"label\":\"a \\\"b\\\"\"}",
+                 PixelJsonAdapter.INSTANCE.toJson(point));
+    assertNull(PixelJsonAdapter.INSTANCE.fromJson("null"));
+    assertEquals("null", PixelJsonAdapter.INSTANCE.toJson(null));
+    assertNull(PixelJsonAdapter.INSTANCE.fromJson("{\"px\":\"a\"}"));
+    assertNull(PixelJsonAdapter.INSTANCE.fromJson("{\"px\":1"));
+  }
+
+  @Test
+  public void testSelectName() {
+    final Pixel point = PixelJsonAdapter.INSTANCE.fromJson(
+      "{ \"label\" : null, \"unknown\": {\"px\": 3}, \"p\\u0079\": 4, \"pxx\": 5, \"px\" :6 }"
+    );
+    assertNotNull(point);
+    assertEquals(6, point.x);
+    assertEquals(4, point.y);
+    assertNull(point.label);
+  }
+
+  @Test
+  public void testLenientNames() {
+    final Pixel point = PixelJsonAdapter.INSTANCE.fromJson(
+      "{px:1,'py':2,label:'c'}"
+    );
+    assertNotNull(point);
+    assertEquals(1, point.x);
+    assertEquals(2, point.y);
+    assertEquals("c", point.label);
+  }
+
+  @Test
+  public void testPath() throws IOException {
+    final JsonAdapter.Names names = JsonAdapter.Names.of("a", "b");
+    final JsonReader reader = new JsonReader(new Buffer().writeUtf8("{\"b\":{},\"c\":{},\"a\":{}}"));
+    reader.beginObject();
+    assertEquals(1, reader.selectName(names.options, names.names));
+    assertEquals("Expected a string but was BEGIN_OBJECT at path $.b", error(reader));
+    reader.skipValue();
+    assertEquals(-1, reader.selectName(names.options, names.names));
+    assertEquals("Expected a string but was BEGIN_OBJECT at path $.c", error(reader));
+    reader.skipValue();
+    assertEquals(0, reader.selectName(names.options, names.names));
+    assertEquals("Expected a string but was BEGIN_OBJECT at path $.a", error(reader));
+    reader.skipValue();
+    reader.endObject();
+  }
+
+  private static String error(final JsonReader reader) throws IOException {
+    try {
+      reader.nextString();
+      throw new AssertionError();
+    }
+    catch (final JsonDataException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Test
+  public void testBinder() {
+    final Shape shape =
+      Binder.parse("{\"points\":[{\"px\":1,\"py\":2},null,{\"py\":3}]}", Shape.class);
+    assertNotNull(shape);
+    assertEquals(3, shape.points.size());
+    assertEquals(2, shape.points.get(0).y);
+    assertNull(shape.points.get(1));
+    assertEquals(3, shape.points.get(2).y);
+    assertEquals("{\"points\":[{\"px\":1,\"py\":2},null,{\"px\":0,\"py\":3}]}", Binder.build(shape));
+  }
+
+}
+
+@JsonClass
+class Pixel {
+  int x;
+  int y;
+  String label;
+}
+
+/**
+ * An adapter like the ones generated by the annotation processor, but with other names than the
+ * field names, to tell it apart from the reflection based one.
+ */
+final class PixelJsonAdapter extends JsonAdapter<Pixel> {
+
+  public static final PixelJsonAdapter INSTANCE = new PixelJsonAdapter();
+
+  private static final JsonAdapter.Names NAMES = JsonAdapter.Names.of("px", "py", "label");
+
+  @Override public Pixel fromJson(final JsonInput in) throws IOException {
+    final Pixel instance = new Pixel();
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.selectName(NAMES)) {
+        case 0:
+          if (!in.nextNull()) instance.x = in.nextInt();
+          break;
+        case 1:
+          if (!in.nextNull()) instance.y = in.nextInt();
+          break;
+        case 2:
+          instance.label = in.nextNull() ? null : in.nextString();
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return instance;
+  }
+
+  @Override public void toJson(final JsonOutput out, final Pixel value) throws IOException {
+    out.beginObject();
+    out.name(NAMES, 0).value(value.x);
+    out.name(NAMES, 1).value(value.y);
+    if (value.label != null) out.name(NAMES, 2).value(value.label);
+    out.endObject();
+  }
+
+}
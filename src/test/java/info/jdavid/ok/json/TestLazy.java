@@ -0,0 +1,135 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestLazy {
+
+  @Test
+  public void testShallowParse() {
+    final String json =
+      "{\"route\":\"a\",\"n\":2,\"body\":{ \"x\" : [1, 2], \"s\": \"}]\" },\"list\":[[3],{}]}";
+    final Map<String, ?> map = Parser.parseLazy(json);
+    assertNotNull(map);
+    assertEquals(4, map.size());
+    assertTrue(map instanceof LazyMap);
+    final Map<String, Object> raw = ((LazyMap)map).raw();
+    assertEquals("a", raw.get("route"));
+    assertEquals(2, raw.get("n"));
+    assertTrue(raw.get("body") instanceof RawValue);
+    assertTrue(raw.get("list") instanceof RawValue);
+    final String built = Builder.build(map);
+    assertNotNull(built);
+    assertTrue(built.contains("\"body\":{ \"x\" : [1, 2], \"s\": \"}]\" }"));
+    assertTrue(built.contains("\"list\":[[3],{}]"));
+
+    final List<?> list = (List<?>)map.get("list");
+    assertNotNull(list);
+    assertFalse(raw.get("list") instanceof RawValue);
+    assertTrue(((LazyList)list).raw().get(0) instanceof RawValue);
+    assertEquals(1, ((List<?>)list.get(0)).size());
+    assertEquals(3, ((List<?>)list.get(0)).get(0));
+    assertTrue(raw.get("body") instanceof RawValue);
+
+    int count = 0;
+    for (final Map.Entry<String, ?> entry: map.entrySet()) {
+      assertFalse(entry.getValue() instanceof RawValue);
+      ++count;
+    }
+    assertEquals(4, count);
+    final Map<?, ?> body = (Map<?, ?>)map.get("body");
+    assertEquals("}]", body.get("s"));
+    assertEquals(2, ((List<?>)body.get("x")).size());
+    final Map<String, ?> expected = Parser.parse(json);
+    final Map<String, ?> actual = Parser.parse(Builder.build(map));
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testVerbatim() {
+    // Strict json values that weren't accessed are copied as they are.
+    final String strict = "{ \"x\" : [1, 2], \"z\": \"\\\"]\" }";
+    final List<?> strictList = Parser.parseLazy("[" + strict + ",[ ],1]");
+    assertNotNull(strictList);
+    assertEquals("[" + strict + ",[ ],1]", Builder.build(strictList));
+    assertTrue(Builder.isValidArray(strictList));
+  }
+
+  @Test
+  public void testLenientRawValues() {
+    final String body = "{ \"x\" : [1, 2], // comment ]\n \"y\": 'it\\'s {', \"z\": \"\\\"]\" /* ] */ }";
+    final List<?> list = Parser.parseLazy("[" + body + ",[],1]");
+    assertNotNull(list);
+    assertEquals(3, list.size());
+    // Lenient values are decoded and written as standard json.
+    assertEquals("[{\"x\":[1,2],\"y\":\"it's {\",\"z\":\"\\\"]\"},[],1]", Builder.build(list));
+    assertTrue(Builder.isValidArray(list));
+    final Map<?, ?> map = (Map<?, ?>)list.get(0);
+    assertEquals("it's {", map.get("y"));
+    assertEquals("\"]", map.get("z"));
+    assertEquals(list, Parser.parse(Builder.build(list)));
+    final List<?> quoted = Parser.parseLazy("[{'a': /*c*/ 1}, {b:2}]");
+    assertNotNull(quoted);
+    assertEquals("[{\"a\":1},{\"b\":2}]", Builder.build(quoted));
+    // Values that only have matching brackets are not valid.
+    final List<?> invalid = Parser.parseLazy("[{\"a\" 1}]");
+    assertNotNull(invalid);
+    assertFalse(Builder.isValidArray(invalid));
+    assertEquals("[null]", Builder.build(invalid));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertNull(Parser.parseLazy((String)null));
+    assertNull(Parser.parseLazy("\"a\""));
+    final Map<String, ?> map = Parser.parseLazy("{\"a\":[1,\"]\"");
+    assertNotNull(map);
+    assertEquals(1, map.size());
+    assertNull(map.get("a"));
+    final Map<String, ?> mismatched = Parser.parseLazy("{\"a\":{\"b\":[1,2},\"c\":1}");
+    assertNotNull(mismatched);
+    assertTrue(mismatched.containsKey("a"));
+    assertNull(mismatched.get("a"));
+    final List<?> deep = Parser.parseLazy("[" + nested(100, "{\"a\":[", "]}") + "]");
+    assertNotNull(deep);
+    assertTrue(((LazyList)deep).raw().get(0) instanceof RawValue);
+    assertEquals(1, ((Map<?, ?>)deep.get(0)).size());
+    final List<?> mismatchedDeep = Parser.parseLazy("[" + nested(100, "{\"a\":[", "}]") + "]");
+    assertNotNull(mismatchedDeep);
+    assertNull(mismatchedDeep.get(0));
+  }
+
+  private static String nested(final int depth, final String open, final String close) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i=0; i<depth; ++i) sb.append(open);
+    for (int i=0; i<depth; ++i) sb.append(close);
+    return sb.toString();
+  }
+
+  @Test
+  public void testSkipValue() throws IOException {
+    final Buffer buffer = new Buffer();
+    buffer.writeUtf8("[\"a\\\"b\",'c',d,1.5,-2,true,null,{\"e\":[{}]},[1,[2]],3]");
+    final JsonReader reader = new JsonReader(buffer);
+    reader.beginArray();
+    for (int i=0; i<9; ++i) {
+      reader.skipValue();
+    }
+    assertEquals("3", reader.nextString());
+    try {
+      reader.skipValue();
+      fail();
+    }
+    catch (final JsonDataException ignore) {}
+    reader.endArray();
+    assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+  }
+
+}
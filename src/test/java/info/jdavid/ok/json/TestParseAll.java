@@ -0,0 +1,165 @@
+package info.jdavid.ok.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestParseAll {
+
+  private static List<BufferedSource> documents(final int n) {
+    final List<BufferedSource> sources = new ArrayList<BufferedSource>(n);
+    for (int i=0; i<n; ++i) {
+      sources.add(new Buffer().writeUtf8(
+        "{\"id\":" + i + ",\"type\":\"event\",\"tags\":[\"a\",\"b\"]," +
+        "\"user\":{\"name\":\"u" + i + "\"}}"
+      ));
+    }
+    return sources;
+  }
+
+  private static void check(final List<Map<String, ?>> results, final int n) {
+    assertEquals(n, results.size());
+    for (int i=0; i<n; ++i) {
+      final Map<String, ?> map = results.get(i);
+      assertNotNull(map);
+      assertEquals(i, map.get("id"));
+      assertEquals("u" + i, ((Map<?, ?>)map.get("user")).get("name"));
+    }
+  }
+
+  @Test
+  public void testOrder() {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Map<String, ?>> results = Parser.parseAll(documents(5000), executor, 4);
+      check(results, 5000);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCallingThread() {
+    check(Parser.<Map<String, ?>>parseAll(documents(100), null, 8), 100);
+    final Executor rejecting = new Executor() {
+      @Override public void execute(final Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    };
+    check(Parser.<Map<String, ?>>parseAll(documents(100), rejecting, 8), 100);
+    assertTrue(Parser.parseAll(new ArrayList<BufferedSource>(), rejecting, 8).isEmpty());
+  }
+
+  @Test
+  public void testInvalid() {
+    final List<BufferedSource> sources = new ArrayList<BufferedSource>();
+    sources.add(new Buffer().writeUtf8("[1]"));
+    sources.add(new Buffer().writeUtf8("[1,"));
+    sources.add(new Buffer().writeUtf8("{}"));
+    final ErrorCollector errors = new ErrorCollector();
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final List<Object> results =
+        Parser.parseAll(sources, new Parser.Options().errors(errors).failFast(true), executor, 2);
+      assertEquals(3, results.size());
+      assertNotNull(results.get(0));
+      assertNull(results.get(1));
+      assertNotNull(results.get(2));
+      assertEquals(1, errors.getCount());
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testErrors() {
+    final List<BufferedSource> sources = documents(2000);
+    for (int i=0; i<2000; i+=10) sources.set(i, new Buffer().writeUtf8("[" + i + ","));
+    // Not thread-safe: the errors are passed to it on the calling thread.
+    final List<String> messages = new ArrayList<String>();
+    final Thread thread = Thread.currentThread();
+    final ErrorHandler errors = new ErrorHandler() {
+      @Override public void error(final Exception e) {
+        assertSame(thread, Thread.currentThread());
+        messages.add(e.getMessage());
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Object> results = Parser.parseAll(
+        sources, new Parser.Options().errors(errors).failFast(true).trackPath(false), executor, 4
+      );
+      assertEquals(2000, results.size());
+      assertEquals(200, messages.size());
+      for (int i=0; i<200; ++i) {
+        assertNull(results.get(i * 10));
+        assertNotNull(results.get(i * 10 + 1));
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testFailure() {
+    final ErrorHandler failing = new ErrorHandler() {
+      @Override public void error(final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    };
+    final List<BufferedSource> sources = documents(1000);
+    sources.set(500, new Buffer().writeUtf8("[1,"));
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Parser.parseAll(sources, new Parser.Options().errors(failing), executor, 2);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Ignore("Benchmark: the throughput depends on the machine, run it manually.")
+  @Test
+  public void testScaling() {
+    final int n = 20000;
+    final int cores = Runtime.getRuntime().availableProcessors();
+    final StringBuilder sb = new StringBuilder("Documents per ms (" + cores + " cores):");
+    long single = 0L;
+    long best = 0L;
+    for (final int threads: new int[] { 1, 2, 4, 8 }) {
+      final ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        Parser.parseAll(documents(n), executor, threads);
+        final List<BufferedSource> sources = documents(n);
+        final long start = System.nanoTime();
+        final List<Map<String, ?>> results = Parser.parseAll(sources, executor, threads);
+        final long elapsed = System.nanoTime() - start;
+        check(results, n);
+        final long rate = n * 1000000L / elapsed;
+        sb.append(' ').append(threads).append(" thread(s): ").append(rate);
+        if (threads == 1) single = rate; else best = Math.max(best, rate);
+      }
+      finally {
+        executor.shutdown();
+      }
+    }
+    // The measures are in the message.
+    assertTrue(sb.toString(), cores == 1 || best > single);
+  }
+
+}
@@ -0,0 +1,61 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestPathTracking {
+
+  private static final String JSON = "{\"a\":[1,2,{\"b\":[true,null,\"c\"]}],\"d\":{\"e\":1.5}}";
+
+  @Test
+  public void testSameResult() {
+    final Map<String, ?> map = Parser.parse(JSON, new Parser.Options().trackPath(false));
+    assertEquals(Parser.parse(JSON), map);
+    final List<?> list = Parser.parse("[" + JSON + "," + JSON + "]", new Parser.Options().trackPath(false));
+    assertNotNull(list);
+    assertEquals(2, list.size());
+    assertEquals(map, list.get(1));
+  }
+
+  private static String error(final String json, final boolean trackPath) throws IOException {
+    final JsonReader reader = new JsonReader(new Buffer().writeUtf8(json));
+    reader.trackPath(trackPath);
+    try {
+      reader.beginObject();
+      assertEquals("a", reader.nextName());
+      reader.beginArray();
+      assertEquals(1L, reader.nextLong());
+      reader.nextString();
+      fail();
+      return null;
+    }
+    catch (final JsonDataException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Test
+  public void testMessages() throws IOException {
+    assertEquals("Expected a string but was BEGIN_OBJECT at path $.a[1]", error("{\"a\":[1,{}]}", true));
+    assertEquals("Expected a string but was BEGIN_OBJECT at byte 9, depth 2, near '}]}'",
+                 error("{\"a\":[1,{}]}", false));
+  }
+
+  @Test
+  public void testWriter() throws IOException {
+    final Buffer buffer = new Buffer();
+    final JsonWriter writer = new JsonWriter(buffer);
+    writer.trackPath(false);
+    writer.beginObject().name("a").beginArray().value(1L).nullValue().endArray().endObject();
+    writer.close();
+    assertEquals("{\"a\":[1,null]}", buffer.readUtf8());
+  }
+
+}
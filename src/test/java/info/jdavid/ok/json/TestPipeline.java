@@ -0,0 +1,125 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestPipeline {
+
+  private static String document(final int n) {
+    final StringBuilder sb = new StringBuilder("{\"meta\":{\"count\":").append(n);
+    sb.append("},\"items\":[");
+    for (int i=0; i<n; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"id\":").append(i).append(",\"name\":\"n").append(i).append("\",\"score\":");
+      sb.append(i + 0.5).append(",\"ok\":").append(i % 2 == 0);
+      sb.append(",\"x\":null,\"tags\":[[\"a\"],[]]}");
+    }
+    return sb.append("]}").toString();
+  }
+
+  @Test
+  public void testSameAsParse() {
+    final String json = document(50000);
+    final Map<String, ?> expected = Parser.parse(json);
+    final Map<String, ?> actual = Parser.parsePipelined(new Buffer().writeUtf8(json));
+    assertNotNull(actual);
+    assertEquals(expected, actual);
+    final List<?> items = (List<?>)actual.get("items");
+    assertEquals(50000, items.size());
+    final Map<?, ?> last = (Map<?, ?>)items.get(49999);
+    assertEquals(49999, last.get("id"));
+    assertTrue(last.containsKey("x"));
+    assertEquals(
+      Arrays.asList(Collections.singletonList("a"), Collections.emptyList()), last.get("tags")
+    );
+  }
+
+  @Test
+  public void testExecutor() {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (int i=0; i<10; ++i) {
+        final List<?> list = Parser.parsePipelined(
+          new Buffer().writeUtf8("[1,\"a\",[true,{}]]"), new Parser.Options(), executor
+        );
+        assertEquals(Arrays.asList(1, "a", Arrays.asList(true, Collections.emptyMap())), list);
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testOptions() {
+    final Map<String, ?> map = Parser.parsePipelined(
+      new Buffer().writeUtf8(document(100)), new Parser.Options().freeze(true)
+    );
+    assertTrue(map instanceof FrozenMap);
+    assertTrue(((List<?>)map.get("items")).get(0) instanceof FrozenMap);
+  }
+
+  @Test
+  public void testScalar() {
+    assertNull(Parser.parsePipelined(new Buffer().writeUtf8("\"a\"")));
+    assertNull(Parser.parsePipelined(null));
+  }
+
+  @Test
+  public void testInvalid() {
+    final ErrorCollector errors = new ErrorCollector();
+    assertNull(Parser.parsePipelined(
+      new Buffer().writeUtf8(document(20000).replace("\"id\":19000,", "\"id\":,")),
+      new Parser.Options().errors(errors)
+    ));
+    assertEquals(1, errors.getCount());
+    assertNull(Parser.parsePipelined(
+      new Buffer().writeUtf8("[1,2"), new Parser.Options().errors(errors).failFast(true)
+    ));
+    assertEquals(2, errors.getCount());
+  }
+
+  @Test
+  public void testRejected() {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+    final ErrorCollector errors = new ErrorCollector();
+    assertNull(Parser.parsePipelined(
+      new Buffer().writeUtf8("[1,2]"), new Parser.Options().errors(errors), executor
+    ));
+    assertEquals(1, errors.getCount());
+  }
+
+  @Test
+  public void testTokenizerError() {
+    final Buffer buffer = new Buffer().writeUtf8("[1,");
+    final Source source = new ForwardingSource(buffer) {
+      @Override public long read(final Buffer sink, final long byteCount) throws IOException {
+        if (buffer.exhausted()) throw new AssertionError("tokenizer");
+        return super.read(sink, byteCount);
+      }
+    };
+    try {
+      Parser.parsePipelined(Okio.buffer(source));
+      fail();
+    }
+    catch (final AssertionError e) {
+      assertEquals("tokenizer", e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestPositions {
+
+  private static final String JSON = "{\n  \"a\": [1, 2.5],\n  \"b\": \"text\",\n  \"c\": {\"d\": null}\n}";
+
+  private static BufferedSource stream(final String json) {
+    return Okio.buffer(Okio.source(new Buffer().writeUtf8(json).inputStream()));
+  }
+
+  private static void testTokenOffsets(final BufferedSource source) throws IOException {
+    final JsonReader reader = new JsonReader(source);
+    reader.trackLines(true);
+    reader.beginObject();
+    assertEquals(0L, reader.tokenOffset());
+    assertEquals("a", reader.nextName());
+    assertEquals(4L, reader.tokenOffset());
+    assertEquals(2, reader.line());
+    reader.beginArray();
+    assertEquals(9L, reader.tokenOffset());
+    reader.skipValue();
+    reader.skipValue();
+    reader.endArray();
+    assertEquals("b", reader.nextName());
+    assertEquals(JsonReader.Token.STRING, reader.peek());
+    assertEquals(JSON.indexOf("\"text\""), reader.tokenOffset());
+    assertEquals(3, reader.line());
+    assertEquals(9, reader.column()); // after the opening quote
+    reader.nextString();
+    assertEquals("c", reader.nextName());
+    final long start = JSON.indexOf("{\"d\"");
+    assertEquals(JsonReader.Token.BEGIN_OBJECT, reader.peek());
+    assertEquals(start, reader.tokenOffset());
+    reader.skipValue();
+    assertEquals("{\"d\": null}", JSON.substring((int)start, (int)reader.offset()));
+    reader.endObject();
+    assertEquals(5, reader.line());
+    assertEquals(JSON.length(), reader.offset());
+  }
+
+  @Test
+  public void testTokenOffsets() throws IOException {
+    testTokenOffsets(new Buffer().writeUtf8(JSON));
+    testTokenOffsets(stream(JSON));
+  }
+
+  @Test
+  public void testErrors() {
+    final String json = "{\n  \"a\": [1, 2],\n  \"b\": [3 4]\n}";
+    for (final boolean trackPath: new boolean[] { true, false }) {
+      final ErrorCollector errors = new ErrorCollector();
+      final Parser.Options options =
+        new Parser.Options().errors(errors).trackLines(true).trackPath(trackPath);
+      Parser.parse(json, options);
+      assertTrue(errors.hasErrors());
+      final JsonEncodingException e = (JsonEncodingException)errors.getErrors().get(0);
+      // The offending byte has been consumed when the error is found.
+      final int offset = json.indexOf("4]") + 1;
+      assertEquals(offset, e.getOffset());
+      assertEquals(3, e.getLine());
+      assertEquals(offset - json.indexOf("  \"b\"") + 1, e.getColumn());
+    }
+    final ErrorCollector errors = new ErrorCollector();
+    Parser.parse(new Buffer().writeUtf8("[1,\n2,\n3"), new Parser.Options().errors(errors));
+    final JsonEncodingException e = (JsonEncodingException)errors.getErrors().get(0);
+    assertEquals(8L, e.getOffset());
+    assertEquals(-1, e.getLine());
+    assertEquals(-1, e.getColumn());
+    // The bytes read from other sources are only counted when lines are tracked.
+    Parser.parse(stream("[1,\n2,\n3"), new Parser.Options().errors(errors));
+    assertEquals(-1L, ((JsonEncodingException)errors.getErrors().get(1)).getOffset());
+    Parser.parse(stream("[1,\n2,\n3"), new Parser.Options().errors(errors).trackLines(true));
+    assertEquals(8L, ((JsonEncodingException)errors.getErrors().get(2)).getOffset());
+  }
+
+  @Test
+  public void testValidation() {
+    final Parser.Validation validation = Parser.validate(stream("[\n  1,\n  // comment\n]"));
+    assertFalse(validation.isValid());
+    assertEquals(9L, validation.getOffset());
+    assertEquals(3, validation.getLine());
+    assertEquals(3, validation.getColumn());
+  }
+
+}
@@ -0,0 +1,151 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestReadAheadSource {
+
+  private static String records(final int n) {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<n; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"id\":").append(i).append(",\"name\":\"name").append(i).append("\"}");
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * A source that simulates slow I/O: it returns at most 8KiB per read, after a pause.
+   */
+  private static Source throttled(final String json, final long nanosPerRead) {
+    return new ForwardingSource(new Buffer().writeUtf8(json)) {
+      @Override public long read(final Buffer sink, final long byteCount) throws IOException {
+        LockSupport.parkNanos(nanosPerRead);
+        return super.read(sink, Math.min(byteCount, 8192L));
+      }
+    };
+  }
+
+  @Ignore("Benchmark: the timings depend on the machine, run it manually.")
+  @Test
+  public void testThroughput() throws IOException {
+    final String json = records(200000);
+    final long pause = 100000L;
+    for (int i=0; i<3; ++i) {
+      // Warm up.
+      Parser.parse(Okio.buffer(new ReadAheadSource(throttled(json, pause), 65536)));
+      Parser.parse(Okio.buffer(throttled(json, pause)));
+    }
+    long start = System.nanoTime();
+    Okio.buffer(throttled(json, pause)).readAll(Okio.blackhole());
+    final long io = System.nanoTime() - start;
+    start = System.nanoTime();
+    assertNotNull(Parser.parse(new Buffer().writeUtf8(json)));
+    final long parse = System.nanoTime() - start;
+    start = System.nanoTime();
+    assertNotNull(Parser.parse(Okio.buffer(throttled(json, pause))));
+    final long direct = System.nanoTime() - start;
+    start = System.nanoTime();
+    assertNotNull(Parser.parse(Okio.buffer(new ReadAheadSource(throttled(json, pause), 65536))));
+    final long readAhead = System.nanoTime() - start;
+    final String message =
+      "I/O: " + io / 1000000 + "ms, parse: " + parse / 1000000 + "ms, direct: " + direct / 1000000 +
+      "ms, read ahead: " + readAhead / 1000000 + "ms (ideally max(I/O, parse))";
+    // The reads only overlap with the parsing when there is more than one core.
+    assertTrue(message, Runtime.getRuntime().availableProcessors() == 1 || readAhead < direct);
+  }
+
+  @Test
+  public void testParse() {
+    final Source source = new ReadAheadSource(new Buffer().writeUtf8(records(50000)), 4096);
+    final List<?> list = Parser.parse(Okio.buffer(source));
+    assertNotNull(list);
+    assertEquals(50000, list.size());
+    assertEquals(49999, ((Map<?, ?>)list.get(49999)).get("id"));
+  }
+
+  @Test
+  public void testBound() throws IOException, InterruptedException {
+    final Buffer upstream = new Buffer().writeUtf8(records(10000));
+    final long size = upstream.size();
+    final ReadAheadSource source = new ReadAheadSource(upstream, 10000);
+    final Buffer sink = new Buffer();
+    long total = 0;
+    for (int i=0; ; ++i) {
+      // Lets the reading thread fill the buffer from time to time.
+      if (i % 100 == 0) Thread.sleep(1);
+      assertTrue(source.buffered() <= 10000);
+      final long n = source.read(sink, 100);
+      if (n == -1L) break;
+      assertTrue(n <= 100);
+      total += n;
+      sink.clear();
+    }
+    assertEquals(size, total);
+    source.close();
+  }
+
+  @Test
+  public void testError() throws IOException {
+    final Source failing = new ForwardingSource(new Buffer().writeUtf8("[1,2,3")) {
+      private boolean first = true;
+      @Override public long read(final Buffer sink, final long byteCount) throws IOException {
+        if (first) {
+          first = false;
+          return super.read(sink, byteCount);
+        }
+        throw new IOException("broken");
+      }
+    };
+    final ReadAheadSource source = new ReadAheadSource(failing, 1024);
+    final Buffer sink = new Buffer();
+    assertEquals(6, source.read(sink, 1024));
+    try {
+      source.read(sink, 1024);
+      fail();
+    }
+    catch (final IOException e) {
+      assertEquals("broken", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testClose() throws IOException, InterruptedException {
+    final boolean[] closed = new boolean[1];
+    final Source upstream = new ForwardingSource(new Buffer().writeUtf8(records(10000))) {
+      @Override public void close() throws IOException {
+        synchronized (closed) {
+          closed[0] = true;
+          closed.notifyAll();
+        }
+        super.close();
+      }
+    };
+    final ReadAheadSource source = new ReadAheadSource(upstream, 1024);
+    assertTrue(source.read(new Buffer(), 10) > 0);
+    source.close();
+    synchronized (closed) {
+      final long end = System.currentTimeMillis() + 5000;
+      while (!closed[0] && System.currentTimeMillis() < end) closed.wait(100);
+    }
+    assertTrue(closed[0]);
+    try {
+      source.read(new Buffer(), 10);
+      fail();
+    }
+    catch (final IllegalStateException ignore) {}
+  }
+
+}
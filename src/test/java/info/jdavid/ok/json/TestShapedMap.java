@@ -0,0 +1,112 @@
+package info.jdavid.ok.json;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestShapedMap {
+
+  @Test
+  public void testSharedShapes() {
+    final Parser.Options options = new Parser.Options().shareShapes(true);
+    final List<?> list = Parser.parse(
+      "[{\"a\":1,\"b\":\"x\",\"c\":{\"d\":null}},{\"a\":2,\"b\":\"y\",\"c\":{\"d\":true}},{\"b\":3,\"a\":4}]",
+      options
+    );
+    assertNotNull(list);
+    final ShapedMap first = (ShapedMap)list.get(0);
+    final ShapedMap second = (ShapedMap)list.get(1);
+    final ShapedMap third = (ShapedMap)list.get(2);
+    assertSame(first.shape(), second.shape());
+    assertNotSame(first.shape(), third.shape());
+    assertSame(((ShapedMap)first.get("c")).shape(), ((ShapedMap)second.get("c")).shape());
+    assertEquals(2, second.get("a"));
+    assertEquals("y", second.get("b"));
+    assertTrue(((Map<?, ?>)first.get("c")).containsKey("d"));
+    assertNull(first.get("missing"));
+    assertEquals(3, first.size());
+    final Map<String, Object> expected = new HashMap<String, Object>();
+    expected.put("b", 3);
+    expected.put("a", 4);
+    assertEquals(expected, third);
+    assertEquals(expected.hashCode(), third.hashCode());
+    assertEquals(Parser.parse(Builder.build(list)), list);
+    final List<?> again = Parser.parse("[{\"a\":5,\"b\":\"z\",\"c\":{}}]", options);
+    assertNotNull(again);
+    assertSame(first.shape(), ((ShapedMap)again.get(0)).shape());
+  }
+
+  @Test
+  public void testMutations() {
+    final Map<String, ?> parsed =
+      Parser.parse("{\"a\":1,\"b\":2,\"c\":3,\"a\":4}", new Parser.Options().shareShapes(true));
+    assertNotNull(parsed);
+    assertEquals(3, parsed.size());
+    assertEquals(4, parsed.get("a"));
+    //noinspection unchecked
+    final Map<String, Object> map = (Map<String, Object>)parsed;
+    assertEquals(2, map.put("b", 5));
+    assertNull(map.put("d", 6));
+    assertEquals(4, map.size());
+    final Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+    assertEquals("a", iterator.next().getKey());
+    final Map.Entry<String, Object> b = iterator.next();
+    assertEquals(5, b.setValue(7));
+    iterator.remove();
+    assertNull(((ShapedMap)map).shape());
+    assertEquals(3, map.size());
+    assertFalse(map.containsKey("b"));
+    assertEquals("{\"a\":4,\"c\":3,\"d\":6}", Builder.build(map));
+    map.clear();
+    assertTrue(map.isEmpty());
+    map.put("x", 1);
+    assertEquals(1, map.get("x"));
+  }
+
+  @Test
+  public void testPutIntoEmpty() {
+    final Map<String, ?> parsed =
+      Parser.parse("{\"a\":{},\"b\":[{},{}]}", new Parser.Options().shareShapes(true));
+    assertNotNull(parsed);
+    //noinspection unchecked
+    final Map<String, Object> a = (Map<String, Object>)parsed.get("a");
+    assertTrue(a instanceof ShapedMap);
+    a.put("x", 1);
+    a.put("y", 2);
+    assertEquals(2, a.size());
+    assertEquals(1, a.get("x"));
+    assertEquals(2, a.get("y"));
+    //noinspection unchecked
+    final Map<String, Object> b0 = (Map<String, Object>)((List<?>)parsed.get("b")).get(0);
+    b0.put("x", 3);
+    assertEquals(3, b0.get("x"));
+  }
+
+  @Test
+  public void testLimits() {
+    final Shape root = Shape.root();
+    final ShapedMap map = new ShapedMap(root);
+    for (int i=0; i<Shape.MAX_SIZE + 10; ++i) {
+      map.put("k" + i, i);
+    }
+    assertNull(map.shape());
+    assertEquals(Shape.MAX_SIZE + 10, map.size());
+    assertEquals(Shape.MAX_SIZE + 9, map.get("k" + (Shape.MAX_SIZE + 9)));
+    assertEquals(Shape.MAX_SIZE + 1, root.count());
+    for (int i=0; i<Shape.MAX_SHAPES; ++i) {
+      new ShapedMap(root).put("id" + i, i);
+    }
+    assertEquals(Shape.MAX_SHAPES, root.count());
+    final ShapedMap last = new ShapedMap(root);
+    last.put("other", 1);
+    assertNull(last.shape());
+    assertEquals(1, last.get("other"));
+  }
+
+}
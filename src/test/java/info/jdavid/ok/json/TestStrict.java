@@ -0,0 +1,131 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.Map;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestStrict {
+
+  private static void read(final JsonReader reader) throws IOException {
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+        reader.beginObject();
+        while (reader.peek() == JsonReader.Token.NAME) {
+          reader.nextName();
+          read(reader);
+        }
+        reader.endObject();
+        break;
+      case BEGIN_ARRAY:
+        reader.beginArray();
+        while (reader.peek() != JsonReader.Token.END_ARRAY) read(reader);
+        reader.endArray();
+        break;
+      case STRING:
+        reader.nextString();
+        break;
+      case NUMBER:
+        reader.nextString();
+        break;
+      case BOOLEAN:
+        reader.nextBoolean();
+        break;
+      case NULL:
+        reader.nextNull();
+        break;
+      default:
+        fail();
+    }
+  }
+
+  private static boolean valid(final String json, final boolean strict) {
+    final JsonReader reader = new JsonReader(new Buffer().writeUtf8(json));
+    reader.setStrict(strict);
+    try {
+      read(reader);
+      return reader.peek() == JsonReader.Token.END_DOCUMENT;
+    }
+    catch (final IOException e) {
+      return false;
+    }
+    catch (final JsonDataException e) {
+      return false;
+    }
+  }
+
+  @Test
+  public void testStandard() {
+    final String[] documents = new String[] {
+      "{}", "[]", " { \"a\" : [ 1 , -2.5e3 , true , false , null , \"\\u00e9\\n\\\"\" ] }\r\n\t",
+      "[{\"a\":{}},[[]],0,-0,1E+2,\"\"]", "\"text\"", "12", "null"
+    };
+    for (final String json: documents) {
+      assertTrue(json, valid(json, false));
+      assertTrue(json, valid(json, true));
+    }
+  }
+
+  @Test
+  public void testLenient() {
+    final String[] documents = new String[] {
+      "{a:1}", "{'a':1}", "{\"a\"=1}", "{\"a\"=>1}", "{\"a\":1;\"b\":2}", "[1;2]", "[1,,2]", "[1,]",
+      "['a']", "[a]", "// comment\n[]", "# comment\n[]", "[/* comment */]", "[TRUE]", "[Null]",
+      "[\"\\x\"]", "[\"\\'\"]"
+    };
+    for (final String json: documents) {
+      assertTrue(json, valid(json, false));
+      assertFalse(json, valid(json, true));
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    final String[] documents = new String[] {
+      "[01]", "[1.]", "[.5]", "[truex]", "[tru]", "{\"a\"}", "{\"a\":1,}", "[", "{", "[1 2]", "[] []", "", "  "
+    };
+    for (final String json: documents) {
+      assertFalse(json, valid(json, true));
+    }
+  }
+
+  @Test
+  public void testControlCharacters() {
+    final String[] documents = new String[] {
+      "[\"a\tb\"]", "[\"a\nb\"]", "{\"a\u0000\":1}", "[\"\\n\u001f\"]", "[\"\u0001\\n\"]"
+    };
+    for (final String json: documents) {
+      assertTrue(json, valid(json, false));
+      assertFalse(json, valid(json, true));
+    }
+    assertTrue(valid("[\"a\\tb\u007f\"]", true));
+    // Strings that span several segments of the buffer.
+    final StringBuilder sb = new StringBuilder();
+    for (int i=0; i<5000; ++i) sb.append("\u00e9t\u00e9");
+    final String text = sb.toString();
+    assertTrue(valid("[1,\"" + text + "\",\"" + text + "\\n" + text + "\"]", true));
+    assertFalse(valid("[1,\"" + text + "\",\"" + text + "\n\"]", true));
+    assertFalse(valid("[1,\"" + text + "\\n" + text + "\u001f" + text + "\"]", true));
+    final Parser.Options options = new Parser.Options().strict(true).failFast(true);
+    assertNull(Parser.parse("{\"a\":\"b\tc\"}", options));
+    assertNotNull(Parser.parse("{\"a\":\"b\\tc\"}", options));
+  }
+
+  @Test
+  public void testParser() {
+    final Parser.Options options = new Parser.Options().strict(true);
+    final Map<String, ?> map = Parser.parse("{\"a\":[1,2.5,\"b\",null,true],\"c\":{}}", options);
+    assertNotNull(map);
+    assertEquals(Parser.parse("{\"a\":[1,2.5,\"b\",null,true],\"c\":{}}"), map);
+    assertNotNull(Parser.parse("{'a':1}"));
+    final Map<String, ?> partial = Parser.parse("{'a':1}", options);
+    assertNotNull(partial);
+    assertFalse(partial.containsKey("a"));
+    assertNull(Parser.parse("// comment\n{}", options));
+  }
+
+}
@@ -0,0 +1,102 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestStringCache {
+
+  private static String key(final Map<String, ?> map, final String name) {
+    for (final String key: map.keySet()) {
+      if (key.equals(name)) return key;
+    }
+    throw new AssertionError(name);
+  }
+
+  @Test
+  public void testSharedNames() {
+    final List<?> list = Parser.parse("[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]");
+    assertNotNull(list);
+    assertEquals(2, list.size());
+    //noinspection unchecked
+    final Map<String, ?> first = (Map<String, ?>)list.get(0);
+    //noinspection unchecked
+    final Map<String, ?> second = (Map<String, ?>)list.get(1);
+    assertSame(key(first, "id"), key(second, "id"));
+    assertSame(key(first, "name"), key(second, "name"));
+    assertEquals("a", first.get("name"));
+    assertEquals("b", second.get("name"));
+  }
+
+  @Test
+  public void testEscapedAndLongNames() throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    for (int i=0; i<StringCache.MAX_LENGTH + 1; ++i) sb.append('k');
+    final String longName = sb.toString();
+    final String json = "{\"a\\u0062c\":1,\"" + longName + "\":2}";
+    final Map<String, ?> map = Parser.parse(json);
+    assertNotNull(map);
+    assertEquals(1, map.get("abc"));
+    assertEquals(2, map.get(longName));
+  }
+
+  @Test
+  public void testReadAndCollisions() throws IOException {
+    final StringCache cache = new StringCache(2);
+    final Buffer buffer = new Buffer();
+    buffer.writeUtf8("abcdef\u00e9");
+    final String abc = cache.read(buffer, 3);
+    assertEquals("abc", abc);
+    assertEquals("def\u00e9", cache.read(buffer, 5));
+    buffer.writeUtf8("abcxyzabc");
+    assertSame(abc, cache.read(buffer, 3));
+    assertEquals("xyz", cache.read(buffer, 3));
+    assertEquals("abc", cache.read(buffer, 3));
+    assertEquals(0, buffer.size());
+    buffer.writeUtf8("abc");
+    cache.clear();
+    final int hash = StringCache.hash(buffer, 3);
+    assertNull(cache.get(buffer, 3, hash));
+    assertEquals(3, buffer.size());
+  }
+
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    final StringCache cache = new StringCache(4);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final List<Thread> threads = new ArrayList<Thread>();
+    for (int t=0; t<4; ++t) {
+      final Thread thread = new Thread(new Runnable() {
+        @Override public void run() {
+          try {
+            final Buffer buffer = new Buffer();
+            for (int i=0; i<10000; ++i) {
+              final String expected = "key" + (i % 13);
+              buffer.writeUtf8(expected);
+              final String actual = cache.read(buffer, buffer.size());
+              if (!expected.equals(actual)) throw new AssertionError(expected + " != " + actual);
+            }
+          }
+          catch (final Throwable e) {
+            failure.set(e);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (final Thread thread: threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+  }
+
+}
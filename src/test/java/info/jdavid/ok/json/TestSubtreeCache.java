@@ -0,0 +1,84 @@
+package info.jdavid.ok.json;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestSubtreeCache {
+
+  private static final String ADDRESS = "{\"street\":\"1 Main St\",\"city\":\"Springfield\",\"tags\":[\"a\",\"b\"]}";
+
+  @Test
+  public void testSharedSubtrees() {
+    final SubtreeCache cache = new SubtreeCache();
+    final Parser.Options options = new Parser.Options().shareSubtrees(cache);
+    final List<?> list = Parser.parse(
+      "[{\"id\":1,\"address\":" + ADDRESS + "},{\"id\":2,\"address\":" + ADDRESS + "},[\"a\",\"b\"]]",
+      options
+    );
+    assertNotNull(list);
+    final Map<?, ?> first = (Map<?, ?>)list.get(0);
+    final Map<?, ?> second = (Map<?, ?>)list.get(1);
+    assertNotSame(first, second);
+    assertSame(first.get("address"), second.get("address"));
+    assertSame(((Map<?, ?>)first.get("address")).get("tags"), list.get(2));
+    assertEquals(Parser.parse(Builder.build(list)), list);
+    assertTrue(cache.getHits() >= 3);
+    assertTrue(cache.getDeduplicatedBytes() > 0);
+    assertTrue(cache.getHitRate() > 0.0);
+
+    final Map<String, ?> other = Parser.parse("{\"home\":" + ADDRESS + "}", options);
+    assertNotNull(other);
+    assertSame(first.get("address"), other.get("home"));
+  }
+
+  @Test
+  public void testImmutable() {
+    final Map<String, ?> map = Parser.parse(
+      "{\"a\":[1,{\"b\":null}]}", new Parser.Options().shareSubtrees(new SubtreeCache(16))
+    );
+    assertNotNull(map);
+    try {
+      //noinspection unchecked
+      ((Map<String, Object>)map).put("c", 1);
+      fail();
+    }
+    catch (final UnsupportedOperationException ignore) {}
+    try {
+      map.entrySet().iterator().next().setValue(null);
+      fail();
+    }
+    catch (final UnsupportedOperationException ignore) {}
+    final List<?> a = (List<?>)map.get("a");
+    try {
+      a.remove(0);
+      fail();
+    }
+    catch (final UnsupportedOperationException ignore) {}
+    assertTrue(((Map<?, ?>)a.get(1)).containsKey("b"));
+    assertEquals(Parser.parse("{\"a\":[1,{\"b\":null}]}"), map);
+    assertEquals(map.hashCode(), Parser.parse("{\"a\":[1,{\"b\":null}]}").hashCode());
+  }
+
+  @Test
+  public void testLargeSubtrees() {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<=SubtreeCache.MAX_NODES; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append(i);
+    }
+    sb.append(']');
+    final SubtreeCache cache = new SubtreeCache();
+    final Parser.Options options = new Parser.Options().shareSubtrees(cache);
+    final List<?> list = Parser.parse("[" + sb + "," + sb + "]", options);
+    assertNotNull(list);
+    assertNotSame(list.get(0), list.get(1));
+    assertEquals(list.get(0), list.get(1));
+    assertEquals(0, cache.getLookups());
+  }
+
+}
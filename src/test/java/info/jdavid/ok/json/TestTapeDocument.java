@@ -0,0 +1,114 @@
+package info.jdavid.ok.json;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestTapeDocument {
+
+  @Test
+  public void testNavigation() {
+    final TapeDocument doc = Parser.parseTape(
+      "{\"a\":\"abc\",\"b\":\"\u00e9t\u00e9\",\"c\":\"x\\ny\",\"n\":[1,-2,3.5,true,false,null]," +
+      "\"o\":{\"x\":{},\"y\":[]},\"big\":1234567890123456789012,\"long\":-9007199254740993}"
+    );
+    assertNotNull(doc);
+    final int root = doc.root();
+    assertEquals(TapeDocument.OBJECT, doc.kind(root));
+    assertEquals(7, doc.size(root));
+    assertEquals("abc", doc.getString(doc.get(root, "a")));
+    assertTrue(doc.stringEquals(doc.get(root, "a"), "abc"));
+    assertFalse(doc.stringEquals(doc.get(root, "a"), "ab"));
+    assertEquals("\u00e9t\u00e9", doc.getString(doc.get(root, "b")));
+    assertTrue(doc.stringEquals(doc.get(root, "b"), "\u00e9t\u00e9"));
+    assertEquals("x\ny", doc.getString(doc.get(root, "c")));
+    assertEquals(-1, doc.get(root, "missing"));
+    assertTrue(doc.isNull(doc.get(root, "missing")));
+
+    final int n = doc.get(root, "n");
+    assertEquals(TapeDocument.ARRAY, doc.kind(n));
+    assertEquals(6, doc.size(n));
+    assertEquals(1L, doc.getLong(doc.get(n, 0)));
+    assertEquals(-2L, doc.getLong(doc.get(n, 1)));
+    assertEquals(3.5, doc.getDouble(doc.get(n, 2)), 0.0);
+    assertTrue(doc.getBoolean(doc.get(n, 3)));
+    assertFalse(doc.getBoolean(doc.get(n, 4)));
+    assertTrue(doc.isNull(doc.get(n, 5)));
+    assertEquals(-1, doc.get(n, 6));
+    assertEquals(-1, doc.get(n, -1));
+
+    final int o = doc.get(root, "o");
+    assertEquals(0, doc.size(doc.get(o, "x")));
+    assertEquals(-1, doc.first(doc.get(o, "x")));
+    assertEquals(-1, doc.first(doc.get(o, "y")));
+    assertEquals(TapeDocument.ARRAY, doc.kind(doc.get(o, "y")));
+
+    assertEquals(TapeDocument.BIG_INTEGER, doc.kind(doc.get(root, "big")));
+    assertEquals(new BigInteger("1234567890123456789012"), doc.getNumber(doc.get(root, "big")));
+    assertEquals(TapeDocument.INTEGER, doc.kind(doc.get(root, "long")));
+    assertEquals(-9007199254740993L, doc.getLong(doc.get(root, "long")));
+    final TapeDocument longs = Parser.parseTape("[" + Long.MIN_VALUE + "," + Long.MAX_VALUE + "]");
+    assertNotNull(longs);
+    assertEquals(Long.MIN_VALUE, longs.getLong(longs.get(longs.root(), 0)));
+    assertEquals(Long.MAX_VALUE, longs.getNumber(longs.get(longs.root(), 1)));
+    assertEquals(-1, longs.next(longs.get(longs.root(), 1)));
+
+    int count = 0;
+    for (int child=doc.first(root); child != -1; child=doc.next(child)) {
+      assertEquals(doc.get(root, doc.name(child)), child);
+      ++count;
+    }
+    assertEquals(7, count);
+
+    //noinspection unchecked
+    final Map<String, ?> map = (Map<String, ?>)doc.toValue(root);
+    assertNotNull(map);
+    assertEquals(Parser.parse(Builder.build(map)), map);
+    assertEquals(-2, ((List<?>)map.get("n")).get(1));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertNull(Parser.parseTape((String)null));
+    assertNull(Parser.parseTape("\"a\""));
+    assertNull(Parser.parseTape("{\"a\":[1,2}"));
+    assertNull(Parser.parseTape("[1,2"));
+    assertNotNull(Parser.parseTape("[]"));
+  }
+
+  @Test
+  public void testSharedNames() {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<1000; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"identifier\":").append(i).append(",\"description\":\"d\"}");
+    }
+    final String json = sb.append(']').toString();
+    final TapeDocument doc = Parser.parseTape(json);
+    assertNotNull(doc);
+    assertTrue(doc.byteSize() < json.length() * 2);
+    assertEquals(1000, doc.size(doc.root()));
+    final int last = doc.get(doc.root(), 999);
+    assertEquals(999, doc.getLong(doc.get(last, "identifier")));
+    assertEquals("d", doc.getString(doc.get(last, "description")));
+  }
+
+  @Test
+  public void testUtf8Equals() {
+    final String[] values = new String[] { "", "a", "\u00e9", "\u20ac", "\ud83d\ude00x", "a\u00e9\u20ac" };
+    for (final String a: values) {
+      final byte[] bytes = a.getBytes(StringCache.UTF_8);
+      for (final String b: values) {
+        assertEquals(a.equals(b), TapeDocument.utf8Equals(bytes, 0, bytes.length, b));
+      }
+    }
+    final byte[] bytes = "x\ud83d".getBytes(StringCache.UTF_8);
+    assertFalse(TapeDocument.utf8Equals(bytes, 0, bytes.length, "x\ud83d"));
+  }
+
+}
@@ -0,0 +1,64 @@
+package info.jdavid.ok.json;
+
+import java.util.List;
+import java.util.Map;
+
+import okio.ByteString;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestUtf8String {
+
+  private static final Parser.Options VIEWS = new Parser.Options().stringViews(true);
+
+  @Test
+  public void testViews() {
+    final String json = "{\"a\":\"abc\",\"b\":\"\u00e9t\u00e9\",\"c\":\"x\\ny\",\"d\":1,\"e\":[\"z\",\"\"]}";
+    final Map<String, ?> map = Parser.parse(json, VIEWS);
+    assertNotNull(map);
+    final Object a = map.get("a");
+    assertTrue(a instanceof Utf8String);
+    assertEquals(3, ((CharSequence)a).length());
+    assertEquals('b', ((CharSequence)a).charAt(1));
+    assertEquals("abc", a.toString());
+    assertEquals(Utf8String.of(ByteString.encodeUtf8("abc")), a);
+    final Object b = map.get("b");
+    assertTrue(b instanceof Utf8String);
+    assertEquals(5, ((Utf8String)b).utf8().size());
+    assertEquals(3, ((CharSequence)b).length());
+    assertEquals('\u00e9', ((CharSequence)b).charAt(2));
+    assertEquals("t\u00e9", ((CharSequence)b).subSequence(1, 3));
+    assertEquals("x\ny", map.get("c"));
+    assertEquals(1, map.get("d"));
+    final List<?> e = (List<?>)map.get("e");
+    assertEquals("z", e.get(0).toString());
+    assertEquals(0, ((CharSequence)e.get(1)).length());
+    final Map<String, ?> copy = Parser.parse(Builder.build(map));
+    assertNotNull(copy);
+    assertEquals("abc", copy.get("a"));
+    assertEquals("\u00e9t\u00e9", copy.get("b"));
+    assertEquals("x\ny", copy.get("c"));
+  }
+
+  @Test
+  public void testRawWrite() {
+    final Map<String, ?> map = Parser.parse("{\"a\":\"\u00e9t\u00e9\"}", VIEWS);
+    assertEquals("{\"a\":\"\u00e9t\u00e9\"}", Builder.build(map));
+    final List<?> list = Parser.parse("['say \"hi\"','\t','\u2028']", VIEWS);
+    assertNotNull(list);
+    assertTrue(list.get(0) instanceof Utf8String);
+    assertEquals("[\"say \\\"hi\\\"\",\"\\t\",\"\\u2028\"]", Builder.build(list));
+  }
+
+  @Test
+  public void testNeedsEscaping() {
+    assertFalse(JsonWriter.needsEscaping(ByteString.encodeUtf8("abc \u00e9\u2027\u202a")));
+    assertTrue(JsonWriter.needsEscaping(ByteString.encodeUtf8("a\"")));
+    assertTrue(JsonWriter.needsEscaping(ByteString.encodeUtf8("a\\")));
+    assertTrue(JsonWriter.needsEscaping(ByteString.encodeUtf8("\u0001")));
+    assertTrue(JsonWriter.needsEscaping(ByteString.encodeUtf8("a\u2029")));
+  }
+
+}
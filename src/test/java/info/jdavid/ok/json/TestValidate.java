@@ -0,0 +1,72 @@
+package info.jdavid.ok.json;
+
+import okio.Buffer;
+import okio.Okio;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestValidate {
+
+  @Test
+  public void testValid() {
+    final String[] documents = new String[] {
+      "{}", "[]", "0", "-1.5e-3", "\"a\"", "true", "null", " [ ] ",
+      "{\"a\":[1,-2.5E+3,true,false,null,\"\\u00E9\\n\\\"\\/\"],\"b\":{\"c\":{}}}",
+      "[\"\u00e9\u4e2d\",12345678901234567890123]"
+    };
+    for (final String json: documents) {
+      final Parser.Validation validation = Parser.validate(json);
+      assertTrue(json + ": " + validation, validation.isValid());
+      assertEquals(-1L, validation.getOffset());
+      assertNull(validation.getMessage());
+    }
+  }
+
+  private static void assertInvalid(final String json, final long offset) {
+    final Parser.Validation validation = Parser.validate(json);
+    assertFalse(json, validation.isValid());
+    assertEquals(json, offset, validation.getOffset());
+    assertNotNull(validation.getMessage());
+    final Parser.Validation streamed =
+      Parser.validate(Okio.buffer(Okio.source(new Buffer().writeUtf8(json).inputStream())));
+    assertFalse(json, streamed.isValid());
+    assertEquals(json, offset, streamed.getOffset());
+  }
+
+  @Test
+  public void testInvalid() {
+    assertInvalid("", 0);
+    assertInvalid("[1,]", 3);
+    assertInvalid("{\"a\" 1}", 5);
+    assertInvalid("{\"a\":1 \"b\":2}", 7);
+    assertInvalid("[1] 2", 4);
+    assertInvalid("{'a':1}", 1);
+    assertInvalid("[tru]", 1);
+    assertInvalid("[01]", 1);
+    assertInvalid("[\"a\\x\"]", 5);
+    assertInvalid("[\"a\\u00G0\"]", 5);
+    assertInvalid("[\"a\tb\"]", 5);
+    assertInvalid("[\"abc", 2);
+    assertInvalid("// comment\n[]", 0);
+    assertInvalid("[[[[", 4);
+  }
+
+  @Test
+  public void testLarge() {
+    final Buffer buffer = new Buffer().writeUtf8("[");
+    for (int i=0; i<10000; ++i) {
+      if (i > 0) buffer.writeUtf8(",");
+      buffer.writeUtf8("{\"id\":" + i + ",\"name\":\"item " + i + "\",\"values\":[1.5,true,null]}");
+    }
+    final long size = buffer.size() + 1;
+    buffer.writeUtf8("]");
+    assertTrue(Parser.validate(buffer.clone()).isValid());
+    buffer.writeUtf8(",");
+    final Parser.Validation validation = Parser.validate(buffer);
+    assertFalse(validation.isValid());
+    assertEquals(size, validation.getOffset());
+  }
+
+}
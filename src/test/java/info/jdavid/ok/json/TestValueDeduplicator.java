@@ -0,0 +1,79 @@
+package info.jdavid.ok.json;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestValueDeduplicator {
+
+  private static String records(final int count) {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i=0; i<count; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append("{\"id\":\"id").append(i).append("\",\"status\":\"").append(i % 3 == 0 ? "KO" : "OK");
+      sb.append("\",\"tags\":[\"a\",\"b\"]}");
+    }
+    return sb.append(']').toString();
+  }
+
+  @Test
+  public void testSharedValues() {
+    final ValueDeduplicator values = new ValueDeduplicator();
+    final List<?> list = Parser.parse(records(1000), new Parser.Options().deduplicateValues(values));
+    assertNotNull(list);
+    assertEquals(1000, list.size());
+    final Map<?, ?> first = (Map<?, ?>)list.get(1);
+    final Map<?, ?> last = (Map<?, ?>)list.get(998);
+    assertEquals("OK", first.get("status"));
+    assertSame(first.get("status"), last.get("status"));
+    assertSame(((List<?>)first.get("tags")).get(1), ((List<?>)last.get("tags")).get(1));
+    assertEquals("id998", last.get("id"));
+    assertTrue(values.getHitRate() > 0.5);
+    assertTrue(values.getHits() > 0);
+    assertTrue(values.getLookups() >= values.getHits());
+  }
+
+  @Test
+  public void testBackOff() {
+    final ValueDeduplicator values = new ValueDeduplicator();
+    Parser.parse(records(2 * ValueDeduplicator.TRIAL), new Parser.Options().deduplicateValues(values));
+    boolean idFound = false;
+    boolean statusFound = false;
+    for (final ValueDeduplicator.PathStatistics stats: values.getStatistics()) {
+      if ("id".equals(stats.path)) {
+        idFound = true;
+        assertFalse(stats.enabled);
+        assertEquals(0, stats.hits);
+        assertEquals(ValueDeduplicator.TRIAL, stats.lookups);
+      }
+      else if ("status".equals(stats.path)) {
+        statusFound = true;
+        assertTrue(stats.enabled);
+        assertEquals(2 * ValueDeduplicator.TRIAL, stats.lookups);
+        assertTrue(stats.getHitRate() > 0.9);
+      }
+    }
+    assertTrue(idFound);
+    assertTrue(statusFound);
+  }
+
+  @Test
+  public void testTopLevelArray() {
+    final ValueDeduplicator values = new ValueDeduplicator(8, 4);
+    final List<?> list =
+      Parser.parse("[\"EUR\",\"USD\",\"EUR\",\"a long string value\",\"a long string value\"]",
+                   new Parser.Options().deduplicateValues(values));
+    assertNotNull(list);
+    assertSame(list.get(0), list.get(2));
+    assertNotSame(list.get(3), list.get(4));
+    assertEquals(list.get(3), list.get(4));
+    assertEquals(1, values.getStatistics().size());
+    assertEquals(ValueDeduplicator.ROOT, values.getStatistics().get(0).path);
+    assertEquals(3, values.getLookups());
+  }
+
+}
@@ -0,0 +1,250 @@
+package info.jdavid.ok.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TestArrayPublisher {
+
+  /**
+   * Records the signals it receives. Nothing is requested unless {@link #initial} is set.
+   */
+  private static final class Recorder implements Flow.Subscriber<Object> {
+
+    final List<Object> items = Collections.synchronizedList(new ArrayList<Object>());
+    final CountDownLatch terminated = new CountDownLatch(1);
+    final long initial;
+    volatile @Nullable Flow.Subscription subscription = null;
+    volatile @Nullable Throwable error = null;
+    volatile boolean completed = false;
+    volatile @Nullable Thread thread = null;
+
+    Recorder() {
+      this(0L);
+    }
+
+    Recorder(final long initial) {
+      this.initial = initial;
+    }
+
+    @Override public void onSubscribe(final Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (initial != 0L) subscription.request(initial);
+    }
+
+    @Override public void onNext(final Object item) {
+      thread = Thread.currentThread();
+      items.add(item);
+    }
+
+    @Override public void onError(final Throwable throwable) {
+      error = throwable;
+      terminated.countDown();
+    }
+
+    @Override public void onComplete() {
+      completed = true;
+      terminated.countDown();
+    }
+
+    void request(final long n) {
+      final Flow.Subscription subscription = this.subscription;
+      assertNotNull(subscription);
+      subscription.request(n);
+    }
+
+  }
+
+  /**
+   * A streamed source that records when it is closed.
+   */
+  private static final class Source extends ForwardingSource {
+
+    volatile boolean closed = false;
+
+    Source(final String json) {
+      super(new Buffer().writeUtf8(json));
+    }
+
+    @Override public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+
+  }
+
+  private static BufferedSource buffer(final Source source) {
+    return Okio.buffer(source);
+  }
+
+  @Test
+  public void testBackpressure() {
+    final Source source = new Source("[1,\"a\",{\"b\":[true]},[],2.5]");
+    final Recorder recorder = new Recorder();
+    new ArrayPublisher(buffer(source)).subscribe(recorder);
+    assertTrue(recorder.items.isEmpty());
+    recorder.request(1);
+    assertEquals(Collections.<Object>singletonList(1), recorder.items);
+    recorder.request(1);
+    assertEquals(Arrays.<Object>asList(1, "a"), recorder.items);
+    assertFalse(recorder.completed);
+    recorder.request(2);
+    assertEquals(4, recorder.items.size());
+    assertEquals(Collections.singletonMap("b", Collections.singletonList(true)), recorder.items.get(2));
+    assertEquals(Collections.emptyList(), recorder.items.get(3));
+    assertFalse(recorder.completed);
+    assertFalse(source.closed);
+    recorder.request(10);
+    assertEquals(5, recorder.items.size());
+    assertEquals(2.5, recorder.items.get(4));
+    assertTrue(recorder.completed);
+    assertNull(recorder.error);
+    assertTrue(source.closed);
+  }
+
+  @Test
+  public void testNulls() {
+    final Recorder recorder = new Recorder(Long.MAX_VALUE);
+    new ArrayPublisher(buffer(new Source("[null,1,null,\"a\",null]"))).subscribe(recorder);
+    assertEquals(Arrays.<Object>asList(1, "a"), recorder.items);
+    assertTrue(recorder.completed);
+    final Recorder empty = new Recorder(1);
+    new ArrayPublisher(buffer(new Source("[null,null]"))).subscribe(empty);
+    assertTrue(empty.items.isEmpty());
+    assertTrue(empty.completed);
+  }
+
+  @Test
+  public void testInvalidRequest() {
+    for (final long n: new long[] { 0L, -1L, Long.MIN_VALUE }) {
+      final Source source = new Source("[1,2]");
+      final Recorder recorder = new Recorder();
+      new ArrayPublisher(buffer(source)).subscribe(recorder);
+      recorder.request(n);
+      assertTrue(recorder.error instanceof IllegalArgumentException);
+      assertTrue(recorder.items.isEmpty());
+      assertTrue(source.closed);
+      // Nothing is emitted after the error.
+      recorder.request(1);
+      assertTrue(recorder.items.isEmpty());
+      assertFalse(recorder.completed);
+    }
+  }
+
+  @Test
+  public void testCancel() {
+    final Source source = new Source("[1,2,3]");
+    final Recorder recorder = new Recorder();
+    new ArrayPublisher(buffer(source)).subscribe(recorder);
+    recorder.request(1);
+    assertFalse(source.closed);
+    final Flow.Subscription subscription = recorder.subscription;
+    assertNotNull(subscription);
+    subscription.cancel();
+    assertTrue(source.closed);
+    recorder.request(5);
+    assertEquals(Collections.<Object>singletonList(1), recorder.items);
+    assertFalse(recorder.completed);
+    assertNull(recorder.error);
+  }
+
+  @Test
+  public void testSecondSubscriber() {
+    final ArrayPublisher publisher = new ArrayPublisher(buffer(new Source("[1,2]")));
+    final Recorder first = new Recorder();
+    publisher.subscribe(first);
+    final Recorder second = new Recorder(1);
+    publisher.subscribe(second);
+    assertTrue(second.error instanceof IllegalStateException);
+    assertTrue(second.items.isEmpty());
+    first.request(Long.MAX_VALUE);
+    assertEquals(Arrays.<Object>asList(1, 2), first.items);
+    assertTrue(first.completed);
+  }
+
+  @Test
+  public void testPath() {
+    final Recorder recorder = new Recorder(Long.MAX_VALUE);
+    new ArrayPublisher(
+      buffer(new Source("{\"meta\":{},\"data\":{\"items\":[\"a\",\"b\"]},\"more\":[3]}")),
+      "$.data.items"
+    ).subscribe(recorder);
+    assertEquals(Arrays.<Object>asList("a", "b"), recorder.items);
+    assertTrue(recorder.completed);
+  }
+
+  @Test
+  public void testInvalid() {
+    final Source source = new Source("[1,}");
+    final Recorder recorder = new Recorder(Long.MAX_VALUE);
+    new ArrayPublisher(buffer(source)).subscribe(recorder);
+    assertEquals(Collections.<Object>singletonList(1), recorder.items);
+    assertTrue(recorder.error instanceof IOException);
+    assertTrue(source.closed);
+    final Recorder missing = new Recorder(1);
+    new ArrayPublisher(buffer(new Source("{\"a\":1}")), "$.b").subscribe(missing);
+    assertNotNull(missing.error);
+  }
+
+  @Test
+  public void testTruncated() throws InterruptedException {
+    final Source source = new Source("[1,\"abc");
+    final Recorder recorder = new Recorder(1);
+    new ArrayPublisher(buffer(source)).subscribe(recorder);
+    assertEquals(Collections.<Object>singletonList(1), recorder.items);
+    recorder.request(1);
+    assertTrue(recorder.error instanceof JsonEncodingException);
+    assertTrue(source.closed);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Recorder async = new Recorder(Long.MAX_VALUE);
+      new ArrayPublisher(
+        buffer(new Source("[1,{\"a\":\"b")), "$", new Parser.Options(), executor
+      ).subscribe(async);
+      assertTrue(async.terminated.await(5L, TimeUnit.SECONDS));
+      assertTrue(async.error instanceof JsonEncodingException);
+      assertEquals(Collections.<Object>singletonList(1), async.items);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecutor() throws InterruptedException {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Source source = new Source("[1,null,2,3]");
+      final Recorder recorder = new Recorder(2);
+      new ArrayPublisher(buffer(source), "$", new Parser.Options(), executor).subscribe(recorder);
+      recorder.request(Long.MAX_VALUE);
+      assertTrue(recorder.terminated.await(5L, TimeUnit.SECONDS));
+      assertTrue(recorder.completed);
+      assertEquals(Arrays.<Object>asList(1, 2, 3), recorder.items);
+      assertNotSame(Thread.currentThread(), recorder.thread);
+      assertTrue(source.closed);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+}